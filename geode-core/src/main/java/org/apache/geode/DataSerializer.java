@@ -1502,6 +1502,11 @@ public abstract class DataSerializer {
         return;
       } else {
         object = ((CachedDeserializable) obj).getSerializedValue();
+        if (object instanceof byte[]) {
+          // the serialized form of a cached value is never modified
+          InternalDataSerializer.writeImmutableByteArray((byte[])object, out);
+          return;
+        }
       }
     }
     if (logger.isTraceEnabled(LogMarker.SERIALIZER)) {
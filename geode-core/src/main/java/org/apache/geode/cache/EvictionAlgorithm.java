@@ -63,6 +63,26 @@ public final class EvictionAlgorithm extends EnumSyntax
    * @deprecated
    */
   public static final EvictionAlgorithm LIFO_MEMORY = new EvictionAlgorithm(5);
+
+  /**
+   * An algorithm that considers the number of Entries in the Region before
+   * invoking its {@link EvictionAction} on the entries that were used least
+   * frequently, so that entries read only once don't evict the frequently
+   * used ones.
+   *
+   * @since Geode 1.1
+   */
+  public static final EvictionAlgorithm LFU_ENTRY = new EvictionAlgorithm(6);
+
+  /**
+   * An algorithm that considers the amount of bytes consumed by the Region
+   * before invoking its {@link EvictionAction} on the entries that were used
+   * least frequently, so that entries read only once don't evict the
+   * frequently used ones.
+   *
+   * @since Geode 1.1
+   */
+  public static final EvictionAlgorithm LFU_MEMORY = new EvictionAlgorithm(7);
   
   private EvictionAlgorithm(int val) { super(val); }
   
@@ -72,7 +92,9 @@ public final class EvictionAlgorithm extends EnumSyntax
     "lru-heap-percentage",
     "lru-memory-size",
     "lifo-entry-count",
-    "lifo-memory-size"
+    "lifo-memory-size",
+    "lfu-entry-count",
+    "lfu-memory-size"
   };
   
   @Override
@@ -88,6 +110,8 @@ public final class EvictionAlgorithm extends EnumSyntax
     LRU_MEMORY,
     LIFO_ENTRY,
     LIFO_MEMORY,
+    LFU_ENTRY,
+    LFU_MEMORY,
   };
     
   @Override
@@ -147,4 +171,12 @@ public final class EvictionAlgorithm extends EnumSyntax
     public boolean isLIFO() {
       return this == LIFO_ENTRY || this == LIFO_MEMORY;
     }
+
+    /**
+     * returns true if this object uses a least-frequently-used algorithm
+     * @since Geode 1.1
+     */
+    public boolean isLFU() {
+      return this == LFU_ENTRY || this == LFU_MEMORY;
+    }
 }
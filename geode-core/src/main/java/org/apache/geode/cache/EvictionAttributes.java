@@ -490,4 +490,32 @@ public abstract class EvictionAttributes implements DataSerializable {
       .internalSetMaximum(maximumMegabytes).setObjectSizer(null);
   }
 
+  /**
+   * Creates and returns {@linkplain EvictionAlgorithm#LFU_ENTRY entry count}
+   * eviction attributes that evict the least frequently used entries.
+   *
+   * @param maximumEntries the number of entries to keep in the Region
+   * @param evictionAction the action to perform when evicting an entry
+   * @return an EvictionAttributes for the least frequently used entry count algorithm
+   * @since Geode 1.1
+   */
+  public static EvictionAttributes createLFUEntryAttributes(int maximumEntries, EvictionAction evictionAction) {
+    return new EvictionAttributesImpl().setAlgorithm(EvictionAlgorithm.LFU_ENTRY).setAction(evictionAction)
+      .internalSetMaximum(maximumEntries);
+  }
+
+  /**
+   * Creates and returns {@linkplain EvictionAlgorithm#LFU_MEMORY memory size}
+   * eviction attributes that evict the least frequently used entries.
+   *
+   * @param maximumMegabytes the maximum allowed bytes in the Region
+   * @param evictionAction the action to perform when evicting an entry
+   * @return an EvictionAttributes for the least frequently used memory size algorithm
+   * @since Geode 1.1
+   */
+  public static EvictionAttributes createLFUMemoryAttributes(int maximumMegabytes, EvictionAction evictionAction) {
+    return new EvictionAttributesImpl().setAlgorithm(EvictionAlgorithm.LFU_MEMORY).setAction(evictionAction)
+      .internalSetMaximum(maximumMegabytes).setObjectSizer(null);
+  }
+
 }
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.client.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.geode.InternalGemFireError;
+import org.apache.geode.cache.client.ServerOperationException;
+import org.apache.geode.cache.query.QueryResultIterator;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.types.CollectionType;
+import org.apache.geode.distributed.DistributedMember;
+import org.apache.geode.distributed.internal.ServerLocation;
+import org.apache.geode.distributed.internal.membership.InternalDistributedMember;
+import org.apache.geode.internal.Version;
+import org.apache.geode.internal.cache.tier.MessageType;
+import org.apache.geode.internal.cache.tier.sockets.Message;
+
+/**
+ * Opens a cursor over the results of a query on a server and fetches its
+ * rows a chunk at a time. The cursor lives on the server that opened it so
+ * the chunks are fetched from that server. Servers older than Geode 1.1 do
+ * not support cursors, so the query is executed whole on them and all of
+ * its rows are returned in the first chunk.
+ * @since Geode 1.1
+ */
+public class QueryCursorOp {
+  /**
+   * Opens a query cursor on a server using connections from the given pool
+   * to communicate with the server.
+   * @param pool the pool to use to communicate with the server.
+   * @param queryString the query to execute
+   * @param queryParams the bind parameters of the query, or null
+   * @param fetchSize the number of rows to fetch at a time
+   * @return an iterator over the results that fetches them as needed
+   */
+  public static QueryResultIterator execute(ExecutablePool pool,
+      String queryString, Object[] queryParams, int fetchSize) {
+    AbstractOp op = new OpenOpImpl(queryString, queryParams, fetchSize);
+    return new CursorIterator(pool, (Chunk)pool.execute(op), fetchSize);
+  }
+
+  private QueryCursorOp() {
+    // no instances allowed
+  }
+
+  /**
+   * A chunk of rows of a cursor.
+   */
+  private static class Chunk {
+    private final ServerLocation server;
+    private final long cursorId;
+    private final List rows;
+    private final boolean hasMore;
+
+    Chunk(ServerLocation server, long cursorId, List rows, boolean hasMore) {
+      this.server = server;
+      this.cursorId = cursorId;
+      this.rows = rows;
+      this.hasMore = hasMore;
+    }
+  }
+
+  private static class CursorIterator implements QueryResultIterator {
+    private final ExecutablePool pool;
+    private final ServerLocation server;
+    private final long cursorId;
+    private final int fetchSize;
+    private Iterator rows;
+    private boolean hasMore;
+
+    CursorIterator(ExecutablePool pool, Chunk first, int fetchSize) {
+      this.pool = pool;
+      this.server = first.server;
+      this.cursorId = first.cursorId;
+      this.fetchSize = fetchSize;
+      this.rows = first.rows.iterator();
+      this.hasMore = first.hasMore;
+    }
+
+    public boolean hasNext() {
+      while (!this.rows.hasNext() && this.hasMore) {
+        // the server drops the cursor if the fetch fails
+        this.hasMore = false;
+        Chunk chunk = (Chunk)this.pool.executeOn(this.server,
+            new NextOpImpl(this.cursorId, this.fetchSize));
+        this.rows = chunk.rows.iterator();
+        this.hasMore = chunk.hasMore;
+      }
+      return this.rows.hasNext();
+    }
+
+    public Object next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return this.rows.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      this.rows = Collections.emptyIterator();
+      if (this.hasMore) {
+        this.hasMore = false;
+        this.pool.executeOn(this.server, new CloseOpImpl(this.cursorId));
+      }
+    }
+  }
+
+  private static abstract class CursorOpImpl extends AbstractOp {
+    protected CursorOpImpl(int msgType, int numParts) {
+      super(msgType, numParts);
+    }
+    @Override
+    protected Object processResponse(Message msg) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    protected Object processResponse(Message msg, Connection cnx) throws Exception {
+      final int msgType = msg.getMessageType();
+      if (msgType == MessageType.RESPONSE) {
+        long cursorId = (Long)msg.getPart(0).getObject();
+        CollectionType collectionType = (CollectionType)msg.getPart(1).getObject();
+        List rows = new ArrayList();
+        QueryOp.addResults(rows, collectionType.getElementType(),
+            msg.getPart(2).getObject());
+        boolean hasMore = (Boolean)msg.getPart(3).getObject();
+        return new Chunk(cnx.getServer(), cursorId, rows, hasMore);
+      } else if (msgType == MessageType.EXCEPTION) {
+        String s = "While performing a remote " + getOpName();
+        throw new ServerOperationException(s, (Throwable)msg.getPart(0).getObject());
+      } else {
+        throw new InternalGemFireError("Unexpected message type "
+            + MessageType.getString(msgType));
+      }
+    }
+    protected String getOpName() {
+      return "query cursor";
+    }
+    @Override
+    protected boolean isErrorResponse(int msgType) {
+      return false;
+    }
+    @Override
+    protected long startAttempt(ConnectionStats stats) {
+      return stats.startQuery();
+    }
+    @Override
+    protected void endSendAttempt(ConnectionStats stats, long start) {
+      stats.endQuerySend(start, hasFailed());
+    }
+    @Override
+    protected void endAttempt(ConnectionStats stats, long start) {
+      stats.endQuery(start, hasTimedOut(), hasFailed());
+    }
+  }
+
+  private static class OpenOpImpl extends CursorOpImpl {
+    private final String queryString;
+    private final Object[] queryParams;
+
+    /**
+     * @throws org.apache.geode.SerializationException if serialization fails
+     */
+    public OpenOpImpl(String queryString, Object[] queryParams, int fetchSize) {
+      super(MessageType.QUERY_CURSOR_OPEN,
+          3 + (queryParams == null ? 0 : queryParams.length));
+      this.queryString = queryString;
+      this.queryParams = queryParams;
+      getMessage().addStringPart(queryString);
+      getMessage().addIntPart(fetchSize);
+      if (queryParams == null) {
+        getMessage().addIntPart(0);
+      } else {
+        getMessage().addIntPart(queryParams.length);
+        for (Object param : queryParams) {
+          getMessage().addObjPart(param);
+        }
+      }
+    }
+    @Override
+    public Object attempt(Connection cnx) throws Exception {
+      if (supportsCursors(cnx)) {
+        return super.attempt(cnx);
+      }
+      AbstractOp queryOp;
+      if (this.queryParams != null && this.queryParams.length > 0) {
+        queryOp = new QueryOp.QueryOpImpl(this.queryString, this.queryParams);
+      } else {
+        queryOp = new QueryOp.QueryOpImpl(this.queryString);
+      }
+      SelectResults results = (SelectResults)queryOp.attempt(cnx);
+      return new Chunk(cnx.getServer(), -1L, results.asList(), false);
+    }
+    private static boolean supportsCursors(Connection cnx) {
+      DistributedMember server = cnx.getEndpoint().getMemberId();
+      return server instanceof InternalDistributedMember
+          && ((InternalDistributedMember)server).getVersionObject()
+              .compareTo(Version.GEODE_110) >= 0;
+    }
+  }
+
+  private static class NextOpImpl extends CursorOpImpl {
+    public NextOpImpl(long cursorId, int fetchSize) {
+      super(MessageType.QUERY_CURSOR_NEXT, 2);
+      getMessage().addLongPart(cursorId);
+      getMessage().addIntPart(fetchSize);
+    }
+  }
+
+  private static class CloseOpImpl extends CursorOpImpl {
+    public CloseOpImpl(long cursorId) {
+      super(MessageType.QUERY_CURSOR_CLOSE, 1);
+      getMessage().addLongPart(cursorId);
+    }
+    @Override
+    protected Object processResponse(Message msg, Connection cnx) throws Exception {
+      processAck(msg, getOpName());
+      return null;
+    }
+  }
+}
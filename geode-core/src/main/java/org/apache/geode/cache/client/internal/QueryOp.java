@@ -17,6 +17,7 @@
 package org.apache.geode.cache.client.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
 import org.apache.geode.internal.Version;
 import org.apache.geode.internal.cache.tier.MessageType;
 import org.apache.geode.internal.cache.tier.sockets.Message;
@@ -63,6 +64,40 @@ public class QueryOp {
     // no instances allowed
   }
 
+  /**
+   * Adds a chunk of query results received from a server to
+   * <code>results</code>, turning the field values of structs back into
+   * {@link StructImpl}s.
+   * @param queryResult the rows, an <code>Object[]</code> or an
+   *        {@link ObjectPartList} for serialized rows
+   */
+  static void addResults(Collection results, ObjectType objectType,
+      Object queryResult) {
+    Object[] resultArray;
+    // for select * queries, the serialized object byte arrays are
+    // returned as part of ObjectPartList
+    boolean isObjectPartList = false;
+    if (queryResult instanceof ObjectPartList) {
+      isObjectPartList = true;
+      resultArray = ((ObjectPartList) queryResult).getObjects().toArray();
+    } else {
+      resultArray = (Object[]) queryResult;
+    }
+    if (objectType.isStructType()) {
+      for (int i = 0; i < resultArray.length; i++) {
+        if (isObjectPartList) {
+          results.add(new StructImpl((StructTypeImpl) objectType,
+              ((ObjectPartList) resultArray[i]).getObjects().toArray()));
+        } else {
+          results.add(new StructImpl((StructTypeImpl) objectType,
+              (Object[]) resultArray[i]));
+        }
+      }
+    } else {
+      results.addAll(Arrays.asList(resultArray));
+    }
+  }
+
   /**
    * Note: this class is extended by CreateCQWithIROpImpl.
    */
@@ -139,34 +174,8 @@ public class QueryOp {
                 resultRef[0] = QueryUtils.getEmptySelectResults(collectionType,
                                                                 null);
               }
-              SelectResults selectResults = resultRef[0];
-              ObjectType objectType = collectionType.getElementType();
-              Object[] resultArray;
-             // for select * queries, the serialized object byte arrays are
-             // returned as part of ObjectPartList
-              boolean isObjectPartList = false;
-              if (queryResult instanceof ObjectPartList) {
-                isObjectPartList = true;
-                resultArray = ((ObjectPartList) queryResult).getObjects().toArray();
-              } else{ 
-                // Add the results to the SelectResults
-                resultArray = (Object[]) queryResult;
-              }
-              if (objectType.isStructType()) {
-                for (int i = 0; i < resultArray.length; i++) {
-                  if (isObjectPartList) {
-                    selectResults
-                        .add(new StructImpl((StructTypeImpl) objectType,
-                            ((ObjectPartList) resultArray[i]).getObjects()
-                                .toArray()));
-                  } else {
-                    selectResults.add(new StructImpl((StructTypeImpl) objectType,
-                        (Object[]) resultArray[i]));
-                  }
-                }
-              } else {
-                selectResults.addAll(Arrays.asList(resultArray));
-              }
+              addResults(resultRef[0], collectionType.getElementType(),
+                  queryResult);
             }
           }
         };
@@ -83,6 +83,23 @@ public class IndexType {
    * @see QueryService#createIndex(String, IndexType, String, String)
    */
   public static final IndexType PRIMARY_KEY = new IndexType("PRIMARY_KEY");
+
+  /**
+   * The index type of a bitmap index.
+   * A bitmap index is a functional index for indexed expressions with few
+   * distinct values, like a status or a category. It keeps the entries of
+   * each value in a compressed bitmap, so a query with equality conditions
+   * on several bitmap indexed expressions of the same region, combined with
+   * AND or OR, is answered by combining the bitmaps, and counting the results
+   * of such a query does not look at the entries.
+   * <p>
+   * The indexedExpression for a bitmap index must be a path on a single
+   * iterator over a region with synchronous index maintenance.
+   *
+   * @see QueryService#createIndex(String, IndexType, String, String)
+   * @since Geode 1.1
+   */
+  public static final IndexType BITMAP = new IndexType("BITMAP");
   
   //public static final IndexType MAP_INDEX = new IndexType("MAP_INDEX");
   
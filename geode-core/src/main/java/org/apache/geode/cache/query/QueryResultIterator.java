@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query;
+
+import java.util.Iterator;
+
+/**
+ * An iterator over the results of a query executed with
+ * {@link QueryService#executeStreaming}. On a client the rows are fetched
+ * from the server in chunks as the iteration needs them, so neither the
+ * server nor the client holds the whole result set at once. The iterator
+ * should be closed if it is not run to the end, to let the server drop the
+ * rows it still holds for it.
+ * <p>
+ * The rows are the same objects {@link Query#execute} would return in its
+ * {@link SelectResults}: region values, projected values or {@link Struct}s.
+ * The <code>remove</code> operation is not supported.
+ *
+ * @since Geode 1.1
+ */
+public interface QueryResultIterator<E> extends Iterator<E>, AutoCloseable {
+
+  /**
+   * Releases the resources held for this iterator on the server. Closing an
+   * iterator more than once, or one that was run to the end, has no effect.
+   */
+  @Override
+  public void close();
+}
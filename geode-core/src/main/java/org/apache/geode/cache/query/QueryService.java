@@ -55,6 +55,51 @@ public interface QueryService {
    */
   public Query newQuery(String queryString);
 
+  /**
+   * Executes a query and returns an iterator over its results that are
+   * fetched <code>fetchSize</code> rows at a time.
+   * <p>
+   * On a client the server keeps a cursor over the results and sends the
+   * next chunk of rows only when the iterator asks for it. A plain select on
+   * a partitioned region, without distinct, order by, group by, aggregates,
+   * count or limit, is executed on a few buckets at a time on the server, so
+   * its results never have to be held in memory all at once. Other queries
+   * are executed as a whole on the server and only their transfer is
+   * chunked. The results of a partitioned region do not include buckets
+   * created after the query started. Servers older than Geode 1.1 execute
+   * the query as a whole and send all of its rows at once.
+   * <p>
+   * In a peer or a server the query is executed locally and the iterator
+   * goes over its results.
+   *
+   * @param queryString the String that is the query program
+   * @param params the bind parameters of the query, or null if it has none
+   * @param fetchSize the number of rows fetched from the server at a time
+   * @return an iterator over the query results that should be closed if it
+   *         is not run to the end
+   * @throws QueryInvalidException if the syntax of the queryString is invalid.
+   * @throws IllegalArgumentException if fetchSize is not positive
+   * @throws FunctionDomainException
+   *         A function was applied to a parameter that is improper
+   *         for that function.
+   * @throws TypeMismatchException If a bound parameter is not of the expected type.
+   * @throws NameResolutionException If a name in the query cannot be resolved.
+   * @throws QueryInvocationTargetException
+   *         If the data referenced in from clause is not available for querying.
+   * @throws org.apache.geode.cache.client.ServerOperationException
+   *         If the query fails on the server.
+   * @throws UnsupportedOperationException if this QueryService does not
+   *         support streaming, which is the default for implementations that
+   *         do not override this method.
+   * @since Geode 1.1
+   */
+  public default QueryResultIterator executeStreaming(String queryString,
+      Object[] params, int fetchSize) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    throw new UnsupportedOperationException("executeStreaming is not supported by " + getClass().getName());
+  }
+
   /**
    * Create a hash index that can be used when executing equal and not equal
    * queries. Hash index is not supported with asynchronous index maintenance.
@@ -306,6 +351,95 @@ public interface QueryService {
       IndexNameConflictException, IndexExistsException,
       RegionNotFoundException, UnsupportedOperationException;
 
+  /**
+   * Create a bitmap index for a field with few distinct values, like a status
+   * or a category. A bitmap index answers the same queries as a functional
+   * index. In addition, equality conditions on several bitmap indexed fields
+   * of the same region, combined with AND or OR, are evaluated by combining
+   * compressed bitmaps of the matching entries, and a
+   * <code>count(*)</code> of such a query does not look at the entries.
+   * Bitmap index is not supported with asynchronous index maintenance nor
+   * with a from clause with multiple iterators.
+   *
+   * @param indexName the name of this index.
+   * @param indexedExpression refers to the field of the region values that 
+   *          are referenced by the regionPath.
+   * @param regionPath that resolves to region values or nested
+   *          collections of region values which will correspond to the
+   *          FROM clause in a query.
+   *          The regionPath is restricted to only one expression
+   *
+   *          Example:
+   *          Query1: "Select * from /portfolio p where p.status = 'active'"
+   *          For index on status field:
+   *          indexExpression: "p.status"
+   *          regionPath:      "/portfolio p"
+   *
+   * @return the newly created Index
+   * @throws QueryInvalidException if the argument query language strings have
+   *           invalid syntax
+   * @throws IndexInvalidException if the arguments do not correctly specify an
+   *           index
+   * @throws IndexNameConflictException if an index with this name already
+   *           exists
+   * @throws IndexExistsException if an index with these parameters already
+   *           exists with a different name
+   * @throws RegionNotFoundException if the region referred to in the fromClause
+   *           doesn't exist
+   * @throws UnsupportedOperationException If Index is being created on a region
+   *           which does not support indexes, or if this QueryService does
+   *           not support bitmap indexes, which is the default for
+   *           implementations that do not override this method.
+   * @since Geode 1.1
+   */
+  public default Index createBitmapIndex(String indexName, String indexedExpression,
+      String regionPath) throws IndexInvalidException,
+      IndexNameConflictException, IndexExistsException,
+      RegionNotFoundException, UnsupportedOperationException {
+    throw new UnsupportedOperationException("createBitmapIndex is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Create a bitmap index for a field with few distinct values, using
+   * imports to type the FROM clause. See
+   * {@link #createBitmapIndex(String, String, String)}.
+   *
+   * @param indexName the name of this index.
+   * @param indexedExpression refers to the field of the region values that 
+   *          are referenced by the regionPath.
+   * @param regionPath that resolves to region values or nested
+   *          collections of region values which will correspond to the
+   *          FROM clause in a query.
+   *          The regionPath is restricted to only one expression
+   * @param imports string containing imports (in the query language syntax,
+   *          each import statement separated by a semicolon), provides packages
+   *          and classes used in variable typing in the Indexed and FROM
+   *          expressions. The use is the same as for the FROM clause in
+   *          querying.
+   * @return the newly created Index
+   * @throws QueryInvalidException if the argument query language strings have
+   *           invalid syntax
+   * @throws IndexInvalidException if the arguments do not correctly specify an
+   *           index
+   * @throws IndexNameConflictException if an index with this name already
+   *           exists
+   * @throws IndexExistsException if an index with these parameters already
+   *           exists with a different name
+   * @throws RegionNotFoundException if the region referred to in the fromClause
+   *           doesn't exist
+   * @throws UnsupportedOperationException If Index is being created on a region
+   *           which does not support indexes, or if this QueryService does
+   *           not support bitmap indexes, which is the default for
+   *           implementations that do not override this method.
+   * @since Geode 1.1
+   */
+  public default Index createBitmapIndex(String indexName, String indexedExpression,
+      String regionPath, String imports) throws IndexInvalidException,
+      IndexNameConflictException, IndexExistsException,
+      RegionNotFoundException, UnsupportedOperationException {
+    throw new UnsupportedOperationException("createBitmapIndex is not supported by " + getClass().getName());
+  }
+
   /**
    * 
    * @deprecated As of 6.6.2, use
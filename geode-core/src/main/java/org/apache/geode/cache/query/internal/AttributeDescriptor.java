@@ -39,6 +39,7 @@ import org.apache.geode.internal.i18n.LocalizedStrings;
 import org.apache.geode.pdx.PdxInstance;
 import org.apache.geode.pdx.PdxSerializationException;
 import org.apache.geode.pdx.internal.FieldNotFoundInPdxVersion;
+import org.apache.geode.pdx.internal.PdxField;
 import org.apache.geode.pdx.internal.PdxInstanceImpl;
 import org.apache.geode.pdx.JSONFormatter;
 
@@ -310,10 +311,11 @@ public class AttributeDescriptor {
       QueryInvocationTargetException {
     if (target instanceof PdxInstanceImpl) {
       PdxInstanceImpl pdxInstance = (PdxInstanceImpl) target;
+      PdxField field = pdxInstance.getPdxType().getPdxField(_name);
       // if the field is present in the pdxinstance
-      if (pdxInstance.hasField(_name)) { 
+      if (field != null) {
         // return PdxString if field is a String otherwise invoke readField
-        return pdxInstance.getRawField(_name);
+        return pdxInstance.getRawField(field);
       }
       else {
         // field not found in the pdx instance, look for the field in any of the
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.geode.cache.query.AmbiguousNameException;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.index.BitmapIndex;
+import org.apache.geode.cache.query.internal.types.StructTypeImpl;
+import org.apache.geode.cache.query.types.ObjectType;
+import org.apache.geode.cache.query.types.StructType;
+
+/**
+ * A junction of equality comparisons on {@link BitmapIndex}es of the same
+ * region, like <code>p.status = 'active' AND p.type = $1</code>, which is
+ * evaluated by intersecting or uniting the bitmaps of the keys instead of
+ * the results of each comparison. The entries are only looked at once the
+ * bitmaps are combined.
+ * <p>
+ * The conditions are found when an AND or OR {@link CompiledJunction}
+ * organizes its operands, after the {@link CompositeIndexCondition}s, and take
+ * the place of the comparisons they combine, so the {@link GroupJunction}
+ * picks them up like any other indexed condition. The comparisons have
+ * already read locked their indexes.
+ * <p>
+ * A <code>count(*)</code> query whose where clause is answered entirely by
+ * bitmap indexes is counted from the cardinality of the combined bitmap,
+ * see {@link #getCount(CompiledValue, ExecutionContext)}.
+ *
+ * @since Geode 1.1
+ */
+public class BitmapIndexCondition extends AbstractCompiledValue implements
+    Indexable {
+
+  /** The index of each operand */
+  private final BitmapIndex[] indexes;
+
+  /** The comparisons answered by the bitmaps */
+  private final CompiledComparison[] operands;
+
+  /** The index information of each operand */
+  private final IndexInfo[] operandInfo;
+
+  private final boolean and;
+
+  private final IndexInfo[] indexInfo;
+
+  private BitmapIndexCondition(CompiledComparison[] operands,
+      IndexInfo[] operandInfo, int operator) {
+    this.operands = operands;
+    this.operandInfo = operandInfo;
+    this.and = operator == LITERAL_and;
+    this.indexes = new BitmapIndex[operandInfo.length];
+    for (int i = 0; i < operandInfo.length; i++) {
+      this.indexes[i] = (BitmapIndex)operandInfo[i]._index;
+    }
+    CompiledValue condition = new CompiledJunction(operands, operator);
+    this.indexInfo = new IndexInfo[] { new CompositeIndexInfo(
+        operandInfo[0]._path, this.indexes[0], operandInfo[0]._matchLevel,
+        operandInfo[0].mapping, condition, operator) };
+  }
+
+  /**
+   * Returns the bitmap index conditions for the operands of a junction, at
+   * most one for each independent iterator.
+   */
+  static List<BitmapIndexCondition> getConditions(CompiledJunction junction,
+      CompiledValue[] junctionOperands, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (!(context instanceof QueryExecutionContext)
+        || ((QueryExecutionContext)context).hasHints()) {
+      return Collections.emptyList();
+    }
+    PlanKey key = new PlanKey(junction);
+    List<BitmapIndexCondition> conditions = (List<BitmapIndexCondition>)context.cacheGet(key);
+    if (conditions == null) {
+      conditions = createConditions(junctionOperands, junction.getOperator(), context);
+      context.cachePut(key, conditions);
+    }
+    return conditions;
+  }
+
+  /**
+   * Returns the operands with the comparisons of each condition replaced by
+   * the condition, or the operands themselves if there are no conditions.
+   */
+  static CompiledValue[] substitute(CompiledValue[] junctionOperands,
+      List<BitmapIndexCondition> conditions) {
+    if (conditions.isEmpty()) {
+      return junctionOperands;
+    }
+    List<CompiledValue> result = new ArrayList<CompiledValue>(junctionOperands.length);
+    for (CompiledValue operand : junctionOperands) {
+      BitmapIndexCondition owner = null;
+      for (BitmapIndexCondition condition : conditions) {
+        if (condition.consumes(operand)) {
+          owner = condition;
+          break;
+        }
+      }
+      if (owner == null) {
+        result.add(operand);
+      } else if (!result.contains(owner)) {
+        // takes the place of its first comparison
+        result.add(owner);
+      }
+    }
+    return result.toArray(new CompiledValue[result.size()]);
+  }
+
+  /**
+   * Returns the number of results of a <code>count(*)</code> query with a
+   * single iterator whose where clause is answered entirely by bitmap
+   * indexes, or -1 if the where clause is not.
+   */
+  static int getCount(CompiledValue whereClause, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (whereClause instanceof CompiledJunction) {
+      CompiledValue[] operands = ((CompiledJunction)whereClause).getCombinedOperands(context);
+      if (operands.length == 1 && operands[0] instanceof BitmapIndexCondition) {
+        BitmapIndexCondition condition = (BitmapIndexCondition)operands[0];
+        return BitmapIndex.count(condition.indexes,
+            condition.evaluateKeys(context), condition.and, context);
+      }
+    } else if (whereClause.getClass() == CompiledComparison.class
+        && whereClause.isDependentOnCurrentScope(context)) {
+      IndexInfo info = getEqualityIndexInfo((CompiledComparison)whereClause, context);
+      if (info != null) {
+        return BitmapIndex.count(new BitmapIndex[] { (BitmapIndex)info._index },
+            new Object[] { info.evaluateIndexKey(context) }, true, context);
+      }
+    }
+    return -1;
+  }
+
+  private static List<BitmapIndexCondition> createConditions(
+      CompiledValue[] junctionOperands, int operator, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    // group the equality comparisons on the independent iterator they
+    // depend on
+    Map<RuntimeIterator, List<CompiledComparison>> groups = null;
+    for (CompiledValue operand : junctionOperands) {
+      if (operand.getClass() != CompiledComparison.class
+          || !operand.isDependentOnCurrentScope(context)
+          || getEqualityIndexInfo((CompiledComparison)operand, context) == null) {
+        continue;
+      }
+      Set set = QueryUtils.getCurrentScopeUltimateRuntimeIteratorsIfAny(operand, context);
+      if (set.size() != 1) {
+        continue;
+      }
+      if (groups == null) {
+        groups = new LinkedHashMap<RuntimeIterator, List<CompiledComparison>>();
+      }
+      RuntimeIterator rIter = (RuntimeIterator)set.iterator().next();
+      List<CompiledComparison> group = groups.get(rIter);
+      if (group == null) {
+        group = new ArrayList<CompiledComparison>();
+        groups.put(rIter, group);
+      }
+      group.add((CompiledComparison)operand);
+    }
+    if (groups == null) {
+      return Collections.emptyList();
+    }
+    List<BitmapIndexCondition> conditions = null;
+    for (List<CompiledComparison> group : groups.values()) {
+      BitmapIndexCondition condition = createCondition(group, junctionOperands, operator, context);
+      if (condition != null) {
+        if (conditions == null) {
+          conditions = new ArrayList<BitmapIndexCondition>(groups.size());
+        }
+        conditions.add(condition);
+      }
+    }
+    return conditions == null ? Collections.<BitmapIndexCondition>emptyList() : conditions;
+  }
+
+  /**
+   * Returns a condition for the comparisons of one group on the indexes of
+   * the same region as the first one, or null if there are fewer than two.
+   */
+  private static BitmapIndexCondition createCondition(
+      List<CompiledComparison> comparisons, CompiledValue[] junctionOperands,
+      int operator, ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (comparisons.size() < 2) {
+      return null;
+    }
+    List<CompiledComparison> operands = new ArrayList<CompiledComparison>(comparisons.size());
+    List<IndexInfo> operandInfo = new ArrayList<IndexInfo>(comparisons.size());
+    for (CompiledComparison comparison : comparisons) {
+      IndexInfo info = getEqualityIndexInfo(comparison, context);
+      if (operandInfo.isEmpty()
+          || ((BitmapIndex)info._index).getRegion() == ((BitmapIndex)operandInfo.get(0)._index).getRegion()) {
+        operands.add(comparison);
+        operandInfo.add(info);
+      }
+    }
+    if (operands.size() < 2) {
+      return null;
+    }
+    if (operator == LITERAL_and) {
+      // the remaining conditions on the same indexes would be combined into
+      // a range junction with the comparisons
+      for (CompiledValue operand : junctionOperands) {
+        if (operands.contains(operand)) {
+          continue;
+        }
+        for (IndexInfo info : operandInfo) {
+          if (operand.getPlanInfo(context).indexes.contains(info._index)) {
+            return null;
+          }
+        }
+      }
+    }
+    BitmapIndexCondition condition = new BitmapIndexCondition(
+        operands.toArray(new CompiledComparison[operands.size()]),
+        operandInfo.toArray(new IndexInfo[operandInfo.size()]), operator);
+    condition.computeDependencies(context);
+    return condition;
+  }
+
+  /**
+   * Returns the index information of an equality comparison on the exact
+   * expression of a bitmap index, or null if the comparison is not one.
+   */
+  private static IndexInfo getEqualityIndexInfo(CompiledComparison comparison,
+      ExecutionContext context) throws TypeMismatchException,
+      AmbiguousNameException, NameResolutionException {
+    if (comparison.getOperator() != TOK_EQ) {
+      return null;
+    }
+    IndexInfo[] info = comparison.getIndexInfo(context);
+    if (info == null || info.length != 1
+        || !(info[0]._index instanceof BitmapIndex)
+        || info[0]._matchLevel != 0 || info[0]._operator != TOK_EQ) {
+      return null;
+    }
+    return info[0];
+  }
+
+  boolean consumes(CompiledValue operand) {
+    for (CompiledComparison consumed : this.operands) {
+      if (consumed == operand) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Object[] evaluateKeys(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    Object[] keys = new Object[this.operandInfo.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = this.operandInfo[i].evaluateIndexKey(context);
+    }
+    return keys;
+  }
+
+  @Override
+  public List getChildren() {
+    return Arrays.asList(this.operands);
+  }
+
+  public int getType() {
+    return BITMAP_INDEX_CONDITION;
+  }
+
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    return ((CompositeIndexInfo)this.indexInfo[0]).getCondition().evaluate(context);
+  }
+
+  @Override
+  public Set computeDependencies(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException,
+      NameResolutionException {
+    Set dependencies = Collections.EMPTY_SET;
+    for (CompiledComparison operand : this.operands) {
+      dependencies = context.addDependencies(this, operand.computeDependencies(context));
+    }
+    return dependencies;
+  }
+
+  @Override
+  protected PlanInfo protGetPlanInfo(ExecutionContext context) {
+    PlanInfo result = new PlanInfo();
+    for (BitmapIndex index : this.indexes) {
+      if (!result.indexes.contains(index)) {
+        result.indexes.add(index);
+      }
+    }
+    result.evalAsFilter = true;
+    result.isPreferred = true;
+    return result;
+  }
+
+  public IndexInfo[] getIndexInfo(ExecutionContext context) {
+    return this.indexInfo;
+  }
+
+  public boolean isRangeEvaluatable() {
+    return false;
+  }
+
+  @Override
+  public SelectResults filterEvaluate(ExecutionContext context,
+      SelectResults intermediateResults) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    return filterEvaluate(context, intermediateResults, true, null, null,
+        true, true, true);
+  }
+
+  @Override
+  public SelectResults filterEvaluate(ExecutionContext context,
+      SelectResults intermediateResults, boolean completeExpansionNeeded,
+      CompiledValue iterOperands, RuntimeIterator[] indpndntItrs,
+      boolean isIntersection, boolean conditioningNeeded,
+      boolean evaluateProjection) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    ObjectType resultType = this.indexes[0].getResultSetType();
+    int indexFieldsSize = -1;
+    SelectResults set = null;
+    if (resultType instanceof StructType) {
+      set = QueryUtils.createStructCollection(context, (StructTypeImpl)resultType);
+      indexFieldsSize = ((StructTypeImpl)resultType).getFieldNames().length;
+    }
+    else {
+      set = QueryUtils.createResultCollection(context, resultType);
+      indexFieldsSize = 1;
+    }
+    Object[] keys = evaluateKeys(context);
+    // the entries come in ordinal order and the remaining conditions are
+    // applied after the lookup
+    context.cachePut(CompiledValue.CAN_APPLY_LIMIT_AT_INDEX, Boolean.FALSE);
+    QueryObserver observer = QueryObserverHolder.getInstance();
+    try {
+      observer.beforeIndexLookup(this.indexes[0], getOperator(), keys);
+      context.cachePut(CompiledValue.INDEX_INFO, this.indexInfo[0]);
+      BitmapIndex.query(this.indexes, keys, this.and, set, context);
+    }
+    finally {
+      observer.afterIndexLookup(set);
+    }
+    return QueryUtils.getconditionedIndexResults(set, this.indexInfo[0],
+        context, indexFieldsSize, completeExpansionNeeded, iterOperands,
+        indpndntItrs);
+  }
+
+  @Override
+  public int getSizeEstimate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    return BitmapIndex.getSizeEstimate(this.indexes, evaluateKeys(context),
+        this.and, context);
+  }
+
+  @Override
+  public int getOperator() {
+    return TOK_EQ;
+  }
+
+  @Override
+  public boolean isBetterFilter(Filter comparedTo, ExecutionContext context,
+      int thisSize) throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    // the estimate is exact, the other filter may still select fewer entries
+    return thisSize <= comparedTo.getSizeEstimate(context);
+  }
+
+  @Override
+  public boolean isConditioningNeededForIndex(RuntimeIterator independentIter,
+      ExecutionContext context, boolean completeExpnsNeeded) {
+    return true;
+  }
+
+  @Override
+  public boolean isProjectionEvaluationAPossibility(ExecutionContext context) {
+    return true;
+  }
+
+  @Override
+  public boolean isLimitApplicableAtIndexLevel(ExecutionContext context) {
+    return false;
+  }
+
+  @Override
+  public boolean isOrderByApplicableAtIndexLevel(ExecutionContext context,
+      String canonicalizedOrderByClause) {
+    return false;
+  }
+
+  /**
+   * The key under which the conditions of a junction are cached in the
+   * execution context, distinct from the key of its composite index
+   * conditions.
+   */
+  private static final class PlanKey {
+    private final CompiledJunction junction;
+
+    PlanKey(CompiledJunction junction) {
+      this.junction = junction;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PlanKey && ((PlanKey)o).junction == this.junction;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.junction);
+    }
+  }
+}
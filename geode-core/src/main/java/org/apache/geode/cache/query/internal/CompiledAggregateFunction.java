@@ -16,12 +16,14 @@
  */
 package org.apache.geode.cache.query.internal;
 
+import org.apache.geode.cache.query.Aggregator;
 import org.apache.geode.cache.query.AmbiguousNameException;
 import org.apache.geode.cache.query.FunctionDomainException;
 import org.apache.geode.cache.query.NameResolutionException;
 import org.apache.geode.cache.query.QueryInvocationTargetException;
 import org.apache.geode.cache.query.TypeMismatchException;
 import org.apache.geode.cache.query.internal.aggregate.AvgBucketNode;
+import org.apache.geode.cache.query.internal.aggregate.AvgBucketNodeCombiner;
 import org.apache.geode.cache.query.internal.aggregate.AvgDistinct;
 import org.apache.geode.cache.query.internal.aggregate.AvgDistinctPRQueryNode;
 import org.apache.geode.cache.query.internal.aggregate.AvgPRQueryNode;
@@ -31,6 +33,7 @@ import org.apache.geode.cache.query.internal.aggregate.CountDistinctPRQueryNode;
 import org.apache.geode.cache.query.internal.aggregate.SumDistinctPRQueryNode;
 import org.apache.geode.cache.query.internal.aggregate.CountPRQueryNode;
 import org.apache.geode.cache.query.internal.aggregate.DistinctAggregator;
+import org.apache.geode.cache.query.internal.aggregate.DistinctBucketNodeCombiner;
 import org.apache.geode.cache.query.internal.aggregate.MaxMin;
 import org.apache.geode.cache.query.internal.aggregate.Avg;
 import org.apache.geode.cache.query.internal.aggregate.Sum;
@@ -72,6 +75,9 @@ public class CompiledAggregateFunction extends AbstractCompiledValue {
       NameResolutionException, QueryInvocationTargetException {
     boolean isPRQueryNode = context.getIsPRQueryNode();
     boolean isBucketNode = context.getBucketList() != null;
+    if (context.getIsPartialAggregateCombiner()) {
+      return createPartialAggregateCombiner();
+    }
     switch (this.aggFuncType) {
 
     case OQLLexerTokenTypes.SUM:
@@ -115,6 +121,37 @@ public class CompiledAggregateFunction extends AbstractCompiledValue {
 
   }
 
+  /**
+   * Creates the aggregator which combines the partial aggregates of the
+   * buckets of a data store into one partial aggregate per group.
+   */
+  private Aggregator createPartialAggregateCombiner() {
+    switch (this.aggFuncType) {
+
+    case OQLLexerTokenTypes.SUM:
+      return this.distinctOnly ? new DistinctBucketNodeCombiner() : new Sum();
+
+    case OQLLexerTokenTypes.MAX:
+      return new MaxMin(true);
+
+    case OQLLexerTokenTypes.MIN:
+      return new MaxMin(false);
+
+    case OQLLexerTokenTypes.AVG:
+      return this.distinctOnly ? new DistinctBucketNodeCombiner()
+          : new AvgBucketNodeCombiner();
+
+    case OQLLexerTokenTypes.COUNT:
+      return this.distinctOnly ? new DistinctBucketNodeCombiner()
+          : new CountPRQueryNode();
+
+    default:
+      throw new UnsupportedOperationException(
+          "Aggregate function not implemented");
+
+    }
+  }
+
   private String getStringRep() {
     switch (this.aggFuncType) {
 
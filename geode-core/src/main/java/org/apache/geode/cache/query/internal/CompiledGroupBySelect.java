@@ -208,6 +208,29 @@ public class CompiledGroupBySelect extends CompiledSelect {
     return newResults;
   }
 
+  /**
+   * Combines the partial aggregates computed on the buckets of a data store
+   * into one partial aggregate per group, so that the PR query node receives a
+   * single row per group from every data store. The partial results must be
+   * ordered on the group by columns.
+   *
+   * @param context the context of the bucket query, which has the bucket list set
+   */
+  public SelectResults combinePartialAggregates(SelectResults partialResults,
+      ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (this.aggregateFunctions.length == 0) {
+      return partialResults;
+    }
+    context.setIsPartialAggregateCombiner(true);
+    try {
+      return this.applyAggregateAndGroupBy(partialResults, context);
+    } finally {
+      context.setIsPartialAggregateCombiner(false);
+    }
+  }
+
   private SelectResults createResultSet(ExecutionContext context,
       ObjectType elementType, boolean isStruct, boolean createOrderedResults) {
     elementType = createNewElementType(elementType, isStruct);
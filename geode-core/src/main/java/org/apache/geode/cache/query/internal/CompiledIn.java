@@ -230,7 +230,8 @@ public class CompiledIn extends AbstractCompiledValue implements Indexable {
       //This means that the system is having only one independent iterator so equi join is ruled out.
       // thus the first index is guaranteed to be on the condition which may match our preferred index
       if(indexInfo[0]._index.getCanonicalizedIndexedExpression().equals(preferredCondn) && 
-          (indexInfo[0]._index.getType() == IndexType.FUNCTIONAL || indexInfo[0]._index.getType() == IndexType.HASH)) {
+          (indexInfo[0]._index.getType() == IndexType.FUNCTIONAL || indexInfo[0]._index.getType() == IndexType.HASH
+          || indexInfo[0]._index.getType() == IndexType.BITMAP)) {
         result.isPreferred = true;
       }
     }
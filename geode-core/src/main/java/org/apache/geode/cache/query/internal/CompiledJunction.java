@@ -472,6 +472,14 @@ public class CompiledJunction extends AbstractCompiledValue implements
         resultPlanInfo.evalAsFilter = false;
       }
     }
+    if (!isOr) {
+      // comparisons answered together by a composite index
+      for (CompositeIndexCondition condition : CompositeIndexCondition
+          .getConditions(this, _operands, context)) {
+        resultPlanInfo.indexes.add(condition.getIndex());
+        resultPlanInfo.evalAsFilter = true;
+      }
+    }
     return resultPlanInfo;
   }
 
@@ -486,6 +494,21 @@ public class CompiledJunction extends AbstractCompiledValue implements
   }
 
 
+  /**
+   * Returns the operands with the comparisons answered together by a
+   * composite index, and then those answered together by bitmap indexes,
+   * replaced by a single condition on those indexes.
+   */
+  CompiledValue[] getCombinedOperands(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    CompiledValue[] operands = _operator == LITERAL_and ? CompositeIndexCondition
+        .substitute(_operands, CompositeIndexCondition.getConditions(this,
+            _operands, context)) : _operands;
+    return BitmapIndexCondition.substitute(operands,
+        BitmapIndexCondition.getConditions(this, operands, context));
+  }
+
   /**
    * TODO: Should composite operands be part of iterator operands of
    * CompiledJunction or should it be part of AllGroupJunction Write a unit Test
@@ -508,13 +531,14 @@ public class CompiledJunction extends AbstractCompiledValue implements
   OrganizedOperands organizeOperands(ExecutionContext context)
       throws FunctionDomainException, TypeMismatchException,
       NameResolutionException, QueryInvocationTargetException {
+    CompiledValue[] operands = getCombinedOperands(context);
     // get the list of operands to evaluate, and evaluate operands that can use
     // indexes first.
-    List evalOperands = new ArrayList(_operands.length);
+    List evalOperands = new ArrayList(operands.length);
     int indexCount = 0;
     // TODO: Check if we can defer the creation of this array list only
     // if there exists an eval operand
-    List compositeIterOperands = new ArrayList(_operands.length);
+    List compositeIterOperands = new ArrayList(operands.length);
     // Asif: This Map will contain as key the composite filter operand & as
     // value , the set containing independent RuntimeIterators ( which will
     // necessarily be two )
@@ -524,7 +548,7 @@ public class CompiledJunction extends AbstractCompiledValue implements
     boolean isJunctionNeeded = false;
     boolean indexExistsOnNonJoinOp = false;
 
-    for (int i = 0; i < _operands.length; i++) {
+    for (int i = 0; i < operands.length; i++) {
       // Asif : If we are inside this function this itself indicates
       // that there exists at least on operand which can be evaluated
       // as an auxFilterEvaluate. If any operand even if its flag of
@@ -541,7 +565,7 @@ public class CompiledJunction extends AbstractCompiledValue implements
       // We are here itself implies, that any independent operand can be
       // either true or false for an AND junction but always false for an
       // OR Junction.
-      operand = this._operands[i];
+      operand = operands[i];
       if (!operand.isDependentOnCurrentScope(context)) {
         indexCount++;
         // Asif Ensure that independent operands are always at the start
@@ -548,6 +548,16 @@ public class CompiledSelect extends AbstractCompiledValue {
               }
               
               
+              if (this.count && !this.distinct && limitValue < 0
+                  && numInd == 1 && this.iterators.size() == 1) {
+                // the bitmaps of the where clause may already know the count
+                int bitmapCount = BitmapIndexCondition.getCount(this.whereClause, context);
+                if (bitmapCount >= 0) {
+                  ResultsBag countResult = new ResultsBag(new ObjectTypeImpl(Integer.class), context.getCachePerfStats());
+                  countResult.addAndGetOccurence(bitmapCount);
+                  return countResult;
+                }
+              }
               result = ((Filter) this.whereClause)
                   .filterEvaluate(context, null);
               if (!(context.cacheGet(RESULT_TYPE) instanceof Boolean)) {
@@ -720,6 +730,14 @@ public class CompiledSelect extends AbstractCompiledValue {
         return results;
       }
     }
+    if (evaluateWhereClause) {
+      // equi-joins of two collections are done through a hash table
+      HashJoin join = HashJoin.plan(this.whereClause, context);
+      if (join != null) {
+        doHashJoin(join, results, context);
+        return results;
+      }
+    }
     int numElementsInResult = 0;
     try {
       doNestedIterations(0, results, context, evaluateWhereClause,numElementsInResult);
@@ -792,44 +810,8 @@ public class CompiledSelect extends AbstractCompiledValue {
       NameResolutionException, QueryInvocationTargetException, CompiledSelect.NullIteratorException {
     List iterList = context.getCurrentIterators();
     if (level == iterList.size()) {
-      boolean addToResults = true;
-      if (evaluateWhereClause) {
-        Object result = this.whereClause.evaluate(context);
-        QueryObserver observer = QueryObserverHolder.getInstance();
-        observer.afterIterationEvaluation(result);
-        if (result == null) {
-          addToResults = false;
-        }
-        else if (result instanceof Boolean) {
-          addToResults = ((Boolean)result).booleanValue();
-        }
-        else if (result == QueryService.UNDEFINED) {
-          // add UNDEFINED to results only for NOT EQUALS queries
-          if (this.whereClause.getType() == COMPARISON) {
-            int operator = ((CompiledComparison) this.whereClause).getOperator();
-            if ((operator != TOK_NE && operator != TOK_NE_ALT)) {
-              addToResults = false;
-            } 
-          } else {
-            addToResults = false;
-          }
-        }
-        else {
-          throw new TypeMismatchException(LocalizedStrings.CompiledSelect_THE_WHERE_CLAUSE_WAS_TYPE_0_INSTEAD_OF_BOOLEAN.toLocalizedString(result.getClass().getName()));
-        }
-      }
-      if (addToResults) {
-        int occurence = applyProjectionAndAddToResultSet(context, results, this.orderByAttrs == null);
-        // Asif: If the occurence is greater than 1, then only in case of
-        // non distinct query should it be treated as contributing to size
-        // else duplication will be eliminated when making it distinct using
-        // ResultsCollectionWrapper and we will fall short of limit
-        if (occurence == 1 || (occurence > 1 && !this.distinct)) {
-          // Asif: (Unique i.e first time occurence) or subsequent occurence
-          // for non distinct query
-          ++numElementsInResult;
-        }
-      }     
+      numElementsInResult = evaluateWhereAndAddToResultSet(results, context,
+          evaluateWhereClause, numElementsInResult);
     }
     else {
       RuntimeIterator rIter = (RuntimeIterator) iterList.get(level);
@@ -877,6 +859,90 @@ public class CompiledSelect extends AbstractCompiledValue {
     return numElementsInResult;
   }
 
+  /**
+   * Evaluates the where clause for the current values of the iterators and adds
+   * the projection to the results if it is satisfied.
+   *
+   * @return the number of elements in the results counted towards the limit
+   */
+  private int evaluateWhereAndAddToResultSet(SelectResults results, ExecutionContext context,
+      boolean evaluateWhereClause, int numElementsInResult) throws TypeMismatchException,
+      FunctionDomainException, NameResolutionException, QueryInvocationTargetException {
+    boolean addToResults = true;
+    if (evaluateWhereClause) {
+      Object result = this.whereClause.evaluate(context);
+      QueryObserver observer = QueryObserverHolder.getInstance();
+      observer.afterIterationEvaluation(result);
+      if (result == null) {
+        addToResults = false;
+      }
+      else if (result instanceof Boolean) {
+        addToResults = ((Boolean)result).booleanValue();
+      }
+      else if (result == QueryService.UNDEFINED) {
+        // add UNDEFINED to results only for NOT EQUALS queries
+        if (this.whereClause.getType() == COMPARISON) {
+          int operator = ((CompiledComparison) this.whereClause).getOperator();
+          if ((operator != TOK_NE && operator != TOK_NE_ALT)) {
+            addToResults = false;
+          } 
+        } else {
+          addToResults = false;
+        }
+      }
+      else {
+        throw new TypeMismatchException(LocalizedStrings.CompiledSelect_THE_WHERE_CLAUSE_WAS_TYPE_0_INSTEAD_OF_BOOLEAN.toLocalizedString(result.getClass().getName()));
+      }
+    }
+    if (addToResults) {
+      int occurence = applyProjectionAndAddToResultSet(context, results, this.orderByAttrs == null);
+      // Asif: If the occurence is greater than 1, then only in case of
+      // non distinct query should it be treated as contributing to size
+      // else duplication will be eliminated when making it distinct using
+      // ResultsCollectionWrapper and we will fall short of limit
+      if (occurence == 1 || (occurence > 1 && !this.distinct)) {
+        // Asif: (Unique i.e first time occurence) or subsequent occurence
+        // for non distinct query
+        ++numElementsInResult;
+      }
+    }
+    return numElementsInResult;
+  }
+
+  /**
+   * Joins the two iterators of the current scope by probing a hash table of
+   * the smaller collection with the rows of the larger one, evaluating the
+   * where clause only for the candidate pairs.
+   */
+  private void doHashJoin(HashJoin join, SelectResults results, ExecutionContext context)
+      throws TypeMismatchException, FunctionDomainException, NameResolutionException,
+      QueryInvocationTargetException {
+    join.build(context);
+    RuntimeIterator probeIter = join.getProbeIterator();
+    RuntimeIterator buildIter = join.getBuildIterator();
+    Integer limitValue = evaluateLimitValue(context, this.limit);
+    int numElementsInResult = 0;
+    QueryObserver observer = QueryObserverHolder.getInstance();
+    Iterator probeRows = join.getProbeRows().iterator();
+    while (probeRows.hasNext()) {
+      // Check if query execution on this thread is canceled.
+      QueryMonitor.isQueryExecutionCanceled();
+
+      Object probeObj = probeRows.next();
+      probeIter.setCurrent(probeObj);
+      observer.beforeIterationEvaluation(probeIter, probeObj);
+      for (Object buildObj : join.candidates(context)) {
+        buildIter.setCurrent(buildObj);
+        observer.beforeIterationEvaluation(buildIter, buildObj);
+        numElementsInResult = evaluateWhereAndAddToResultSet(results, context, true,
+            numElementsInResult);
+        if (this.orderByAttrs == null && limitValue > -1 && numElementsInResult == limitValue) {
+          return;
+        }
+      }
+    }
+  }
+
   private SelectResults applyProjectionOnCollection(SelectResults resultSet,
       ExecutionContext context, boolean ignoreOrderBy) throws TypeMismatchException,
       AmbiguousNameException, FunctionDomainException, NameResolutionException,
@@ -952,8 +1018,35 @@ public class CompiledSelect extends AbstractCompiledValue {
     }
   }
 
+  /**
+   * Makes the sorted results of an order by query with a limit keep only the
+   * first limit rows, so a query never sorts or holds more rows than it
+   * returns. On a partitioned region this bounds the results of every bucket.
+   * Rows sorted on unmapped order by columns keep their sort criteria in the
+   * comparator, so they are not bounded.
+   */
+  private void boundToLimit(SelectResults results, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (this.hasUnmappedOrderByCols) {
+      return;
+    }
+    int limitValue = evaluateLimitValue(context, this.limit);
+    if (limitValue < 0) {
+      return;
+    }
+    if (results instanceof SortedResultsBag) {
+      ((SortedResultsBag) results).setMaxSize(limitValue);
+    } else if (results instanceof SortedStructSet) {
+      ((SortedStructSet) results).setMaxSize(limitValue);
+    } else if (results instanceof SortedResultSet) {
+      ((SortedResultSet) results).setMaxSize(limitValue);
+    }
+  }
+
   private SelectResults prepareEmptyResultSet(ExecutionContext context, boolean ignoreOrderBy)
-      throws TypeMismatchException, AmbiguousNameException
+      throws TypeMismatchException, AmbiguousNameException, FunctionDomainException,
+      NameResolutionException, QueryInvocationTargetException
  {
     // Asif:if no projection attributes or '*'as projection attribute
     // & more than one/RunTimeIterator then create a StrcutSet.
@@ -986,7 +1079,7 @@ public class CompiledSelect extends AbstractCompiledValue {
             results = this.distinct ? new SortedStructSet(comparator,
                 (StructTypeImpl) elementType) : new SortedStructBag(comparator,
                 (StructTypeImpl) elementType, nullValuesAtStart);
-
+            boundToLimit(results, context);
           }
         } else {
           if (ignoreOrderBy) {
@@ -999,6 +1092,7 @@ public class CompiledSelect extends AbstractCompiledValue {
                 : new OrderByComparator(this.orderByAttrs, elementType, context);
             results = this.distinct ? new SortedResultSet(comparator)
                 : new SortedResultsBag(comparator, nullValuesAtStart);
+            boundToLimit(results, context);
           }
           results.setElementType(elementType);
         }
@@ -0,0 +1,536 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.geode.cache.query.AmbiguousNameException;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.index.CompositeIndex;
+import org.apache.geode.cache.query.internal.index.CompositeIndexKey;
+import org.apache.geode.cache.query.internal.index.IndexData;
+import org.apache.geode.cache.query.internal.index.IndexManager;
+import org.apache.geode.cache.query.internal.types.StructTypeImpl;
+import org.apache.geode.cache.query.types.ObjectType;
+import org.apache.geode.cache.query.types.StructType;
+
+/**
+ * A conjunction of comparisons which is evaluated with a single lookup on a
+ * {@link CompositeIndex}: equality conditions on a leading run of the indexed
+ * expressions, plus at most a lower and an upper bound on the next one. For an
+ * index on <code>p.status, p.region, p.ts</code> the condition
+ * <code>p.status = $1 AND p.region = $2 AND p.ts > $3</code> becomes one range
+ * lookup instead of an intersection of three index results.
+ * <p>
+ * The conditions are found while planning an AND {@link CompiledJunction}.
+ * The junction reports the composite index in its {@link PlanInfo}, and
+ * replaces the comparisons with this condition when it organizes its
+ * operands, so the {@link GroupJunction} picks it up like any other indexed
+ * condition. The condition is preferred over the single expression indexes of
+ * the group.
+ * <p>
+ * Ranges never match null or UNDEFINED values, the same as the range
+ * lookups on the other indexes.
+ *
+ * @since Geode 1.1
+ */
+public class CompositeIndexCondition extends AbstractCompiledValue implements
+    Indexable {
+
+  private final CompositeIndex index;
+
+  /** The comparisons answered by the index lookup */
+  private final CompiledComparison[] operands;
+
+  /** The conjunction of the operands */
+  private final CompiledValue condition;
+
+  private final CompiledValue[] equalityKeys;
+
+  private final CompiledValue lowerKey;
+
+  private final int lowerOperator;
+
+  private final CompiledValue upperKey;
+
+  private final int upperOperator;
+
+  private final IndexInfo[] indexInfo;
+
+  private CompositeIndexCondition(IndexData indexData,
+      CompiledComparison[] operands, CompiledValue path,
+      CompiledValue[] equalityKeys, CompiledValue lowerKey, int lowerOperator,
+      CompiledValue upperKey, int upperOperator) {
+    this.index = (CompositeIndex)indexData.getIndex();
+    this.operands = operands;
+    this.condition = operands.length == 1 ? operands[0]
+        : new CompiledJunction(operands, LITERAL_and);
+    this.equalityKeys = equalityKeys;
+    this.lowerKey = lowerKey;
+    this.lowerOperator = lowerOperator;
+    this.upperKey = upperKey;
+    this.upperOperator = upperOperator;
+    this.indexInfo = new IndexInfo[] { new CompositeIndexInfo(path,
+        this.index, indexData.getMatchLevel(), indexData.getMapping(),
+        this.condition) };
+  }
+
+  /**
+   * Returns the composite index conditions for the operands of an AND
+   * junction, at most one for each independent iterator. The indexes of the
+   * conditions are read-locked the first time they are computed for the
+   * junction and execution, and released with the other indexes of the plan.
+   */
+  static List<CompositeIndexCondition> getConditions(CompiledJunction junction,
+      CompiledValue[] junctionOperands, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (junction.getOperator() != LITERAL_and
+        || !(context instanceof QueryExecutionContext)) {
+      return Collections.emptyList();
+    }
+    PlanKey key = new PlanKey(junction);
+    List<CompositeIndexCondition> conditions = (List<CompositeIndexCondition>)context.cacheGet(key);
+    if (conditions == null) {
+      conditions = createConditions(junctionOperands, context);
+      context.cachePut(key, conditions);
+    }
+    return conditions;
+  }
+
+  /**
+   * Returns the operands with the comparisons of each condition replaced by
+   * the condition, or the operands themselves if there are no conditions.
+   */
+  static CompiledValue[] substitute(CompiledValue[] junctionOperands,
+      List<CompositeIndexCondition> conditions) {
+    if (conditions.isEmpty()) {
+      return junctionOperands;
+    }
+    List<CompiledValue> result = new ArrayList<CompiledValue>(junctionOperands.length);
+    for (CompiledValue operand : junctionOperands) {
+      CompositeIndexCondition owner = null;
+      for (CompositeIndexCondition condition : conditions) {
+        if (condition.consumes(operand)) {
+          owner = condition;
+          break;
+        }
+      }
+      if (owner == null) {
+        result.add(operand);
+      } else if (!result.contains(owner)) {
+        // takes the place of its first comparison
+        result.add(owner);
+      }
+    }
+    return result.toArray(new CompiledValue[result.size()]);
+  }
+
+  private static List<CompositeIndexCondition> createConditions(
+      CompiledValue[] junctionOperands, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    // group the comparisons on the independent iterator they depend on
+    Map<RuntimeIterator, List<CompiledComparison>> groups = null;
+    for (CompiledValue operand : junctionOperands) {
+      if (operand.getClass() != CompiledComparison.class
+          || !operand.isDependentOnCurrentScope(context)) {
+        continue;
+      }
+      Set set = QueryUtils.getCurrentScopeUltimateRuntimeIteratorsIfAny(operand, context);
+      if (set.size() != 1) {
+        continue;
+      }
+      if (groups == null) {
+        groups = new LinkedHashMap<RuntimeIterator, List<CompiledComparison>>();
+      }
+      RuntimeIterator rIter = (RuntimeIterator)set.iterator().next();
+      List<CompiledComparison> group = groups.get(rIter);
+      if (group == null) {
+        group = new ArrayList<CompiledComparison>();
+        groups.put(rIter, group);
+      }
+      group.add((CompiledComparison)operand);
+    }
+    if (groups == null) {
+      return Collections.emptyList();
+    }
+    List<CompositeIndexCondition> conditions = null;
+    for (Map.Entry<RuntimeIterator, List<CompiledComparison>> group : groups.entrySet()) {
+      CompositeIndexCondition condition = createCondition(group.getKey(), group.getValue(), context);
+      if (condition != null) {
+        if (conditions == null) {
+          conditions = new ArrayList<CompositeIndexCondition>(groups.size());
+        }
+        conditions.add(condition);
+      }
+    }
+    return conditions == null ? Collections.<CompositeIndexCondition>emptyList() : conditions;
+  }
+
+  /**
+   * Matches the comparisons of one group against the composite indexes of the
+   * group, and returns a condition for the index answering the most of them.
+   * An index answering a single comparison is only used if the comparison
+   * has no index of its own.
+   */
+  private static CompositeIndexCondition createCondition(RuntimeIterator rIter,
+      List<CompiledComparison> comparisons, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    List<IndexData> indexes = QueryUtils.getCompositeIndexes(rIter, context);
+    if (indexes.isEmpty()) {
+      return null;
+    }
+    int size = comparisons.size();
+    String[] paths = new String[size];
+    CompiledComparison.PathAndKey[] pathsAndKeys = new CompiledComparison.PathAndKey[size];
+    int[] ops = new int[size];
+    for (int i = 0; i < size; i++) {
+      CompiledComparison comparison = comparisons.get(i);
+      CompiledComparison.PathAndKey pathAndKey = comparison.getPathAndKey(context);
+      if (pathAndKey == null || !comparison.isRangeEvaluatable()) {
+        continue;
+      }
+      // the operator with the path on the left
+      int op = comparison.reflectOnOperator(pathAndKey._key);
+      if (op != TOK_EQ && op != TOK_LT && op != TOK_LE && op != TOK_GT && op != TOK_GE) {
+        continue;
+      }
+      StringBuffer sb = new StringBuffer();
+      pathAndKey._path.generateCanonicalizedExpression(sb, context);
+      paths[i] = sb.toString();
+      pathsAndKeys[i] = pathAndKey;
+      ops[i] = op;
+    }
+
+    QueryExecutionContext qcontext = (QueryExecutionContext)context;
+    IndexData best = null;
+    List<Integer> bestEqualities = null;
+    int bestLower = -1;
+    int bestUpper = -1;
+    int bestCount = 0;
+    for (IndexData indexData : indexes) {
+      CompositeIndex index = (CompositeIndex)indexData.getIndex();
+      if (qcontext.hasHints() && !qcontext.isHinted(index.getName())) {
+        continue;
+      }
+      String[] components = index.getCanonicalizedComponentExpressions();
+      List<Integer> equalities = new ArrayList<Integer>(components.length);
+      int lower = -1;
+      int upper = -1;
+      for (String component : components) {
+        int equality = find(paths, ops, component, TOK_EQ, TOK_EQ);
+        if (equality < 0) {
+          lower = find(paths, ops, component, TOK_GT, TOK_GE);
+          upper = find(paths, ops, component, TOK_LT, TOK_LE);
+          break;
+        }
+        equalities.add(equality);
+      }
+      int count = equalities.size() + (lower < 0 ? 0 : 1) + (upper < 0 ? 0 : 1);
+      if (count <= bestCount) {
+        continue;
+      }
+      if (count == 1) {
+        int only = !equalities.isEmpty() ? equalities.get(0) : Math.max(lower, upper);
+        if (comparisons.get(only).getPlanInfo(context).evalAsFilter) {
+          continue;
+        }
+      }
+      best = indexData;
+      bestEqualities = equalities;
+      bestLower = lower;
+      bestUpper = upper;
+      bestCount = count;
+    }
+    if (best == null || !IndexManager.acquireIndexForQuery(best.getIndex(), context)) {
+      return null;
+    }
+
+    CompiledComparison[] operands = new CompiledComparison[bestCount];
+    CompiledValue[] equalityKeys = new CompiledValue[bestEqualities.size()];
+    int k = 0;
+    for (int i = 0; i < equalityKeys.length; i++) {
+      int position = bestEqualities.get(i);
+      equalityKeys[i] = pathsAndKeys[position]._key;
+      operands[k++] = comparisons.get(position);
+    }
+    if (bestLower >= 0) {
+      operands[k++] = comparisons.get(bestLower);
+    }
+    if (bestUpper >= 0) {
+      operands[k++] = comparisons.get(bestUpper);
+    }
+    int first = !bestEqualities.isEmpty() ? bestEqualities.get(0) : Math.max(bestLower, bestUpper);
+    CompositeIndexCondition condition = new CompositeIndexCondition(best,
+        operands, pathsAndKeys[first]._path, equalityKeys,
+        bestLower < 0 ? null : pathsAndKeys[bestLower]._key,
+        bestLower < 0 ? -1 : ops[bestLower],
+        bestUpper < 0 ? null : pathsAndKeys[bestUpper]._key,
+        bestUpper < 0 ? -1 : ops[bestUpper]);
+    condition.computeDependencies(context);
+    return condition;
+  }
+
+  private static int find(String[] paths, int[] ops, String component, int op1, int op2) {
+    for (int i = 0; i < paths.length; i++) {
+      if (component.equals(paths[i]) && (ops[i] == op1 || ops[i] == op2)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  boolean consumes(CompiledValue operand) {
+    for (CompiledComparison consumed : this.operands) {
+      if (consumed == operand) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  CompositeIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Returns the lower and upper bound of the index lookup, both inclusive, or
+   * null if no entry can match.
+   */
+  private CompositeIndexKey[] evaluateBounds(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    int n = this.equalityKeys.length;
+    Object[] equalities = new Object[n];
+    for (int i = 0; i < n; i++) {
+      equalities[i] = this.equalityKeys[i].evaluate(context);
+      if (equalities[i] == QueryService.UNDEFINED) {
+        return null;
+      }
+    }
+    Object[] bound = Arrays.copyOf(equalities, n + 1);
+    CompositeIndexKey lower;
+    if (this.lowerKey != null) {
+      bound[n] = this.lowerKey.evaluate(context);
+      if (bound[n] == null || bound[n] == QueryService.UNDEFINED) {
+        return null;
+      }
+      lower = this.lowerOperator == TOK_GE ? CompositeIndexKey.lowerBound(bound)
+          : CompositeIndexKey.upperBound(bound);
+    } else if (this.upperKey != null) {
+      // above the null and undefined values of the ranged expression
+      lower = CompositeIndexKey.upperBound(bound);
+    } else {
+      lower = CompositeIndexKey.lowerBound(equalities);
+    }
+    CompositeIndexKey upper;
+    if (this.upperKey != null) {
+      bound[n] = this.upperKey.evaluate(context);
+      if (bound[n] == null || bound[n] == QueryService.UNDEFINED) {
+        return null;
+      }
+      upper = this.upperOperator == TOK_LE ? CompositeIndexKey.upperBound(bound)
+          : CompositeIndexKey.lowerBound(bound);
+    } else {
+      upper = CompositeIndexKey.upperBound(equalities);
+    }
+    return new CompositeIndexKey[] { lower, upper };
+  }
+
+  @Override
+  public List getChildren() {
+    return Arrays.asList(this.operands);
+  }
+
+  public int getType() {
+    return COMPOSITE_INDEX_CONDITION;
+  }
+
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    return this.condition.evaluate(context);
+  }
+
+  @Override
+  public Set computeDependencies(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException,
+      NameResolutionException {
+    Set dependencies = Collections.EMPTY_SET;
+    for (CompiledComparison operand : this.operands) {
+      dependencies = context.addDependencies(this, operand.computeDependencies(context));
+    }
+    return dependencies;
+  }
+
+  @Override
+  protected PlanInfo protGetPlanInfo(ExecutionContext context) {
+    PlanInfo result = new PlanInfo();
+    result.indexes.add(this.index);
+    result.evalAsFilter = true;
+    result.isPreferred = true;
+    return result;
+  }
+
+  public IndexInfo[] getIndexInfo(ExecutionContext context) {
+    return this.indexInfo;
+  }
+
+  public boolean isRangeEvaluatable() {
+    return false;
+  }
+
+  @Override
+  public SelectResults filterEvaluate(ExecutionContext context,
+      SelectResults intermediateResults) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    return filterEvaluate(context, intermediateResults, true, null, null,
+        true, true, true);
+  }
+
+  @Override
+  public SelectResults filterEvaluate(ExecutionContext context,
+      SelectResults intermediateResults, boolean completeExpansionNeeded,
+      CompiledValue iterOperands, RuntimeIterator[] indpndntItrs,
+      boolean isIntersection, boolean conditioningNeeded,
+      boolean evaluateProjection) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    ObjectType resultType = this.index.getResultSetType();
+    int indexFieldsSize = -1;
+    SelectResults set = null;
+    if (resultType instanceof StructType) {
+      set = QueryUtils.createStructCollection(context, (StructTypeImpl)resultType);
+      indexFieldsSize = ((StructTypeImpl)resultType).getFieldNames().length;
+    }
+    else {
+      set = QueryUtils.createResultCollection(context, resultType);
+      indexFieldsSize = 1;
+    }
+    CompositeIndexKey[] bounds = evaluateBounds(context);
+    if (bounds != null) {
+      // the lookup does not return the entries in the order of the query
+      // and the remaining conditions are applied after it
+      context.cachePut(CompiledValue.CAN_APPLY_LIMIT_AT_INDEX, Boolean.FALSE);
+      QueryObserver observer = QueryObserverHolder.getInstance();
+      try {
+        observer.beforeIndexLookup(this.index, TOK_GE, bounds[0], TOK_LE,
+            bounds[1], null);
+        context.cachePut(CompiledValue.INDEX_INFO, this.indexInfo[0]);
+        this.index.query(bounds[0], TOK_GE, bounds[1], TOK_LE, set, null,
+            context);
+      }
+      finally {
+        observer.afterIndexLookup(set);
+      }
+    }
+    return QueryUtils.getconditionedIndexResults(set, this.indexInfo[0],
+        context, indexFieldsSize, completeExpansionNeeded, iterOperands,
+        indpndntItrs);
+  }
+
+  @Override
+  public int getSizeEstimate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (context instanceof QueryExecutionContext) {
+      QueryExecutionContext qcontext = (QueryExecutionContext)context;
+      if (qcontext.isHinted(this.index.getName())) {
+        return qcontext.getHintSize(this.index.getName());
+      }
+    }
+    CompositeIndexKey[] bounds = evaluateBounds(context);
+    return bounds == null ? 0 : this.index.getSizeEstimate(bounds[0], bounds[1], context);
+  }
+
+  @Override
+  public int getOperator() {
+    return this.equalityKeys.length > 0 ? TOK_EQ : LITERAL_and;
+  }
+
+  @Override
+  public boolean isBetterFilter(Filter comparedTo, ExecutionContext context,
+      int thisSize) throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    // Go with the lowest cost when hint is used.
+    if (context instanceof QueryExecutionContext
+        && ((QueryExecutionContext)context).hasHints()) {
+      return thisSize <= comparedTo.getSizeEstimate(context);
+    }
+    // the lookup answers more than one condition
+    return true;
+  }
+
+  @Override
+  public boolean isConditioningNeededForIndex(RuntimeIterator independentIter,
+      ExecutionContext context, boolean completeExpnsNeeded) {
+    return true;
+  }
+
+  @Override
+  public boolean isProjectionEvaluationAPossibility(ExecutionContext context) {
+    return true;
+  }
+
+  @Override
+  public boolean isLimitApplicableAtIndexLevel(ExecutionContext context) {
+    return false;
+  }
+
+  @Override
+  public boolean isOrderByApplicableAtIndexLevel(ExecutionContext context,
+      String canonicalizedOrderByClause) {
+    return false;
+  }
+
+  /**
+   * The key under which the conditions of a junction are cached in the
+   * execution context. The junction itself is already used as a key for its
+   * index information.
+   */
+  private static final class PlanKey {
+    private final CompiledJunction junction;
+
+    PlanKey(CompiledJunction junction) {
+      this.junction = junction;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PlanKey && ((PlanKey)o).junction == this.junction;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.junction);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import org.apache.geode.cache.query.internal.index.IndexProtocol;
+import org.apache.geode.cache.query.internal.parse.OQLLexerTokenTypes;
+
+/**
+ * The {@link IndexInfo} of a {@link CompositeIndexCondition} or a
+ * {@link BitmapIndexCondition}. Instead of a single path and key it carries
+ * all the conditions the index lookup evaluates, so that an entry whose index
+ * update is in progress can be checked against them.
+ *
+ * @since Geode 1.1
+ */
+public class CompositeIndexInfo extends IndexInfo {
+
+  private final CompiledValue condition;
+
+  CompositeIndexInfo(CompiledValue path, IndexProtocol index, int matchLevel,
+      int[] mapping, CompiledValue condition) {
+    this(path, index, matchLevel, mapping, condition, OQLLexerTokenTypes.LITERAL_and);
+  }
+
+  CompositeIndexInfo(CompiledValue path, IndexProtocol index, int matchLevel,
+      int[] mapping, CompiledValue condition, int operator) {
+    super(null, path, index, matchLevel, mapping, operator);
+    this.condition = condition;
+  }
+
+  /**
+   * Returns the conditions evaluated by the index lookup, as one value.
+   */
+  public CompiledValue getCondition() {
+    return this.condition;
+  }
+}
@@ -248,11 +248,24 @@ public class DefaultQuery implements Query {
    * @see QueryService#newQuery
    */
   public DefaultQuery(String queryString, Cache cache, boolean isForRemote) {
+    this(queryString, new QCompiler(), cache, isForRemote);
+  }
+
+  private DefaultQuery(String queryString, QCompiler compiler, Cache cache, boolean isForRemote) {
+    this(queryString, compiler.compileQuery(queryString), compiler.isTraceRequested(), cache, isForRemote);
+  }
+
+  /**
+   * Creates a query for an already compiled query string.
+   * Used by {@link QueryPlanCache} which shares compiled queries.
+   */
+  DefaultQuery(String queryString, CompiledValue compiledQuery, boolean traceRequested,
+      Cache cache, boolean isForRemote) {
     this.queryString = queryString;
-    QCompiler compiler = new QCompiler();
-    this.compiledQuery = compiler.compileQuery(queryString);
+    this.compiledQuery = compiledQuery;
     CompiledSelect cs = this.getSimpleSelect();
-    if(cs != null && !isForRemote && (cs.isGroupBy() || cs.isOrderBy())) {
+    // the transformation is only done once for a shared compiled query
+    if(cs != null && !isForRemote && (cs.isGroupBy() || cs.isOrderBy()) && !cs.transformationDone) {
       QueryExecutionContext ctx = new QueryExecutionContext(null, cache);
       try {
         cs.computeDependencies(ctx);       
@@ -260,7 +273,7 @@ public class DefaultQuery implements Query {
         throw new QueryInvalidException("",qe);
       }
     }
-    this.traceOn = (compiler.isTraceRequested() || QUERY_VERBOSE);
+    this.traceOn = (traceRequested || QUERY_VERBOSE);
     this.cache = cache;
     this.stats = new DefaultQueryStatistics();
   }
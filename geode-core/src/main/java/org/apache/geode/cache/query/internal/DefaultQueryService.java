@@ -22,6 +22,7 @@ import org.apache.geode.cache.Region;
 import org.apache.geode.cache.RegionAttributes;
 import org.apache.geode.cache.client.internal.InternalPool;
 import org.apache.geode.cache.client.internal.ProxyCache;
+import org.apache.geode.cache.client.internal.QueryCursorOp;
 import org.apache.geode.cache.client.internal.ServerProxy;
 import org.apache.geode.cache.client.internal.UserAttributes;
 import org.apache.geode.cache.query.*;
@@ -32,6 +33,7 @@ import org.apache.geode.cache.query.internal.index.*;
 import org.apache.geode.cache.query.internal.parse.OQLLexerTokenTypes;
 import org.apache.geode.distributed.internal.DistributionConfig;
 import org.apache.geode.internal.cache.ForceReattemptException;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
 import org.apache.geode.internal.cache.InternalCache;
 import org.apache.geode.internal.cache.LocalRegion;
 import org.apache.geode.internal.cache.PartitionedRegion;
@@ -94,11 +96,48 @@ public class DefaultQueryService implements QueryService {
     if (queryString.length() == 0)
         throw new QueryInvalidException(LocalizedStrings.DefaultQueryService_THE_QUERY_STRING_MUST_NOT_BE_EMPTY.toLocalizedString());
     ServerProxy serverProxy = pool == null ? null : new ServerProxy(pool);
-    DefaultQuery query = new DefaultQuery(queryString, this.cache, serverProxy != null);
+    DefaultQuery query;
+    if (serverProxy == null && this.cache instanceof GemFireCacheImpl) {
+      query = ((GemFireCacheImpl)this.cache).getQueryPlanCache().newQuery(queryString);
+    } else {
+      query = new DefaultQuery(queryString, this.cache, serverProxy != null);
+    }
     query.setServerProxy(serverProxy);
     return query;
   }
   
+  public QueryResultIterator executeStreaming(String queryString,
+      Object[] params, int fetchSize) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (fetchSize <= 0) {
+      throw new IllegalArgumentException("fetchSize must be positive, it was " + fetchSize);
+    }
+    if (this.pool != null) {
+      return QueryCursorOp.execute(this.pool, queryString, params, fetchSize);
+    }
+    Query query = newQuery(queryString);
+    Object result = params == null ? query.execute() : query.execute(params);
+    final Iterator itr = ((SelectResults)result).iterator();
+    return new QueryResultIterator() {
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      public Object next() {
+        return itr.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      public void close() {
+        // nothing is held for a local query
+      }
+    };
+  }
+
   public Query newQuery(String queryString,ProxyCache proxyCache){
     Query query = newQuery(queryString);
     ((DefaultQuery) query).setProxyCache(proxyCache);
@@ -120,6 +159,22 @@ public class DefaultQueryService implements QueryService {
     return createIndex(indexName, IndexType.HASH, indexedExpression, fromClause,
         imports);
   }
+
+  public Index createBitmapIndex(String indexName,
+      String indexedExpression, String fromClause)
+      throws IndexNameConflictException, IndexExistsException, 
+      RegionNotFoundException {
+    return createBitmapIndex(indexName, indexedExpression, fromClause,
+        null);
+  }
+
+  public Index createBitmapIndex(String indexName,
+      String indexedExpression, String fromClause, String imports)
+      throws IndexNameConflictException, IndexExistsException, 
+      RegionNotFoundException {
+    return createIndex(indexName, IndexType.BITMAP, indexedExpression, fromClause,
+        imports);
+  }
   
   public Index createIndex(String indexName,
       String indexedExpression, String fromClause)
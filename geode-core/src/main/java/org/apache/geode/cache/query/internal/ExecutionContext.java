@@ -89,6 +89,7 @@ public class ExecutionContext {
   private boolean distinct = false;
   private Object currentProjectionField = null;
   private boolean isPRQueryNode = false;
+  private boolean isPartialAggregateCombiner = false;
   /**
    * Param specialIteratorVar name of special variable to use to denote the
    * current iteration element. Used to implement the "this" var in the query
@@ -730,5 +731,18 @@ public class ExecutionContext {
   public boolean getIsPRQueryNode() {
     return this.isPRQueryNode;
   }
+
+  /**
+   * Marks this context as the one used by a data store to combine the partial
+   * aggregates of its buckets. The aggregators created for it accept partial
+   * aggregates and produce partial aggregates.
+   */
+  public void setIsPartialAggregateCombiner(boolean isPartialAggregateCombiner) {
+    this.isPartialAggregateCombiner = isPartialAggregateCombiner;
+  }
+
+  public boolean getIsPartialAggregateCombiner() {
+    return this.isPartialAggregateCombiner;
+  }
   
 }
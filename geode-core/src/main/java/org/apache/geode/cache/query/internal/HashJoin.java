@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.parse.OQLLexerTokenTypes;
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.pdx.internal.PdxString;
+
+/**
+ * Plans and builds the hash table of an equi-join between two independent
+ * iterators, as in <code>FROM /orders o, /customers c WHERE o.custId = c.id</code>.
+ * The smaller of the two collections is hashed on its side of the equality and
+ * the larger one is probed against it, so only the pairs whose join keys can
+ * compare equal are handed to the where clause instead of the full cross
+ * product.
+ * <p>
+ * The hash keys are only used to bucket the candidates, every candidate pair
+ * is still evaluated against the complete where clause. Integral numbers are
+ * hashed by their exact long value. Once either side yields a Float or a
+ * Double, numbers may be compared as floats, so the join hashes all numbers by
+ * their float value instead, which never separates two numbers the OQL
+ * comparison considers equal. Keys whose equality can't be hashed (null,
+ * UNDEFINED, dates, enums and other objects) are kept apart and compared with
+ * every row.
+ * <p>
+ * Queries on partitioned regions are executed bucket by bucket on the data
+ * stores, so for colocated regions the join is done per bucket.
+ *
+ * @since Geode 1.1
+ */
+class HashJoin {
+
+  /**
+   * The join is only planned when the cross product of the two collections
+   * has at least this many pairs, below that nested iteration is as cheap.
+   */
+  static final int MIN_PAIRS = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "Query.hashJoinMinPairs", 1000).intValue();
+
+  private static final Object NOT_HASHABLE = new Object();
+
+  private final RuntimeIterator buildIter;
+  private final CompiledValue buildKey;
+  private final SelectResults buildRows;
+  private final RuntimeIterator probeIter;
+  private final CompiledValue probeKey;
+  private final SelectResults probeRows;
+
+  private Map<Object, List<Object>> table;
+  private List<Object> unhashedRows;
+  private List<Object> allRows;
+  private List<Object> buildValues;
+
+  /** Whether numbers are hashed by their float value rather than exactly */
+  private boolean floatKeys;
+
+  private HashJoin(RuntimeIterator buildIter, CompiledValue buildKey, SelectResults buildRows,
+      RuntimeIterator probeIter, CompiledValue probeKey, SelectResults probeRows) {
+    this.buildIter = buildIter;
+    this.buildKey = buildKey;
+    this.buildRows = buildRows;
+    this.probeIter = probeIter;
+    this.probeKey = probeKey;
+    this.probeRows = probeRows;
+  }
+
+  /**
+   * Returns the join plan for the where clause of the current scope, or null if
+   * it is not an equi-join of the two independent iterators of the scope or the
+   * estimated cardinalities are too small to be worth hashing.
+   */
+  static HashJoin plan(CompiledValue whereClause, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (MIN_PAIRS < 0 || whereClause == null || context.isCqQueryContext()) {
+      return null;
+    }
+    List iterators = context.getCurrentIterators();
+    if (iterators.size() != 2
+        || context.getAllIndependentIteratorsOfCurrentScope().size() != 2) {
+      return null;
+    }
+    RuntimeIterator first = (RuntimeIterator) iterators.get(0);
+    RuntimeIterator second = (RuntimeIterator) iterators.get(1);
+    CompiledValue[] keys = findJoinKeys(whereClause, first, second, context);
+    if (keys == null) {
+      return null;
+    }
+    SelectResults firstRows = first.evaluateCollection(context);
+    SelectResults secondRows = second.evaluateCollection(context);
+    if (firstRows == null || secondRows == null) {
+      return null;
+    }
+    int firstSize = firstRows.size();
+    int secondSize = secondRows.size();
+    if ((long) firstSize * secondSize < MIN_PAIRS) {
+      return null;
+    }
+    if (firstSize <= secondSize) {
+      return new HashJoin(first, keys[0], firstRows, second, keys[1], secondRows);
+    }
+    return new HashJoin(second, keys[1], secondRows, first, keys[0], firstRows);
+  }
+
+  /**
+   * Returns the two sides of an equality in the where clause, or in one of the
+   * operands of an and junction, of which the first depends only on the first
+   * iterator and the second only on the second one.
+   */
+  private static CompiledValue[] findJoinKeys(CompiledValue cv, RuntimeIterator first,
+      RuntimeIterator second, ExecutionContext context) {
+    if (cv instanceof CompiledJunction) {
+      CompiledJunction junction = (CompiledJunction) cv;
+      if (junction.getOperator() != OQLLexerTokenTypes.LITERAL_and) {
+        return null;
+      }
+      for (Object operand : junction.getChildren()) {
+        CompiledValue[] keys = findJoinKeys((CompiledValue) operand, first, second, context);
+        if (keys != null) {
+          return keys;
+        }
+      }
+      return null;
+    }
+    if (!(cv instanceof CompiledComparison)
+        || ((CompiledComparison) cv).getOperator() != OQLLexerTokenTypes.TOK_EQ) {
+      return null;
+    }
+    List operands = cv.getChildren();
+    CompiledValue left = (CompiledValue) operands.get(0);
+    CompiledValue right = (CompiledValue) operands.get(1);
+    if (dependsOnlyOn(left, first, second, context) && dependsOnlyOn(right, second, first, context)) {
+      return new CompiledValue[] {left, right};
+    }
+    if (dependsOnlyOn(right, first, second, context) && dependsOnlyOn(left, second, first, context)) {
+      return new CompiledValue[] {right, left};
+    }
+    return null;
+  }
+
+  private static boolean dependsOnlyOn(CompiledValue cv, RuntimeIterator itr,
+      RuntimeIterator other, ExecutionContext context) {
+    return cv.isDependentOnIterator(itr, context) && !cv.isDependentOnIterator(other, context);
+  }
+
+  RuntimeIterator getBuildIterator() {
+    return this.buildIter;
+  }
+
+  RuntimeIterator getProbeIterator() {
+    return this.probeIter;
+  }
+
+  SelectResults getProbeRows() {
+    return this.probeRows;
+  }
+
+  /**
+   * Hashes the rows of the smaller collection on their join key.
+   */
+  void build(ExecutionContext context) throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    this.allRows = new ArrayList<Object>(this.buildRows.size());
+    this.buildValues = new ArrayList<Object>(this.buildRows.size());
+    Iterator rows = this.buildRows.iterator();
+    while (rows.hasNext()) {
+      QueryMonitor.isQueryExecutionCanceled();
+      Object row = rows.next();
+      this.buildIter.setCurrent(row);
+      Object value = this.buildKey.evaluate(context);
+      this.allRows.add(row);
+      this.buildValues.add(value);
+      if (isFloatingPoint(value)) {
+        this.floatKeys = true;
+      }
+    }
+    fillTable();
+  }
+
+  /**
+   * Hashes the build rows on the join key values computed by build, in the
+   * current key mode.
+   */
+  private void fillTable() {
+    this.table = new HashMap<Object, List<Object>>();
+    this.unhashedRows = new ArrayList<Object>();
+    for (int i = 0; i < this.allRows.size(); i++) {
+      Object row = this.allRows.get(i);
+      Object key = hashKey(this.buildValues.get(i), this.floatKeys);
+      if (key == NOT_HASHABLE) {
+        this.unhashedRows.add(row);
+        continue;
+      }
+      List<Object> matches = this.table.get(key);
+      if (matches == null) {
+        matches = new ArrayList<Object>(1);
+        this.table.put(key, matches);
+      }
+      matches.add(row);
+    }
+  }
+
+  /**
+   * Returns the rows of the smaller collection that may join with the current
+   * row of the probe iterator, the ones with the same hash key followed by the
+   * ones whose key couldn't be hashed.
+   */
+  List<Object> candidates(ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException, QueryInvocationTargetException {
+    Object value = this.probeKey.evaluate(context);
+    if (!this.floatKeys && isFloatingPoint(value)) {
+      // the join turned out to mix floating point and integral numbers
+      this.floatKeys = true;
+      fillTable();
+    }
+    Object key = hashKey(value, this.floatKeys);
+    if (key == NOT_HASHABLE) {
+      return this.allRows;
+    }
+    List<Object> matches = this.table.get(key);
+    if (this.unhashedRows.isEmpty()) {
+      return matches == null ? Collections.<Object>emptyList() : matches;
+    }
+    if (matches == null) {
+      return this.unhashedRows;
+    }
+    List<Object> candidates = new ArrayList<Object>(matches.size() + this.unhashedRows.size());
+    candidates.addAll(matches);
+    candidates.addAll(this.unhashedRows);
+    return candidates;
+  }
+
+  private static boolean isFloatingPoint(Object value) {
+    return value instanceof Double || value instanceof Float;
+  }
+
+  /**
+   * Returns a key that is equal for every two values the OQL equality may
+   * consider equal, or NOT_HASHABLE if there is no such key for the value.
+   * Integral numbers are hashed exactly unless <code>floatKeys</code> is set,
+   * which is required as soon as the join compares them with floating point
+   * numbers.
+   */
+  static Object hashKey(Object value, boolean floatKeys) {
+    if (value instanceof Integer || value instanceof Long || value instanceof Short
+        || value instanceof Byte) {
+      if (!floatKeys) {
+        return Long.valueOf(((Number) value).longValue());
+      }
+      return floatKey((Number) value);
+    }
+    if (isFloatingPoint(value)) {
+      return floatKey((Number) value);
+    }
+    if (value instanceof String || value instanceof PdxString) {
+      return value.toString();
+    }
+    if (value instanceof Character) {
+      return value;
+    }
+    return NOT_HASHABLE;
+  }
+
+  /**
+   * Mixed numbers may be compared as floats which is the coarsest equality.
+   */
+  private static Object floatKey(Number value) {
+    float f = (float) value.doubleValue();
+    return Float.valueOf(f == 0.0f ? 0.0f : f);
+  }
+}
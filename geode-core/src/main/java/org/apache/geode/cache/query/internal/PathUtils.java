@@ -29,6 +29,8 @@ import org.apache.geode.cache.query.TypeMismatchException;
 import org.apache.geode.cache.query.types.*;
 import org.apache.geode.cache.query.internal.parse.OQLLexerTokenTypes;
 import org.apache.geode.cache.query.internal.types.*;
+import org.apache.geode.pdx.internal.PdxField;
+import org.apache.geode.pdx.internal.PdxInstanceImpl;
 
 
 /**
@@ -69,6 +71,14 @@ public class PathUtils {
         throw new NameNotFoundException(attribute);
       }
     }
+    if (target instanceof PdxInstanceImpl) {
+      // read fields that exist on the type without creating a descriptor
+      PdxInstanceImpl pdxInstance = (PdxInstanceImpl) target;
+      PdxField field = pdxInstance.getPdxType().getPdxField(attribute);
+      if (field != null) {
+        return pdxInstance.getRawField(field);
+      }
+    }
     try {
       return new AttributeDescriptor(attribute).read(target);
     } catch (NameNotFoundException nfe) {
@@ -41,6 +41,7 @@ import org.apache.geode.cache.query.IndexType;
 import org.apache.geode.cache.query.MultiIndexCreationException;
 import org.apache.geode.cache.query.Query;
 import org.apache.geode.cache.query.QueryInvalidException;
+import org.apache.geode.cache.query.QueryResultIterator;
 import org.apache.geode.cache.query.QueryService;
 import org.apache.geode.cache.query.RegionNotFoundException;
 import org.apache.geode.cache.query.internal.cq.ClientCQ;
@@ -100,6 +101,22 @@ public class ProxyQueryService implements QueryService {
         "Index creation on the server is not supported from the client.");
   }
 
+  public Index createBitmapIndex(String indexName, String indexedExpression,
+      String fromClause) throws IndexInvalidException,
+      IndexNameConflictException, IndexExistsException,
+      RegionNotFoundException, UnsupportedOperationException {
+    throw new UnsupportedOperationException(
+        "Index creation on the server is not supported from the client.");
+  }
+
+  public Index createBitmapIndex(String indexName, String indexedExpression,
+      String fromClause, String imports) throws IndexInvalidException,
+      IndexNameConflictException, IndexExistsException,
+      RegionNotFoundException, UnsupportedOperationException {
+    throw new UnsupportedOperationException(
+        "Index creation on the server is not supported from the client.");
+  }
+
   public Index createIndex(String indexName, IndexType indexType,
       String indexedExpression, String fromClause)
       throws IndexInvalidException, IndexNameConflictException,
@@ -380,6 +397,12 @@ public class ProxyQueryService implements QueryService {
         this.proxyCache);
   }
 
+  public QueryResultIterator executeStreaming(String queryString,
+      Object[] params, int fetchSize) {
+    throw new UnsupportedOperationException(
+        "Streaming queries are not supported with multiuser authentication.");
+  }
+
   public void removeIndex(Index index) {
     throw new UnsupportedOperationException(
         "Index operation on the server is not supported from the client.");
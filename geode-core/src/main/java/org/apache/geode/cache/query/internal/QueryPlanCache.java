@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.cache.CachePerfStats;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+
+/**
+ * A bounded, least recently used cache of compiled queries kept by the cache.
+ * Queries are looked up by their normalized query string, so a hit skips the
+ * OQL parser and the order by / group by tree transformation done when a
+ * {@link DefaultQuery} is constructed.
+ * <p>
+ * Every plan remembers the generation of the cache it was compiled in. The
+ * generation is advanced whenever an index is created or removed and whenever
+ * a region is created or destroyed, which makes all the older plans stale.
+ * <p>
+ * The compiled trees are shared by all the queries created from one plan.
+ * This is the same sharing the server already does for its compiled queries,
+ * all the per execution state is kept in the {@link ExecutionContext}.
+ *
+ * @since Geode 1.1
+ */
+public class QueryPlanCache {
+
+  /**
+   * The maximum number of plans kept. Zero disables the cache.
+   */
+  public static final int MAX_SIZE = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "QueryService.queryPlanCacheSize", 1000).intValue();
+
+  private final GemFireCacheImpl cache;
+
+  private final int maxSize;
+
+  private final AtomicLong generation = new AtomicLong();
+
+  private final Map<String, Plan> plans;
+
+  public QueryPlanCache(GemFireCacheImpl cache) {
+    this(cache, MAX_SIZE);
+  }
+
+  public QueryPlanCache(GemFireCacheImpl cache, final int maxSize) {
+    this.cache = cache;
+    this.maxSize = maxSize;
+    this.plans = new LinkedHashMap<String, Plan>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns a new local query for <code>queryString</code>, using a cached
+   * plan if there is a current one.
+   *
+   * @throws org.apache.geode.cache.query.QueryInvalidException if the query
+   *         syntax is invalid
+   */
+  public DefaultQuery newQuery(String queryString) {
+    if (this.maxSize <= 0) {
+      return new DefaultQuery(queryString, this.cache, false);
+    }
+    String key = normalize(queryString);
+    long currentGeneration = this.generation.get();
+    Plan plan;
+    synchronized (this.plans) {
+      plan = this.plans.get(key);
+    }
+    CachePerfStats stats = this.cache.getCachePerfStats();
+    if (plan != null && plan.generation == currentGeneration) {
+      stats.incQueryPlanCacheHits();
+      return new DefaultQuery(queryString, plan.compiledQuery, plan.traceRequested, this.cache, false);
+    }
+    stats.incQueryPlanCacheMisses();
+    QCompiler compiler = new QCompiler();
+    CompiledValue compiledQuery = compiler.compileQuery(queryString);
+    DefaultQuery query = new DefaultQuery(queryString, compiledQuery, compiler.isTraceRequested(), this.cache, false);
+    // only cache the plan if nothing changed while it was compiled
+    if (this.generation.get() == currentGeneration) {
+      plan = new Plan(compiledQuery, compiler.isTraceRequested(), currentGeneration);
+      synchronized (this.plans) {
+        this.plans.put(key, plan);
+      }
+    }
+    return query;
+  }
+
+  /**
+   * Makes all the cached plans stale. Called when an index is created or
+   * removed and when a region is created or destroyed.
+   */
+  public void invalidate() {
+    this.generation.incrementAndGet();
+    synchronized (this.plans) {
+      this.plans.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (this.plans) {
+      return this.plans.size();
+    }
+  }
+
+  /**
+   * Trims the query and collapses every run of white space outside of string
+   * literals into a single blank.
+   */
+  static String normalize(String queryString) {
+    int length = queryString.length();
+    StringBuilder sb = null;
+    boolean inLiteral = false;
+    boolean pendingBlank = false;
+    for (int i = 0; i < length; i++) {
+      char c = queryString.charAt(i);
+      if (!inLiteral && Character.isWhitespace(c)) {
+        if (sb == null) {
+          sb = new StringBuilder(length);
+          sb.append(queryString, 0, i);
+        }
+        pendingBlank = true;
+        continue;
+      }
+      if (c == '\'') {
+        // a quote inside a literal is escaped by doubling it which toggles twice
+        inLiteral = !inLiteral;
+      }
+      if (sb != null) {
+        if (pendingBlank && sb.length() > 0) {
+          sb.append(' ');
+        }
+        sb.append(c);
+      }
+      pendingBlank = false;
+    }
+    return sb == null ? queryString : sb.toString();
+  }
+
+  private static class Plan {
+    private final CompiledValue compiledQuery;
+    private final boolean traceRequested;
+    private final long generation;
+
+    Plan(CompiledValue compiledQuery, boolean traceRequested, long generation) {
+      this.compiledQuery = compiledQuery;
+      this.traceRequested = traceRequested;
+      this.generation = generation;
+    }
+  }
+}
@@ -28,6 +28,7 @@ import java.util.Set;
 
 import org.apache.logging.log4j.Logger;
 
+import org.apache.geode.cache.Region;
 import org.apache.geode.cache.query.AmbiguousNameException;
 import org.apache.geode.cache.query.FunctionDomainException;
 import org.apache.geode.cache.query.Index;
@@ -1033,6 +1034,34 @@ public class QueryUtils {
     return indexData;
   }
 
+  /**
+   * Returns the composite indexes usable for conditions on the group of the
+   * given independent RuntimeIterator. The indexes are not locked.
+   *
+   * @see IndexManager#getCompositeIndexes(String[])
+   */
+  static List<IndexData> getCompositeIndexes(RuntimeIterator rIter,
+      ExecutionContext context) {
+    String regionPath = null;
+    if (rIter.getScopeID() != context.currentScope().getScopeID()
+        || (regionPath = context
+            .getRegionPathForIndependentRuntimeIterator(rIter)) == null) {
+      return Collections.emptyList();
+    }
+    Region region = context.getCache().getRegion(regionPath);
+    IndexManager indexManager = region == null ? null : IndexUtils.getIndexManager(region, false);
+    if (indexManager == null) {
+      return Collections.emptyList();
+    }
+    List groupRuntimeItrs = context
+        .getCurrScopeDpndntItrsBasedOnSingleIndpndntItr(rIter);
+    String[] definitions = new String[groupRuntimeItrs.size()];
+    for (int i = 0; i < definitions.length; i++) {
+      definitions[i] = ((RuntimeIterator)groupRuntimeItrs.get(i)).getDefinition();
+    }
+    return indexManager.getCompositeIndexes(definitions);
+  }
+
   /**
    * Asif : Conditions the raw index result obtained on a non composite
    * condition ( i.e a condition with a format of variable = constant . A
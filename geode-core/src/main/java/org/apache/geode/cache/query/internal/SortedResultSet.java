@@ -40,6 +40,8 @@ public final class SortedResultSet extends TreeSet implements SelectResults, Ord
 
   private ObjectType elementType;
 
+  private transient int maxSize = -1;
+
   public SortedResultSet() {
   }
 
@@ -61,6 +63,23 @@ public final class SortedResultSet extends TreeSet implements SelectResults, Ord
     super(c);
   }
 
+  /**
+   * Bounds this set to the <code>maxSize</code> elements which sort first.
+   * Once the set is full every addition evicts the current last element.
+   */
+  void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public boolean add(Object element) {
+    boolean added = super.add(element);
+    if (added && this.maxSize > -1 && size() > this.maxSize) {
+      pollLast();
+    }
+    return added;
+  }
+
   @Override
   public boolean equals(Object other) {
     if (!(other instanceof SortedResultSet)) {
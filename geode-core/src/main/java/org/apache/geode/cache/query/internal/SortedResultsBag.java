@@ -43,6 +43,7 @@ public class SortedResultsBag<E> extends Bag implements Ordered {
   private final Map<E, Integer> sortedMap;
   private final boolean orderedDataAddition;
   private final boolean emitNullAtStart; 
+  private int maxSize = -1;
 
   /**
    * Constructor for unordered input
@@ -147,6 +148,51 @@ public class SortedResultsBag<E> extends Bag implements Ordered {
     this.emitNullAtStart = nullAtStart;
   }
 
+  /**
+   * Bounds this bag to the <code>maxSize</code> elements which sort first.
+   * Once the bag is full every addition evicts the current last element, so an
+   * order by query with a limit never holds more rows than the limit. Only
+   * supported for unordered input.
+   */
+  void setMaxSize(int maxSize) {
+    assert !this.orderedDataAddition;
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public boolean add(Object element) {
+    boolean added = super.add(element);
+    if (this.maxSize > -1 && this.size > this.maxSize) {
+      evictLast();
+    }
+    return added;
+  }
+
+  @Override
+  public int addAndGetOccurence(Object element) {
+    int occurence = super.addAndGetOccurence(element);
+    if (this.maxSize > -1 && this.size > this.maxSize) {
+      evictLast();
+    }
+    return occurence;
+  }
+
+  private void evictLast() {
+    if (this.numNulls > 0 && (!this.emitNullAtStart || this.sortedMap.isEmpty())) {
+      this.numNulls--;
+    } else {
+      TreeMap<E, Integer> map = (TreeMap<E, Integer>) this.sortedMap;
+      Map.Entry<E, Integer> last = map.lastEntry();
+      int count = last.getValue().intValue();
+      if (count == 1) {
+        map.pollLastEntry();
+      } else {
+        map.put(last.getKey(), count - 1);
+      }
+    }
+    this.size--;
+  }
+
   @Override
   public boolean isModifiable() {
     return false;
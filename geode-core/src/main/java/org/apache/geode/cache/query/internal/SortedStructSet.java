@@ -46,6 +46,8 @@ public final class SortedStructSet extends TreeSet implements SelectResults,
    */
   private boolean modifiable = true;
 
+  private transient int maxSize = -1;
+
   /** Creates a new instance of StructSet */
   public SortedStructSet() {
   };
@@ -109,7 +111,19 @@ public final class SortedStructSet extends TreeSet implements SelectResults,
    * For internal use. Just add the Object[] values for a struct with same type
    */
   public boolean addFieldValues(Object[] fieldValues) {
-    return super.add(fieldValues);
+    boolean added = super.add(fieldValues);
+    if (added && this.maxSize > -1 && size() > this.maxSize) {
+      pollLast();
+    }
+    return added;
+  }
+
+  /**
+   * Bounds this set to the <code>maxSize</code> structs which sort first.
+   * Once the set is full every addition evicts the current last struct.
+   */
+  void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
   }
 
   /**
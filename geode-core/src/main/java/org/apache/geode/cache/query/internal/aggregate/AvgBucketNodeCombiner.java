@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.aggregate;
+
+/**
+ * Combines the partial averages of the buckets of a data store into one
+ * partial average, which is sent on to the PR query node.
+ *
+ * @since Geode 1.1
+ */
+public class AvgBucketNodeCombiner extends Sum {
+
+  private int count = 0;
+
+  /**
+   * Takes the two element arrays of the number of values & the sum of the
+   * values produced by {@link AvgBucketNode}.
+   */
+  @Override
+  public void accumulate(Object value) {
+    Object[] array = (Object[]) value;
+    this.count += ((Integer) array[0]).intValue();
+    super.accumulate(array[1]);
+  }
+
+  /**
+   * Returns a two element array of the total number of values & the sum of the
+   * values, in the form expected by {@link AvgPRQueryNode}.
+   */
+  @Override
+  public Object terminate() {
+    return new Object[] { Integer.valueOf(count), super.terminate() };
+  }
+
+}
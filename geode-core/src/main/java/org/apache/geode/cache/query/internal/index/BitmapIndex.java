@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.IndexStatistics;
+import org.apache.geode.cache.query.IndexType;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.ExecutionContext;
+import org.apache.geode.cache.query.internal.index.IndexStore.IndexStoreEntry;
+import org.apache.geode.cache.query.internal.types.TypeUtils;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.cache.persistence.query.CloseableIterator;
+
+/**
+ * A compact range index for expressions with few distinct values, like a
+ * status or a category. Each index key maps to a {@link CompressedBitmap} of
+ * the ordinals of its entries instead of a collection of the entries, which
+ * takes a bit or two per entry for the frequent keys.
+ * <p>
+ * The bitmap indexes of a region number its entries the same way, so a
+ * junction of equality conditions on them is answered by intersecting or
+ * uniting the bitmaps before any entry is looked at, see
+ * {@link org.apache.geode.cache.query.internal.BitmapIndexCondition}, and a
+ * count of the matching entries is the cardinality of the result. Single
+ * conditions and ranges are evaluated like on any other compact range index.
+ *
+ * @since Geode 1.1
+ */
+public class BitmapIndex extends CompactRangeIndex {
+
+  public BitmapIndex(String indexName, Region region, String fromClause,
+      String indexedExpression, String projectionAttributes,
+      String origFromClause, String origIndexExpr, String[] definitions,
+      IndexStatistics stats) {
+    super(indexName, region, fromClause, indexedExpression,
+        projectionAttributes, origFromClause, origIndexExpr, definitions, stats);
+    setIndexStorage(new BitmapIndexStore(region, this.internalIndexStats,
+        IndexUtils.getIndexManager(region, true).getEntryOrdinals()));
+  }
+
+  @Override
+  public IndexType getType() {
+    return IndexType.BITMAP;
+  }
+
+  @Override
+  public void destroy() {
+    // give back the ordinals of the entries
+    getIndexStorage().clear();
+    super.destroy();
+  }
+
+  /**
+   * Returns the ordinals of the entries whose indexed value equals a key. The
+   * key is converted the same way as for an equality lookup.
+   */
+  public CompressedBitmap getOrdinals(Object key) throws TypeMismatchException {
+    if (key == QueryService.UNDEFINED) {
+      return new CompressedBitmap();
+    }
+    key = TypeUtils.indexKeyFor(getPdxStringForIndexedPdxKeys(key));
+    if (key == null) {
+      key = IndexManager.NULL;
+    }
+    return ((BitmapIndexStore)getIndexStorage()).getOrdinals(key);
+  }
+
+  /**
+   * Adds the values of the entries which satisfy equality conditions on
+   * bitmap indexes of one region to the results: all the conditions if
+   * <code>and</code> is true, any of them otherwise. The condition on
+   * <code>indexes[i]</code> is equality to <code>keys[i]</code>. The indexes
+   * are read locked by the caller.
+   */
+  public static void query(BitmapIndex[] indexes, Object[] keys, boolean and,
+      Collection results, ExecutionContext context)
+      throws TypeMismatchException, FunctionDomainException,
+      NameResolutionException, QueryInvocationTargetException {
+    long[] starts = updateIndexUseStats(indexes, true);
+    try {
+      for (BitmapIndex[] target : getTargetIndexes(indexes, context)) {
+        // before the lookup, see BitmapIndexStore.iterator
+        long iteratorStartTime = GemFireCacheImpl.getInstance().cacheTimeMillis();
+        CompressedBitmap ordinals = combine(target, keys, and);
+        if (!ordinals.isEmpty()) {
+          target[0].lockedQuery(ordinals, iteratorStartTime, results, context);
+        }
+      }
+    } finally {
+      updateIndexUseEndStats(indexes, starts, true);
+    }
+  }
+
+  /**
+   * Returns the number of entries which satisfy the conditions described in
+   * {@link #query(BitmapIndex[], Object[], boolean, Collection, ExecutionContext)}
+   * without looking at any of them.
+   */
+  public static int count(BitmapIndex[] indexes, Object[] keys, boolean and,
+      ExecutionContext context) throws TypeMismatchException,
+      QueryInvocationTargetException {
+    return count(indexes, keys, and, context, true);
+  }
+
+  /**
+   * Returns the same number as
+   * {@link #count(BitmapIndex[], Object[], boolean, ExecutionContext)}
+   * without counting it as a use of the indexes.
+   */
+  public static int getSizeEstimate(BitmapIndex[] indexes, Object[] keys,
+      boolean and, ExecutionContext context) throws TypeMismatchException,
+      QueryInvocationTargetException {
+    return count(indexes, keys, and, context, false);
+  }
+
+  private static int count(BitmapIndex[] indexes, Object[] keys, boolean and,
+      ExecutionContext context, boolean updateStats)
+      throws TypeMismatchException, QueryInvocationTargetException {
+    int count = 0;
+    long[] starts = updateIndexUseStats(indexes, updateStats);
+    try {
+      for (BitmapIndex[] target : getTargetIndexes(indexes, context)) {
+        count += combine(target, keys, and).getCardinality();
+      }
+    } finally {
+      updateIndexUseEndStats(indexes, starts, updateStats);
+    }
+    return count;
+  }
+
+  private void lockedQuery(CompressedBitmap ordinals, long iteratorStartTime,
+      Collection results, ExecutionContext context)
+      throws TypeMismatchException, FunctionDomainException,
+      NameResolutionException, QueryInvocationTargetException {
+    CloseableIterator<IndexStoreEntry> iterator = ((BitmapIndexStore)getIndexStorage())
+        .iterator(ordinals, iteratorStartTime);
+    try {
+      addToResultsFromEntries(null, null, -1, -1, iterator, results, null,
+          null, context, null, null, true, -1);
+    } finally {
+      iterator.close();
+    }
+  }
+
+  /**
+   * Returns the indexes to combine: the given ones, or for a query on the
+   * local buckets of a partitioned region the bucket indexes of each bucket.
+   */
+  private static List<BitmapIndex[]> getTargetIndexes(BitmapIndex[] indexes,
+      ExecutionContext context) throws QueryInvocationTargetException {
+    Region region = indexes[0].getRegion();
+    if (context.getBucketList() == null || !(region instanceof BucketRegion)) {
+      return Collections.singletonList(indexes);
+    }
+    PartitionedRegion pr = ((BucketRegion)region).getPartitionedRegion();
+    List<BitmapIndex[]> targets = new ArrayList<BitmapIndex[]>(context.getBucketList().size());
+    nextBucket:
+    for (Object b : context.getBucketList()) {
+      BitmapIndex[] bucketIndexes = new BitmapIndex[indexes.length];
+      for (int i = 0; i < indexes.length; i++) {
+        AbstractIndex index = PartitionedIndex.getBucketIndex(pr, indexes[i].getName(), (Integer)b);
+        if (!(index instanceof BitmapIndex)) {
+          continue nextBucket;
+        }
+        bucketIndexes[i] = (BitmapIndex)index;
+      }
+      targets.add(bucketIndexes);
+    }
+    return targets;
+  }
+
+  private static CompressedBitmap combine(BitmapIndex[] indexes, Object[] keys,
+      boolean and) throws TypeMismatchException {
+    CompressedBitmap[] bitmaps = new CompressedBitmap[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      bitmaps[i] = indexes[i].getOrdinals(keys[i]);
+    }
+    CompressedBitmap result = bitmaps[0];
+    if (and) {
+      // start with the smallest bitmaps, an empty intersection ends it
+      Arrays.sort(bitmaps, new Comparator<CompressedBitmap>() {
+        public int compare(CompressedBitmap b1, CompressedBitmap b2) {
+          return Integer.compare(b1.getCardinality(), b2.getCardinality());
+        }
+      });
+      result = bitmaps[0];
+      for (int i = 1; i < bitmaps.length && !result.isEmpty(); i++) {
+        result = CompressedBitmap.and(result, bitmaps[i]);
+      }
+    } else {
+      for (int i = 1; i < bitmaps.length; i++) {
+        result = CompressedBitmap.or(result, bitmaps[i]);
+      }
+    }
+    return result;
+  }
+
+  private static long[] updateIndexUseStats(BitmapIndex[] indexes,
+      boolean updateStats) {
+    long[] starts = new long[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      starts[i] = indexes[i].updateIndexUseStats(updateStats);
+    }
+    return starts;
+  }
+
+  private static void updateIndexUseEndStats(BitmapIndex[] indexes,
+      long[] starts, boolean updateStats) {
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i].updateIndexUseEndStats(starts[i], updateStats);
+    }
+  }
+}
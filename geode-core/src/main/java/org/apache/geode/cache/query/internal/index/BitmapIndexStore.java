@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.cache.persistence.query.CloseableIterator;
+
+/**
+ * The storage of a {@link BitmapIndex}. The index keys are kept in the same
+ * sorted map as in the {@link MemoryIndexStore}, but every key maps to a
+ * {@link CompressedBitmap} of the ordinals of its entries instead of an array
+ * or a set of the entries. The ordinals are shared by all the bitmap indexes
+ * of the region, see {@link EntryOrdinals}.
+ *
+ * @since Geode 1.1
+ */
+class BitmapIndexStore extends MemoryIndexStore {
+
+  private final EntryOrdinals ordinals;
+
+  BitmapIndexStore(Region region, InternalIndexStatistics internalIndexStats,
+      EntryOrdinals ordinals) {
+    super(region, internalIndexStats);
+    this.ordinals = ordinals;
+  }
+
+  /**
+   * Maps a new index key to a bitmap holding the entry. If the key is already
+   * mapped, the existing entries are returned and the caller adds the entry
+   * to them.
+   */
+  @Override
+  protected Object putEntriesIfAbsent(Object indexKey, Object entries) {
+    Object current = getEntries(indexKey);
+    if (current != null) {
+      return current;
+    }
+    EntryBitmap bitmap = new EntryBitmap();
+    bitmap.add((RegionEntry)entries);
+    current = super.putEntriesIfAbsent(indexKey, bitmap);
+    if (current != null) {
+      // another thread mapped the key first
+      bitmap.discard();
+    }
+    return current;
+  }
+
+  @Override
+  protected boolean removeEntries(Object indexKey, Object entries) {
+    if (super.removeEntries(indexKey, entries)) {
+      if (entries instanceof EntryBitmap) {
+        ((EntryBitmap)entries).discard();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean clear() {
+    for (Map.Entry mapEntry : entries(null, true, null, true, false)) {
+      Object entries = mapEntry.getValue();
+      if (entries instanceof EntryBitmap) {
+        ((EntryBitmap)entries).discard();
+      }
+    }
+    return super.clear();
+  }
+
+  /**
+   * Returns a copy of the ordinals of the entries mapped to an index key.
+   */
+  CompressedBitmap getOrdinals(Object indexKey) {
+    Object entries = getEntries(indexKey);
+    if (entries instanceof EntryBitmap) {
+      return ((EntryBitmap)entries).copy();
+    }
+    return new CompressedBitmap();
+  }
+
+  /**
+   * Returns an iterator over the entries with the given ordinals. The
+   * iterator start time must be taken before the ordinals were looked up, so
+   * that the entries which got an ordinal since are re-evaluated.
+   */
+  CloseableIterator<IndexStoreEntry> iterator(CompressedBitmap ordinals,
+      long iteratorStartTime) {
+    return iterator(null, new EntryCollection(ordinals), iteratorStartTime);
+  }
+
+  /**
+   * The entries mapped to an index key. Discarded bitmaps no longer accept
+   * entries, which makes {@link MemoryIndexStore#updateMapping} retry with
+   * the bitmap that replaced it.
+   */
+  private final class EntryBitmap extends AbstractCollection<RegionEntry> {
+
+    private CompressedBitmap bitmap = new CompressedBitmap();
+
+    private boolean discarded;
+
+    @Override
+    public synchronized boolean add(RegionEntry entry) {
+      if (this.discarded) {
+        return false;
+      }
+      if (this.bitmap.add(ordinals.acquire(entry))) {
+        return true;
+      }
+      ordinals.release(entry);
+      return false;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+      if (!(o instanceof RegionEntry)) {
+        return false;
+      }
+      int ordinal = ordinals.getOrdinal((RegionEntry)o);
+      if (ordinal >= 0 && this.bitmap.remove(ordinal)) {
+        ordinals.release((RegionEntry)o);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+      if (!(o instanceof RegionEntry)) {
+        return false;
+      }
+      int ordinal = ordinals.getOrdinal((RegionEntry)o);
+      return ordinal >= 0 && this.bitmap.contains(ordinal);
+    }
+
+    @Override
+    public synchronized int size() {
+      return this.bitmap.getCardinality();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+      return this.bitmap.isEmpty();
+    }
+
+    @Override
+    public Iterator<RegionEntry> iterator() {
+      return new EntryCollection(copy()).iterator();
+    }
+
+    synchronized CompressedBitmap copy() {
+      return this.bitmap.copy();
+    }
+
+    /**
+     * Releases the ordinals of the entries once the bitmap is no longer
+     * mapped to its key.
+     */
+    synchronized void discard() {
+      this.discarded = true;
+      PrimitiveIterator.OfInt iterator = this.bitmap.iterator();
+      while (iterator.hasNext()) {
+        RegionEntry entry = ordinals.getEntry(iterator.nextInt());
+        if (entry != null) {
+          ordinals.release(entry);
+        }
+      }
+      this.bitmap = new CompressedBitmap();
+    }
+  }
+
+  /**
+   * A read only view of the entries with the ordinals of a bitmap. Ordinals
+   * freed since the bitmap was taken are skipped.
+   */
+  private final class EntryCollection extends AbstractCollection<RegionEntry> {
+
+    private final CompressedBitmap bitmap;
+
+    EntryCollection(CompressedBitmap bitmap) {
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    public int size() {
+      return this.bitmap.getCardinality();
+    }
+
+    @Override
+    public Iterator<RegionEntry> iterator() {
+      final PrimitiveIterator.OfInt ordinalIterator = this.bitmap.iterator();
+      return new Iterator<RegionEntry>() {
+        private RegionEntry next = advance();
+
+        private RegionEntry advance() {
+          while (ordinalIterator.hasNext()) {
+            RegionEntry entry = ordinals.getEntry(ordinalIterator.nextInt());
+            if (entry != null) {
+              return entry;
+            }
+          }
+          return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+          return this.next != null;
+        }
+
+        @Override
+        public RegionEntry next() {
+          if (this.next == null) {
+            throw new NoSuchElementException();
+          }
+          RegionEntry result = this.next;
+          this.next = advance();
+          return result;
+        }
+      };
+    }
+  }
+}
@@ -45,6 +45,7 @@ import org.apache.geode.cache.query.internal.CompiledLiteral;
 import org.apache.geode.cache.query.internal.CompiledPath;
 import org.apache.geode.cache.query.internal.CompiledSortCriterion;
 import org.apache.geode.cache.query.internal.CompiledValue;
+import org.apache.geode.cache.query.internal.CompositeIndexInfo;
 import org.apache.geode.cache.query.internal.CqEntry;
 import org.apache.geode.cache.query.internal.ExecutionContext;
 import org.apache.geode.cache.query.internal.IndexInfo;
@@ -114,6 +115,14 @@ public class CompactRangeIndex extends AbstractIndex {
     return indexStore;
   }
 
+  /**
+   * Replaces the store created by the constructor, for subclasses that keep
+   * their index entries in a different kind of store.
+   */
+  void setIndexStorage(IndexStore indexStore) {
+    this.indexStore = indexStore;
+  }
+
   /**
    * Get the index type
    * 
@@ -699,6 +708,16 @@ public class CompactRangeIndex extends AbstractIndex {
 
   @Override
   void instantiateEvaluator(IndexCreationHelper ich) {
+    // keep numeric and date keys as primitives if the indexed expression
+    // is declared to produce them
+    if (!NumericIndexStore.DISABLED && this.indexStore.getClass() == MemoryIndexStore.class
+        && ich instanceof FunctionalIndexCreationHelper) {
+      int keyKind = NumericIndexStore.getKeyKind(
+          ((FunctionalIndexCreationHelper)ich).getIndexedExpressionType());
+      if (keyKind != NumericIndexStore.NONE) {
+        this.indexStore = new NumericIndexStore(this.region, this.internalIndexStats, keyKind);
+      }
+    }
     this.evaluator = new IMQEvaluator(ich);
   }
   
@@ -742,7 +761,7 @@ public class CompactRangeIndex extends AbstractIndex {
    * @param lowerBoundOperator the operator to use to determine a match against the lower bound
    * @param upperBoundOperator the operator to use to determine a match against the upper bound
    */
-  private void addToResultsFromEntries(Object lowerBoundKey, Object upperBoundKey,
+  void addToResultsFromEntries(Object lowerBoundKey, Object upperBoundKey,
       int lowerBoundOperator, int upperBoundOperator,
       CloseableIterator<IndexStoreEntry> entriesIter, Collection result,
       CompiledValue iterOps, RuntimeIterator runtimeItr,
@@ -969,6 +988,11 @@ public class CompactRangeIndex extends AbstractIndex {
       ExecutionContext context, Object keyVal) throws FunctionDomainException,
       TypeMismatchException, NameResolutionException,
       QueryInvocationTargetException {
+    if (indexInfo instanceof CompositeIndexInfo) {
+      // the lookup answered all the conditions of a junction
+      Object result = ((CompositeIndexInfo) indexInfo).getCondition().evaluate(context);
+      return Boolean.TRUE.equals(result);
+    }
     CompiledValue path = ((IndexInfo) indexInfo)._path();
     Object left = path.evaluate(context);
     CompiledValue key = ((IndexInfo) indexInfo)._key();
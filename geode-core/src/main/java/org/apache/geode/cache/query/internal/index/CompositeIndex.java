@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.AmbiguousNameException;
+import org.apache.geode.cache.query.IndexStatistics;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.CompiledValue;
+import org.apache.geode.cache.query.internal.ExecutionContext;
+import org.apache.geode.cache.query.internal.index.IndexStore.IndexStoreEntry;
+import org.apache.geode.internal.cache.BucketRegion;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.cache.persistence.query.CloseableIterator;
+
+/**
+ * A compact range index over an ordered tuple of expressions, created from a
+ * comma separated indexed expression like <code>p.status, p.region, p.ts</code>.
+ * Every entry is stored under a {@link CompositeIndexKey} holding the values
+ * of all the expressions, so a single lookup answers a conjunction of
+ * equality conditions on a leading run of the expressions, optionally
+ * followed by a range on the next one.
+ * <p>
+ * A composite index is never matched against a single condition; it is only
+ * chosen for a junction by
+ * {@link org.apache.geode.cache.query.internal.CompositeIndexCondition}.
+ *
+ * @since Geode 1.1
+ */
+public class CompositeIndex extends CompactRangeIndex {
+
+  /**
+   * The number of entries after which counting stops when estimating the size
+   * of a lookup.
+   */
+  private static final int SIZE_ESTIMATE_LIMIT = 1000;
+
+  private final String[] componentExpressions;
+
+  public CompositeIndex(String indexName, Region region, String fromClause,
+      String indexedExpression, String projectionAttributes,
+      String origFromClause, String origIndexExpr, String[] definitions,
+      String[] componentExpressions, IndexStatistics stats) {
+    super(indexName, region, fromClause, indexedExpression,
+        projectionAttributes, origFromClause, origIndexExpr, definitions, stats);
+    this.componentExpressions = componentExpressions;
+  }
+
+  /**
+   * Returns the canonicalized indexed expressions, in key order.
+   */
+  public String[] getCanonicalizedComponentExpressions() {
+    return this.componentExpressions;
+  }
+
+  @Override
+  public boolean isMatchingWithIndexExpression(CompiledValue indexExpr,
+      String conditionExprStr, ExecutionContext context)
+      throws AmbiguousNameException, TypeMismatchException,
+      NameResolutionException {
+    return false;
+  }
+
+  /**
+   * Returns the number of entries with a key between the two bounds, counting
+   * at most {@link #SIZE_ESTIMATE_LIMIT} of them. On a partitioned region the
+   * entries of all the buckets the query runs on are counted, since the
+   * lookup is done on each of them.
+   */
+  public int getSizeEstimate(CompositeIndexKey lowerBound,
+      CompositeIndexKey upperBound, ExecutionContext context)
+      throws QueryInvocationTargetException {
+    if (context.getBucketList() == null || !(this.region instanceof BucketRegion)) {
+      return countEntries(lowerBound, upperBound, SIZE_ESTIMATE_LIMIT);
+    }
+    PartitionedRegion pr = ((BucketRegion)this.region).getPartitionedRegion();
+    int size = 0;
+    for (Object b : context.getBucketList()) {
+      if (size >= SIZE_ESTIMATE_LIMIT) {
+        break;
+      }
+      CompositeIndex i = (CompositeIndex)PartitionedIndex.getBucketIndex(pr, this.indexName, (Integer)b);
+      if (i == null) {
+        continue;
+      }
+      size += i.countEntries(lowerBound, upperBound, SIZE_ESTIMATE_LIMIT - size);
+    }
+    return size;
+  }
+
+  private int countEntries(CompositeIndexKey lowerBound,
+      CompositeIndexKey upperBound, int limit) {
+    int size = 0;
+    long start = updateIndexUseStats(false);
+    CloseableIterator<IndexStoreEntry> iterator = null;
+    try {
+      iterator = getIndexStorage().iterator(lowerBound, true, upperBound, true, null);
+      while (size < limit && iterator.hasNext()) {
+        iterator.next();
+        size++;
+      }
+    } finally {
+      if (iterator != null) {
+        iterator.close();
+      }
+      updateIndexUseEndStats(start, false);
+    }
+    return size;
+  }
+}
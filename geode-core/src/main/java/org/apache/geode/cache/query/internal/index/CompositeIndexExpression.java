@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.geode.cache.query.AmbiguousNameException;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.AbstractCompiledValue;
+import org.apache.geode.cache.query.internal.CompiledValue;
+import org.apache.geode.cache.query.internal.ExecutionContext;
+
+/**
+ * The indexed expression of a {@link CompositeIndex}. Evaluates each of the
+ * component expressions and combines the values into a
+ * {@link CompositeIndexKey}.
+ *
+ * @since Geode 1.1
+ */
+class CompositeIndexExpression extends AbstractCompiledValue {
+
+  private final CompiledValue[] components;
+
+  CompositeIndexExpression(CompiledValue[] components) {
+    this.components = components;
+  }
+
+  CompiledValue[] getComponents() {
+    return this.components;
+  }
+
+  @Override
+  public List getChildren() {
+    return Arrays.asList(this.components);
+  }
+
+  public int getType() {
+    return CONSTRUCTION;
+  }
+
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    Object[] values = new Object[this.components.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = this.components[i].evaluate(context);
+    }
+    return new CompositeIndexKey(values);
+  }
+
+  @Override
+  public Set computeDependencies(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException, NameResolutionException {
+    Set dependencies = Collections.EMPTY_SET;
+    for (CompiledValue component : this.components) {
+      dependencies = context.addDependencies(this, component.computeDependencies(context));
+    }
+    return dependencies;
+  }
+
+  @Override
+  public void generateCanonicalizedExpression(StringBuffer clauseBuffer,
+      ExecutionContext context) throws AmbiguousNameException,
+      TypeMismatchException, NameResolutionException {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < this.components.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      StringBuffer component = new StringBuffer();
+      this.components[i].generateCanonicalizedExpression(component, context);
+      sb.append(component);
+    }
+    clauseBuffer.insert(0, sb);
+  }
+}
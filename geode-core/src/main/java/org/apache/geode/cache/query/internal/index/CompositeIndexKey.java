@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.util.Comparator;
+
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.types.TypeUtils;
+import org.apache.geode.pdx.internal.PdxString;
+
+/**
+ * The key of a {@link CompositeIndex}: the values of the indexed expressions
+ * of an entry, compared component by component in the order the expressions
+ * were declared.
+ * <p>
+ * A key may also be a bound for a range lookup. A bound has fewer components
+ * than the index and sorts either before or after every key that starts with
+ * the same components.
+ *
+ * @since Geode 1.1
+ */
+public class CompositeIndexKey implements Comparable {
+
+  private static final Comparator COMPARATOR = TypeUtils.getExtendedNumericComparator();
+
+  private final Object[] components;
+
+  /**
+   * Zero for a key of an entry, -1 for a bound that sorts before all the keys
+   * it is a prefix of and +1 for a bound that sorts after them.
+   */
+  private final int fill;
+
+  CompositeIndexKey(Object[] components) throws TypeMismatchException {
+    this(components, 0);
+  }
+
+  private CompositeIndexKey(Object[] components, int fill) throws TypeMismatchException {
+    this.components = new Object[components.length];
+    for (int i = 0; i < components.length; i++) {
+      this.components[i] = normalize(components[i]);
+    }
+    this.fill = fill;
+  }
+
+  /**
+   * Returns a bound that sorts before every key starting with the given
+   * components, and after every key sorting before those components.
+   */
+  public static CompositeIndexKey lowerBound(Object... components) throws TypeMismatchException {
+    return new CompositeIndexKey(components, -1);
+  }
+
+  /**
+   * Returns a bound that sorts after every key starting with the given
+   * components, and before every key sorting after those components.
+   */
+  public static CompositeIndexKey upperBound(Object... components) throws TypeMismatchException {
+    return new CompositeIndexKey(components, 1);
+  }
+
+  private static Object normalize(Object component) throws TypeMismatchException {
+    if (component == null) {
+      return IndexManager.NULL;
+    }
+    if (component instanceof PdxString) {
+      // keys are compared component by component, so they have to agree
+      // on one representation of strings
+      return component.toString();
+    }
+    return TypeUtils.indexKeyFor(component);
+  }
+
+  public int size() {
+    return this.components.length;
+  }
+
+  public Object get(int i) {
+    return this.components[i];
+  }
+
+  public int compareTo(Object o) {
+    if (!(o instanceof CompositeIndexKey)) {
+      // only the null and undefined tokens are compared to composite keys
+      return 1;
+    }
+    CompositeIndexKey other = (CompositeIndexKey)o;
+    int length = Math.min(this.components.length, other.components.length);
+    for (int i = 0; i < length; i++) {
+      int result = COMPARATOR.compare(this.components[i], other.components[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    if (this.components.length == other.components.length) {
+      return this.fill < other.fill ? -1 : (this.fill == other.fill ? 0 : 1);
+    }
+    if (this.components.length < other.components.length) {
+      return this.fill != 0 ? this.fill : -1;
+    }
+    return other.fill != 0 ? -other.fill : 1;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CompositeIndexKey)) {
+      return false;
+    }
+    try {
+      return compareTo(o) == 0;
+    } catch (ClassCastException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = this.fill;
+    for (Object component : this.components) {
+      // numbers of different types can be equal
+      int h = component instanceof Number
+          ? Double.valueOf(((Number)component).doubleValue()).hashCode() : component.hashCode();
+      hash = 31 * hash + h;
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('(');
+    for (int i = 0; i < this.components.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(this.components[i]);
+    }
+    if (this.fill != 0) {
+      sb.append(this.components.length > 0 ? ", " : "").append(this.fill < 0 ? "-" : "+");
+    }
+    return sb.append(')').toString();
+  }
+}
@@ -0,0 +1,547 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A compressed set of non-negative ints, laid out like a Roaring bitmap. The
+ * ints are partitioned on their high 16 bits, and the low 16 bits of each
+ * partition are kept in a container: a sorted array while the partition has
+ * at most {@link #ARRAY_MAX} values, a plain bitmap of 65536 bits otherwise.
+ * Dense sets of ordinals take about one bit per value and sparse sets two
+ * bytes per value, and intersections and unions work a container at a time.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @since Geode 1.1
+ */
+public class CompressedBitmap {
+
+  /** The largest number of values kept in an array container */
+  static final int ARRAY_MAX = 4096;
+
+  private static final int BITMAP_WORDS = 1024;
+
+  private char[] keys;
+
+  private Container[] containers;
+
+  private int size;
+
+  private int cardinality;
+
+  public CompressedBitmap() {
+    this.keys = new char[4];
+    this.containers = new Container[4];
+  }
+
+  private CompressedBitmap(int capacity) {
+    this.keys = new char[Math.max(capacity, 1)];
+    this.containers = new Container[this.keys.length];
+  }
+
+  /**
+   * Adds a value, returning true if it was not in the set.
+   */
+  public boolean add(int value) {
+    char high = (char)(value >>> 16);
+    int i = findContainer(high);
+    if (i < 0) {
+      ArrayContainer container = new ArrayContainer(4);
+      container.add((char)value);
+      insertContainer(-i - 1, high, container);
+      this.cardinality++;
+      return true;
+    }
+    Container container = this.containers[i];
+    int before = container.cardinality;
+    this.containers[i] = container.add((char)value);
+    if (this.containers[i].cardinality == before) {
+      return false;
+    }
+    this.cardinality++;
+    return true;
+  }
+
+  /**
+   * Removes a value, returning true if it was in the set.
+   */
+  public boolean remove(int value) {
+    int i = findContainer((char)(value >>> 16));
+    if (i < 0) {
+      return false;
+    }
+    Container container = this.containers[i];
+    int before = container.cardinality;
+    container = container.remove((char)value);
+    if (container.cardinality == before) {
+      return false;
+    }
+    this.cardinality--;
+    if (container.cardinality == 0) {
+      removeContainer(i);
+    } else {
+      this.containers[i] = container;
+    }
+    return true;
+  }
+
+  public boolean contains(int value) {
+    int i = findContainer((char)(value >>> 16));
+    return i >= 0 && this.containers[i].contains((char)value);
+  }
+
+  public int getCardinality() {
+    return this.cardinality;
+  }
+
+  public boolean isEmpty() {
+    return this.cardinality == 0;
+  }
+
+  /**
+   * Returns a deep copy of this set.
+   */
+  public CompressedBitmap copy() {
+    CompressedBitmap result = new CompressedBitmap(this.size);
+    for (int i = 0; i < this.size; i++) {
+      result.appendContainer(this.keys[i], this.containers[i].copy());
+    }
+    return result;
+  }
+
+  /**
+   * Returns a new set holding the values in both sets.
+   */
+  public static CompressedBitmap and(CompressedBitmap a, CompressedBitmap b) {
+    CompressedBitmap result = new CompressedBitmap(Math.min(a.size, b.size));
+    int i = 0;
+    int j = 0;
+    while (i < a.size && j < b.size) {
+      char ka = a.keys[i];
+      char kb = b.keys[j];
+      if (ka < kb) {
+        i++;
+      } else if (ka > kb) {
+        j++;
+      } else {
+        Container c = a.containers[i].and(b.containers[j]);
+        if (c.cardinality > 0) {
+          result.appendContainer(ka, c);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a new set holding the values in either set.
+   */
+  public static CompressedBitmap or(CompressedBitmap a, CompressedBitmap b) {
+    CompressedBitmap result = new CompressedBitmap(a.size + b.size);
+    int i = 0;
+    int j = 0;
+    while (i < a.size || j < b.size) {
+      if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+        result.appendContainer(a.keys[i], a.containers[i].copy());
+        i++;
+      } else if (i == a.size || b.keys[j] < a.keys[i]) {
+        result.appendContainer(b.keys[j], b.containers[j].copy());
+        j++;
+      } else {
+        result.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the values in ascending order.
+   */
+  public PrimitiveIterator.OfInt iterator() {
+    return new BitmapIterator();
+  }
+
+  private int findContainer(char high) {
+    int lo = 0;
+    int hi = this.size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      char key = this.keys[mid];
+      if (key < high) {
+        lo = mid + 1;
+      } else if (key > high) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  private void insertContainer(int position, char high, Container container) {
+    if (this.size == this.keys.length) {
+      int capacity = this.size * 2;
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.containers = Arrays.copyOf(this.containers, capacity);
+    }
+    System.arraycopy(this.keys, position, this.keys, position + 1, this.size - position);
+    System.arraycopy(this.containers, position, this.containers, position + 1, this.size - position);
+    this.keys[position] = high;
+    this.containers[position] = container;
+    this.size++;
+  }
+
+  private void appendContainer(char high, Container container) {
+    insertContainer(this.size, high, container);
+    this.cardinality += container.cardinality;
+  }
+
+  private void removeContainer(int position) {
+    System.arraycopy(this.keys, position + 1, this.keys, position, this.size - position - 1);
+    System.arraycopy(this.containers, position + 1, this.containers, position, this.size - position - 1);
+    this.size--;
+    this.containers[this.size] = null;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    PrimitiveIterator.OfInt iterator = iterator();
+    while (iterator.hasNext()) {
+      if (sb.length() > 1) {
+        sb.append(',');
+      }
+      sb.append(iterator.nextInt());
+    }
+    return sb.append('}').toString();
+  }
+
+  /**
+   * The low 16 bits of the values sharing the same high 16 bits.
+   */
+  private abstract static class Container {
+    int cardinality;
+
+    /** Adds a value, returning this container or the one replacing it */
+    abstract Container add(char value);
+
+    /** Removes a value, returning this container or the one replacing it */
+    abstract Container remove(char value);
+
+    abstract boolean contains(char value);
+
+    abstract Container and(Container other);
+
+    abstract Container or(Container other);
+
+    abstract Container copy();
+
+    /**
+     * Returns the smallest value greater than or equal to
+     * <code>from</code>, or -1 if there is none.
+     */
+    abstract int nextValue(int from);
+  }
+
+  private static final class ArrayContainer extends Container {
+    char[] values;
+
+    ArrayContainer(int capacity) {
+      this.values = new char[capacity];
+    }
+
+    ArrayContainer(char[] values, int cardinality) {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      int i = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+      if (i >= 0) {
+        return this;
+      }
+      if (this.cardinality >= ARRAY_MAX) {
+        return toBitmap().add(value);
+      }
+      i = -i - 1;
+      if (this.cardinality == this.values.length) {
+        this.values = Arrays.copyOf(this.values,
+            Math.min(ARRAY_MAX, Math.max(4, this.cardinality * 2)));
+      }
+      System.arraycopy(this.values, i, this.values, i + 1, this.cardinality - i);
+      this.values[i] = value;
+      this.cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(char value) {
+      int i = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+      if (i >= 0) {
+        System.arraycopy(this.values, i + 1, this.values, i, this.cardinality - i - 1);
+        this.cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return Arrays.binarySearch(this.values, 0, this.cardinality, value) >= 0;
+    }
+
+    @Override
+    Container and(Container other) {
+      char[] result = new char[Math.min(this.cardinality, other.cardinality)];
+      int n = 0;
+      if (other instanceof ArrayContainer) {
+        char[] otherValues = ((ArrayContainer)other).values;
+        int i = 0;
+        int j = 0;
+        while (i < this.cardinality && j < other.cardinality) {
+          if (this.values[i] < otherValues[j]) {
+            i++;
+          } else if (this.values[i] > otherValues[j]) {
+            j++;
+          } else {
+            result[n++] = this.values[i];
+            i++;
+            j++;
+          }
+        }
+      } else {
+        for (int i = 0; i < this.cardinality; i++) {
+          if (other.contains(this.values[i])) {
+            result[n++] = this.values[i];
+          }
+        }
+      }
+      return new ArrayContainer(result, n);
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof BitmapContainer) {
+        return other.or(this);
+      }
+      ArrayContainer o = (ArrayContainer)other;
+      if (this.cardinality + o.cardinality > ARRAY_MAX) {
+        return toBitmap().or(other);
+      }
+      char[] result = new char[this.cardinality + o.cardinality];
+      int n = 0;
+      int i = 0;
+      int j = 0;
+      while (i < this.cardinality || j < o.cardinality) {
+        if (j == o.cardinality || (i < this.cardinality && this.values[i] < o.values[j])) {
+          result[n++] = this.values[i++];
+        } else if (i == this.cardinality || o.values[j] < this.values[i]) {
+          result[n++] = o.values[j++];
+        } else {
+          result[n++] = this.values[i];
+          i++;
+          j++;
+        }
+      }
+      return new ArrayContainer(result, n);
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(this.values, this.cardinality), this.cardinality);
+    }
+
+    @Override
+    int nextValue(int from) {
+      int i = Arrays.binarySearch(this.values, 0, this.cardinality, (char)from);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      return i < this.cardinality ? this.values[i] : -1;
+    }
+
+    private BitmapContainer toBitmap() {
+      BitmapContainer bitmap = new BitmapContainer();
+      for (int i = 0; i < this.cardinality; i++) {
+        bitmap.add(this.values[i]);
+      }
+      return bitmap;
+    }
+  }
+
+  private static final class BitmapContainer extends Container {
+    final long[] words;
+
+    BitmapContainer() {
+      this.words = new long[BITMAP_WORDS];
+    }
+
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      int i = value >>> 6;
+      long bit = 1L << value;
+      if ((this.words[i] & bit) == 0) {
+        this.words[i] |= bit;
+        this.cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(char value) {
+      int i = value >>> 6;
+      long bit = 1L << value;
+      if ((this.words[i] & bit) != 0) {
+        this.words[i] &= ~bit;
+        this.cardinality--;
+        if (this.cardinality <= ARRAY_MAX) {
+          return toArray();
+        }
+      }
+      return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return (this.words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container and(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.and(this);
+      }
+      long[] otherWords = ((BitmapContainer)other).words;
+      long[] result = new long[BITMAP_WORDS];
+      int n = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        result[i] = this.words[i] & otherWords[i];
+        n += Long.bitCount(result[i]);
+      }
+      BitmapContainer bitmap = new BitmapContainer(result, n);
+      return n <= ARRAY_MAX ? bitmap.toArray() : bitmap;
+    }
+
+    @Override
+    Container or(Container other) {
+      long[] result = this.words.clone();
+      if (other instanceof ArrayContainer) {
+        ArrayContainer o = (ArrayContainer)other;
+        for (int i = 0; i < o.cardinality; i++) {
+          char value = o.values[i];
+          result[value >>> 6] |= 1L << value;
+        }
+      } else {
+        long[] otherWords = ((BitmapContainer)other).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          result[i] |= otherWords[i];
+        }
+      }
+      int n = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        n += Long.bitCount(result[i]);
+      }
+      return new BitmapContainer(result, n);
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(this.words.clone(), this.cardinality);
+    }
+
+    @Override
+    int nextValue(int from) {
+      if (from > Character.MAX_VALUE) {
+        return -1;
+      }
+      int i = from >>> 6;
+      long word = this.words[i] & (-1L << from);
+      while (true) {
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if (++i == BITMAP_WORDS) {
+          return -1;
+        }
+        word = this.words[i];
+      }
+    }
+
+    private ArrayContainer toArray() {
+      char[] values = new char[this.cardinality];
+      int n = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long word = this.words[i];
+        while (word != 0) {
+          values[n++] = (char)((i << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values, n);
+    }
+  }
+
+  private class BitmapIterator implements PrimitiveIterator.OfInt {
+    private int container;
+    private int next = -1;
+
+    BitmapIterator() {
+      advance(0);
+    }
+
+    private void advance(int from) {
+      while (this.container < size) {
+        int low = from > Character.MAX_VALUE ? -1 : containers[this.container].nextValue(from);
+        if (low >= 0) {
+          this.next = (keys[this.container] << 16) | low;
+          return;
+        }
+        this.container++;
+        from = 0;
+      }
+      this.next = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public int nextInt() {
+      if (this.next < 0) {
+        throw new NoSuchElementException();
+      }
+      int result = this.next;
+      advance((result & 0xFFFF) + 1);
+      return result;
+    }
+  }
+}
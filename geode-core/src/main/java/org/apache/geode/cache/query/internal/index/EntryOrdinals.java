@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.geode.internal.cache.RegionEntry;
+
+/**
+ * Numbers the entries of a region, or of a bucket, with small dense ints so
+ * that the {@link BitmapIndex}es of the region can keep their entries in
+ * {@link CompressedBitmap}s and combine them. All the bitmap indexes of a
+ * region share the same numbering.
+ * <p>
+ * An entry keeps its ordinal while at least one index holds it. The ordinals
+ * of released entries are reused, which keeps the bitmaps dense; a query
+ * working on an older bitmap can therefore meet an entry that was added after
+ * it started, and re-evaluates such entries like any other entry updated
+ * during the query.
+ * <p>
+ * Nothing is allocated per entry. The ordinal and reference count of an
+ * entry are kept in primitive arrays of one of several segments, each with
+ * its own lock, so that index updates of different entries rarely contend.
+ * The entries by ordinal are kept in chunks that are never copied, and freed
+ * ordinals are kept in a lock-free list threaded through an int array.
+ *
+ * @since Geode 1.1
+ */
+class EntryOrdinals {
+
+  private static final int SEGMENT_BITS = 4;
+
+  private static final int CHUNK_BITS = 10;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /** The ordinals of the entries, by the identity hash of the entry */
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  /** The entries by ordinal, in chunks of CHUNK_SIZE */
+  private volatile AtomicReferenceArray<RegionEntry>[] entryChunks = newEntryChunks(1);
+
+  /** The next free ordinal by free ordinal, in chunks of CHUNK_SIZE */
+  private volatile AtomicIntegerArray[] nextFreeChunks = new AtomicIntegerArray[1];
+
+  /**
+   * The first free ordinal plus one, zero when the list is empty, in the low
+   * 32 bits and a stamp changed by every update in the high 32 bits.
+   */
+  private final AtomicLong freeHead = new AtomicLong();
+
+  /** The ordinal given out when the free list is empty */
+  private int nextOrdinal;
+
+  EntryOrdinals() {
+    for (int i = 0; i < this.segments.length; i++) {
+      this.segments[i] = new Segment();
+    }
+  }
+
+  /**
+   * Returns the ordinal of an entry, assigning one if the entry has none,
+   * and adds a reference to it.
+   */
+  int acquire(RegionEntry entry) {
+    int hash = hash(entry);
+    Segment segment = segmentFor(hash);
+    synchronized (segment) {
+      int slot = segment.indexOf(entry, hash);
+      if (slot >= 0) {
+        segment.references[slot]++;
+        return segment.ordinals[slot];
+      }
+      int ordinal = allocateOrdinal();
+      setEntry(ordinal, entry);
+      segment.insert(entry, hash, ordinal);
+      return ordinal;
+    }
+  }
+
+  /**
+   * Removes a reference to the ordinal of an entry, freeing the ordinal
+   * when it was the last one. Returns the ordinal, or -1 if the entry has
+   * none.
+   */
+  int release(RegionEntry entry) {
+    int hash = hash(entry);
+    Segment segment = segmentFor(hash);
+    int ordinal;
+    synchronized (segment) {
+      int slot = segment.indexOf(entry, hash);
+      if (slot < 0) {
+        return -1;
+      }
+      ordinal = segment.ordinals[slot];
+      if (--segment.references[slot] > 0) {
+        return ordinal;
+      }
+      segment.removeAt(slot);
+      setEntry(ordinal, null);
+    }
+    freeOrdinal(ordinal);
+    return ordinal;
+  }
+
+  /**
+   * Returns the ordinal of an entry, or -1 if the entry has none.
+   */
+  int getOrdinal(RegionEntry entry) {
+    int hash = hash(entry);
+    Segment segment = segmentFor(hash);
+    synchronized (segment) {
+      int slot = segment.indexOf(entry, hash);
+      return slot < 0 ? -1 : segment.ordinals[slot];
+    }
+  }
+
+  /**
+   * Returns the entry with an ordinal, or null if the ordinal is free.
+   */
+  RegionEntry getEntry(int ordinal) {
+    AtomicReferenceArray<RegionEntry>[] chunks = this.entryChunks;
+    int chunk = ordinal >>> CHUNK_BITS;
+    if (chunk >= chunks.length || chunks[chunk] == null) {
+      return null;
+    }
+    return chunks[chunk].get(ordinal & CHUNK_MASK);
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : this.segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  private static int hash(RegionEntry entry) {
+    int h = System.identityHashCode(entry);
+    return h ^ (h >>> 16);
+  }
+
+  private Segment segmentFor(int hash) {
+    return this.segments[(hash * 0x9E3779B9) >>> (32 - SEGMENT_BITS)];
+  }
+
+  private void setEntry(int ordinal, RegionEntry entry) {
+    this.entryChunks[ordinal >>> CHUNK_BITS].set(ordinal & CHUNK_MASK, entry);
+  }
+
+  /**
+   * Takes an ordinal from the free list, or a new one if the list is empty.
+   * The chunks for a new ordinal are created before it is returned.
+   */
+  private int allocateOrdinal() {
+    for (;;) {
+      long head = this.freeHead.get();
+      int first = (int) head - 1;
+      if (first < 0) {
+        return newOrdinal();
+      }
+      int next = this.nextFreeChunks[first >>> CHUNK_BITS].get(first & CHUNK_MASK);
+      if (this.freeHead.compareAndSet(head, nextFreeHead(head, next))) {
+        return first;
+      }
+    }
+  }
+
+  private void freeOrdinal(int ordinal) {
+    AtomicIntegerArray nextFree = this.nextFreeChunks[ordinal >>> CHUNK_BITS];
+    for (;;) {
+      long head = this.freeHead.get();
+      nextFree.set(ordinal & CHUNK_MASK, (int) head - 1);
+      if (this.freeHead.compareAndSet(head, nextFreeHead(head, ordinal))) {
+        return;
+      }
+    }
+  }
+
+  private static long nextFreeHead(long head, int first) {
+    long stamp = (head >>> 32) + 1;
+    return (stamp << 32) | ((first + 1) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns a never used ordinal. Only growing the chunk directories is
+   * done under a lock, once per CHUNK_SIZE ordinals.
+   */
+  private synchronized int newOrdinal() {
+    int ordinal = this.nextOrdinal++;
+    int chunk = ordinal >>> CHUNK_BITS;
+    AtomicReferenceArray<RegionEntry>[] chunks = this.entryChunks;
+    if (chunk == chunks.length) {
+      AtomicReferenceArray<RegionEntry>[] newChunks = newEntryChunks(chunks.length * 2);
+      System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+      this.nextFreeChunks = Arrays.copyOf(this.nextFreeChunks, chunks.length * 2);
+      chunks = newChunks;
+    }
+    if (chunks[chunk] == null) {
+      chunks[chunk] = new AtomicReferenceArray<RegionEntry>(CHUNK_SIZE);
+      this.nextFreeChunks[chunk] = new AtomicIntegerArray(CHUNK_SIZE);
+    }
+    // publishes the new chunks
+    this.entryChunks = chunks;
+    return ordinal;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AtomicReferenceArray<RegionEntry>[] newEntryChunks(int length) {
+    return new AtomicReferenceArray[length];
+  }
+
+  /**
+   * An open addressing table, with linear probing, from entry to its ordinal
+   * and reference count. Guarded by its own monitor.
+   */
+  private static final class Segment {
+
+    RegionEntry[] entries = new RegionEntry[4];
+
+    int[] ordinals = new int[4];
+
+    int[] references = new int[4];
+
+    int size;
+
+    int indexOf(RegionEntry entry, int hash) {
+      int mask = this.entries.length - 1;
+      for (int i = hash & mask;; i = (i + 1) & mask) {
+        RegionEntry e = this.entries[i];
+        if (e == entry) {
+          return i;
+        }
+        if (e == null) {
+          return -1;
+        }
+      }
+    }
+
+    void insert(RegionEntry entry, int hash, int ordinal) {
+      if ((this.size + 1) * 2 > this.entries.length) {
+        resize(this.entries.length * 2);
+      }
+      int mask = this.entries.length - 1;
+      int i = hash & mask;
+      while (this.entries[i] != null) {
+        i = (i + 1) & mask;
+      }
+      this.entries[i] = entry;
+      this.ordinals[i] = ordinal;
+      this.references[i] = 1;
+      this.size++;
+    }
+
+    /**
+     * Removes the entry in a slot, moving back the entries that follow it
+     * so that no probe sequence is broken.
+     */
+    void removeAt(int slot) {
+      int mask = this.entries.length - 1;
+      int hole = slot;
+      for (int i = (slot + 1) & mask; this.entries[i] != null; i = (i + 1) & mask) {
+        int home = hash(this.entries[i]) & mask;
+        // move the entry unless its home slot is cyclically in (hole, i]
+        boolean inRange = hole <= i ? (home > hole && home <= i) : (home > hole || home <= i);
+        if (!inRange) {
+          this.entries[hole] = this.entries[i];
+          this.ordinals[hole] = this.ordinals[i];
+          this.references[hole] = this.references[i];
+          hole = i;
+        }
+      }
+      this.entries[hole] = null;
+      this.size--;
+    }
+
+    private void resize(int capacity) {
+      RegionEntry[] oldEntries = this.entries;
+      int[] oldOrdinals = this.ordinals;
+      int[] oldReferences = this.references;
+      this.entries = new RegionEntry[capacity];
+      this.ordinals = new int[capacity];
+      this.references = new int[capacity];
+      int mask = capacity - 1;
+      for (int j = 0; j < oldEntries.length; j++) {
+        RegionEntry entry = oldEntries[j];
+        if (entry != null) {
+          int i = hash(entry) & mask;
+          while (this.entries[i] != null) {
+            i = (i + 1) & mask;
+          }
+          this.entries[i] = entry;
+          this.ordinals[i] = oldOrdinals[j];
+          this.references[i] = oldReferences[j];
+        }
+      }
+    }
+  }
+}
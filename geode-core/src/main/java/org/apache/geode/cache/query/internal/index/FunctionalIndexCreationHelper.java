@@ -71,6 +71,8 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
   QRegion region;
   String []  multiIndexKeysPattern ;
   Object [] mapKeys;
+  /** The canonicalized expressions of a composite index, null otherwise */
+  private String[] componentExpressions;
   /**
    * Asif : The Iterators for index creation are different then those which are
    * used for index updates as in case of Index creation the 0th iterator is
@@ -92,6 +94,8 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
   CompiledValue modifiedIndexExpr = null;
   boolean isFirstIteratorRegionEntry = false;
   boolean isFirstIteratorRegionKey = false;
+  /** The name of the first iterator as written in the from clause */
+  String firstIteratorName = null;
   final String imports;
 
   //TODO: Asif Remove the fromClause being passed as parameter to the
@@ -132,8 +136,73 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
   public Region getRegion() {
     return region.getRegion();
   }
-  
-  @Override
+
+  /**
+   * Returns the declared type of the indexed expression if it is a chain of
+   * public fields or getters on the values (or keys) of a region that has a
+   * value (or key) constraint, otherwise null.
+   */
+  Class getIndexedExpressionType() {
+    if (this.isMapTypeIndex || this.isFirstIteratorRegionEntry
+        || this.fromClauseIterators.size() != 1 || !(this.missingLink instanceof CompiledPath)) {
+      return null;
+    }
+    String tailId = ((CompiledPath)this.missingLink).getTailID();
+    Region rgn = getRegion();
+    Class type;
+    if (tailId.equals("value")) {
+      type = rgn.getAttributes().getValueConstraint();
+    } else if (tailId.equals("key")) {
+      type = rgn.getAttributes().getKeyConstraint();
+    } else {
+      return null;
+    }
+    List<String> attributes = new ArrayList<String>();
+    CompiledValue cv = this.indexedExpr;
+    while (cv instanceof CompiledPath) {
+      attributes.add(0, ((CompiledPath)cv).getTailID());
+      cv = ((CompiledPath)cv).getReceiver();
+    }
+    if (!(cv instanceof CompiledID)) {
+      return null;
+    }
+    String id = ((CompiledID)cv).getId();
+    if (!id.equals(this.firstIteratorName)) {
+      // an attribute of the implicit iterator
+      attributes.add(0, id);
+    }
+    for (String attribute : attributes) {
+      if (type == null) {
+        return null;
+      }
+      type = getAttributeType(type, attribute);
+    }
+    return type;
+  }
+
+  /**
+   * Returns the type of the public field or getter a query would use for
+   * the attribute, or null if there is none.
+   */
+  private static Class getAttributeType(Class type, String attribute) {
+    try {
+      return type.getField(attribute).getType();
+    } catch (NoSuchFieldException e) {
+      // try the methods
+    }
+    String beanMethod = "get" + attribute.substring(0, 1).toUpperCase() + attribute.substring(1);
+    try {
+      return type.getMethod(beanMethod).getReturnType();
+    } catch (NoSuchMethodException e) {
+      // try the attribute name as method name
+    }
+    try {
+      return type.getMethod(attribute).getReturnType();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
   boolean isMapTypeIndex() {
     return this.isMapTypeIndex; 
   } 
@@ -141,6 +210,22 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
   boolean isAllKeys() {
     return this.isAllKeys;
   }
+
+  /**
+   * Returns true if the indexed expression is a comma separated list of
+   * expressions, that is if a {@link CompositeIndex} is to be created.
+   */
+  boolean isCompositeIndex() {
+    return this.componentExpressions != null;
+  }
+
+  /**
+   * Returns the canonicalized component expressions of a composite index, or
+   * null if the index is not a composite index.
+   */
+  String[] getCanonicalizedComponentExpressions() {
+    return this.componentExpressions;
+  }
   
  
   
@@ -205,6 +290,7 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
             // index_internal_id
             name = this.canonicalizedIteratorNames[i];
           }
+          this.firstIteratorName = name;
           CompiledValue newCollExpr = new CompiledPath(
               new CompiledBindArgument(1), "entries");
           //TODO Asif : What if cv is not an instance of CompiledRegion
@@ -440,6 +526,11 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
    */
   private void prepareIndexExpression(String indexedExpression)
       throws IndexInvalidException {
+    List<String> components = splitIndexedExpression(indexedExpression);
+    if (components.size() > 1) {
+      prepareCompositeIndexExpression(indexedExpression, components);
+      return;
+    }
     CompiledValue expr = this.compiler.compileQuery(indexedExpression);
     //List indexedExprs = this.compiler.compileProjectionAttributes(indexedExpression);
     if (expr == null  ) {
@@ -515,6 +606,83 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
     indexedExpr = expr;
   }
 
+  /**
+   * Prepares the indexed expression of a composite index. Each component is
+   * compiled, canonicalized and modified for index initialization on its own,
+   * and the results are combined into a {@link CompositeIndexExpression}.
+   */
+  private void prepareCompositeIndexExpression(String indexedExpression,
+      List<String> components) throws IndexInvalidException {
+    int size = components.size();
+    CompiledValue[] exprs = new CompiledValue[size];
+    CompiledValue[] modifiedExprs = new CompiledValue[size];
+    String[] canonicalizedExprs = new String[size];
+    StringBuilder canonicalized = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      CompiledValue expr = this.compiler.compileQuery(components.get(i));
+      if (expr == null || expr instanceof CompiledUndefined
+          || expr instanceof CompiledLiteral
+          || expr instanceof CompiledComparison
+          || expr instanceof CompiledBindArgument
+          || expr instanceof CompiledNegation
+          || expr instanceof MapIndexable) {
+        throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_INDEXED_EXPRESSION_0.toLocalizedString(indexedExpression));
+      }
+      try {
+        StringBuffer sb = new StringBuffer();
+        expr.generateCanonicalizedExpression(sb, context);
+        canonicalizedExprs[i] = sb.toString();
+        modifiedExprs[i] = expr;
+        if (!this.isFirstIteratorRegionEntry
+            && canonicalizedExprs[i].indexOf(this.canonicalizedIteratorNames[0]) >= 0) {
+          modifiedExprs[i] = getModifiedDependentCompiledValue(context, -1,
+              expr, true);
+        }
+      }
+      catch (Exception e) {
+        throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_INDEXED_EXPRESSION_0.toLocalizedString(indexedExpression), e);
+      }
+      if (i > 0) {
+        canonicalized.append(", ");
+      }
+      canonicalized.append(canonicalizedExprs[i]);
+      exprs[i] = expr;
+    }
+    this.componentExpressions = canonicalizedExprs;
+    this.indexedExpression = canonicalized.toString();
+    this.indexedExpr = new CompositeIndexExpression(exprs);
+    this.modifiedIndexExpr = new CompositeIndexExpression(modifiedExprs);
+  }
+
+  /**
+   * Splits the indexed expression at the commas which are not nested in
+   * parentheses, brackets or string literals.
+   */
+  static List<String> splitIndexedExpression(String indexedExpression) {
+    List<String> components = new ArrayList<String>();
+    int depth = 0;
+    boolean inLiteral = false;
+    int start = 0;
+    for (int i = 0; i < indexedExpression.length(); i++) {
+      char c = indexedExpression.charAt(i);
+      if (c == '\'') {
+        // a quote inside a literal is escaped by doubling it which toggles twice
+        inLiteral = !inLiteral;
+      } else if (inLiteral) {
+        continue;
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        components.add(indexedExpression.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    components.add(indexedExpression.substring(start).trim());
+    return components;
+  }
+
   private void prepareProjectionAttributes(String projectionAttributes)
       throws IndexInvalidException {
     if (projectionAttributes != null && !projectionAttributes.equals("*")) { throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_PROJECTION_ATTRIBUTES_0.toLocalizedString(projectionAttributes)); }
@@ -68,6 +68,8 @@ public class IndexManager  {
   //TODO Asif : Fix the appropriate size of the Map & the concurrency level
   private ConcurrentMap canonicalizedIteratorNameMap = new ConcurrentHashMap();
   private IndexUpdaterThread updater;
+  /** The numbering of the region entries shared by the bitmap indexes */
+  private EntryOrdinals entryOrdinals;
 
   // Threshold for Queue.
   private final int INDEX_MAINTENANCE_BUFFER = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "AsynchIndexMaintenanceThreshold", -1).intValue();
@@ -274,6 +276,17 @@ public class IndexManager  {
         //Asif: For now support Map index as non compact .expand later
         //The limitation for compact range index also apply to hash index for now
         isCompactOrHash = shouldCreateCompactIndex((FunctionalIndexCreationHelper)helper);
+        if (((FunctionalIndexCreationHelper)helper).isCompositeIndex()
+            && (indexType != IndexType.FUNCTIONAL || !isCompactOrHash)) {
+          throw new UnsupportedOperationException("A composite index must be a functional index "
+              + "on paths of a single iterator over a region with synchronous index maintenance: "
+              + origIndexedExpression);
+        }
+        if (indexType == IndexType.BITMAP && (!isCompactOrHash || helper.isMapTypeIndex())) {
+          throw new UnsupportedOperationException("A bitmap index must be on a path of a single "
+              + "iterator over a region with synchronous index maintenance: "
+              + origIndexedExpression);
+        }
       } else if (indexType == IndexType.PRIMARY_KEY) {
         helper = new PrimaryKeyIndexCreationHelper(origFromClause,
             origIndexedExpression, projectionAttributes, region.getCache(),
@@ -378,6 +391,7 @@ public class IndexManager  {
         }
       }
       assert (index != null);
+      invalidateQueryPlans();
       if (logger.isDebugEnabled()) {
         logger.debug("Completed creating index with indexName: {} On region: {}", indexName, region.getFullPath());
       }
@@ -417,6 +431,20 @@ public class IndexManager  {
       return false;
     } 
     
+    if (helper.isCompositeIndex()) {
+      // every component has to be a path on its own
+      for (CompiledValue component : ((CompositeIndexExpression)helper.getCompiledIndexedExpression()).getComponents()) {
+        while (component.getType() == CompiledValue.PATH) {
+          component = ((CompiledPath)component).getReceiver();
+        }
+        if (component.getType() != OQLLexerTokenTypes.Identifier
+            && component.getType() != OQLLexerTokenTypes.METHOD_INV) {
+          return false;
+        }
+      }
+      return isCompactIndexFromClause(helper);
+    }
+
     // indexedExpression requirement
     CompiledValue cv = helper.getCompiledIndexedExpression();
     int nodeType;
@@ -440,7 +468,10 @@ public class IndexManager  {
         return false;
       }
     } 
-    
+    return isCompactIndexFromClause(helper);
+  }
+
+  private boolean isCompactIndexFromClause(FunctionalIndexCreationHelper helper) {
     // fromClause requirement
     List iterators = helper.getIterators();
     if (iterators.size() != 1) {
@@ -475,6 +506,7 @@ public class IndexManager  {
   public void addIndex(String indexName, Index index) {
     IndexTask indexTask = new IndexTask(indexName);
     this.indexes.put(indexTask, index);
+    invalidateQueryPlans();
   }
 
   /**
@@ -703,6 +735,68 @@ public class IndexManager  {
         bestIndexMatchLevel, bestMapping) : null;
   }
 
+  /**
+   * Returns the populated composite indexes whose from clause matches the
+   * given iterator definitions exactly. Unlike
+   * {@link #getBestMatchIndex(IndexType, String[], CompiledValue, ExecutionContext)}
+   * the indexes are not read-locked, the caller locks the one it uses with
+   * {@link #acquireIndexForQuery(IndexProtocol, ExecutionContext)}.
+   *
+   * @param definitions String array containing the canonicalized definitions
+   *          of the Iterators of the Group
+   */
+  public List<IndexData> getCompositeIndexes(String[] definitions) {
+    List<IndexData> result = null;
+    for (Object ind : this.indexes.values()) {
+      // the index is in create phase or still empty
+      if (ind instanceof FutureTask || !((AbstractIndex)ind).isPopulated()) {
+        continue;
+      }
+      Index index = (Index)ind;
+      if (index instanceof PartitionedIndex) {
+        // one of the bucket indexes stands for all of them
+        index = ((PartitionedIndex)index).getBucketIndex();
+      }
+      if (!(index instanceof CompositeIndex)) {
+        continue;
+      }
+      int[] mapping = new int[definitions.length];
+      if (getMatchLevel(definitions, ((IndexProtocol)index).getCanonicalizedIteratorDefinitions(), mapping) == 0) {
+        if (result == null) {
+          result = new ArrayList<IndexData>(2);
+        }
+        result.add(new IndexData((IndexProtocol)index, 0, mapping));
+      }
+    }
+    return result == null ? Collections.<IndexData>emptyList() : result;
+  }
+
+  /**
+   * Read-locks an index against removal for the duration of a query, the way
+   * {@link #getBestMatchIndex(IndexType, String[], CompiledValue, ExecutionContext)}
+   * locks the index it returns. For a bucket index the partitioned index is
+   * locked and has to be available on all the buckets of the query.
+   *
+   * @return false if the index is being removed or is missing on some bucket
+   */
+  public static boolean acquireIndexForQuery(IndexProtocol index, ExecutionContext context) {
+    PartitionedIndex prIndex = (PartitionedIndex)((AbstractIndex)index).getPRIndex();
+    if (prIndex == null) {
+      return ((AbstractIndex)index).acquireIndexReadLockForRemove();
+    }
+    if (!prIndex.acquireIndexReadLockForRemove()) {
+      return false;
+    }
+    try {
+      prIndex.verifyAndCreateMissingIndex(context.getBucketList());
+    } catch (Exception ex) {
+      // Index is not there on all buckets.
+      prIndex.releaseIndexReadLockForRemove();
+      return false;
+    }
+    return true;
+  }
+
   /*
    * Asif : This function returns the best match index. The crietria used to
    * identify best match index is based currently , relative to the query from
@@ -816,6 +910,7 @@ public class IndexManager  {
     if (this.indexes.remove(indexTask) != null) {
       AbstractIndex indexHandle = (AbstractIndex) index;
       indexHandle.destroy();
+      invalidateQueryPlans();
     }
   }
 
@@ -839,8 +934,22 @@ public class IndexManager  {
       IndexTask indexTask = (IndexTask)entry.getKey();
       this.indexes.remove(indexTask);
     }
+    if (numIndexes > 0) {
+      invalidateQueryPlans();
+    }
     return numIndexes;
   }
+
+  /**
+   * Makes the cached query plans stale after the indexes changed.
+   * Bucket indexes come and go with the buckets and are covered by the
+   * index manager of their partitioned region.
+   */
+  private void invalidateQueryPlans() {
+    if (!(this.region instanceof BucketRegion)) {
+      ((GemFireCacheImpl)this.region.getCache()).getQueryPlanCache().invalidate();
+    }
+  }
   
 
   /**
@@ -1192,7 +1301,8 @@ public class IndexManager  {
           continue;
         }
         IndexProtocol index = (IndexProtocol) ind;
-        if (index.getType() == IndexType.FUNCTIONAL || index.getType() == IndexType.HASH) {
+        if (index.getType() == IndexType.FUNCTIONAL || index.getType() == IndexType.HASH
+            || index.getType() == IndexType.BITMAP) {
           AbstractIndex aIndex = ((AbstractIndex) index);
           start = ((AbstractIndex) index).updateIndexUpdateStats();
           ((AbstractIndex) index).recreateIndexData();
@@ -1348,6 +1458,17 @@ public class IndexManager  {
     return ++this.iternameCounter;
   }
 
+  /**
+   * Returns the entry ordinals of this region, creating them for the first
+   * bitmap index.
+   */
+  synchronized EntryOrdinals getEntryOrdinals() {
+    if (this.entryOrdinals == null) {
+      this.entryOrdinals = new EntryOrdinals();
+    }
+    return this.entryOrdinals;
+  }
+
   /**
    * Asif : Given a definition returns the canonicalized iterator name for the
    * definition. If the definition does not exist , null is returned
@@ -1587,7 +1708,21 @@ public class IndexManager  {
       else {
         //boolean isCompact = !helper.isMapTypeIndex() && shouldCreateCompactIndex((FunctionalIndexCreationHelper)helper);
         if (this.isCompactOrHash || this.isLDM) {
-          if (indexType == IndexType.FUNCTIONAL && !helper.isMapTypeIndex()) {
+          if (indexType == IndexType.FUNCTIONAL && helper instanceof FunctionalIndexCreationHelper
+              && ((FunctionalIndexCreationHelper)helper).isCompositeIndex()) {
+            index = new CompositeIndex(indexName, region, fromClause,
+                indexedExpression, projectionAttributes, origFromClause,
+                origIndexedExpression, definitions,
+                ((FunctionalIndexCreationHelper)helper).getCanonicalizedComponentExpressions(), stats);
+            logger.info("Using Composite index implementation for '{}' on region {}", indexName, region.getFullPath());
+          }
+          else if (indexType == IndexType.BITMAP) {
+            index = new BitmapIndex(indexName, region, fromClause,
+                indexedExpression, projectionAttributes, origFromClause,
+                origIndexedExpression, definitions, stats);
+            logger.info("Using Bitmap index implementation for '{}' on region {}", indexName, region.getFullPath());
+          }
+          else if (indexType == IndexType.FUNCTIONAL && !helper.isMapTypeIndex()) {
             index = new CompactRangeIndex(indexName, region, fromClause,
                 indexedExpression,  projectionAttributes, origFromClause,
                 origIndexedExpression, definitions, stats);
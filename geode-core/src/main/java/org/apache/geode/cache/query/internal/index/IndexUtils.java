@@ -111,6 +111,16 @@ public class IndexUtils  {
         indxData = qs.getBestMatchIndex(regionpath, defintions,
             IndexType.FUNCTIONAL, indexedExpression, context);
       }
+      //If FUNCTIONAL Index not found search for BITMAP Index
+      if (indxData == null || !indxData._index.isValid()) {
+        if (useOnlyExactIndexs) {
+          indxData = qs.getIndex(regionpath, defintions, IndexType.BITMAP,
+              indexedExpression, context);
+        } else {
+          indxData = qs.getBestMatchIndex(regionpath, defintions,
+              IndexType.BITMAP, indexedExpression, context);
+        }
+      }
     }
     else {
       //if exact PRIMARY_KEY Index not found then try to find exact FUNCTIONAL
@@ -16,8 +16,8 @@
  */
 package org.apache.geode.cache.query.internal.index;
 
-import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -142,8 +142,7 @@ public class MemoryIndexStore implements IndexStore {
       }
       do {
         retry = false;
-        Object regionEntries = this.valueToEntriesMap
-            .putIfAbsent(newKey, entry);
+        Object regionEntries = putEntriesIfAbsent(newKey, entry);
         if (regionEntries == TRANSITIONING_TOKEN) {
           retry = true;
           continue;
@@ -158,7 +157,7 @@ public class MemoryIndexStore implements IndexStore {
           }
           elemArray.add(regionEntries);
           elemArray.add(entry);
-          if (!this.valueToEntriesMap.replace(newKey, regionEntries, elemArray)) {
+          if (!replaceEntries(newKey, regionEntries, elemArray)) {
             retry = true;
           } 
           if (DefaultQuery.testHook != null) {
@@ -167,14 +166,15 @@ public class MemoryIndexStore implements IndexStore {
           if (DefaultQuery.testHook != null) {
             DefaultQuery.testHook.doTestHook("COMPLETE_TRANSITION_FROM_REGION_ENTRY_TO_ELEMARRAY");
           }
-        } else if (regionEntries instanceof IndexConcurrentHashSet) {
+        } else if (!(regionEntries instanceof IndexElemArray)) {
+          // An IndexConcurrentHashSet or the collection of a subclass.
           // This synchronized is for avoiding conflcts with remove of
           // ConcurrentHashSet when set size becomes zero during
           // basicRemoveMapping();
           synchronized (regionEntries) {
-            ((IndexConcurrentHashSet) regionEntries).add(entry);
+            ((Collection) regionEntries).add(entry);
           }
-          if (regionEntries != this.valueToEntriesMap.get(newKey)) {
+          if (regionEntries != getEntries(newKey)) {
             retry = true;
           }
         } else {
@@ -193,7 +193,7 @@ public class MemoryIndexStore implements IndexStore {
               //at this point, that is why we need to replace before adding the elem array elements
               //once we put this set into the forward map, we know any future removes are either captured
               //by our instance of the elem array, or the remove operations will need to do a retry?
-              if (!this.valueToEntriesMap.replace(newKey, regionEntries, TRANSITIONING_TOKEN)) {
+              if (!replaceEntries(newKey, regionEntries, TRANSITIONING_TOKEN)) {
                 retry = true;
               }
               else {
@@ -202,7 +202,7 @@ public class MemoryIndexStore implements IndexStore {
                 }
                 set.add(entry);
                 set.addAll(elemArray);
-                if (!this.valueToEntriesMap.replace(newKey, TRANSITIONING_TOKEN, set)) {
+                if (!replaceEntries(newKey, TRANSITIONING_TOKEN, set)) {
                   //This should never happen.  If we see this in the log, then something is wrong with the TRANSITIONING TOKEN and synchronization of changing collection types
                   //we should then just go from RE to CHS and completely remove the Elem Array.
                   region.getCache().getLogger().warning("Unable to transition from index elem to concurrent hash set.  Index needs to be recreated");
@@ -214,7 +214,7 @@ public class MemoryIndexStore implements IndexStore {
               }
             } else {
               elemArray.add(entry);
-              if (regionEntries != this.valueToEntriesMap.get(newKey)) {
+              if (regionEntries != getEntries(newKey)) {
                 retry = true;
               }
             }
@@ -254,9 +254,9 @@ public class MemoryIndexStore implements IndexStore {
    */
   private Object getOldKey(Object newKey, RegionEntry entry)
       throws TypeMismatchException {
-    for (Object mapEntry : valueToEntriesMap.entrySet()) {
-      Object regionEntries = ((SimpleImmutableEntry) mapEntry).getValue();
-      Object indexKey = ((SimpleImmutableEntry) mapEntry).getKey();
+    for (Map.Entry mapEntry : entries(null, true, null, true, false)) {
+      Object regionEntries = mapEntry.getValue();
+      Object indexKey = mapEntry.getKey();
       // if more than one index key maps to the same RegionEntry that
       // means there has been an in-place modification
       if (TypeUtils.compare(indexKey, newKey, CompiledComparison.TOK_NE)
@@ -305,7 +305,7 @@ public class MemoryIndexStore implements IndexStore {
       }
       do {
         retry = false;
-        Object regionEntries = this.valueToEntriesMap.get(newKey);
+        Object regionEntries = getEntries(newKey);
         if (regionEntries == TRANSITIONING_TOKEN) {
           if (DefaultQuery.testHook != null) {
             DefaultQuery.testHook.doTestHook("ATTEMPT_RETRY");
@@ -317,7 +317,7 @@ public class MemoryIndexStore implements IndexStore {
           if (regionEntries instanceof RegionEntry) {
             found = (regionEntries == entry);
             if (found) {
-              if (this.valueToEntriesMap.remove(newKey, regionEntries)) {
+              if (removeEntries(newKey, regionEntries)) {
                 numIndexKeys.decrementAndGet();
                 internalIndexStats.incNumKeys(-1);
               } else {
@@ -338,7 +338,7 @@ public class MemoryIndexStore implements IndexStore {
             // If the remove occured before changing to a set, then next time it will not be "found"
             // However the end effect would be that it was removed
             if (entries instanceof IndexElemArray) {
-              if (!this.valueToEntriesMap.replace(newKey, entries, entries)) {
+              if (!replaceEntries(newKey, entries, entries)) {
                 retry = true;
                 possiblyAlreadyRemoved = found;
                 continue;
@@ -350,7 +350,7 @@ public class MemoryIndexStore implements IndexStore {
               // value
               synchronized(entries) {
                 if (entries.isEmpty()) {
-                  if (valueToEntriesMap.remove(newKey, entries)) {
+                  if (removeEntries(newKey, entries)) {
                     numIndexKeys.decrementAndGet();
                     internalIndexStats.incNumKeys(-1);
                   }
@@ -417,61 +417,104 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
     return (Collection) regionEntries;
   }*/
 
+  /**
+   * Returns the value mapped to an index key: a RegionEntry, a collection
+   * of RegionEntries or the transitioning token.
+   */
+  protected Object getEntries(Object indexKey) {
+    return this.valueToEntriesMap.get(indexKey);
+  }
+
+  protected Object putEntriesIfAbsent(Object indexKey, Object entries) {
+    return this.valueToEntriesMap.putIfAbsent(indexKey, entries);
+  }
+
+  protected boolean replaceEntries(Object indexKey, Object oldEntries, Object newEntries) {
+    return this.valueToEntriesMap.replace(indexKey, oldEntries, newEntries);
+  }
+
+  protected boolean removeEntries(Object indexKey, Object entries) {
+    return this.valueToEntriesMap.remove(indexKey, entries);
+  }
+
+  /**
+   * Returns the index key to entries mappings between start and end in key
+   * order. A null start or end leaves that side of the range open.
+   */
+  protected Iterable<Map.Entry> entries(Object start, boolean startInclusive,
+      Object end, boolean endInclusive, boolean descending) {
+    ConcurrentNavigableMap map;
+    if (start == null) {
+      map = end == null ? this.valueToEntriesMap
+          : this.valueToEntriesMap.headMap(end, endInclusive);
+    } else if (end == null) {
+      map = this.valueToEntriesMap.tailMap(start, startInclusive);
+    } else {
+      map = this.valueToEntriesMap.subMap(start, startInclusive, end, endInclusive);
+    }
+    if (descending) {
+      map = map.descendingMap();
+    }
+    return map.entrySet();
+  }
+
+  /**
+   * Returns an iterator over a collection of entries that all map to one
+   * index key, for the subclasses looking up the entries some other way.
+   */
+  CloseableIterator<IndexStoreEntry> iterator(Object indexKey,
+      Collection regionEntries, long iteratorStartTime) {
+    Iterable entries = Collections.singletonMap(indexKey, regionEntries).entrySet();
+    return new MemoryIndexStoreIterator(entries, indexKey, null, iteratorStartTime);
+  }
+
   @Override
   public CloseableIterator<IndexStoreEntry> get(Object indexKey) {
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap
-            .subMap(indexKey, true, indexKey, true), indexKey, null);
+    return new MemoryIndexStoreIterator(entries(indexKey, true, indexKey, true, false),
+        indexKey, null);
   }
 
   @Override
   public CloseableIterator<IndexStoreEntry> iterator(Object start,
       boolean startInclusive, Object end, boolean endInclusive,
       Collection keysToRemove) {
-    if (start == null) {
-      return new MemoryIndexStoreIterator(this.valueToEntriesMap
-          .headMap(end, endInclusive),
-          null, keysToRemove);
-    }
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap
-        .subMap(start, startInclusive, end, endInclusive), null, keysToRemove);
+    return new MemoryIndexStoreIterator(entries(start, startInclusive, end,
+        endInclusive, false), null, keysToRemove);
   }
 
   @Override
   public CloseableIterator<IndexStoreEntry> iterator(Object start,
       boolean startInclusive, Collection keysToRemove) {
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap
-        .tailMap(start, startInclusive), null, keysToRemove);
+    return new MemoryIndexStoreIterator(entries(start, startInclusive, null,
+        true, false), null, keysToRemove);
   }
 
   @Override
   public CloseableIterator<IndexStoreEntry> iterator(Collection keysToRemove) {
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap, null, keysToRemove);
+    return new MemoryIndexStoreIterator(entries(null, true, null, true, false),
+        null, keysToRemove);
   }
 
   @Override
   public CloseableIterator<IndexStoreEntry> descendingIterator(Object start,
       boolean startInclusive, Object end, boolean endInclusive,
       Collection keysToRemove) {
-    if (start == null) {
-      return new MemoryIndexStoreIterator(this.valueToEntriesMap
-          .headMap(end, endInclusive).descendingMap(), null, keysToRemove);
-    }
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap
-        .subMap(start, startInclusive, end, endInclusive).descendingMap(), null, keysToRemove);
+    return new MemoryIndexStoreIterator(entries(start, startInclusive, end,
+        endInclusive, true), null, keysToRemove);
   }
 
   @Override
   public CloseableIterator<IndexStoreEntry> descendingIterator(Object start,
       boolean startInclusive, Collection keysToRemove) {
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap
-        .tailMap(start, startInclusive).descendingMap(), null, keysToRemove);
+    return new MemoryIndexStoreIterator(entries(start, startInclusive, null,
+        true, true), null, keysToRemove);
   }
 
   @Override
   public CloseableIterator<IndexStoreEntry> descendingIterator(
       Collection keysToRemove) {
-    return new MemoryIndexStoreIterator(this.valueToEntriesMap
-        .descendingMap(), null, keysToRemove);
+    return new MemoryIndexStoreIterator(entries(null, true, null, true, true),
+        null, keysToRemove);
   }
 
   @Override
@@ -574,7 +617,7 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
 
   @Override
   public int size(Object key) {
-    Object obj = valueToEntriesMap.get(key);
+    Object obj = getEntries(key);
     if (obj != null) {
       return (obj instanceof RegionEntry) ? 1 : ((Collection) obj).size();
     } else {
@@ -595,7 +638,7 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
    */
   private class MemoryIndexStoreIterator implements
       CloseableIterator<IndexStoreEntry> {
-    final Map map;
+    final Iterable<Map.Entry> entries;
     Object indexKey;
     Collection keysToRemove;
 
@@ -606,14 +649,14 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
     final long iteratorStartTime;
     protected MemoryIndexStoreEntry currentEntry;
     
-    private MemoryIndexStoreIterator(Map submap,
+    private MemoryIndexStoreIterator(Iterable<Map.Entry> entries,
                                      Object indexKey, Collection keysToRemove) {
-      this (submap, indexKey, keysToRemove, GemFireCacheImpl.getInstance().cacheTimeMillis());
+      this (entries, indexKey, keysToRemove, GemFireCacheImpl.getInstance().cacheTimeMillis());
     }
     
-    private MemoryIndexStoreIterator(Map submap,
+    private MemoryIndexStoreIterator(Iterable<Map.Entry> entries,
             Object indexKey, Collection keysToRemove, long iteratorStartTime) {
-		this.map = submap;
+		this.entries = entries;
 		this.indexKey = indexKey;
 		this.keysToRemove = keysToRemove == null? null : new HashSet(keysToRemove);
 		this.iteratorStartTime = iteratorStartTime;
@@ -636,7 +679,7 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
       }
       // sets the next values iterator
       if (mapIterator == null) {
-        mapIterator = map.entrySet().iterator();
+        mapIterator = entries.iterator();
       }
       if (mapIterator.hasNext()) {
         // set the next entry in the map as current
@@ -720,7 +763,7 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
   
   public String printAll() {
     StringBuffer sb = new StringBuffer();
-    Iterator iterator = this.valueToEntriesMap.entrySet().iterator();
+    Iterator iterator = entries(null, true, null, true, false).iterator();
     while (iterator.hasNext()) {
       Map.Entry mapEntry = (Map.Entry)iterator.next();
       sb.append("Key: " + mapEntry.getKey());
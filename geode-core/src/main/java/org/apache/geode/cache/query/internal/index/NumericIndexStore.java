@@ -0,0 +1,513 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.internal.NullToken;
+import org.apache.geode.cache.query.internal.Undefined;
+import org.apache.geode.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import org.apache.geode.cache.query.internal.types.TypeUtils;
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.util.concurrent.ConcurrentLongSkipListMap;
+
+/**
+ * An in-memory index storage for indexed expressions whose declared type is
+ * an integral number or a date. The index keys are kept as primitive
+ * <code>long</code>s in a {@link ConcurrentLongSkipListMap}, so they are
+ * neither boxed in the index nor compared through a comparator.
+ * <p>
+ * Keys that do not have the expected class, like
+ * {@link org.apache.geode.cache.query.QueryService#UNDEFINED},
+ * {@link IndexManager#NULL} or a subclass of the declared date type,
+ * are kept in the map inherited from {@link MemoryIndexStore}. Scans merge
+ * both maps whenever the inherited one has keys in the scanned range.
+ *
+ * @since Geode 1.1
+ */
+public class NumericIndexStore extends MemoryIndexStore {
+
+  /**
+   * Set to true to use {@link MemoryIndexStore} for all compact range indexes.
+   */
+  public static final boolean DISABLED = Boolean.getBoolean(
+      DistributionConfig.GEMFIRE_PREFIX + "index.disableNumericIndexStore");
+
+  static final int NONE = 0;
+  static final int INTEGER = 1;
+  static final int LONG = 2;
+  static final int DATE = 3;
+  static final int SQL_DATE = 4;
+  static final int SQL_TIME = 5;
+
+  private static final double TWO_POW_63 = 9.223372036854775808E18;
+
+  private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+
+  private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+  /**
+   * Map for the index keys of the expected class => RegionEntries
+   */
+  private final ConcurrentLongSkipListMap keyToEntriesMap = new ConcurrentLongSkipListMap();
+
+  private final int keyKind;
+
+  private final Comparator comparator = TypeUtils.getExtendedNumericComparator();
+
+  public NumericIndexStore(Region region, InternalIndexStatistics internalIndexStats, int keyKind) {
+    super(region, internalIndexStats);
+    this.keyKind = keyKind;
+  }
+
+  /**
+   * Returns the kind of index keys produced by an indexed expression of the
+   * given declared type, or {@link #NONE} if this store can not hold them.
+   */
+  static int getKeyKind(Class type) {
+    if (type == null) {
+      return NONE;
+    }
+    // bytes and shorts are turned into integers by TypeUtils.indexKeyFor
+    if (type == int.class || type == Integer.class || type == short.class
+        || type == Short.class || type == byte.class || type == Byte.class) {
+      return INTEGER;
+    }
+    if (type == long.class || type == Long.class) {
+      return LONG;
+    }
+    if (type == java.util.Date.class) {
+      return DATE;
+    }
+    if (type == java.sql.Date.class) {
+      return SQL_DATE;
+    }
+    if (type == java.sql.Time.class) {
+      return SQL_TIME;
+    }
+    return NONE;
+  }
+
+  /**
+   * Returns true if the index key is kept in the primitive map.
+   */
+  private boolean isPrimitiveKey(Object indexKey) {
+    Class c = indexKey.getClass();
+    switch (this.keyKind) {
+      case INTEGER:
+        return c == Integer.class;
+      case LONG:
+        return c == Long.class;
+      case DATE:
+        return c == java.util.Date.class;
+      case SQL_DATE:
+        return c == java.sql.Date.class;
+      case SQL_TIME:
+        return c == java.sql.Time.class;
+      default:
+        return false;
+    }
+  }
+
+  private boolean isDateKind() {
+    return this.keyKind >= DATE;
+  }
+
+  /**
+   * Converts a key of any class that compares with the index keys.
+   *
+   * @throws ClassCastException if the key does not compare with the index keys
+   */
+  private long toLong(Object key) {
+    if (isDateKind()) {
+      if (key instanceof java.util.Date) {
+        return ((java.util.Date)key).getTime();
+      }
+    } else if (key instanceof Number) {
+      return ((Number)key).longValue();
+    }
+    throw new ClassCastException(key.getClass().getName()
+        + " can not be compared with the keys of this index");
+  }
+
+  private Object toIndexKey(long key) {
+    switch (this.keyKind) {
+      case INTEGER:
+        return Integer.valueOf((int)key);
+      case LONG:
+        return Long.valueOf(key);
+      case DATE:
+        return new java.util.Date(key);
+      case SQL_DATE:
+        return new java.sql.Date(key);
+      default:
+        return new java.sql.Time(key);
+    }
+  }
+
+  private static boolean isToken(Object key) {
+    return key instanceof Undefined || key instanceof NullToken;
+  }
+
+  private static boolean isFloatingPoint(Object key) {
+    return key instanceof Double || key instanceof Float;
+  }
+
+  /**
+   * Returns the value of a BigDecimal or BigInteger key, or null for other
+   * keys, which convert to a long without losing their value.
+   */
+  private static BigDecimal toBigDecimal(Object key) {
+    if (key instanceof BigDecimal) {
+      return (BigDecimal)key;
+    }
+    if (key instanceof BigInteger) {
+      return new BigDecimal((BigInteger)key);
+    }
+    return null;
+  }
+
+  @Override
+  protected Object getEntries(Object indexKey) {
+    if (isPrimitiveKey(indexKey)) {
+      return this.keyToEntriesMap.get(toLong(indexKey));
+    }
+    return super.getEntries(indexKey);
+  }
+
+  @Override
+  protected Object putEntriesIfAbsent(Object indexKey, Object entries) {
+    if (isPrimitiveKey(indexKey)) {
+      return this.keyToEntriesMap.putIfAbsent(toLong(indexKey), entries);
+    }
+    return super.putEntriesIfAbsent(indexKey, entries);
+  }
+
+  @Override
+  protected boolean replaceEntries(Object indexKey, Object oldEntries, Object newEntries) {
+    if (isPrimitiveKey(indexKey)) {
+      return this.keyToEntriesMap.replace(toLong(indexKey), oldEntries, newEntries);
+    }
+    return super.replaceEntries(indexKey, oldEntries, newEntries);
+  }
+
+  @Override
+  protected boolean removeEntries(Object indexKey, Object entries) {
+    if (isPrimitiveKey(indexKey)) {
+      return this.keyToEntriesMap.remove(toLong(indexKey), entries);
+    }
+    return super.removeEntries(indexKey, entries);
+  }
+
+  @Override
+  protected Iterable<Map.Entry> entries(Object start, boolean startInclusive,
+      Object end, boolean endInclusive, final boolean descending) {
+    Iterable<Map.Entry> others = null;
+    if (!this.valueToEntriesMap.isEmpty()) {
+      others = super.entries(start, startInclusive, end, endInclusive, descending);
+      if (!others.iterator().hasNext()) {
+        others = null;
+      }
+    }
+    final KeyRange range = new KeyRange();
+    if (start != null) {
+      range.setLower(start, startInclusive);
+    }
+    if (end != null) {
+      range.setUpper(end, endInclusive);
+    }
+    if (range.isEmpty()) {
+      return others == null ? Collections.<Map.Entry>emptyList() : others;
+    }
+    Iterable<Map.Entry> primitives = new Iterable<Map.Entry>() {
+      @Override
+      public Iterator<Map.Entry> iterator() {
+        return new PrimitiveEntryIterator(keyToEntriesMap.iterator(range.lo, range.hi, descending));
+      }
+    };
+    if (others == null) {
+      return primitives;
+    }
+    final Iterable<Map.Entry> merged = others;
+    final Iterable<Map.Entry> first = primitives;
+    return new Iterable<Map.Entry>() {
+      @Override
+      public Iterator<Map.Entry> iterator() {
+        return new MergedEntryIterator(first.iterator(), merged.iterator(), descending);
+      }
+    };
+  }
+
+  @Override
+  public int size(Object key) {
+    int size = 0;
+    for (Map.Entry entry : entries(key, true, key, true, false)) {
+      Object obj = entry.getValue();
+      size += (obj instanceof RegionEntry) ? 1 : ((Collection)obj).size();
+    }
+    return size;
+  }
+
+  @Override
+  public boolean clear() {
+    super.clear();
+    this.keyToEntriesMap.clear();
+    return true;
+  }
+
+  /**
+   * The inclusive primitive bounds of a range of index keys.
+   */
+  private class KeyRange {
+    long lo = Long.MIN_VALUE;
+    long hi = Long.MAX_VALUE;
+    boolean empty = false;
+
+    boolean isEmpty() {
+      return this.empty || this.lo > this.hi;
+    }
+
+    void setLower(Object key, boolean inclusive) {
+      if (isToken(key)) {
+        // every index key is greater than the tokens
+        return;
+      }
+      long l;
+      if (isFloatingPoint(key) && !isDateKind()) {
+        double d = ((Number)key).doubleValue();
+        // NaN is greater than all the numbers
+        if (Double.isNaN(d) || d >= TWO_POW_63) {
+          this.empty = true;
+          return;
+        }
+        if (d < -TWO_POW_63) {
+          return;
+        }
+        double c = Math.ceil(d);
+        l = (long)c;
+        if (c != d) {
+          inclusive = true;
+        }
+      } else if (!isDateKind() && toBigDecimal(key) != null) {
+        BigDecimal d = toBigDecimal(key);
+        BigDecimal c = d.setScale(0, RoundingMode.CEILING);
+        if (c.compareTo(LONG_MAX) > 0) {
+          this.empty = true;
+          return;
+        }
+        if (c.compareTo(LONG_MIN) < 0) {
+          return;
+        }
+        l = c.longValue();
+        if (c.compareTo(d) != 0) {
+          inclusive = true;
+        }
+      } else {
+        l = toLong(key);
+      }
+      if (!inclusive) {
+        if (l == Long.MAX_VALUE) {
+          this.empty = true;
+          return;
+        }
+        l++;
+      }
+      this.lo = Math.max(this.lo, l);
+    }
+
+    void setUpper(Object key, boolean inclusive) {
+      if (isToken(key)) {
+        this.empty = true;
+        return;
+      }
+      long l;
+      if (isFloatingPoint(key) && !isDateKind()) {
+        double d = ((Number)key).doubleValue();
+        if (Double.isNaN(d) || d >= TWO_POW_63) {
+          return;
+        }
+        if (d < -TWO_POW_63) {
+          this.empty = true;
+          return;
+        }
+        double f = Math.floor(d);
+        l = (long)f;
+        if (f != d) {
+          inclusive = true;
+        }
+      } else if (!isDateKind() && toBigDecimal(key) != null) {
+        BigDecimal d = toBigDecimal(key);
+        BigDecimal f = d.setScale(0, RoundingMode.FLOOR);
+        if (f.compareTo(LONG_MAX) > 0) {
+          return;
+        }
+        if (f.compareTo(LONG_MIN) < 0) {
+          this.empty = true;
+          return;
+        }
+        l = f.longValue();
+        if (f.compareTo(d) != 0) {
+          inclusive = true;
+        }
+      } else {
+        l = toLong(key);
+      }
+      if (!inclusive) {
+        if (l == Long.MIN_VALUE) {
+          this.empty = true;
+          return;
+        }
+        l--;
+      }
+      this.hi = Math.min(this.hi, l);
+    }
+  }
+
+  /**
+   * Adapts the primitive map iterator to the map entries used by
+   * {@link MemoryIndexStore}. The same entry is returned by every call to
+   * next, so it is only valid until the iterator advances again, which is how
+   * the scans of the index store use it.
+   */
+  private class PrimitiveEntryIterator implements Iterator<Map.Entry>, Map.Entry {
+    private final ConcurrentLongSkipListMap.EntryIterator iterator;
+    private Object key;
+
+    PrimitiveEntryIterator(ConcurrentLongSkipListMap.EntryIterator iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.iterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry next() {
+      this.iterator.next();
+      this.key = null;
+      return this;
+    }
+
+    @Override
+    public void remove() {
+      this.iterator.remove();
+    }
+
+    @Override
+    public Object getKey() {
+      if (this.key == null) {
+        this.key = toIndexKey(this.iterator.key());
+      }
+      return this.key;
+    }
+
+    @Override
+    public Object getValue() {
+      return this.iterator.value();
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Merges the ordered entries of the primitive map with those of the
+   * inherited map. An entry is removed through the iterator that returned
+   * it, which has not advanced since unless hasNext had to look ahead on it.
+   */
+  private class MergedEntryIterator implements Iterator<Map.Entry> {
+    private final Iterator<Map.Entry> primitives;
+    private final Iterator<Map.Entry> others;
+    private final boolean descending;
+    private Map.Entry nextPrimitive;
+    private Map.Entry nextOther;
+    private Iterator<Map.Entry> lastReturnedFrom;
+
+    MergedEntryIterator(Iterator<Map.Entry> primitives, Iterator<Map.Entry> others,
+        boolean descending) {
+      this.primitives = primitives;
+      this.others = others;
+      this.descending = descending;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (this.nextPrimitive == null && this.primitives.hasNext()) {
+        this.nextPrimitive = this.primitives.next();
+        if (this.lastReturnedFrom == this.primitives) {
+          this.lastReturnedFrom = null;
+        }
+      }
+      if (this.nextOther == null && this.others.hasNext()) {
+        this.nextOther = this.others.next();
+        if (this.lastReturnedFrom == this.others) {
+          this.lastReturnedFrom = null;
+        }
+      }
+      return this.nextPrimitive != null || this.nextOther != null;
+    }
+
+    @Override
+    public Map.Entry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry result;
+      boolean takePrimitive;
+      if (this.nextOther == null) {
+        takePrimitive = true;
+      } else if (this.nextPrimitive == null) {
+        takePrimitive = false;
+      } else {
+        int c = comparator.compare(this.nextPrimitive.getKey(), this.nextOther.getKey());
+        takePrimitive = this.descending ? c >= 0 : c <= 0;
+      }
+      if (takePrimitive) {
+        result = this.nextPrimitive;
+        this.nextPrimitive = null;
+        this.lastReturnedFrom = this.primitives;
+      } else {
+        result = this.nextOther;
+        this.nextOther = null;
+        this.lastReturnedFrom = this.others;
+      }
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      if (this.lastReturnedFrom == null) {
+        throw new IllegalStateException();
+      }
+      this.lastReturnedFrom.remove();
+      this.lastReturnedFrom = null;
+    }
+  }
+}
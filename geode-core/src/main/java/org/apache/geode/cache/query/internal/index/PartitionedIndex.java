@@ -103,6 +103,11 @@ public class PartitionedIndex extends AbstractIndex
             LocalizedStrings.DefaultQueryService_HASH_INDEX_CREATION_IS_NOT_SUPPORTED_FOR_ASYNC_MAINTENANCE
                 .toLocalizedString());
       }
+    } else if (iType == IndexType.BITMAP) {
+      if (!getRegion().getAttributes().getIndexMaintenanceSynchronous()) {
+        throw new UnsupportedOperationException("A bitmap index must be on a path of a single "
+            + "iterator over a region with synchronous index maintenance: " + indexedExpression);
+      }
     }
   }
 
@@ -17,6 +17,7 @@
 package org.apache.geode.cache.util;
 
 import org.apache.geode.cache.EvictionAttributes;
+import org.apache.geode.internal.size.CachedLayoutObjectSizer;
 import org.apache.geode.internal.size.ReflectionObjectSizer;
 import org.apache.geode.internal.size.SizeClassOnceObjectSizer;
 
@@ -68,6 +69,20 @@ public interface ObjectSizer {
    * @since GemFire 6.5
    */
   public static final ObjectSizer REFLECTION_SIZE = ReflectionObjectSizer.getInstance();
+
+  /**
+   * An implementation of {@link ObjectSizer} that calculates the same size as
+   * {@link #REFLECTION_SIZE} for each object that it sizes, but only uses
+   * reflection the first time it sees a class.
+   * 
+   * The shallow size and the reference fields of each class are remembered,
+   * so sizing an object after that just follows its references. Byte arrays
+   * and serialized PDX values are sized from their lengths. Use this sizer
+   * for values that vary in size when {@link #REFLECTION_SIZE} is too slow.
+   * 
+   * @since Geode 1.1
+   */
+  public static final ObjectSizer CACHED_LAYOUT_SIZE = CachedLayoutObjectSizer.getInstance();
   
   
   /**
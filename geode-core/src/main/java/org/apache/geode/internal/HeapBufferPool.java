@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal;
+
+import java.nio.ByteBuffer;
+
+import org.apache.geode.distributed.internal.DistributionConfig;
+
+/**
+ * A per-thread pool of heap ByteBuffers used as chunks by pooled
+ * {@link HeapDataOutputStream}s. Each thread retains at most
+ * {@link #MAX_RETAINED_BUFFERS} buffers, none larger than
+ * {@link #MAX_RETAINED_SIZE}, so the memory kept alive by the pool is bounded.
+ * <p>
+ * A buffer obtained with {@link #acquire(int)} is owned by the caller until it
+ * is given back with {@link #release(ByteBuffer)}. A buffer may be released on a
+ * different thread than the one that acquired it; it then simply joins the
+ * releasing thread's pool. Once released a buffer must not be referenced again.
+ *
+ * @since Geode 1.1
+ */
+public final class HeapBufferPool {
+
+  /**
+   * Set the "gemfire.HeapBufferPool.DISABLED" system property to true to have
+   * pooled streams allocate every chunk from the heap.
+   */
+  public static final boolean DISABLED = Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "HeapBufferPool.DISABLED");
+
+  /**
+   * The maximum number of buffers retained by each thread.
+   */
+  public static final int MAX_RETAINED_BUFFERS = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "HeapBufferPool.MAX_RETAINED_BUFFERS", 8);
+
+  /**
+   * Buffers with a capacity larger than this are never retained.
+   */
+  public static final int MAX_RETAINED_SIZE = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "HeapBufferPool.MAX_RETAINED_SIZE", 64 * 1024);
+
+  private static final ThreadLocal<ThreadBuffers> threadBuffers = new ThreadLocal<ThreadBuffers>() {
+    @Override
+    protected ThreadBuffers initialValue() {
+      return new ThreadBuffers();
+    }
+  };
+
+  private HeapBufferPool() {
+    // no instances
+  }
+
+  /**
+   * Returns a cleared heap buffer whose capacity is at least <code>size</code>.
+   * A retained buffer is reused if one is big enough; otherwise a new one is
+   * allocated.
+   */
+  public static ByteBuffer acquire(int size) {
+    if (DISABLED || size > MAX_RETAINED_SIZE) {
+      return ByteBuffer.allocate(size);
+    }
+    return threadBuffers.get().acquire(size);
+  }
+
+  /**
+   * Gives ownership of <code>bb</code> back to the pool. The buffer is dropped
+   * if it is too large or the calling thread's pool is already full.
+   */
+  public static void release(ByteBuffer bb) {
+    if (DISABLED || bb == null || bb.isDirect() || bb.isReadOnly() || bb.capacity() > MAX_RETAINED_SIZE) {
+      return;
+    }
+    threadBuffers.get().release(bb);
+  }
+
+  /**
+   * Returns the number of buffers the calling thread had to allocate because
+   * no retained buffer was big enough.
+   */
+  public static long getThreadAllocations() {
+    return threadBuffers.get().allocations;
+  }
+
+  /**
+   * Returns the number of acquires by the calling thread that were satisfied
+   * with a retained buffer.
+   */
+  public static long getThreadReuses() {
+    return threadBuffers.get().reuses;
+  }
+
+  /**
+   * Returns the number of buffers currently retained by the calling thread.
+   */
+  public static int getThreadRetainedCount() {
+    return threadBuffers.get().count;
+  }
+
+  /**
+   * Drops all the buffers retained by the calling thread.
+   */
+  public static void clearThreadBuffers() {
+    ThreadBuffers tb = threadBuffers.get();
+    for (int i = 0; i < tb.count; i++) {
+      tb.buffers[i] = null;
+    }
+    tb.count = 0;
+  }
+
+  /**
+   * The buffers retained by one thread. Only accessed by its owning thread so
+   * no synchronization is needed.
+   */
+  private static final class ThreadBuffers {
+    private final ByteBuffer[] buffers = new ByteBuffer[MAX_RETAINED_BUFFERS];
+    private int count;
+    private long allocations;
+    private long reuses;
+
+    ByteBuffer acquire(int size) {
+      // pick the smallest retained buffer that is big enough
+      int best = -1;
+      for (int i = 0; i < this.count; i++) {
+        int cap = this.buffers[i].capacity();
+        if (cap >= size && (best == -1 || cap < this.buffers[best].capacity())) {
+          best = i;
+        }
+      }
+      if (best == -1) {
+        this.allocations++;
+        return ByteBuffer.allocate(size);
+      }
+      ByteBuffer result = this.buffers[best];
+      this.count--;
+      this.buffers[best] = this.buffers[this.count];
+      this.buffers[this.count] = null;
+      this.reuses++;
+      result.clear();
+      return result;
+    }
+
+    void release(ByteBuffer bb) {
+      if (this.count < this.buffers.length) {
+        this.buffers[this.count++] = bb;
+        return;
+      }
+      // full; keep the larger buffer since it can satisfy more requests
+      int smallest = 0;
+      for (int i = 1; i < this.count; i++) {
+        if (this.buffers[i].capacity() < this.buffers[smallest].capacity()) {
+          smallest = i;
+        }
+      }
+      if (this.buffers[smallest].capacity() < bb.capacity()) {
+        this.buffers[smallest] = bb;
+      }
+    }
+  }
+}
@@ -28,6 +28,7 @@ import java.io.*;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 
@@ -71,6 +72,11 @@ public class HeapDataOutputStream extends OutputStream implements
   private int memoPosition;
   private Version version;
   private boolean doNotCopy;
+  /**
+   * The buffers this stream acquired from {@link HeapBufferPool}.
+   * Null if this stream is not pooled.
+   */
+  private ArrayList<ByteBuffer> pooledBuffers;
 
   private static final int INITIAL_CAPACITY = 1024;
   
@@ -103,12 +109,28 @@ public class HeapDataOutputStream extends OutputStream implements
    * be copied to this hdos but instead referenced.
    */
   public HeapDataOutputStream(int allocSize, Version version, boolean doNotCopy) {
+    this(allocSize, version, doNotCopy, false);
+  }
+
+  /**
+   * @param doNotCopy if true then byte arrays/buffers/sources will not
+   * be copied to this hdos but instead referenced.
+   * @param pooled if true then the buffers used by this hdos are obtained from
+   * {@link HeapBufferPool} and given back to it when this hdos is closed.
+   * The contents of a pooled hdos must not be referenced after it is closed;
+   * {@link #toByteArray()} only copies the bytes when they are held in a
+   * pooled buffer and otherwise returns the existing array.
+   */
+  public HeapDataOutputStream(int allocSize, Version version, boolean doNotCopy, boolean pooled) {
     if (allocSize < 32) {
       this.MIN_CHUNK_SIZE = 32;
     } else {
       this.MIN_CHUNK_SIZE = allocSize;
     }
-    this.buffer = ByteBuffer.allocate(allocSize);
+    if (pooled) {
+      this.pooledBuffers = new ArrayList<ByteBuffer>(2);
+    }
+    this.buffer = allocateBuffer(allocSize);
     this.version = version;
     this.doNotCopy = doNotCopy;
   }
@@ -216,7 +238,69 @@ public class HeapDataOutputStream extends OutputStream implements
     if (amount < MIN_CHUNK_SIZE) {
       amount = MIN_CHUNK_SIZE;
     }
-    this.buffer = ByteBuffer.allocate(amount);
+    this.buffer = allocateBuffer(amount);
+  }
+
+  /**
+   * Allocates a buffer to write into, taking it from the pool if this
+   * stream is pooled.
+   */
+  private ByteBuffer allocateBuffer(int capacity) {
+    if (this.pooledBuffers == null) {
+      return ByteBuffer.allocate(capacity);
+    }
+    ByteBuffer result = HeapBufferPool.acquire(capacity);
+    this.pooledBuffers.add(result);
+    return result;
+  }
+
+  /**
+   * Returns true if the given array belongs to a buffer this stream
+   * acquired from the pool and must therefore not escape it.
+   */
+  private boolean isPooledArray(byte[] array) {
+    if (this.pooledBuffers != null) {
+      for (ByteBuffer bb: this.pooledBuffers) {
+        if (bb.array() == array) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gives all the buffers acquired by this stream back to the pool.
+   */
+  private void releasePooledBuffers() {
+    if (this.pooledBuffers != null && !this.pooledBuffers.isEmpty()) {
+      for (ByteBuffer bb: this.pooledBuffers) {
+        HeapBufferPool.release(bb);
+      }
+      this.pooledBuffers.clear();
+    }
+  }
+
+  /**
+   * Gives back to the pool the buffers that no longer back the current buffer.
+   */
+  private void releaseUnusedPooledBuffers() {
+    final byte[] current = this.buffer.hasArray() ? this.buffer.array() : null;
+    Iterator<ByteBuffer> it = this.pooledBuffers.iterator();
+    while (it.hasNext()) {
+      ByteBuffer bb = it.next();
+      if (bb.array() != current) {
+        HeapBufferPool.release(bb);
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns true if this stream obtains its buffers from {@link HeapBufferPool}.
+   */
+  public boolean isPooled() {
+    return this.pooledBuffers != null;
   }
 
   private final void checkIfWritable() {
@@ -300,7 +384,7 @@ public class HeapDataOutputStream extends OutputStream implements
     this.chunks.add(bufToAdd);
     int newPos = oldBuffer.limit();
     if ((oldBuffer.capacity() - newPos) <= 0) {
-      this.buffer = ByteBuffer.allocate(MIN_CHUNK_SIZE);
+      this.buffer = allocateBuffer(MIN_CHUNK_SIZE);
     } else {
       oldBuffer.limit(oldBuffer.capacity());
       oldBuffer.position(newPos);
@@ -369,6 +453,9 @@ public class HeapDataOutputStream extends OutputStream implements
     if (this.chunks != null) {
       this.chunks.clear();
       this.chunks = null;
+      if (this.pooledBuffers != null) {
+        releaseUnusedPooledBuffers();
+      }
     }
     this.buffer.clear();
     this.writeMode = true;
@@ -410,11 +497,21 @@ public class HeapDataOutputStream extends OutputStream implements
     }
   }
   
+  /**
+   * Resets this stream. If this stream is pooled then all of its buffers
+   * are given back to the pool; writing to it again acquires new ones.
+   */
   @Override
   public void close() {
     reset();
+    if (this.pooledBuffers != null && !this.pooledBuffers.isEmpty()) {
+      releasePooledBuffers();
+      this.buffer = EMPTY_BUFFER;
+    }
   }
 
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
   /** gets the contents of this stream as s ByteBuffer, ready for reading.
    * The stream should not be written to past this point until it has been reset.
    */
@@ -429,7 +526,7 @@ public class HeapDataOutputStream extends OutputStream implements
   public final byte[] toByteArray() {
     ByteBuffer bb = toByteBuffer();
     if (bb.hasArray() && bb.arrayOffset() == 0
-        && bb.limit() == bb.capacity()) {
+        && bb.limit() == bb.capacity() && !isPooledArray(bb.array())) {
       return bb.array();
     } else {
       // create a new buffer of just the right size and copy the old buffer into it
@@ -457,7 +554,7 @@ public class HeapDataOutputStream extends OutputStream implements
   //Asif
   public void sendTo(BytesAndBitsForCompactor wrapper, byte userBits) {
     ByteBuffer bb = toByteBuffer();
-    if (bb.hasArray() && bb.arrayOffset() == 0) {
+    if (bb.hasArray() && bb.arrayOffset() == 0 && !isPooledArray(bb.array())) {
       wrapper.setData(bb.array(), userBits, bb.limit(), true /* is Reusable */);
     }
     else {
@@ -39,6 +39,7 @@ import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -2619,6 +2620,22 @@ public abstract class InternalDataSerializer extends DataSerializer implements D
       out.writeInt(len);
     }
   }
+  /**
+   * Writes <code>bytes</code> in the same format as
+   * {@link DataSerializer#writeByteArray(byte[], DataOutput)}.
+   * The caller promises that <code>bytes</code> will never be modified,
+   * which lets a {@link ByteBufferWriter} reference the array instead of
+   * copying it. Used for the serialized form of cached values.
+   */
+  public static void writeImmutableByteArray(byte[] bytes, DataOutput out)
+    throws IOException {
+    if (bytes != null && bytes.length > 0 && out instanceof ByteBufferWriter) {
+      writeArrayLength(bytes.length, out);
+      ((ByteBufferWriter)out).write(ByteBuffer.wrap(bytes));
+    } else {
+      DataSerializer.writeByteArray(bytes, out);
+    }
+  }
   public static int readArrayLength(DataInput in)
     throws IOException {
     byte code = in.readByte();
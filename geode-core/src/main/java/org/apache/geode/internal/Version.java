@@ -63,7 +63,7 @@ public final class Version implements Comparable<Version> {
   /** byte used as ordinal to represent this <code>Version</code> */
   private final short ordinal;
 
-  public static final int HIGHEST_VERSION = 45;
+  public static final int HIGHEST_VERSION = 50;
 
   private static final Version[] VALUES = new Version[HIGHEST_VERSION+1];
 
@@ -185,11 +185,18 @@ public final class Version implements Comparable<Version> {
   public static final Version GFE_90 = new Version("GFE", "9.0", (byte)9,
       (byte)0, (byte)0, (byte)0, GFE_90_ORDINAL);
 
+  // 46-49 available for 9.0.x variants
+
+  private static final byte GEODE_110_ORDINAL = 50;
+
+  public static final Version GEODE_110 = new Version("GEODE", "1.1.0", (byte)1,
+      (byte)1, (byte)0, (byte)0, GEODE_110_ORDINAL);
+
   /**
    * This constant must be set to the most current version of the product.
    * !!! NOTE: update HIGHEST_VERSION when changing CURRENT !!!
    */
-  public static final Version CURRENT = GFE_90;
+  public static final Version CURRENT = GEODE_110;
 
   /**
    * A lot of versioning code needs access to the current version's ordinal
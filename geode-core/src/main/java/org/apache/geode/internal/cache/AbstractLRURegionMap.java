@@ -28,7 +28,9 @@ import org.apache.geode.cache.EvictionAction;
 import org.apache.geode.cache.EvictionAlgorithm;
 import org.apache.geode.cache.RegionDestroyedException;
 import org.apache.geode.internal.Assert;
+import org.apache.geode.internal.cache.control.HeapMemoryMonitor;
 import org.apache.geode.internal.cache.control.InternalResourceManager;
+import org.apache.geode.internal.cache.control.OffHeapMemoryMonitor;
 import org.apache.geode.internal.cache.lru.EnableLRU;
 import org.apache.geode.internal.cache.lru.HeapEvictor;
 import org.apache.geode.internal.cache.lru.HeapLRUCapacityController;
@@ -38,6 +40,8 @@ import org.apache.geode.internal.cache.lru.LRUStatistics;
 import org.apache.geode.internal.cache.lru.MemLRUCapacityController;
 import org.apache.geode.internal.cache.lru.NewLIFOClockHand;
 import org.apache.geode.internal.cache.lru.NewLRUClockHand;
+import org.apache.geode.internal.cache.lru.StripedLRUClockHand;
+import org.apache.geode.internal.cache.lru.TinyLFUClockHand;
 import org.apache.geode.internal.cache.versions.RegionVersionVector;
 import org.apache.geode.internal.cache.versions.VersionSource;
 import org.apache.geode.internal.i18n.LocalizedStrings;
@@ -88,7 +92,7 @@ public abstract class AbstractLRURegionMap extends AbstractRegionMap {
     }
     this.evictionController = ec;
     
-    if (ea.isLRUMemory())  {
+    if (ea.isLRUMemory() || ea == EvictionAlgorithm.LFU_MEMORY)  {
       ((MemLRUCapacityController) ec).setEntryOverHead(getEntryOverHead()); 
     }
     if (ea.isLRUHeap())  {
@@ -103,6 +107,13 @@ public abstract class AbstractLRURegionMap extends AbstractRegionMap {
     if (ea == EvictionAlgorithm.LIFO_ENTRY || ea == EvictionAlgorithm.LIFO_MEMORY ) {
       _setLruList(new NewLIFOClockHand(owner, _getCCHelper(), internalRegionArgs));
     }
+    else if (ea.isLFU()) {
+      _setLruList(new TinyLFUClockHand(owner, _getCCHelper(), internalRegionArgs));
+    }
+    else if (StripedLRUClockHand.STRIPES > 1) {
+      _setLruList(new StripedLRUClockHand(owner, _getCCHelper(), internalRegionArgs,
+          StripedLRUClockHand.STRIPES));
+    }
     else {
       _setLruList(new NewLRUClockHand(owner, _getCCHelper(), internalRegionArgs));
     }
@@ -567,9 +578,11 @@ public abstract class AbstractLRURegionMap extends AbstractRegionMap {
     
     final boolean monitorStateIsEviction;
     if (!owner.getAttributes().getOffHeap()) {
-      monitorStateIsEviction = resourceManager.getHeapMonitor().getState().isEviction();
+      HeapMemoryMonitor heapMonitor = resourceManager.getHeapMonitor();
+      monitorStateIsEviction = heapMonitor.getState().isEviction() || heapMonitor.isEvictingAhead();
     } else {
-      monitorStateIsEviction = resourceManager.getOffHeapMonitor().getState().isEviction();
+      OffHeapMemoryMonitor offHeapMonitor = resourceManager.getOffHeapMonitor();
+      monitorStateIsEviction = offHeapMonitor.getState().isEviction() || offHeapMonitor.isEvictingAhead();
     }
     
     return monitorStateIsEviction && this.sizeInVM() > 0;
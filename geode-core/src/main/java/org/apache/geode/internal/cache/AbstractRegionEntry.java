@@ -1167,7 +1167,17 @@ public abstract class AbstractRegionEntry implements RegionEntry,
     return k.equals(getKey());
   }
 
-  private static final long LAST_MODIFIED_MASK = 0x00FFFFFFFFFFFFFFL;
+  /*
+   * The bits below the flags and above the lastModified time hold the slot of
+   * the EntryExpirationWheel this entry is scheduled in, plus one.
+   * Forty four bits of milliseconds last until the year 2527.
+   */
+  private static final int EXPIRY_SLOT_SHIFT = 44;
+  private static final long EXPIRY_SLOT_MASK = 0xFFFL << EXPIRY_SLOT_SHIFT;
+  /** the largest value {@link #getExpirySlot} can return */
+  static final int MAX_EXPIRY_SLOT = 0xFFF;
+
+  private static final long LAST_MODIFIED_MASK = 0x00000FFFFFFFFFFFL;
 
   protected final void _setLastModified(long lastModifiedTime) {
     if (lastModifiedTime < 0 || lastModifiedTime > LAST_MODIFIED_MASK) {
@@ -1186,6 +1196,28 @@ public abstract class AbstractRegionEntry implements RegionEntry,
   public final long getLastModified() {
     return getlastModifiedField() & LAST_MODIFIED_MASK;
   }
+  /**
+   * Returns the expiration wheel slot of this entry, zero if it is not
+   * scheduled in an {@link EntryExpirationWheel}.
+   */
+  final int getExpirySlot() {
+    return (int) ((getlastModifiedField() & EXPIRY_SLOT_MASK) >>> EXPIRY_SLOT_SHIFT);
+  }
+  /**
+   * Sets the expiration wheel slot of this entry if it is currently
+   * <code>expectedSlot</code>.
+   */
+  final boolean compareAndSetExpirySlot(int expectedSlot, int newSlot) {
+    long bits;
+    do {
+      bits = getlastModifiedField();
+      if ((int) ((bits & EXPIRY_SLOT_MASK) >>> EXPIRY_SLOT_SHIFT) != expectedSlot) {
+        return false;
+      }
+    } while (!compareAndSetLastModifiedField(bits,
+        (bits & ~EXPIRY_SLOT_MASK) | ((long) newSlot << EXPIRY_SLOT_SHIFT)));
+    return true;
+  }
   protected final boolean areAnyBitsSet(long bitMask) {
     return ( getlastModifiedField() & bitMask ) != 0L;
   }
@@ -58,6 +58,7 @@ import org.apache.geode.internal.util.concurrent.CustomEntryConcurrentHashMap;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -74,7 +75,7 @@ public abstract class AbstractRegionMap implements RegionMap {
   private static final Logger logger = LogService.getLogger();
   
   /** The underlying map for this region. */
-  protected CustomEntryConcurrentHashMap<Object, Object> map;
+  protected ConcurrentMap<Object, Object> map;
 
   /**
    * This test hook is used to force the conditions for defect 48182.
@@ -125,7 +126,7 @@ public abstract class AbstractRegionMap implements RegionMap {
     setEntryFactory(new RegionEntryFactoryBuilder().getRegionEntryFactoryOrNull(attr.statisticsEnabled,isLRU,isDisk,withVersioning,offHeap));
   }
 
-  protected CustomEntryConcurrentHashMap<Object, Object> createConcurrentMap(
+  protected ConcurrentMap<Object, Object> createConcurrentMap(
       int initialCapacity, float loadFactor, int concurrencyLevel,
       boolean isIdentityMap,
       CustomEntryConcurrentHashMap.HashEntryCreator<Object, Object> entryCreator) {
@@ -179,14 +180,26 @@ public abstract class AbstractRegionMap implements RegionMap {
     this.owner = r;
   }
   
-  protected final CustomEntryConcurrentHashMap<Object, Object> _getMap() {
+  protected final ConcurrentMap<Object, Object> _getMap() {
     return this.map;
   }
 
-  protected final void _setMap(CustomEntryConcurrentHashMap<Object, Object> m) {
+  protected final void _setMap(ConcurrentMap<Object, Object> m) {
     this.map = m;
   }
 
+  /**
+   * Returns the entries of the underlying map. If the map supports it the
+   * iterator reuses a single <code>Map.Entry</code>, so the entries must not
+   * be kept after moving to the next one.
+   */
+  final Set<Map.Entry<Object, Object>> _getEntrySetWithReusableEntries() {
+    if (this.map instanceof CustomEntryConcurrentHashMap) {
+      return ((CustomEntryConcurrentHashMap<Object, Object>)this.map).entrySetWithReusableEntries();
+    }
+    return this.map.entrySet();
+  }
+
   public int size()
   {
     return _getMap().size();
@@ -549,9 +562,8 @@ public abstract class AbstractRegionMap implements RegionMap {
     //so that they will be in the correct order.
     OrderedTombstoneMap<RegionEntry> tombstones = new OrderedTombstoneMap<RegionEntry>();
     if (rm != null) {
-      CustomEntryConcurrentHashMap<Object, Object> other = ((AbstractRegionMap)rm)._getMap();
-      Iterator<Map.Entry<Object, Object>> it = other
-          .entrySetWithReusableEntries().iterator();
+      Iterator<Map.Entry<Object, Object>> it = ((AbstractRegionMap)rm)
+          ._getEntrySetWithReusableEntries().iterator();
       while (it.hasNext()) {
         Map.Entry<Object, Object> me = it.next();
         it.remove(); // This removes the RegionEntry from "rm" but it does not decrement its refcount to an offheap value.
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.logging.LogService;
+import org.apache.geode.internal.logging.LoggingThreadGroup;
+
+/**
+ * Creates or populates the indexes of the local buckets of a partitioned
+ * region on a bounded pool of threads. Every bucket has its own
+ * {@link org.apache.geode.cache.query.internal.index.IndexManager} and its
+ * own bucket indexes, so the buckets can be indexed independently of each
+ * other. The calling thread indexes buckets as well, which keeps a creation
+ * going when all the pool threads are busy with other regions.
+ * <p>
+ * The pool threads use the region initialization level of the calling
+ * thread, so the buckets still being recovered from disk are indexed the same
+ * way they would be by the calling thread. Progress is logged every tenth of
+ * the buckets.
+ *
+ * @since Geode 1.1
+ */
+class BucketIndexPopulator {
+
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The number of threads, including the calling one, that index the buckets
+   * of one region.
+   */
+  static final int NUM_THREADS = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "PartitionedRegion.indexCreationThreads",
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2)).intValue();
+
+  private static ExecutorService execService = null;
+
+  /**
+   * The work done for each local bucket.
+   */
+  interface BucketTask {
+    void run(BucketRegion bucket) throws Exception;
+  }
+
+  private final PartitionedRegion region;
+
+  private final String description;
+
+  private final List<BucketRegion> buckets;
+
+  private final BucketTask task;
+
+  private final int initLevel;
+
+  private final AtomicInteger nextBucket = new AtomicInteger();
+
+  private final AtomicInteger bucketsDone = new AtomicInteger();
+
+  private volatile Exception failure;
+
+  private BucketIndexPopulator(PartitionedRegion region, String description,
+      List<BucketRegion> buckets, BucketTask task) {
+    this.region = region;
+    this.description = description;
+    this.buckets = buckets;
+    this.task = task;
+    this.initLevel = LocalRegion.threadInitLevelRequirement();
+  }
+
+  /**
+   * Runs <code>task</code> for every local bucket of <code>region</code> and
+   * returns once all of them are done. After a task fails no more buckets
+   * are started and the first failure is thrown.
+   *
+   * @param description what is done to the buckets, for the progress log
+   */
+  static void execute(PartitionedRegion region, String description,
+      BucketTask task) throws Exception {
+    List<BucketRegion> buckets = new ArrayList<BucketRegion>();
+    for (Map.Entry<Integer, BucketRegion> entry : region.getDataStore().getAllLocalBuckets()) {
+      if (entry.getValue() != null) {
+        buckets.add(entry.getValue());
+      }
+    }
+    new BucketIndexPopulator(region, description, buckets, task).execute();
+  }
+
+  private void execute() throws Exception {
+    long start = System.currentTimeMillis();
+    List<Future<?>> helpers = new ArrayList<Future<?>>();
+    int numHelpers = Math.min(NUM_THREADS, this.buckets.size()) - 1;
+    if (numHelpers > 0) {
+      ExecutorService es = getExecutorService();
+      Runnable worker = new Runnable() {
+        public void run() {
+          indexBuckets();
+        }
+      };
+      for (int i = 0; i < numHelpers; i++) {
+        helpers.add(es.submit(worker));
+      }
+    }
+    indexBuckets();
+
+    boolean interrupted = false;
+    for (Future<?> helper : helpers) {
+      // helpers that have not started yet would find no bucket left
+      if (helper.cancel(false)) {
+        continue;
+      }
+      for (;;) {
+        try {
+          helper.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (CancellationException e) {
+          break;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Error) {
+            throw (Error)cause;
+          }
+          setFailure(cause instanceof Exception ? (Exception)cause : e);
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (this.failure != null) {
+      throw this.failure;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("{} on {} local buckets of region {} took {} ms using {} threads",
+          this.description, this.buckets.size(), this.region.getFullPath(),
+          System.currentTimeMillis() - start, numHelpers + 1);
+    }
+  }
+
+  private void indexBuckets() {
+    int oldLevel = LocalRegion.setThreadInitLevelRequirement(this.initLevel);
+    try {
+      while (this.failure == null) {
+        int index = this.nextBucket.getAndIncrement();
+        if (index >= this.buckets.size()) {
+          return;
+        }
+        try {
+          this.task.run(this.buckets.get(index));
+        } catch (Exception e) {
+          setFailure(e);
+          return;
+        }
+        reportProgress(this.bucketsDone.incrementAndGet());
+      }
+    } finally {
+      LocalRegion.setThreadInitLevelRequirement(oldLevel);
+    }
+  }
+
+  private synchronized void setFailure(Exception e) {
+    if (this.failure == null) {
+      this.failure = e;
+    }
+  }
+
+  private void reportProgress(int done) {
+    int total = this.buckets.size();
+    int step = Math.max(1, total / 10);
+    if (done % step == 0 || done == total) {
+      logger.info("{} on region {}: {} of {} local buckets done",
+          this.description, this.region.getFullPath(), done, total);
+    }
+  }
+
+  /**
+   * Closes the executor service. This is called from
+   * {@link PartitionedRegion#afterRegionsClosedByCacheClose(GemFireCacheImpl)}
+   */
+  static synchronized void shutdown() {
+    if (execService != null) {
+      execService.shutdown();
+    }
+  }
+
+  private static synchronized ExecutorService getExecutorService() {
+    if (execService == null || execService.isShutdown()
+        || execService.isTerminated()) {
+      final ThreadGroup grp = LoggingThreadGroup.createThreadGroup("Index Creation Threads", logger);
+      ThreadFactory tf = new ThreadFactory() {
+        private final AtomicInteger threadNum = new AtomicInteger();
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(grp, r, "Index Creation Thread " + threadNum.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      };
+      int numThreads = Math.max(1, NUM_THREADS - 1);
+      ThreadPoolExecutor tpe = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), tf);
+      tpe.allowCoreThreadTimeOut(true);
+      execService = tpe;
+    }
+    return execService;
+  }
+}
@@ -17,6 +17,8 @@
 
 package org.apache.geode.internal.cache;
 
+import java.util.function.IntSupplier;
+
 import org.apache.geode.*;
 import org.apache.geode.internal.*;
 import org.apache.geode.distributed.internal.PoolStatHelper;
@@ -78,6 +80,9 @@ public class CachePerfStats {
   protected final static int queryResultsHashCollisionsId;
   protected final static int queryResultsHashCollisionProbeTimeId;
   protected final static int partitionedRegionQueryRetriesId;
+  protected final static int queryPlanCacheHitsId;
+  protected final static int queryPlanCacheMissesId;
+  protected final static int hitPercentageId;
 
   protected static final int txSuccessLifeTimeId;
   protected static final int txFailedLifeTimeId;
@@ -132,6 +137,8 @@ public class CachePerfStats {
   protected static final int tombstoneGCCountId;
   protected static final int tombstoneOverhead1Id;
   protected static final int tombstoneOverhead2Id;
+  protected static final int tombstoneGCLag1Id;
+  protected static final int tombstoneGCLag2Id;
   protected static final int clearTimeoutsId;
   
   protected static final int deltaUpdatesId;
@@ -210,6 +217,9 @@ public class CachePerfStats {
     final String queryResultsHashCollisionsDesc= "Total number of times an hash code collision occurred when inserting an object into an OQL result set or rehashing it";
     final String queryResultsHashCollisionProbeTimeDesc= "Total time spent probing the hashtable in an OQL result set due to hash code collisions, includes reads, writes, and rehashes";
     final String partitionedRegionOQLQueryRetriesDesc = "Total number of times an OQL Query on a Partitioned Region had to be retried";
+    final String queryPlanCacheHitsDesc = "Total number of times a local query was created from a cached compiled query";
+    final String queryPlanCacheMissesDesc = "Total number of times a local query had to be compiled because it was not in the query plan cache";
+    final String hitPercentageDesc = "The percentage of gets that found their value in local memory, used to compare the effectiveness of eviction algorithms.";
     final String txSuccessLifeTimeDesc = "The total amount of time, in nanoseconds, spent in a transaction before a successful commit. The time measured starts at transaction begin and ends when commit is called.";
     final String txFailedLifeTimeDesc = "The total amount of time, in nanoseconds, spent in a transaction before a failed commit. The time measured starts at transaction begin and ends when commit is called.";
     final String txRollbackLifeTimeDesc = "The total amount of time, in nanoseconds, spent in a transaction before an explicit rollback. The time measured starts at transaction begin and ends when rollback is called.";
@@ -240,6 +250,8 @@ public class CachePerfStats {
     final String tombstoneGCCountDesc = "Number of garbage-collections performed on destroyed entries";
     final String tombstoneOverhead1Desc = "Amount of memory consumed by destroyed entries in replicated or partitioned regions";
     final String tombstoneOverhead2Desc = "Amount of memory consumed by destroyed entries in non-replicated regions";
+    final String tombstoneGCLag1Desc = "How long the oldest destroyed entry in replicated or partitioned regions has been kept past its expiration";
+    final String tombstoneGCLag2Desc = "How long the oldest destroyed entry in non-replicated regions has been kept past its expiration";
     final String clearTimeoutsDesc = "Number of timeouts waiting for events concurrent to a clear() operation to be received and applied before performing the clear()";
     final String deltaUpdatesDesc = "The total number of times entries in this cache are updated through delta bytes.";
     final String deltaUpdatesTimeDesc = "Total time spent applying the received delta bytes to entries in this cache.";
@@ -304,6 +316,7 @@ public class CachePerfStats {
         f.createIntCounter("invalidates", invalidatesDesc, "operations"), 
         f.createIntCounter("gets", getsDesc, "operations"), 
         f.createIntCounter("misses", missesDesc, "operations"), 
+        f.createIntGauge("hitPercentage", hitPercentageDesc, "percent"),
         f.createIntCounter("creates", createsDesc, "operations"), 
         f.createIntCounter("puts", putsDesc, "operations"), 
         f.createLongCounter("putTime", putTimeDesc, "nanoseconds", false), 
@@ -321,6 +334,8 @@ public class CachePerfStats {
         f.createIntCounter("queryResultsHashCollisions", queryResultsHashCollisionsDesc, "operations"),
         f.createLongCounter("queryResultsHashCollisionProbeTime", queryResultsHashCollisionProbeTimeDesc, "nanoseconds"),
         f.createLongCounter("partitionedRegionQueryRetries", partitionedRegionOQLQueryRetriesDesc, "retries"),
+        f.createLongCounter("queryPlanCacheHits", queryPlanCacheHitsDesc, "operations"),
+        f.createLongCounter("queryPlanCacheMisses", queryPlanCacheMissesDesc, "operations"),
 
         f.createIntCounter("txCommits", txCommitsDesc, "commits"), 
         f.createIntCounter("txCommitChanges", txCommitChangesDesc, "changes"), 
@@ -358,6 +373,8 @@ public class CachePerfStats {
         f.createIntCounter("tombstoneGCs", tombstoneGCCountDesc, "operations"),
         f.createLongGauge("replicatedTombstonesSize", tombstoneOverhead1Desc, "bytes"),
         f.createLongGauge("nonReplicatedTombstonesSize", tombstoneOverhead2Desc, "bytes"),
+        f.createLongGauge("replicatedTombstonesGCLag", tombstoneGCLag1Desc, "milliseconds"),
+        f.createLongGauge("nonReplicatedTombstonesGCLag", tombstoneGCLag2Desc, "milliseconds"),
         f.createIntCounter("clearTimeouts", clearTimeoutsDesc, "timeouts"),
         f.createIntGauge("evictorJobsStarted", "Number of evictor jobs started", "jobs"),
         f.createIntGauge("evictorJobsCompleted", "Number of evictor jobs completed", "jobs"),
@@ -437,6 +454,7 @@ public class CachePerfStats {
     getsId = type.nameToId("gets");
     getTimeId = type.nameToId("getTime");
     missesId = type.nameToId("misses");
+    hitPercentageId = type.nameToId("hitPercentage");
     eventQueueSizeId = type.nameToId("eventQueueSize");  
     eventQueueThrottleTimeId = type.nameToId("eventQueueThrottleTime");
     eventQueueThrottleCountId = type.nameToId("eventQueueThrottleCount");
@@ -446,6 +464,8 @@ public class CachePerfStats {
     queryResultsHashCollisionsId = type.nameToId("queryResultsHashCollisions");
     queryResultsHashCollisionProbeTimeId = type.nameToId("queryResultsHashCollisionProbeTime");
     partitionedRegionQueryRetriesId = type.nameToId("partitionedRegionQueryRetries");
+    queryPlanCacheHitsId = type.nameToId("queryPlanCacheHits");
+    queryPlanCacheMissesId = type.nameToId("queryPlanCacheMisses");
 
     txSuccessLifeTimeId = type.nameToId("txSuccessLifeTime");
     txFailedLifeTimeId = type.nameToId("txFailedLifeTime");
@@ -491,6 +511,8 @@ public class CachePerfStats {
     tombstoneGCCountId = type.nameToId("tombstoneGCs");
     tombstoneOverhead1Id = type.nameToId("replicatedTombstonesSize");
     tombstoneOverhead2Id = type.nameToId("nonReplicatedTombstonesSize");
+    tombstoneGCLag1Id = type.nameToId("replicatedTombstonesGCLag");
+    tombstoneGCLag2Id = type.nameToId("nonReplicatedTombstonesGCLag");
     clearTimeoutsId = type.nameToId("clearTimeouts");
 
     deltaUpdatesId = type.nameToId("deltaUpdates");
@@ -532,6 +554,7 @@ public class CachePerfStats {
    */
   public CachePerfStats(StatisticsFactory factory) {
     stats = factory.createAtomicStatistics(type, "cachePerfStats");
+    supplyHitPercentage();
   }
 
   /**
@@ -540,6 +563,20 @@ public class CachePerfStats {
    */
   public CachePerfStats(StatisticsFactory factory, String name) {
     stats = factory.createAtomicStatistics(type, "RegionStats-" + name);
+    supplyHitPercentage();
+  }
+
+  /**
+   * The hit percentage is computed from the gets and misses when the
+   * statistics are sampled rather than on every get.
+   */
+  private void supplyHitPercentage() {
+    stats.setIntSupplier(hitPercentageId, new IntSupplier() {
+      @Override
+      public int getAsInt() {
+        return (int) Math.round(getHitRatio() * 100);
+      }
+    });
   }
 
   /**
@@ -627,6 +664,18 @@ public class CachePerfStats {
    public int getMisses() {
      return stats.getInt(missesId);
    }
+   /**
+    * Returns the ratio of gets that found their value in local memory to all
+    * the gets, or zero if there were no gets.
+    * @since Geode 1.1
+    */
+   public double getHitRatio() {
+     int gets = getGets();
+     if (gets == 0) {
+       return 0;
+     }
+     return (double) (gets - getMisses()) / gets;
+   }
    
    public int getReliableQueuedOps() {
      return stats.getInt(reliableQueuedOpsId);
@@ -1008,6 +1057,22 @@ public class CachePerfStats {
   public void incQueryResultsHashCollisions() {
     stats.incInt(queryResultsHashCollisionsId, 1);
   }
+
+  public void incQueryPlanCacheHits() {
+    stats.incLong(queryPlanCacheHitsId, 1);
+  }
+
+  public long getQueryPlanCacheHits() {
+    return stats.getLong(queryPlanCacheHitsId);
+  }
+
+  public void incQueryPlanCacheMisses() {
+    stats.incLong(queryPlanCacheMissesId, 1);
+  }
+
+  public long getQueryPlanCacheMisses() {
+    return stats.getLong(queryPlanCacheMissesId);
+  }
   
    public int getTxCommits() {
      return stats.getInt(txCommitsId);
@@ -1267,6 +1332,22 @@ public class CachePerfStats {
     return this.stats.getLong(tombstoneOverhead2Id);
   }
 
+  public void setReplicatedTombstonesGCLag(long millis) {
+    this.stats.setLong(tombstoneGCLag1Id, millis);
+  }
+
+  public long getReplicatedTombstonesGCLag() {
+    return this.stats.getLong(tombstoneGCLag1Id);
+  }
+
+  public void setNonReplicatedTombstonesGCLag(long millis) {
+    this.stats.setLong(tombstoneGCLag2Id, millis);
+  }
+
+  public long getNonReplicatedTombstonesGCLag() {
+    return this.stats.getLong(tombstoneGCLag2Id);
+  }
+
   public int getClearTimeouts() {
     return this.stats.getInt(clearTimeoutsId);
   }
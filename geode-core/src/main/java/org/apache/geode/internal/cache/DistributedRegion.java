@@ -493,6 +493,11 @@ public class DistributedRegion extends LocalRegion implements
     return this.generateVersionTag;
   }
 
+  @Override
+  protected boolean supportsPutFastPath() {
+    return false;
+  }
+
   @Override
   protected boolean shouldGenerateVersionTag(RegionEntry entry, EntryEventImpl event) {
     if (logger.isTraceEnabled()) {
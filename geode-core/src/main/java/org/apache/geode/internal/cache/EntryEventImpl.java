@@ -397,6 +397,45 @@ public class EntryEventImpl
     return entryEvent;
   }
   
+  /**
+   * The event reused by the puts of each thread that nothing observes, see
+   * {@link LocalRegion#put(Object, Object, Object)}.
+   */
+  private static final ThreadLocal<EntryEventImpl> localPutEvent = new ThreadLocal<EntryEventImpl>() {
+    @Override
+    protected EntryEventImpl initialValue() {
+      EntryEventImpl event = new EntryEventImpl();
+      event.keyInfo = new KeyInfo(null, null, null);
+      return event;
+    }
+  };
+
+  /**
+   * Returns the reusable event of this thread, initialized like an UPDATE
+   * event created by
+   * {@link #create(LocalRegion, Operation, Object, Object, Object, boolean, DistributedMember)}
+   * except that it has no event id. Returns null if the event is already used
+   * by a put of this thread, for example a put done by an object sizer.
+   * The event must be given back with {@link #releaseLocalPutEvent()}.
+   */
+  @Retained
+  static EntryEventImpl acquireLocalPutEvent(LocalRegion region, Object key,
+      @Retained(ENTRY_EVENT_NEW_VALUE) Object newValue, Object callbackArgument,
+      DistributedMember distributedMember) {
+    EntryEventImpl event = localPutEvent.get();
+    if (event.region != null) {
+      return null;
+    }
+    event.region = region;
+    event.op = Operation.UPDATE;
+    event.keyInfo.setKey(key);
+    event.keyInfo.setCallbackArg(callbackArgument);
+    event.basicSetNewValue(newValue);
+    event.setGenerateCallbacks(true);
+    event.distributedMember = distributedMember;
+    return event;
+  }
+
   /**
    * Creates a PutAllEvent given the distributed operation, the region, and the
    * entry data.
@@ -2788,6 +2827,47 @@ public class EntryEventImpl
     }
   }
   
+  /**
+   * Releases an event returned by {@link #acquireLocalPutEvent} and resets
+   * every field to its initial value, so that the event neither keeps the
+   * key and values of the put reachable nor passes state on to the next put.
+   */
+  void releaseLocalPutEvent() {
+    release();
+    this.re = null;
+    this.expiryTask = null;
+    this.keyInfo.setKey(null);
+    this.keyInfo.setCallbackArg(null);
+    this.keyInfo.setBucketId(KeyInfo.UNKNOWN_BUCKET);
+    this.eventID = null;
+    this.newValue = null;
+    this.cachedSerializedNewValue = null;
+    this.oldValue = null;
+    this.eventFlags = 0x0000;
+    this.txId = null;
+    this.op = null;
+    this.eventType = null;
+    this.putAllOp = null;
+    this.removeAllOp = null;
+    this.distributedMember = null;
+    this.causedByMessage = null;
+    this.context = null;
+    this.deltaBytes = null;
+    this.filterInfo = null;
+    this.newValueBytes = null;
+    this.oldValueBytes = null;
+    this.versionTag = null;
+    this.isEvicted = false;
+    this.isPendingSecondaryExpireDestroy = false;
+    this.newValueBucketSize = 0;
+    this.tailKey = -1L;
+    this.nextRegionVersion = -1L;
+    this.invokeCallbacksThread = null;
+    this.offHeapOk = true;
+    // last, a null region marks the event as available
+    this.region = null;
+  }
+
   /**
    * Return true if this EntryEvent may have off-heap references.
    */
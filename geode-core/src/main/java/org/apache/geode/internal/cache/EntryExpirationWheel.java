@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.cache.EntryNotFoundException;
+import org.apache.geode.internal.logging.LogService;
+
+/**
+ * A hashed timing wheel that expires the entries of one region, or of one
+ * bucket of a partitioned region, without keeping an {@link EntryExpiryTask}
+ * for every entry.
+ * <p>
+ * An entry is queued in the slot of the tick its expiration time falls in and
+ * that slot, plus one, is stored in the entry itself (see
+ * {@link AbstractRegionEntry#getExpirySlot}). Entries are not moved when they
+ * are modified or read. Like a scheduled EntryExpiryTask, an entry whose
+ * expiration time moved back is queued again when its slot comes up, which is
+ * also what happens to entries that expire more than one turn of the wheel
+ * away. Rescheduling or cancelling an entry only changes the slot stored in
+ * the entry; the stale queue element is dropped when its slot is expired.
+ * <p>
+ * The {@link ExpirationScheduler} ticks all the wheels of the cache and expires
+ * the due slots of different wheels in parallel, one batch per wheel.
+ *
+ * @since Geode 1.1
+ */
+class EntryExpirationWheel {
+
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The slot of an entry while it waits to be rescheduled by the batch that
+   * expired it. No queue element ever matches it.
+   */
+  static final int PENDING = AbstractRegionEntry.MAX_EXPIRY_SLOT;
+
+  private final LocalRegion region;
+
+  /** the number of milliseconds covered by one slot */
+  private final long tick;
+
+  private final int mask;
+
+  private final ConcurrentLinkedQueue<AbstractRegionEntry>[] slots;
+
+  /**
+   * Entries queued in a slot that was expired concurrently. Expired first thing
+   * in the next batch.
+   */
+  private final ConcurrentLinkedQueue<AbstractRegionEntry> overdue = new ConcurrentLinkedQueue<AbstractRegionEntry>();
+
+  /** the tick of the oldest slot that has not been expired */
+  private volatile long nextTick;
+
+  /** set while a batch of this wheel is scheduled or running */
+  private final AtomicBoolean expiring = new AtomicBoolean();
+
+  /** the thread running the current batch */
+  private volatile Thread expiringThread;
+
+  /**
+   * Entries the current batch rescheduled. Only used by the expiring thread.
+   */
+  private final List<AbstractRegionEntry> rescheduled = new ArrayList<AbstractRegionEntry>();
+
+  @SuppressWarnings("unchecked")
+  EntryExpirationWheel(LocalRegion region, long tick, int slotCount) {
+    if (slotCount <= 0 || slotCount >= PENDING || Integer.bitCount(slotCount) != 1) {
+      throw new IllegalArgumentException("slotCount must be a power of two less than " + PENDING + " but was " + slotCount);
+    }
+    this.region = region;
+    this.tick = Math.max(1L, tick);
+    this.mask = slotCount - 1;
+    this.slots = new ConcurrentLinkedQueue[slotCount];
+    for (int i = 0; i < slotCount; i++) {
+      this.slots[i] = new ConcurrentLinkedQueue<AbstractRegionEntry>();
+    }
+    this.nextTick = ExpiryTask.getNow() / this.tick;
+  }
+
+  LocalRegion getRegion() {
+    return this.region;
+  }
+
+  /**
+   * Schedules the expiration of <code>re</code>. If <code>ifAbsent</code> is
+   * true an entry that is already scheduled is left alone.
+   */
+  void schedule(AbstractRegionEntry re, boolean ifAbsent) {
+    if (ifAbsent && re.getExpirySlot() != 0) {
+      return;
+    }
+    if (Thread.currentThread() == this.expiringThread) {
+      // queued once the batch is done so that the other elements the batch
+      // may still hold for this entry are recognized as stale
+      int current;
+      do {
+        current = re.getExpirySlot();
+        if (ifAbsent && current != 0) {
+          return;
+        }
+      } while (!re.compareAndSetExpirySlot(current, PENDING));
+      this.rescheduled.add(re);
+      return;
+    }
+    long expirationTime = getExpirationTime(re);
+    if (expirationTime == 0L) {
+      cancel(re);
+      return;
+    }
+    long entryTick = Math.max(expirationTime / this.tick, this.nextTick);
+    int slot = (int) (entryTick & this.mask) + 1;
+    int current;
+    do {
+      current = re.getExpirySlot();
+      if (ifAbsent && current != 0) {
+        return;
+      }
+      if (current == slot) {
+        // already queued in that slot
+        return;
+      }
+    } while (!re.compareAndSetExpirySlot(current, slot));
+    enqueue(re, entryTick);
+  }
+
+  private void enqueue(AbstractRegionEntry re, long entryTick) {
+    this.slots[(int) (entryTick & this.mask)].add(re);
+    if (entryTick < this.nextTick) {
+      // the slot was expired while we added to it
+      this.overdue.add(re);
+    }
+  }
+
+  /**
+   * Removes <code>re</code> from this wheel.
+   */
+  void cancel(AbstractRegionEntry re) {
+    int current;
+    do {
+      current = re.getExpirySlot();
+      if (current == 0) {
+        return;
+      }
+    } while (!re.compareAndSetExpirySlot(current, 0));
+  }
+
+  /**
+   * Returns the absolute time at which <code>re</code> expires, or 0 if it
+   * does not expire.
+   */
+  private long getExpirationTime(AbstractRegionEntry re) {
+    EntryExpiryTask task = this.region.createExpiryTask(re);
+    if (task == null) {
+      return 0L;
+    }
+    try {
+      return task.getExpirationTime();
+    } catch (EntryNotFoundException e) {
+      return 0L;
+    }
+  }
+
+  /**
+   * Returns true if the region of this wheel no longer exists.
+   */
+  boolean isDone() {
+    return this.region.isDestroyed() || this.region.isClosed();
+  }
+
+  /**
+   * Returns true and marks this wheel as expiring if it has slots due at
+   * <code>now</code> and no batch is already scheduled.
+   */
+  boolean startExpiring(long now) {
+    if (now / this.tick <= this.nextTick && this.overdue.isEmpty()) {
+      return false;
+    }
+    return this.expiring.compareAndSet(false, true);
+  }
+
+  /**
+   * Clears the mark set by {@link #startExpiring} when the batch is not run.
+   */
+  void abortExpiring() {
+    this.expiring.set(false);
+  }
+
+  /**
+   * Expires all the entries in the slots that ended before <code>now</code>.
+   * Must only be called after {@link #startExpiring} returned true.
+   *
+   * @return the number of entries whose expiration was performed
+   */
+  int expire(long now) {
+    int count = 0;
+    this.expiringThread = Thread.currentThread();
+    try {
+      count += expireQueue(this.overdue, 0);
+      long dueTick = now / this.tick;
+      long first = Math.max(this.nextTick, dueTick - this.slots.length);
+      for (long t = first; t < dueTick && !isDone(); t++) {
+        this.nextTick = t + 1;
+        int index = (int) (t & this.mask);
+        count += expireQueue(this.slots[index], index + 1);
+      }
+    } finally {
+      this.expiringThread = null;
+      try {
+        reschedule();
+      } finally {
+        this.expiring.set(false);
+      }
+    }
+    if (count > 0 && logger.isTraceEnabled()) {
+      logger.trace("Expiration wheel of {} performed the expiration of {} entries", this.region.getFullPath(), count);
+    }
+    return count;
+  }
+
+  /**
+   * Polls <code>queue</code> until it is empty and performs the expiration of
+   * every entry that is still scheduled in <code>slot</code>. A slot of zero
+   * matches every scheduled entry.
+   */
+  private int expireQueue(ConcurrentLinkedQueue<AbstractRegionEntry> queue, int slot) {
+    int count = 0;
+    ExpiryTask.setNow();
+    try {
+      AbstractRegionEntry re;
+      while ((re = queue.poll()) != null) {
+        int current = re.getExpirySlot();
+        if (current == 0 || current == PENDING || (slot != 0 && current != slot)) {
+          continue;
+        }
+        if (!re.compareAndSetExpirySlot(current, 0)) {
+          continue;
+        }
+        EntryExpiryTask task = this.region.createExpiryTask(re);
+        if (task != null) {
+          task.runInThreadPool();
+          count++;
+        }
+      }
+    } finally {
+      ExpiryTask.clearNow();
+    }
+    return count;
+  }
+
+  /**
+   * Queues the entries the last batch rescheduled.
+   */
+  private void reschedule() {
+    for (AbstractRegionEntry re : this.rescheduled) {
+      if (re.getExpirySlot() != PENDING) {
+        continue;
+      }
+      long expirationTime = getExpirationTime(re);
+      if (expirationTime == 0L) {
+        re.compareAndSetExpirySlot(PENDING, 0);
+        continue;
+      }
+      long entryTick = Math.max(expirationTime / this.tick, this.nextTick);
+      if (re.compareAndSetExpirySlot(PENDING, (int) (entryTick & this.mask) + 1)) {
+        enqueue(re, entryTick);
+      }
+    }
+    this.rescheduled.clear();
+  }
+}
@@ -28,6 +28,7 @@ import org.apache.geode.cache.EvictionAttributesMutator;
 import org.apache.geode.cache.Region;
 import org.apache.geode.cache.util.ObjectSizer;
 import org.apache.geode.internal.InternalDataSerializer;
+import org.apache.geode.internal.Version;
 import org.apache.geode.internal.cache.lru.HeapLRUCapacityController;
 import org.apache.geode.internal.cache.lru.LRUAlgorithm;
 import org.apache.geode.internal.cache.lru.LRUCapacityController;
@@ -194,6 +195,10 @@ public final class EvictionAttributesImpl extends EvictionAttributes
       this.evictionController = new LRUCapacityController(this.maximum, this.action,region);
     } else if(this.algorithm == EvictionAlgorithm.LIFO_MEMORY){
       this.evictionController = new MemLRUCapacityController(this.maximum, this.sizer, this.action,region, isOffHeap);
+    } else if (this.algorithm == EvictionAlgorithm.LFU_ENTRY) {
+      this.evictionController = new LRUCapacityController(this.maximum, this.action, region);
+    } else if (this.algorithm == EvictionAlgorithm.LFU_MEMORY) {
+      this.evictionController = new MemLRUCapacityController(this.maximum, this.sizer, this.action, region, isOffHeap);
     }  else {
       // for all other algorithms, return null
       this.evictionController = null;
@@ -204,7 +209,15 @@ public final class EvictionAttributesImpl extends EvictionAttributes
   public void toData(DataOutput out) throws IOException {
     out.writeInt(this.maximum);
     DataSerializer.writeObject(this.action, out);
-    DataSerializer.writeObject(this.algorithm, out);
+    EvictionAlgorithm algorithm = this.algorithm;
+    if (algorithm.isLFU()
+        && InternalDataSerializer.getVersionForDataStream(out).compareTo(Version.GEODE_110) < 0) {
+      // older members can't read the LFU algorithms, they get the LRU one that
+      // evicts on the same limit
+      algorithm = algorithm == EvictionAlgorithm.LFU_ENTRY ? EvictionAlgorithm.LRU_ENTRY
+          : EvictionAlgorithm.LRU_MEMORY;
+    }
+    DataSerializer.writeObject(algorithm, out);
   }
   
   public void fromData(DataInput in) throws IOException,
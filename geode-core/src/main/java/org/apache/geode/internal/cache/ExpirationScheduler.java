@@ -21,16 +21,30 @@ import org.apache.geode.distributed.internal.DistributionConfig;
 import org.apache.geode.distributed.internal.InternalDistributedSystem;
 import org.apache.geode.internal.SystemTimer;
 import org.apache.geode.internal.i18n.LocalizedStrings;
+import org.apache.geode.internal.logging.LoggingThreadGroup;
 import org.apache.geode.internal.logging.LogService;
 import org.apache.geode.internal.logging.log4j.LocalizedMessage;
+import org.apache.geode.internal.tcp.ConnectionTable;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ExpirationScheduler uses a single instance of java.util.Timer (and
  * therefore a single thread) per VM to schedule and execute region and 
  * entry expiration tasks.
+ * <p>
+ * If {@link #TIMING_WHEEL_PROPERTY} is set, entries are instead expired by an
+ * {@link EntryExpirationWheel} per region or bucket. The timer then only
+ * ticks the wheels and their due entries are expired by a pool of
+ * {@link #WHEEL_THREADS_PROPERTY} threads, one batch per wheel.
  */
 
 public class ExpirationScheduler
@@ -41,8 +55,40 @@ public class ExpirationScheduler
   private final AtomicInteger pendingCancels = new AtomicInteger();
     private static final int MAX_PENDING_CANCELS = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "MAX_PENDING_CANCELS", 10000).intValue();
 
+
+  /** Set to true to expire entries with timing wheels instead of a task per entry */
+  public static final String TIMING_WHEEL_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "EXPIRY_TIMING_WHEEL";
+  /** The milliseconds covered by one slot of a timing wheel, 1000 by default */
+  public static final String WHEEL_TICK_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "EXPIRY_WHEEL_TICK";
+  /** The number of slots of a timing wheel, a power of two below 4095, 2048 by default */
+  public static final String WHEEL_SLOTS_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "EXPIRY_WHEEL_SLOTS";
+  /** The number of threads expiring the due entries of the timing wheels, the number of processors by default */
+  public static final String WHEEL_THREADS_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "EXPIRY_WHEEL_THREADS";
+
+  private final boolean timingWheel;
+  private final long wheelTick;
+  private final int wheelSlots;
+  private final int wheelThreads;
+
+  private final Set<EntryExpirationWheel> wheels = ConcurrentHashMap.newKeySet();
+
+  /** created with the first wheel, guarded by wheels */
+  private ThreadPoolExecutor wheelExecutor;
+
   public ExpirationScheduler(InternalDistributedSystem ds) {
     this.timer = new SystemTimer(ds, true);
+    this.timingWheel = Boolean.getBoolean(TIMING_WHEEL_PROPERTY);
+    this.wheelTick = Long.getLong(WHEEL_TICK_PROPERTY, 1000L).longValue();
+    this.wheelSlots = Integer.getInteger(WHEEL_SLOTS_PROPERTY, 2048).intValue();
+    this.wheelThreads = Integer.getInteger(WHEEL_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()).intValue();
+  }
+
+  /**
+   * Returns true if entries are expired by an {@link EntryExpirationWheel}
+   * per region.
+   */
+  public boolean isTimingWheelEnabled() {
+    return this.timingWheel;
   }
   
   public void forcePurge() {
@@ -99,8 +145,86 @@ public class ExpirationScheduler
     return addExpiryTask(task) != null;
   }
 
+  /**
+   * Creates the timing wheel of the given region and starts ticking it.
+   */
+  EntryExpirationWheel createWheel(LocalRegion region) {
+    EntryExpirationWheel wheel = new EntryExpirationWheel(region, this.wheelTick, this.wheelSlots);
+    synchronized (this.wheels) {
+      if (this.wheelExecutor == null) {
+        this.wheelExecutor = createWheelExecutor();
+        this.timer.scheduleAtFixedRate(new WheelTickTask(), this.wheelTick, this.wheelTick);
+      }
+      this.wheels.add(wheel);
+    }
+    return wheel;
+  }
+
+  private ThreadPoolExecutor createWheelExecutor() {
+    final ThreadGroup group = LoggingThreadGroup.createThreadGroup("Expiration Wheel Threads", logger);
+    ThreadFactory tf = new ThreadFactory() {
+      private final AtomicInteger nextId = new AtomicInteger();
+
+      public Thread newThread(final Runnable command) {
+        final Runnable r = new Runnable() {
+          public void run() {
+            ConnectionTable.threadWantsSharedResources();
+            try {
+              command.run();
+            } finally {
+              ConnectionTable.releaseThreadsSockets();
+            }
+          }
+        };
+        Thread thread = new Thread(group, r, "Expiration Wheel Thread " + nextId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    int threads = Math.max(1, this.wheelThreads);
+    return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), tf);
+  }
+
+  /**
+   * Hands the due slots of every wheel to the wheel executor, one batch per
+   * wheel. A wheel whose previous batch is still running is left to the next
+   * tick.
+   */
+  private class WheelTickTask extends SystemTimer.SystemTimerTask {
+    @Override
+    public void run2() {
+      final long now = ExpiryTask.getNow();
+      for (final EntryExpirationWheel wheel : wheels) {
+        if (wheel.isDone()) {
+          wheels.remove(wheel);
+          continue;
+        }
+        if (!wheel.startExpiring(now)) {
+          continue;
+        }
+        try {
+          wheelExecutor.execute(new Runnable() {
+            public void run() {
+              wheel.expire(now);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          wheel.abortExpiring();
+          return;
+        }
+      }
+    }
+  }
+
   /** @see java.util.Timer#cancel() */
   public void cancel() {
     timer.cancel();
+    synchronized (this.wheels) {
+      if (this.wheelExecutor != null) {
+        this.wheelExecutor.shutdownNow();
+      }
+      this.wheels.clear();
+    }
   }
 }
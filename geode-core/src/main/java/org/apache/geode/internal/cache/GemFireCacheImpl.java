@@ -130,6 +130,7 @@ import org.apache.geode.cache.query.QueryService;
 import org.apache.geode.cache.query.internal.DefaultQuery;
 import org.apache.geode.cache.query.internal.DefaultQueryService;
 import org.apache.geode.cache.query.internal.QueryMonitor;
+import org.apache.geode.cache.query.internal.QueryPlanCache;
 import org.apache.geode.cache.query.internal.cq.CqService;
 import org.apache.geode.cache.query.internal.cq.CqServiceProvider;
 import org.apache.geode.cache.server.CacheServer;
@@ -191,6 +192,7 @@ import org.apache.geode.internal.cache.tier.sockets.CacheClientProxy;
 import org.apache.geode.internal.cache.tier.sockets.ClientHealthMonitor;
 import org.apache.geode.internal.cache.tier.sockets.ClientProxyMembershipID;
 import org.apache.geode.internal.cache.tier.sockets.ServerConnection;
+import org.apache.geode.internal.cache.versions.VersionSourceIndex;
 import org.apache.geode.internal.cache.wan.AbstractGatewaySender;
 import org.apache.geode.internal.cache.wan.GatewaySenderAdvisor;
 import org.apache.geode.internal.cache.wan.WANServiceProvider;
@@ -357,6 +359,9 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
 
   private final CachePerfStats cachePerfStats;
 
+  /** Compiled queries shared by the local queries of this cache */
+  private final QueryPlanCache queryPlanCache = new QueryPlanCache(this);
+
   /** Date on which this instances was created */
   private final Date creationDate;
 
@@ -2334,6 +2339,7 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
         }
       }
       TypeRegistry.close();
+      VersionSourceIndex.clear();
       // do this late to prevent 43412
       TypeRegistry.setPdxSerializer(null);
       
@@ -2844,6 +2850,10 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
     return this.cachePerfStats;
   }
 
+  public QueryPlanCache getQueryPlanCache() {
+    return this.queryPlanCache;
+  }
+
   public String getName() {
     return this.system.getName();
   }
@@ -3293,10 +3303,15 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
   }
 
   void setRegionByPath(String path, LocalRegion r) {
+    LocalRegion old;
     if (r == null) {
-      this.pathToRegion.remove(path);
+      old = (LocalRegion)this.pathToRegion.remove(path);
     } else {
-      this.pathToRegion.put(path, r);
+      old = (LocalRegion)this.pathToRegion.put(path, r);
+    }
+    // compiled queries may depend on the regions; buckets are not queried by path
+    if (!(r instanceof BucketRegion) && !(old instanceof BucketRegion)) {
+      this.queryPlanCache.invalidate();
     }
   }
 
@@ -301,6 +301,12 @@ public class LocalRegion extends AbstractRegion
 
   private final ConcurrentHashMap<RegionEntry, EntryExpiryTask> entryExpiryTasks = new ConcurrentHashMap<RegionEntry, EntryExpiryTask>();
 
+  /**
+   * Expires the entries of this region if the expiration scheduler uses
+   * timing wheels, in which case entryExpiryTasks stays empty. Created on demand.
+   */
+  private volatile EntryExpirationWheel expirationWheel;
+
   /**
    * Set to true after an invalidate region expiration so we don't get multiple
    * expirations
@@ -338,6 +344,14 @@ public class LocalRegion extends AbstractRegion
    */
   final boolean EXPIRY_UNITS_MS;
 
+  public static final String DISABLE_PUT_FAST_PATH_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "LocalRegion.disablePutFastPath";
+
+  /**
+   * True unless puts must always create a new event and event id, see
+   * {@link #canUsePutFastPath()}.
+   */
+  private final boolean putFastPathEnabled;
+
   // Indicates that the entries are in fact initialized. It turns out
   // you can't trust the assignment of a volatile (as indicated above)
   // to mean that the the thing being assigned is fully formed, only
@@ -570,6 +584,7 @@ public class LocalRegion extends AbstractRegion
     super(cache, attrs,regionName, internalRegionArgs);
     // Initialized here (and defers to parent) to fix GEODE-128
     this.EXPIRY_UNITS_MS = parentRegion != null ? parentRegion.EXPIRY_UNITS_MS : Boolean.getBoolean(EXPIRY_MS_PROPERTY);
+    this.putFastPathEnabled = !Boolean.getBoolean(DISABLE_PUT_FAST_PATH_PROPERTY);
 
     Assert.assertTrue(regionName != null, "regionName must not be null");
     this.sharedDataView = buildDataView();
@@ -1650,7 +1665,21 @@ public class LocalRegion extends AbstractRegion
   public Object put(Object key, Object value, Object aCallbackArgument)
       throws TimeoutException, CacheWriterException {
     long startPut = CachePerfStats.getStatTime();
-    @Released EntryEventImpl event = newUpdateEntryEvent(key, value, aCallbackArgument);
+    checkUpdateArguments(key, value, aCallbackArgument);
+    if (canUsePutFastPath()) {
+      // Nothing observes the event and no peer or client needs a delta, so
+      // reuse the event of this thread and skip the event id
+      @Released EntryEventImpl event = EntryEventImpl.acquireLocalPutEvent(
+          this, key, value, aCallbackArgument, getMyId());
+      if (event != null) {
+        try {
+          return basicValidatedPut(event, startPut);
+        } finally {
+          event.releaseLocalPutEvent();
+        }
+      }
+    }
+    @Released EntryEventImpl event = createUpdateEntryEvent(key, value, aCallbackArgument);
     try {
       return validatedPut(event, startPut);
     } finally {
@@ -1658,12 +1687,46 @@ public class LocalRegion extends AbstractRegion
     }
   }
 
+  /**
+   * Returns true if a put can be done with the reusable event of its thread
+   * and without an event id. This is the case when the region does not
+   * distribute its operations and no transaction, listener, writer, index,
+   * gateway sender, async event queue or client of a cache server can see
+   * the event.
+   */
+  private boolean canUsePutFastPath() {
+    return this.putFastPathEnabled
+        && supportsPutFastPath()
+        && !hasServerProxy()
+        && !hasListener()
+        && basicGetWriter() == null
+        && getIndexManager() == null
+        && this.allGatewaySenderIds.isEmpty()
+        // CQs and client interest need a cache server
+        && this.cache.getCacheServersAndGatewayReceiver().isEmpty()
+        && !isTX();
+  }
+
+  /**
+   * Returns true if puts on this region can use the put fast path when
+   * nothing observes their events. Regions that distribute their operations
+   * need a new event with an event id for each put.
+   */
+  protected boolean supportsPutFastPath() {
+    return true;
+  }
+
   public final Object validatedPut(EntryEventImpl event, long startPut)
       throws TimeoutException, CacheWriterException {
 
       if (event.getEventId() == null && generateEventID()) {
         event.setNewEventId(cache.getDistributedSystem());
       }
+      return basicValidatedPut(event, startPut);
+  }
+
+  private Object basicValidatedPut(EntryEventImpl event, long startPut)
+      throws TimeoutException, CacheWriterException {
       Object oldValue = null;
       if (basicPut(event, false, // ifNew
           false, // ifOld
@@ -1685,7 +1748,12 @@ public class LocalRegion extends AbstractRegion
   @Retained
   public final EntryEventImpl newUpdateEntryEvent(Object key, Object value,
       Object aCallbackArgument) {
+    checkUpdateArguments(key, value, aCallbackArgument);
+    return createUpdateEntryEvent(key, value, aCallbackArgument);
+  }
 
+  private void checkUpdateArguments(Object key, Object value,
+      Object aCallbackArgument) {
     validateArguments(key, value, aCallbackArgument);
     if (value == null) {
       throw new NullPointerException(LocalizedStrings
@@ -1694,7 +1762,11 @@ public class LocalRegion extends AbstractRegion
     checkReadiness();
     checkForLimitedOrNoAccess();
     discoverJTA();
+  }
 
+  @Retained
+  private EntryEventImpl createUpdateEntryEvent(Object key, Object value,
+      Object aCallbackArgument) {
     // This used to call the constructor which took the old value. It
     // was modified to call the other EntryEventImpl constructor so that
     // an id will be generated by default. Null was passed in anyway.
@@ -2558,7 +2630,8 @@ public class LocalRegion extends AbstractRegion
               logger.debug("QueryService Index creation process for {}" + icd.getIndexName());
             }
             DefaultQueryService qs = (DefaultQueryService) this.getGemFireCache().getLocalQueryService();
-            String fromClause = (icd.getIndexType() == IndexType.FUNCTIONAL || icd.getIndexType() == IndexType.HASH)? icd.getIndexFromClause() : this.getFullPath();
+            String fromClause = (icd.getIndexType() == IndexType.FUNCTIONAL || icd.getIndexType() == IndexType.HASH
+                || icd.getIndexType() == IndexType.BITMAP)? icd.getIndexFromClause() : this.getFullPath();
             //load entries during initialization only for non overflow regions
             indexes.add(qs.createIndex(icd.getIndexName(), icd.getIndexType(), icd.getIndexExpression(), fromClause, icd.getIndexImportString(), !isOverflowToDisk));
           }
@@ -8529,7 +8602,7 @@ public class LocalRegion extends AbstractRegion
    * then create an EntryExpiryTask for this region and the given entry and return it.
    * Null is returned if the expiration attributes indicate that expiration is disabled.
    */
-  private EntryExpiryTask createExpiryTask(RegionEntry re) {
+  EntryExpiryTask createExpiryTask(RegionEntry re) {
     if (re == null || re.isDestroyedOrRemoved()) {
       return null;
     }
@@ -8648,6 +8721,12 @@ public class LocalRegion extends AbstractRegion
       // 35214)
     }
     if (isEntryExpiryPossible()) {
+      if (re instanceof AbstractRegionEntry && this.cache.getExpirationScheduler().isTimingWheelEnabled()) {
+        // a custom expiry may move the expiration time of an entry forward
+        boolean customExpiry = this.customEntryIdleTimeout != null || this.customEntryTimeToLive != null;
+        getExpirationWheel().schedule((AbstractRegionEntry) re, ifAbsent && !customExpiry);
+        return;
+      }
       EntryExpiryTask newTask = null;
       EntryExpiryTask oldTask = null;
       if (ifAbsent) {
@@ -8722,8 +8801,26 @@ public class LocalRegion extends AbstractRegion
     cancelExpiryTask(re, null);
   }
 
+  private EntryExpirationWheel getExpirationWheel() {
+    EntryExpirationWheel wheel = this.expirationWheel;
+    if (wheel == null) {
+      synchronized (this.entryExpiryTasks) {
+        wheel = this.expirationWheel;
+        if (wheel == null) {
+          wheel = this.cache.getExpirationScheduler().createWheel(this);
+          this.expirationWheel = wheel;
+        }
+      }
+    }
+    return wheel;
+  }
+
   void cancelExpiryTask(RegionEntry re, ExpiryTask expiryTask)
   {
+    EntryExpirationWheel wheel = this.expirationWheel;
+    if (wheel != null && re instanceof AbstractRegionEntry) {
+      wheel.cancel((AbstractRegionEntry) re);
+    }
     if (expiryTask != null) {
       this.entryExpiryTasks.remove(re, expiryTask);
       if (expiryTask.cancel()) {
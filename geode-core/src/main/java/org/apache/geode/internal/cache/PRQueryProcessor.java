@@ -32,6 +32,7 @@ import org.apache.geode.internal.cache.PartitionedRegionQueryEvaluator.PRQueryRe
 import org.apache.geode.internal.cache.execute.BucketMovedException;
 import org.apache.geode.internal.i18n.LocalizedStrings;
 import org.apache.geode.internal.logging.LogService;
+import org.apache.geode.internal.logging.LoggingThreadGroup;
 import org.apache.logging.log4j.Logger;
 
 import java.io.DataInput;
@@ -39,6 +40,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -63,6 +65,31 @@ public class PRQueryProcessor
 
   /* For Test purpose */
   public static int TEST_NUM_THREADS = 0;
+
+  /**
+   * When numThreads is 1 a query on many local buckets is split into bucket
+   * groups that run in parallel on the adaptive executor. Set the
+   * "gemfire.PRQueryProcessor.disableAdaptiveParallelism" system property to
+   * true to always query the buckets on the calling thread.
+   */
+  public final static boolean ADAPTIVE_PARALLELISM = !Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.disableAdaptiveParallelism");
+
+  /**
+   * The maximum number of threads, including the calling thread, that
+   * concurrently query buckets of this member. Shared by all queries.
+   */
+  public final static int MAX_PARALLELISM = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.maxParallelism", Runtime.getRuntime().availableProcessors()).intValue();
+
+  /**
+   * A bucket group is never given fewer buckets than this.
+   */
+  public final static int MIN_BUCKETS_PER_TASK = Math.max(1, Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.minBucketsPerTask", 2).intValue());
+
+  /**
+   * A bucket group is never given fewer entries than this, so queries on
+   * small regions are not worth a thread hand-off.
+   */
+  public final static int MIN_ENTRIES_PER_TASK = Math.max(1, Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.minEntriesPerTask", 10000).intValue());
   
   private PartitionedRegionDataStore _prds;
   private PartitionedRegion pr;
@@ -72,7 +99,7 @@ public class PRQueryProcessor
   private volatile int numBucketsProcessed = 0;
   private volatile ObjectType resultType = null; 
  
-  private boolean isIndexUsedForLocalQuery = false;
+  private volatile boolean isIndexUsedForLocalQuery = false;
 //  private List _failedBuckets;
 
   public PRQueryProcessor(PartitionedRegionDataStore prDS,
@@ -121,17 +148,206 @@ public class PRQueryProcessor
     
     if (NUM_THREADS > 1 || this.TEST_NUM_THREADS > 1) {  
       executeWithThreadPool(resultCollector);
-    } else {
+    } else if (!executeAdaptively(resultCollector)) {
       executeSequentially(resultCollector, this._bucketsToQuery);
     }
     return this.resultType.isStructType();
   }
+
+  /**
+   * Runs the query on groups of buckets in parallel if that is worth it.
+   * The degree of parallelism is chosen from the number of buckets, the number
+   * of entries in them and the number of idle adaptive executor threads.
+   * 
+   * @return false if the query was not executed and should be run sequentially
+   */
+  private boolean executeAdaptively(Collection<Collection> resultCollector)
+    throws QueryException, InterruptedException, ForceReattemptException {
+    if (!ADAPTIVE_PARALLELISM || this.pr == null || MAX_PARALLELISM <= 1) {
+      return false;
+    }
+    final int numBuckets = this._bucketsToQuery.size();
+    int degree = Math.min(numBuckets / MIN_BUCKETS_PER_TASK, MAX_PARALLELISM);
+    if (degree <= 1) {
+      return false;
+    }
+    CompiledSelect cs = this.query.getSimpleSelect();
+    if (cs == null || this.query.isCqQuery() || QueryObserverHolder.hasObserver()) {
+      // observers expect to be called on the query thread
+      return false;
+    }
+    if (!cs.isOrderBy() && this.query.getLimit(this.parameters) >= 0) {
+      // a sequential query stops as soon as it has enough results
+      return false;
+    }
+    PartitionedRegionDataStore ds = this.pr.getDataStore();
+    if (ds == null) {
+      return false;
+    }
+    final int[] bucketSizes = new int[numBuckets];
+    long totalEntries = 0;
+    for (int i = 0; i < numBuckets; i++) {
+      BucketRegion br = ds.getLocalBucketById(this._bucketsToQuery.get(i));
+      if (br != null) {
+        bucketSizes[i] = br.getRegionMap().size();
+        totalEntries += bucketSizes[i];
+      }
+    }
+    degree = (int)Math.min(degree, totalEntries / MIN_ENTRIES_PER_TASK);
+    if (degree <= 1) {
+      return false;
+    }
+    int helpers = AdaptiveQueryExecutor.reserveWorkers(degree - 1);
+    if (helpers == 0) {
+      return false;
+    }
+    executeInParallel(resultCollector, assignBuckets(bucketSizes, helpers + 1), helpers);
+    return true;
+  }
+
+  /**
+   * Splits the buckets into <code>degree</code> groups with about the same
+   * number of entries by giving the largest remaining bucket to the
+   * smallest group.
+   */
+  private List<Integer>[] assignBuckets(int[] bucketSizes, int degree) {
+    Integer[] order = new Integer[bucketSizes.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = Integer.valueOf(i);
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer o1, Integer o2) {
+        return bucketSizes[o2.intValue()] - bucketSizes[o1.intValue()];
+      }
+    });
+    @SuppressWarnings("unchecked")
+    List<Integer>[] groups = new List[degree];
+    long[] groupSizes = new long[degree];
+    for (int i = 0; i < degree; i++) {
+      groups[i] = new ArrayList<Integer>();
+    }
+    for (Integer idx : order) {
+      int smallest = 0;
+      for (int g = 1; g < degree; g++) {
+        if (groupSizes[g] < groupSizes[smallest]) {
+          smallest = g;
+        }
+      }
+      groups[smallest].add(this._bucketsToQuery.get(idx.intValue()));
+      groupSizes[smallest] += bucketSizes[idx.intValue()];
+    }
+    return groups;
+  }
+
+  /**
+   * Queries the first bucket group on the calling thread and the others on
+   * the <code>helpers</code> reserved adaptive executor threads.
+   * Each group collects its results in its own list, so they are
+   * merged after all groups finish without locking the result collector.
+   */
+  private void executeInParallel(Collection<Collection> resultCollector,
+      List<Integer>[] groups, int helpers)
+    throws QueryException, InterruptedException, ForceReattemptException {
+    final CompiledSelect cs = this.query.getSimpleSelect();
+    final boolean perBucket = cs.isOrderBy();
+    // helper threads read pdx values the same way as the calling thread
+    final boolean readSerialized = DefaultQuery.getPdxReadSerialized();
+    @SuppressWarnings("unchecked")
+    Collection<Collection>[] partials = new Collection[groups.length];
+    List<Future<?>> futures = new ArrayList<Future<?>>(helpers);
+    int submitted = 0;
+    try {
+      ExecutorService execService = AdaptiveQueryExecutor.getExecutorService();
+      for (int i = 1; i < groups.length; i++) {
+        partials[i] = new ArrayList<Collection>();
+        futures.add(execService.submit(new BucketGroupTask(groups[i], partials[i], perBucket, readSerialized)));
+        submitted++;
+      }
+    } finally {
+      // each submitted task gives back its own worker
+      AdaptiveQueryExecutor.releaseWorkers(helpers - submitted);
+    }
+    partials[0] = new ArrayList<Collection>();
+    executeBucketGroup(groups[0], partials[0], perBucket);
+
+    for (Future<?> fut : futures) {
+      try {
+        fut.get();
+      } catch (ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        if (cause instanceof QueryException) {
+          throw (QueryException)cause;
+        } else if (cause instanceof ForceReattemptException) {
+          throw (ForceReattemptException)cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else {
+          throw new InternalGemFireException(LocalizedStrings.PRQueryProcessor_GOT_UNEXPECTED_EXCEPTION_WHILE_EXECUTING_QUERY_ON_PARTITIONED_REGION_BUCKET.toLocalizedString(), 
+              cause);
+        }
+      }
+    }
+    for (Collection<Collection> partial : partials) {
+      resultCollector.addAll(partial);
+    }
+    if (perBucket) {
+      ExecutionContext context = new QueryExecutionContext(this.parameters, this.pr.getCache(), this.query);
+      Collection mergedResults = mergeOrderedResults(resultCollector, context, cs);
+      resultCollector.clear();
+      resultCollector.add(mergedResults);
+    }
+  }
+
+  /**
+   * Queries one bucket group. Order by queries are run on each bucket on its
+   * own so that the sorted results can be merged.
+   */
+  private void executeBucketGroup(List<Integer> buckets, Collection<Collection> partial, boolean perBucket)
+    throws QueryException, ForceReattemptException {
+    ExecutionContext context = new QueryExecutionContext(this.parameters, this.pr.getCache(), this.query);
+    if (perBucket) {
+      for (Integer bucketID : buckets) {
+        context.setBucketList(Collections.singletonList(bucketID));
+        executeQueryOnBuckets(partial, context);
+      }
+    } else {
+      context.setBucketList(buckets);
+      executeQueryOnBuckets(partial, context);
+    }
+  }
+
+  private final class BucketGroupTask implements Callable<Object> {
+    private final List<Integer> buckets;
+    private final Collection<Collection> partial;
+    private final boolean perBucket;
+    private final boolean readSerialized;
+
+    BucketGroupTask(List<Integer> buckets, Collection<Collection> partial, boolean perBucket,
+        boolean readSerialized) {
+      this.buckets = buckets;
+      this.partial = partial;
+      this.perBucket = perBucket;
+      this.readSerialized = readSerialized;
+    }
+
+    public Object call() throws Exception {
+      boolean oldReadSerialized = DefaultQuery.getPdxReadSerialized();
+      DefaultQuery.setPdxReadSerialized(this.readSerialized);
+      try {
+        executeBucketGroup(this.buckets, this.partial, this.perBucket);
+        return null;
+      } finally {
+        DefaultQuery.setPdxReadSerialized(oldReadSerialized);
+        AdaptiveQueryExecutor.releaseWorkers(1);
+      }
+    }
+  }
   
   private void executeWithThreadPool(Collection<Collection> resultCollector)
     throws QueryException, InterruptedException, ForceReattemptException {
     if (Thread.interrupted()) throw new InterruptedException();
       
-    java.util.List callableTasks = buildCallableTaskList(resultCollector);
+    java.util.List callableTasks = buildCallableTaskList();
     ExecutorService execService = PRQueryExecutor.getExecutorService();
 
     boolean reattemptNeeded = false;
@@ -149,9 +365,11 @@ public class PRQueryProcessor
       
       if (futures != null) {
         Iterator itr = futures.iterator();
+        Iterator taskItr = callableTasks.iterator();
         while (itr.hasNext() && !execService.isShutdown() && !execService.isTerminated()) {
           //this._prds.partitionedRegion.checkReadiness();
           Future fut = (Future)itr.next();
+          QueryTask task = (QueryTask)taskItr.next();
           QueryTask.BucketQueryResult bqr = null;
           
           try {
@@ -166,6 +384,8 @@ public class PRQueryProcessor
             if (bqr.retry) {
               reattemptNeeded = true;
             }
+            // the task has finished, so its own results can be merged without locking
+            resultCollector.addAll(task.resultColl);
             
           } catch (TimeoutException e) {
             throw new InternalGemFireException(LocalizedStrings.PRQueryProcessor_TIMED_OUT_WHILE_EXECUTING_QUERY_TIME_EXCEEDED_0.toLocalizedString(
@@ -186,8 +406,7 @@ public class PRQueryProcessor
        
         if(cs != null && (cs.isOrderBy() || cs.isGroupBy())) {      
           ExecutionContext context = new QueryExecutionContext(this.parameters, pr.getCache());
-          int limit = this.query.getLimit(parameters);
-          Collection mergedResults =coalesceOrderedResults(resultCollector, context, cs, limit);
+          Collection mergedResults = mergeOrderedResults(resultCollector, context, cs);
           resultCollector.clear();
           resultCollector.add(mergedResults);
         }
@@ -323,14 +542,13 @@ public class PRQueryProcessor
     ExecutionContext context = new QueryExecutionContext(this.parameters, this.pr.getCache(), this.query);
     
     CompiledSelect cs = this.query.getSimpleSelect();
-    int limit = this.query.getLimit(parameters);
     if(cs != null && cs.isOrderBy() ) {
       for(Integer bucketID : this._bucketsToQuery) {
         List<Integer> singleBucket = Collections.singletonList(bucketID);
         context.setBucketList(singleBucket);
         executeQueryOnBuckets(resultCollector, context);
       }     
-      Collection mergedResults =coalesceOrderedResults(resultCollector, context, cs, limit);
+      Collection mergedResults = mergeOrderedResults(resultCollector, context, cs);
       resultCollector.clear();
       resultCollector.add(mergedResults);
       
@@ -340,6 +558,23 @@ public class PRQueryProcessor
     }
   }
   
+  /**
+   * Merges the ordered results of the buckets. The partial aggregates of a
+   * group by query are then combined into one row per group, so the query node
+   * gets a row per group from this member instead of one from every bucket.
+   * The limit of a group by query counts groups, so it is only applied on the
+   * query node.
+   */
+  private Collection mergeOrderedResults(Collection<Collection> results,
+      ExecutionContext context, CompiledSelect cs) throws QueryException {
+    if (cs.getType() == CompiledValue.GROUP_BY_SELECT) {
+      SelectResults mergedResults = (SelectResults)coalesceOrderedResults(results, context, cs, -1);
+      context.setBucketList(this._bucketsToQuery);
+      return ((CompiledGroupBySelect)cs).combinePartialAggregates(mergedResults, context);
+    }
+    return coalesceOrderedResults(results, context, cs, this.query.getLimit(this.parameters));
+  }
+
   private Collection coalesceOrderedResults(Collection<Collection> results, 
       ExecutionContext context, CompiledSelect cs, int limit) {
     List<Collection> sortedResults = new ArrayList<Collection>(results.size());
@@ -375,16 +610,15 @@ public class PRQueryProcessor
       
       Object results = query.executeUsingContext(context);
       
-      synchronized (resultCollector) {        
-        //TODO:Asif: In what situation would the results object itself be undefined?
-        // The elements of the results can be undefined , but not the resultset itself
-        /*if (results == QueryService.UNDEFINED) {
-          resultCollector.add(Collections.singleton(results));
-        } else {*/
-          this.resultType = ((SelectResults)results).getCollectionType().getElementType(); 
-          resultCollector.add((SelectResults) results);
-        //}
-      }
+      // each thread passes its own result collector, so no locking is needed
+      //TODO:Asif: In what situation would the results object itself be undefined?
+      // The elements of the results can be undefined , but not the resultset itself
+      /*if (results == QueryService.UNDEFINED) {
+        resultCollector.add(Collections.singleton(results));
+      } else {*/
+        this.resultType = ((SelectResults)results).getCollectionType().getElementType(); 
+        resultCollector.add((SelectResults) results);
+      //}
       isIndexUsedForLocalQuery =((QueryExecutionContext)context).isIndexUsed();
       
     } catch (BucketMovedException bme) {
@@ -408,12 +642,12 @@ public class PRQueryProcessor
     }
   }
 
-  private List buildCallableTaskList(Collection<Collection> resultsColl)
+  private List buildCallableTaskList()
   {
     List callableTasks = new ArrayList();
     for (Iterator itr = _bucketsToQuery.iterator(); itr.hasNext();) {
       Integer bId = (Integer)itr.next();
-      callableTasks.add(new QueryTask(this.query, this.parameters, _prds, bId, resultsColl));
+      callableTasks.add(new QueryTask(this.query, this.parameters, _prds, bId, new ArrayList<Collection>()));
     }
     return callableTasks;
   }
@@ -425,11 +659,13 @@ public class PRQueryProcessor
   public static void shutdown()
   {
     PRQueryExecutor.shutdown();   
+    AdaptiveQueryExecutor.shutdown();
   }
 
   public static void shutdownNow()
   {
     PRQueryExecutor.shutdownNow();
+    AdaptiveQueryExecutor.shutdownNow();
   }
 
   /**
@@ -477,6 +713,74 @@ public class PRQueryProcessor
     }
   }
   
+  /**
+   * The daemon threads that query bucket groups for
+   * {@link PRQueryProcessor#executeAdaptively}. A query only hands work to
+   * threads it reserved with {@link #reserveWorkers(int)}, so tasks never
+   * wait in the queue and a busy member falls back to sequential queries.
+   */
+  static class AdaptiveQueryExecutor {
+
+    private static final AtomicInteger busyWorkers = new AtomicInteger();
+
+    private static ExecutorService execService = null;
+
+    /**
+     * Reserves up to <code>wanted</code> idle threads.
+     * @return the number of threads reserved
+     */
+    static int reserveWorkers(int wanted) {
+      for (;;) {
+        int busy = busyWorkers.get();
+        int reserved = Math.min(wanted, MAX_PARALLELISM - 1 - busy);
+        if (reserved <= 0) {
+          return 0;
+        }
+        if (busyWorkers.compareAndSet(busy, busy + reserved)) {
+          return reserved;
+        }
+      }
+    }
+
+    static void releaseWorkers(int count) {
+      if (count > 0) {
+        busyWorkers.addAndGet(-count);
+      }
+    }
+
+    static synchronized void shutdown() {
+      if (execService != null) {
+        execService.shutdown();
+      }
+    }
+
+    static synchronized void shutdownNow() {
+      if (execService != null)
+        execService.shutdownNow();
+    }
+
+    static synchronized ExecutorService getExecutorService() {
+      if (execService == null || execService.isShutdown()
+          || execService.isTerminated()) {
+        final ThreadGroup grp = LoggingThreadGroup.createThreadGroup("PRQueryProcessor Threads", logger);
+        ThreadFactory tf = new ThreadFactory() {
+          private final AtomicInteger threadNum = new AtomicInteger();
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(grp, r, "PRQueryProcessor Thread " + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        };
+        int numThreads = Math.max(1, MAX_PARALLELISM - 1);
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), tf);
+        tpe.allowCoreThreadTimeOut(true);
+        execService = tpe;
+      }
+      return execService;
+    }
+  }
+
   /**
     * Status token placed in results stream to track completion of
    * query results for a given bucket
@@ -5873,6 +5873,7 @@ public class PartitionedRegion extends LocalRegion implements
    */
   static void afterRegionsClosedByCacheClose(GemFireCacheImpl cache) {
     PRQueryProcessor.shutdown();
+    BucketIndexPopulator.shutdown();
     clearPRIdMap();
   }
 
@@ -8751,6 +8752,11 @@ public class PartitionedRegion extends LocalRegion implements
     return true;
   }
 
+  @Override
+  protected boolean supportsPutFastPath() {
+    return false;
+  }
+
   /**
    * SetCollector is implemented by classes that want to receive chunked results
    * from queries like getKeysWithRegEx. The implementor creates a method,
@@ -9101,27 +9107,35 @@ public class PartitionedRegion extends LocalRegion implements
     }
   }
  
-  private boolean populateEmptyIndexes(Set<Index> indexes,
-      HashMap<String, Exception> exceptionsMap) {
+  private boolean populateEmptyIndexes(final Set<Index> indexes,
+      final HashMap<String, Exception> exceptionsMap) {
     boolean throwException = false;
     if (getDataStore() != null && indexes.size() > 0) {
-      Set localBuckets = getDataStore().getAllLocalBuckets();
-      Iterator it = localBuckets.iterator();
-      while (it.hasNext()) {
-        Map.Entry entry = (Map.Entry) it.next();
-        Region bucket = (Region) entry.getValue();
-
-        if (bucket == null) {
-          continue;
-        }
-        IndexManager bucketIndexManager = IndexUtils.getIndexManager(bucket, true);
-        Set<Index> bucketIndexes = getBucketIndexesForPRIndexes(bucket, indexes);
-        try {
-          bucketIndexManager.populateIndexes(bucketIndexes);
-        } catch (MultiIndexCreationException ex) {
-          exceptionsMap.putAll(ex.getExceptionsMap());
-          throwException = true;
-        }
+      final HashMap<String, Exception> bucketExceptions = new HashMap<String, Exception>();
+      try {
+        // each bucket is a single pass over its entries that fills all the indexes
+        BucketIndexPopulator.execute(this, "Populating " + indexes.size() + " indexes",
+            new BucketIndexPopulator.BucketTask() {
+              public void run(BucketRegion bucket) throws Exception {
+                IndexManager bucketIndexManager = IndexUtils.getIndexManager(bucket, true);
+                Set<Index> bucketIndexes = getBucketIndexesForPRIndexes(bucket, indexes);
+                try {
+                  bucketIndexManager.populateIndexes(bucketIndexes);
+                } catch (MultiIndexCreationException ex) {
+                  synchronized (bucketExceptions) {
+                    bucketExceptions.putAll(ex.getExceptionsMap());
+                  }
+                }
+              }
+            });
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new InternalGemFireException(e);
+      }
+      if (!bucketExceptions.isEmpty()) {
+        exceptionsMap.putAll(bucketExceptions);
+        throwException = true;
       }
     }
     return throwException;
@@ -10274,8 +10288,6 @@ public class PartitionedRegion extends LocalRegion implements
     private PartitionedIndex createIndexOnPRBuckets() throws IndexNameConflictException, IndexExistsException, IndexCreationException {
       // List list = p_list;
 
-      Set localBuckets = getDataStore().getAllLocalBuckets();
-      Iterator it = localBuckets.iterator();
       QCompiler compiler = new QCompiler();
       if (imports != null) {
         compiler.compileImports(imports);
@@ -10283,43 +10295,45 @@ public class PartitionedRegion extends LocalRegion implements
 
       //list = compiler.compileFromClause(fromClause);
 
-      PartitionedIndex parIndex = new PartitionedIndex(indexType, indexName, PartitionedRegion.this,
+      final PartitionedIndex parIndex = new PartitionedIndex(indexType, indexName, PartitionedRegion.this,
           indexedExpression, fromClause,  imports); // imports can be null
-      String modifiedFromClause;
       //In cases where we have no data yet (creation from cache xml), it would leave the populated flag to false
       //Not really an issue as a put will trigger bucket index creation which should set this the flag to true
       //However if the region is empty, we should set this flag to true so it will be reported as used even though
       //there is no data in the region
-      if (!it.hasNext()) {
+      if (getDataStore().getAllLocalBuckets().isEmpty()) {
         parIndex.setPopulated(true);
       }
-      while (it.hasNext()) {
-        Map.Entry entry = (Map.Entry) it.next();
-        Region bucket = (Region) entry.getValue();
-        
-        if (bucket == null) {
-          continue;
-        }
-
-        ExecutionContext externalContext = new ExecutionContext(null, cache);
-        externalContext.setBucketRegion(PartitionedRegion.this,
-            (BucketRegion) bucket);
-        IndexManager indMng = IndexUtils.getIndexManager(bucket, true);
-        try {
-          Index bucketIndex = indMng
-              .createIndex(indexName, indexType, indexedExpression, fromClause,
-                  imports, externalContext, parIndex, loadEntries);
-          //parIndex.addToBucketIndexes(bucketIndex);
-        } catch (IndexNameConflictException ince) {
-          if (!remotelyOriginated) {
-            throw ince;
-          }
-        } catch (IndexExistsException iee) {
-          if (!remotelyOriginated) {
-            throw iee;
-          }
-        }
-      }// End of bucket list
+      try {
+        BucketIndexPopulator.execute(PartitionedRegion.this, "Creating index " + indexName,
+            new BucketIndexPopulator.BucketTask() {
+              public void run(BucketRegion bucket) throws Exception {
+                ExecutionContext externalContext = new ExecutionContext(null, cache);
+                externalContext.setBucketRegion(PartitionedRegion.this, bucket);
+                IndexManager indMng = IndexUtils.getIndexManager(bucket, true);
+                try {
+                  indMng.createIndex(indexName, indexType, indexedExpression, fromClause,
+                      imports, externalContext, parIndex, loadEntries);
+                } catch (IndexNameConflictException ince) {
+                  if (!remotelyOriginated) {
+                    throw ince;
+                  }
+                } catch (IndexExistsException iee) {
+                  if (!remotelyOriginated) {
+                    throw iee;
+                  }
+                }
+              }
+            });
+      } catch (IndexNameConflictException ince) {
+        throw ince;
+      } catch (IndexExistsException iee) {
+        throw iee;
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IndexCreationException(e.getMessage(), e);
+      }
       return parIndex;
     }
 
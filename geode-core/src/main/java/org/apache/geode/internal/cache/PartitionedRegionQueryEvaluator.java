@@ -548,10 +548,12 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
     if(isGroupByResults) {
       SelectResults baseResults = null;
       CompiledGroupBySelect cgs = (CompiledGroupBySelect) cs;
+      // the members send partial aggregates, the limit is applied to the
+      // groups once they are merged
       if(cgs.getOrderByAttrs() != null && !cgs.getOrderByAttrs().isEmpty()) {
-        baseResults = this.buildSortedResult(cs, limit);        
+        baseResults = this.buildSortedResult(cs, -1);
       }else {
-        baseResults = this.buildCumulativeResults(isDistinct, limit);
+        baseResults = this.buildCumulativeResults(isDistinct, -1);
       }
       ExecutionContext context = new ExecutionContext(null, pr.cache);
       context.setIsPRQueryNode(true);
@@ -63,11 +63,19 @@ public class RegionEvictorTask implements Callable<Object> {
   private final HeapEvictor evictor;
 
   private final long bytesToEvictPerTask ; 
+
+  // True if the task evicts before the eviction threshold has been crossed
+  private final boolean ahead;
   
   public RegionEvictorTask(List<LocalRegion> regionSet, HeapEvictor evictor, long bytesToEvictPerTask) {
+    this(regionSet, evictor, bytesToEvictPerTask, false);
+  }
+
+  public RegionEvictorTask(List<LocalRegion> regionSet, HeapEvictor evictor, long bytesToEvictPerTask, boolean ahead) {
     this.evictor = evictor;
     this.regionSet = regionSet;
     this.bytesToEvictPerTask = bytesToEvictPerTask;
+    this.ahead = ahead;
   }
 
   
@@ -110,7 +118,7 @@ public class RegionEvictorTask implements Callable<Object> {
               }
               totalBytesEvicted += bytesEvicted;
               if (totalBytesEvicted >= bytesToEvictPerTask
-                  || !getHeapEvictor().mustEvict() || this.regionSet.size() == 0) {
+                  || (!this.ahead && !getHeapEvictor().mustEvict()) || this.regionSet.size() == 0) {
                 lastTaskCompletionTime = System.currentTimeMillis();
                 return null;
               }
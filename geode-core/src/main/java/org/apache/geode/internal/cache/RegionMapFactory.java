@@ -17,7 +17,7 @@
 
 package org.apache.geode.internal.cache;
 
-
+import org.apache.geode.distributed.internal.DistributionConfig;
 
 /**
  * Used to produce instances of RegionMap
@@ -27,6 +27,13 @@ package org.apache.geode.internal.cache;
  *
  */
 class RegionMapFactory {
+
+  /**
+   * Set to true to keep the entries of regions whose key constraint is
+   * <code>Long</code> and that do not evict in a {@link VMLongKeyRegionMap}.
+   */
+  static final String LONG_KEY_REGION_MAP_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "LONG_KEY_REGION_MAP";
+
   /**
    * Creates a RegionMap that is stored in the VM.
    * @param owner the region that will be the owner of the map
@@ -41,6 +48,9 @@ class RegionMapFactory {
       return new ProxyRegionMap(owner, attrs, internalRegionArgs);
     } else if (owner.getEvictionController() != null ) {
       return new VMLRURegionMap(owner, attrs,internalRegionArgs);
+    } else if (owner.getKeyConstraint() == Long.class
+        && Boolean.getBoolean(LONG_KEY_REGION_MAP_PROPERTY)) {
+      return new VMLongKeyRegionMap(owner, attrs, internalRegionArgs);
     } else {
       return new VMRegionMap(owner, attrs, internalRegionArgs);
     }
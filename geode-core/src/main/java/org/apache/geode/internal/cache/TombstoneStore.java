@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.LongPredicate;
+
+import org.apache.geode.cache.util.ObjectSizer;
+import org.apache.geode.internal.cache.versions.VersionHolder;
+import org.apache.geode.internal.cache.versions.VersionSource;
+import org.apache.geode.internal.size.ReflectionSingleObjectSizer;
+
+/**
+ * The tombstones of one region, or one bucket, that are scheduled with a
+ * sweeper of the {@link TombstoneService}.
+ * <p>
+ * Tombstones are kept in the order they were scheduled in parallel arrays
+ * holding the region entry and the destroyed version, instead of in a
+ * tombstone object and a queue node each. The oldest tombstones may be marked
+ * expired; they stay in the store until they are taken out for removal from
+ * the region.
+ * <p>
+ * The methods are synchronized on the store. Predicates and visitors run
+ * under that lock, so they must not lock region entries: entries are locked
+ * while tombstones are added.
+ *
+ * @since Geode 1.1
+ */
+final class TombstoneStore {
+
+  /** the estimated bytes used by one tombstone, not counting its key */
+  static final int PER_TOMBSTONE_OVERHEAD = ReflectionSingleObjectSizer.REFERENCE_SIZE * 2 // entry, member ID
+      + 8 // region version
+      + 8 // timestamp
+      + 4 // entry version and distributed system ID
+      + ReflectionSingleObjectSizer.REFERENCE_SIZE; // region entry value (Token.TOMBSTONE)
+
+  private static final int ENTRY_VERSION_MASK = 0xFFFFFF;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final LocalRegion region;
+
+  private RegionEntry[] entries;
+  private VersionSource[] members;
+  private long[] regionVersions;
+  private long[] timestamps;
+  /** the entry version in the low three bytes, the distributed system ID in the high byte */
+  private int[] versions;
+
+  /** the index of the oldest tombstone */
+  private int head;
+  /** the index of the oldest tombstone that is not expired */
+  private int unexpired;
+  /** the index after the newest tombstone */
+  private int tail;
+
+  private long memoryEstimate;
+
+  /** set when the store is no longer registered with its sweeper */
+  private boolean retired;
+
+  /** hands the tombstones to predicates and visitors */
+  private final Cursor cursor = new Cursor();
+
+  TombstoneStore(LocalRegion region) {
+    this(region, INITIAL_CAPACITY);
+  }
+
+  private TombstoneStore(LocalRegion region, int capacity) {
+    this.region = region;
+    allocate(Math.max(capacity, INITIAL_CAPACITY));
+  }
+
+  private void allocate(int capacity) {
+    this.entries = new RegionEntry[capacity];
+    this.members = new VersionSource[capacity];
+    this.regionVersions = new long[capacity];
+    this.timestamps = new long[capacity];
+    this.versions = new int[capacity];
+  }
+
+  LocalRegion getRegion() {
+    return this.region;
+  }
+
+  /**
+   * Adds a tombstone for the given entry and destroyed version.
+   *
+   * @return the estimated size of the tombstone, or -1 if the store is retired
+   *         and the tombstone was not added
+   */
+  synchronized long add(RegionEntry entry, VersionHolder version) {
+    if (this.retired) {
+      return -1;
+    }
+    int i = reserve();
+    this.entries[i] = entry;
+    this.members[i] = version.getMemberID();
+    this.regionVersions[i] = version.getRegionVersion();
+    this.timestamps[i] = version.getVersionTimeStamp();
+    this.versions[i] = (version.getEntryVersion() & ENTRY_VERSION_MASK) | (version.getDistributedSystemId() << 24);
+    long size = sizeOf(entry);
+    this.memoryEstimate += size;
+    return size;
+  }
+
+  private void copyFrom(TombstoneStore other, int from) {
+    int i = reserve();
+    this.entries[i] = other.entries[from];
+    this.members[i] = other.members[from];
+    this.regionVersions[i] = other.regionVersions[from];
+    this.timestamps[i] = other.timestamps[from];
+    this.versions[i] = other.versions[from];
+    this.memoryEstimate += sizeOf(this.entries[i]);
+  }
+
+  private static long sizeOf(RegionEntry entry) {
+    return PER_TOMBSTONE_OVERHEAD + ObjectSizer.DEFAULT.sizeof(entry.getKey());
+  }
+
+  /** returns the index the next tombstone is stored at, making room for it */
+  private int reserve() {
+    if (this.tail == this.entries.length) {
+      int size = this.tail - this.head;
+      if (this.head > 0 && size <= this.entries.length / 2) {
+        move(this.entries.length);
+      } else {
+        move(this.entries.length + (this.entries.length >> 1));
+      }
+    }
+    return this.tail++;
+  }
+
+  /** moves the tombstones to the start of arrays of the given capacity */
+  private void move(int capacity) {
+    int size = this.tail - this.head;
+    RegionEntry[] oldEntries = this.entries;
+    VersionSource[] oldMembers = this.members;
+    long[] oldRegionVersions = this.regionVersions;
+    long[] oldTimestamps = this.timestamps;
+    int[] oldVersions = this.versions;
+    if (capacity != oldEntries.length) {
+      allocate(capacity);
+    }
+    System.arraycopy(oldEntries, this.head, this.entries, 0, size);
+    System.arraycopy(oldMembers, this.head, this.members, 0, size);
+    System.arraycopy(oldRegionVersions, this.head, this.regionVersions, 0, size);
+    System.arraycopy(oldTimestamps, this.head, this.timestamps, 0, size);
+    System.arraycopy(oldVersions, this.head, this.versions, 0, size);
+    if (capacity == oldEntries.length) {
+      clear(size, this.tail);
+    }
+    this.unexpired -= this.head;
+    this.tail = size;
+    this.head = 0;
+  }
+
+  /** drops the references held between the given indexes */
+  private void clear(int from, int to) {
+    for (int i = from; i < to; i++) {
+      this.entries[i] = null;
+      this.members[i] = null;
+    }
+  }
+
+  /** gives back the memory of arrays that are mostly empty */
+  private void shrink() {
+    int size = this.tail - this.head;
+    if (size == 0) {
+      clear(this.head, this.tail);
+      this.head = this.unexpired = this.tail = 0;
+    }
+    if (this.entries.length > INITIAL_CAPACITY && size < this.entries.length / 4) {
+      move(Math.max(INITIAL_CAPACITY, size * 2));
+    }
+  }
+
+  synchronized int size() {
+    return this.tail - this.head;
+  }
+
+  synchronized int getExpiredCount() {
+    return this.unexpired - this.head;
+  }
+
+  synchronized boolean hasUnexpired() {
+    return this.unexpired < this.tail;
+  }
+
+  /**
+   * Returns the version timestamp of the oldest tombstone that is not expired,
+   * or -1 if there is none.
+   */
+  synchronized long getOldestUnexpiredTimestamp() {
+    return this.unexpired < this.tail ? this.timestamps[this.unexpired] : -1L;
+  }
+
+  /**
+   * Returns the version timestamp of the oldest tombstone, or -1 if the store
+   * is empty.
+   */
+  synchronized long getOldestTimestamp() {
+    return this.head < this.tail ? this.timestamps[this.head] : -1L;
+  }
+
+  synchronized long getMemoryEstimate() {
+    return this.memoryEstimate;
+  }
+
+  /**
+   * Marks the oldest tombstones as expired as long as the predicate accepts
+   * their version timestamp, but no more than <code>limit</code> of them.
+   *
+   * @return the number of tombstones marked
+   */
+  synchronized int markExpired(LongPredicate hasExpired, int limit) {
+    int count = 0;
+    while (count < limit && this.unexpired < this.tail && hasExpired.test(this.timestamps[this.unexpired])) {
+      this.unexpired++;
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Removes the expired tombstones from this store.
+   *
+   * @return a new store holding the removed tombstones
+   */
+  synchronized TombstoneStore takeExpired() {
+    TombstoneStore expired = new TombstoneStore(this.region, this.unexpired - this.head);
+    for (int i = this.head; i < this.unexpired; i++) {
+      expired.copyFrom(this, i);
+    }
+    expired.unexpired = expired.tail;
+    this.memoryEstimate -= expired.memoryEstimate;
+    clear(this.head, this.unexpired);
+    this.head = this.unexpired;
+    shrink();
+    return expired;
+  }
+
+  /**
+   * Removes the tombstones the predicate accepts, keeping the order of the
+   * others.
+   *
+   * @param includeExpired whether expired tombstones are tested as well
+   * @return a new store holding the removed tombstones
+   */
+  synchronized TombstoneStore removeIf(BiPredicate<RegionEntry, VersionHolder<VersionSource>> predicate,
+      boolean includeExpired) {
+    TombstoneStore removed = new TombstoneStore(this.region);
+    int to = includeExpired ? this.head : this.unexpired;
+    int newUnexpired = this.unexpired;
+    for (int i = to; i < this.tail; i++) {
+      if (predicate.test(this.entries[i], this.cursor.at(this, i))) {
+        removed.copyFrom(this, i);
+        if (i < this.unexpired) {
+          newUnexpired--;
+        }
+      } else {
+        if (to != i) {
+          this.entries[to] = this.entries[i];
+          this.members[to] = this.members[i];
+          this.regionVersions[to] = this.regionVersions[i];
+          this.timestamps[to] = this.timestamps[i];
+          this.versions[to] = this.versions[i];
+        }
+        to++;
+      }
+    }
+    if (removed.tail > 0) {
+      clear(to, this.tail);
+      this.tail = to;
+      this.unexpired = newUnexpired;
+      this.memoryEstimate -= removed.memoryEstimate;
+      shrink();
+    }
+    this.cursor.at(null, 0);
+    return removed;
+  }
+
+  /**
+   * Calls the visitor for every tombstone, oldest first. The version handed
+   * to the visitor is only valid during the call.
+   */
+  synchronized void forEach(BiConsumer<RegionEntry, VersionHolder<VersionSource>> visitor) {
+    try {
+      for (int i = this.head; i < this.tail; i++) {
+        visitor.accept(this.entries[i], this.cursor.at(this, i));
+      }
+    } finally {
+      this.cursor.at(null, 0);
+    }
+  }
+
+  /**
+   * Marks the store as retired and returns true if it is empty. A retired
+   * store accepts no more tombstones.
+   */
+  synchronized boolean retireIfEmpty() {
+    if (this.head == this.tail) {
+      this.retired = true;
+    }
+    return this.retired;
+  }
+
+  /** Marks the store as retired. A retired store accepts no more tombstones. */
+  synchronized void retire() {
+    this.retired = true;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "(" + this.region.getName() + "; " + (this.tail - this.head) + " tombstones, "
+        + (this.unexpired - this.head) + " expired)";
+  }
+
+  /**
+   * The version of the tombstone at one index of a store.
+   */
+  private static final class Cursor implements VersionHolder<VersionSource> {
+    private TombstoneStore store;
+    private int index;
+
+    Cursor at(TombstoneStore store, int index) {
+      this.store = store;
+      this.index = index;
+      return this;
+    }
+
+    public int getEntryVersion() {
+      return this.store.versions[this.index] & ENTRY_VERSION_MASK;
+    }
+
+    public long getRegionVersion() {
+      return this.store.regionVersions[this.index];
+    }
+
+    public long getVersionTimeStamp() {
+      return this.store.timestamps[this.index];
+    }
+
+    public VersionSource getMemberID() {
+      return this.store.members[this.index];
+    }
+
+    public int getDistributedSystemId() {
+      return (byte) (this.store.versions[this.index] >>> 24);
+    }
+
+    public short getRegionVersionHighBytes() {
+      return (short) (getRegionVersion() >>> 32);
+    }
+
+    public int getRegionVersionLowBytes() {
+      return (int) getRegionVersion();
+    }
+
+    @Override
+    public String toString() {
+      return "{v" + getEntryVersion() + "; rv" + getRegionVersion() + "; mbr=" + getMemberID()
+          + "; time=" + getVersionTimeStamp() + "}";
+    }
+  }
+}
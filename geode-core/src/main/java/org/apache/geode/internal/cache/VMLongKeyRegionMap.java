@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.geode.internal.util.concurrent.ConcurrentLongHashMap;
+import org.apache.geode.internal.util.concurrent.CustomEntryConcurrentHashMap;
+
+/**
+ * Internal implementation of {@link RegionMap} for regions stored in normal
+ * VM memory whose keys are all <code>Long</code>s. The entries are kept in a
+ * {@link ConcurrentLongHashMap}, which stores the keys as primitives next to
+ * the entry references instead of chaining the entries through their hash
+ * and next fields.
+ *
+ * @since Geode 1.1
+ */
+final class VMLongKeyRegionMap extends AbstractRegionMap {
+
+  VMLongKeyRegionMap(Object owner, Attributes attr,
+      InternalRegionArguments internalRegionArgs) {
+    super(internalRegionArgs);
+    initialize(owner, attr, internalRegionArgs, false/*isLRU*/);
+  }
+
+  @Override
+  protected ConcurrentMap<Object, Object> createConcurrentMap(
+      int initialCapacity, float loadFactor, int concurrencyLevel,
+      boolean isIdentityMap,
+      CustomEntryConcurrentHashMap.HashEntryCreator<Object, Object> entryCreator) {
+    return new ConcurrentLongHashMap<Object>(initialCapacity, loadFactor,
+        concurrencyLevel);
+  }
+}
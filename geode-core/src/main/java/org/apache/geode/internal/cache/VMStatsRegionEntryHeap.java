@@ -59,6 +59,9 @@ public abstract class VMStatsRegionEntryHeap extends VMStatsRegionEntry {
       return VMStatsRegionEntryHeapObjectKey.class;
     }
     public RegionEntryFactory makeVersioned() {
+      if (VersionedCompactRegionEntryHeap.COMPACT_ENTRIES) {
+        return VersionedCompactRegionEntryHeap.getEntryFactory(true);
+      }
       return VersionedStatsRegionEntryHeap.getEntryFactory();
     }
 	@Override
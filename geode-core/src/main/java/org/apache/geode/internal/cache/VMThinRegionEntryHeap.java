@@ -61,6 +61,9 @@ public abstract class VMThinRegionEntryHeap extends VMThinRegionEntry {
       return VMThinRegionEntryHeapObjectKey.class;
     }
     public RegionEntryFactory makeVersioned() {
+      if (VersionedCompactRegionEntryHeap.COMPACT_ENTRIES) {
+        return VersionedCompactRegionEntryHeap.getEntryFactory(false);
+      }
       return VersionedThinRegionEntryHeap.getEntryFactory();
     }
 	@Override
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.distributed.internal.membership.InternalDistributedMember;
+import org.apache.geode.internal.cache.versions.VersionSource;
+import org.apache.geode.internal.cache.versions.VersionSourceIndex;
+import org.apache.geode.internal.cache.versions.VersionStamp;
+import org.apache.geode.internal.cache.versions.VersionTag;
+import org.apache.geode.internal.util.concurrent.CustomEntryConcurrentHashMap.HashEntry;
+
+/**
+ * A versioned heap entry that packs its version stamp into one long and one
+ * int. The region version shares the long with the index of the member id in
+ * the {@link VersionSourceIndex}, and the entry version shares the int with
+ * the distributed system id. With compressed oops this makes an entry with an
+ * object or int key 8 bytes smaller than the generated versioned entries.
+ * <p>
+ * These entries are used by regions that are versioned, stored on heap, do
+ * not evict and do not overflow or persist to disk, when
+ * {@link #COMPACT_ENTRIES_PROPERTY} is set. Long, string and uuid keys are
+ * still inlined into the generated entries, which are as small as a compact
+ * entry holding a reference to the key object.
+ *
+ * @since Geode 1.1
+ */
+public abstract class VersionedCompactRegionEntryHeap extends VersionedThinRegionEntry {
+
+  /**
+   * Set to true to store the entries of regions that can use them as
+   * compact entries.
+   */
+  public static final String COMPACT_ENTRIES_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "compactRegionEntries";
+
+  public static final boolean COMPACT_ENTRIES = Boolean.getBoolean(COMPACT_ENTRIES_PROPERTY);
+
+  private static final long REGION_VERSION_MASK = 0x0000FFFFFFFFFFFFL;
+  private static final int MEMBER_INDEX_SHIFT = 48;
+  private static final int ENTRY_VERSION_MASK = 0x00FFFFFF;
+  private static final int DISTRIBUTED_SYSTEM_ID_SHIFT = 24;
+
+  protected VersionedCompactRegionEntryHeap(RegionEntryContext context, Object value) {
+    super(context, value);
+  }
+
+  private volatile long lastModified;
+  private static final AtomicLongFieldUpdater<VersionedCompactRegionEntryHeap> lastModifiedUpdater
+    = AtomicLongFieldUpdater.newUpdater(VersionedCompactRegionEntryHeap.class, "lastModified");
+  /** the member id index in the high 16 bits and the region version below it */
+  private long memberAndRegionVersion;
+  /** the distributed system id in the high 8 bits and the entry version below it */
+  private int dsIdAndEntryVersion;
+  protected int hash;
+  private HashEntry<Object, Object> next;
+  private volatile Object value;
+
+  @Override
+  protected final Object getValueField() {
+    return this.value;
+  }
+  @Override
+  protected void setValueField(Object v) {
+    this.value = v;
+  }
+  protected long getlastModifiedField() {
+    return lastModifiedUpdater.get(this);
+  }
+  protected boolean compareAndSetLastModifiedField(long expectedValue, long newValue) {
+    return lastModifiedUpdater.compareAndSet(this, expectedValue, newValue);
+  }
+  /**
+   * @see HashEntry#getEntryHash()
+   */
+  public final int getEntryHash() {
+    return this.hash;
+  }
+  protected void setEntryHash(int v) {
+    this.hash = v;
+  }
+  /**
+   * @see HashEntry#getNextEntry()
+   */
+  public final HashEntry<Object, Object> getNextEntry() {
+    return this.next;
+  }
+  /**
+   * @see HashEntry#setNextEntry
+   */
+  public final void setNextEntry(final HashEntry<Object, Object> n) {
+    this.next = n;
+  }
+
+  public int getEntryVersion() {
+    return this.dsIdAndEntryVersion & ENTRY_VERSION_MASK;
+  }
+  public long getRegionVersion() {
+    return (((long)getRegionVersionHighBytes()) << 32) | (getRegionVersionLowBytes() & 0x00000000FFFFFFFFL);
+  }
+  public long getVersionTimeStamp() {
+    return getLastModified();
+  }
+  public void setVersionTimeStamp(long time) {
+    setLastModified(time);
+  }
+  public VersionSource getMemberID() {
+    int memberIndex = (int) (this.memberAndRegionVersion >>> MEMBER_INDEX_SHIFT);
+    if (memberIndex == VersionSourceIndex.OVERFLOW_INDEX) {
+      return VersionSourceIndex.getOverflowSource(this);
+    }
+    return VersionSourceIndex.getVersionSource(memberIndex);
+  }
+  /**
+   * Returns the index to store for a member id, keeping the member id aside
+   * when the index table is full.
+   */
+  private int getMemberIndex(VersionSource memberID) {
+    int memberIndex = VersionSourceIndex.getIndex(memberID);
+    if (memberIndex == VersionSourceIndex.OVERFLOW_INDEX) {
+      VersionSourceIndex.setOverflowSource(this, memberID);
+    } else {
+      VersionSourceIndex.removeOverflowSource(this);
+    }
+    return memberIndex;
+  }
+  public int getDistributedSystemId() {
+    return (byte) (this.dsIdAndEntryVersion >>> DISTRIBUTED_SYSTEM_ID_SHIFT);
+  }
+  public void setVersions(VersionTag tag) {
+    int memberIndex = getMemberIndex(tag.getMemberID());
+    long regionVersion = (((long) tag.getRegionVersionHighBytes()) << 32)
+        | (tag.getRegionVersionLowBytes() & 0x00000000FFFFFFFFL);
+    this.memberAndRegionVersion = ((long) memberIndex << MEMBER_INDEX_SHIFT) | (regionVersion & REGION_VERSION_MASK);
+    int dsId = getDistributedSystemId();
+    if (!(tag.isGatewayTag()) && dsId == tag.getDistributedSystemId()) {
+      if (getVersionTimeStamp() <= tag.getVersionTimeStamp()) {
+        setVersionTimeStamp(tag.getVersionTimeStamp());
+      } else {
+        tag.setVersionTimeStamp(getVersionTimeStamp());
+      }
+    } else {
+      setVersionTimeStamp(tag.getVersionTimeStamp());
+    }
+    this.dsIdAndEntryVersion = ((tag.getDistributedSystemId() & 0xff) << DISTRIBUTED_SYSTEM_ID_SHIFT)
+        | (tag.getEntryVersion() & ENTRY_VERSION_MASK);
+  }
+  public void setMemberID(VersionSource memberID) {
+    int memberIndex = getMemberIndex(memberID);
+    this.memberAndRegionVersion = ((long) memberIndex << MEMBER_INDEX_SHIFT)
+        | (this.memberAndRegionVersion & REGION_VERSION_MASK);
+  }
+  @Override
+  public VersionStamp getVersionStamp() {
+    return this;
+  }
+  public VersionTag asVersionTag() {
+    VersionTag tag = VersionTag.create(getMemberID());
+    tag.setEntryVersion(getEntryVersion());
+    tag.setRegionVersion(getRegionVersionHighBytes(), getRegionVersionLowBytes());
+    tag.setVersionTimeStamp(getVersionTimeStamp());
+    tag.setDistributedSystemId(getDistributedSystemId());
+    return tag;
+  }
+  public void processVersionTag(LocalRegion r, VersionTag tag,
+      boolean isTombstoneFromGII, boolean hasDelta,
+      VersionSource thisVM, InternalDistributedMember sender, boolean checkForConflicts) {
+    basicProcessVersionTag(r, tag, isTombstoneFromGII, hasDelta, thisVM, sender, checkForConflicts);
+  }
+  @Override
+  public void processVersionTag(EntryEvent cacheEvent) {
+    // this keeps Eclipse happy.  without it the sender chain becomes confused
+    // while browsing this code
+    super.processVersionTag(cacheEvent);
+  }
+  /** get rvv internal high byte.  Used by region entries for transferring to storage */
+  public short getRegionVersionHighBytes() {
+    return (short) (this.memberAndRegionVersion >>> 32);
+  }
+  /** get rvv internal low bytes.  Used by region entries for transferring to storage */
+  public int getRegionVersionLowBytes() {
+    return (int) this.memberAndRegionVersion;
+  }
+
+  private static final RegionEntryFactory factory = new VersionedCompactRegionEntryHeapFactory(false);
+
+  private static final RegionEntryFactory statsFactory = new VersionedCompactRegionEntryHeapFactory(true);
+
+  public static RegionEntryFactory getEntryFactory(boolean statsEnabled) {
+    return statsEnabled ? statsFactory : factory;
+  }
+
+  private static class VersionedCompactRegionEntryHeapFactory implements RegionEntryFactory {
+    private final boolean statsEnabled;
+
+    /**
+     * creates the entries for keys the generated entries inline, and all
+     * the entries once the member id indexes run out
+     */
+    private final RegionEntryFactory inlineKeyFactory;
+
+    VersionedCompactRegionEntryHeapFactory(boolean statsEnabled) {
+      this.statsEnabled = statsEnabled;
+      this.inlineKeyFactory = statsEnabled ? VersionedStatsRegionEntryHeap.getEntryFactory()
+          : VersionedThinRegionEntryHeap.getEntryFactory();
+    }
+
+    public final RegionEntry createEntry(RegionEntryContext context, Object key, Object value) {
+      if (VersionSourceIndex.isFull()) {
+        // new member ids no longer get an index
+        return this.inlineKeyFactory.createEntry(context, key, value);
+      }
+      if (InlineKeyHelper.INLINE_REGION_KEYS) {
+        Class<?> keyClass = key.getClass();
+        if (keyClass == Integer.class) {
+          if (this.statsEnabled) {
+            return new VersionedCompactStatsRegionEntryHeapIntKey(context, (Integer)key, value);
+          }
+          return new VersionedCompactRegionEntryHeapIntKey(context, (Integer)key, value);
+        } else if (keyClass == Long.class || keyClass == UUID.class
+            || (keyClass == String.class && InlineKeyHelper.canStringBeInlineEncoded((String)key) != null)) {
+          return this.inlineKeyFactory.createEntry(context, key, value);
+        }
+      }
+      if (this.statsEnabled) {
+        return new VersionedCompactStatsRegionEntryHeapObjectKey(context, key, value);
+      }
+      return new VersionedCompactRegionEntryHeapObjectKey(context, key, value);
+    }
+
+    public final Class getEntryClass() {
+      // The class returned from this method is used to estimate the memory size.
+      // This estimate will not take into account the memory saved by inlining the keys.
+      return this.statsEnabled ? VersionedCompactStatsRegionEntryHeapObjectKey.class
+          : VersionedCompactRegionEntryHeapObjectKey.class;
+    }
+    public RegionEntryFactory makeVersioned() {
+      return this;
+    }
+    @Override
+    public RegionEntryFactory makeOnHeap() {
+      return this;
+    }
+  }
+}
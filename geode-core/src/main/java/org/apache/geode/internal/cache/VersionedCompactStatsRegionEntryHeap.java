@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.InternalStatisticsDisabledException;
+
+/**
+ * A {@link VersionedCompactRegionEntryHeap} that also keeps entry statistics.
+ * The last access time is kept as an int number of
+ * {@link #ACCESS_TIME_GRANULARITY} ticks instead of a long, rounded up so that
+ * idle expiration never happens early because of it.
+ *
+ * @since Geode 1.1
+ */
+public abstract class VersionedCompactStatsRegionEntryHeap extends VersionedCompactRegionEntryHeap {
+
+  /**
+   * The precision of the last access time of compact entries in milliseconds.
+   * The ticks cover 13 years at the default of 100 milliseconds.
+   */
+  public static final long ACCESS_TIME_GRANULARITY = Math.max(1, Long.getLong(
+      DistributionConfig.GEMFIRE_PREFIX + "compactRegionEntries.accessTimeGranularity", 100).longValue());
+
+  /**
+   * Access times are counted in ticks from this time, a day before the class
+   * was loaded to allow for the cache time being behind the system clock.
+   */
+  private static final long ACCESS_TIME_BASE = System.currentTimeMillis() - 24 * 60 * 60 * 1000L;
+
+  private static final long MAX_ACCESS_TICK = 0xFFFFFFFFL;
+
+  protected VersionedCompactStatsRegionEntryHeap(RegionEntryContext context, Object value) {
+    super(context, value);
+  }
+
+  private volatile int accessTick;
+  private volatile int hitCount;
+  private volatile int missCount;
+  private static final AtomicIntegerFieldUpdater<VersionedCompactStatsRegionEntryHeap> hitCountUpdater
+    = AtomicIntegerFieldUpdater.newUpdater(VersionedCompactStatsRegionEntryHeap.class, "hitCount");
+  private static final AtomicIntegerFieldUpdater<VersionedCompactStatsRegionEntryHeap> missCountUpdater
+    = AtomicIntegerFieldUpdater.newUpdater(VersionedCompactStatsRegionEntryHeap.class, "missCount");
+
+  @Override
+  public final void updateStatsForGet(boolean hit, long time)
+  {
+    setLastAccessed(time);
+    if (hit) {
+      incrementHitCount();
+    } else {
+      incrementMissCount();
+    }
+  }
+  @Override
+  protected final void setLastModified(long lastModified) {
+    _setLastModified(lastModified);
+    if (!DISABLE_ACCESS_TIME_UPDATE_ON_PUT) {
+      setLastAccessed(lastModified);
+    }
+  }
+  @Override
+  public final long getLastAccessed() throws InternalStatisticsDisabledException {
+    return toAccessTime(this.accessTick);
+  }
+  private void setLastAccessed(long lastAccessed) {
+    this.accessTick = toAccessTick(lastAccessed);
+  }
+  @Override
+  public final long getHitCount() throws InternalStatisticsDisabledException {
+    return this.hitCount & 0xFFFFFFFFL;
+  }
+  @Override
+  public final long getMissCount() throws InternalStatisticsDisabledException {
+    return this.missCount & 0xFFFFFFFFL;
+  }
+  private void incrementHitCount() {
+    hitCountUpdater.incrementAndGet(this);
+  }
+  private void incrementMissCount() {
+    missCountUpdater.incrementAndGet(this);
+  }
+  @Override
+  public final void resetCounts() throws InternalStatisticsDisabledException {
+    hitCountUpdater.set(this,0);
+    missCountUpdater.set(this,0);
+  }
+  @Override
+  public final void txDidDestroy(long currTime) {
+    setLastModified(currTime);
+    setLastAccessed(currTime);
+    this.hitCount = 0;
+    this.missCount = 0;
+  }
+  @Override
+  public boolean hasStats() {
+    return true;
+  }
+
+  /**
+   * Returns the unsigned tick of <code>time</code>, rounded up.
+   */
+  static int toAccessTick(long time) {
+    if (time <= 0) {
+      // no access yet
+      return 0;
+    }
+    long tick = (time - ACCESS_TIME_BASE + ACCESS_TIME_GRANULARITY - 1) / ACCESS_TIME_GRANULARITY;
+    if (tick < 1) {
+      tick = 1;
+    } else if (tick > MAX_ACCESS_TICK) {
+      tick = MAX_ACCESS_TICK;
+    }
+    return (int) tick;
+  }
+
+  static long toAccessTime(int tick) {
+    if (tick == 0) {
+      return 0;
+    }
+    return ACCESS_TIME_BASE + (tick & MAX_ACCESS_TICK) * ACCESS_TIME_GRANULARITY;
+  }
+}
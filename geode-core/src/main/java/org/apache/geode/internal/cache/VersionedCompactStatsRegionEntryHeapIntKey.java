@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+/**
+ * A {@link VersionedCompactStatsRegionEntryHeap} whose key is an inlined int.
+ *
+ * @since Geode 1.1
+ */
+public class VersionedCompactStatsRegionEntryHeapIntKey extends VersionedCompactStatsRegionEntryHeap {
+  public VersionedCompactStatsRegionEntryHeapIntKey(RegionEntryContext context, int key, Object value) {
+    super(context, value);
+    this.key = key;
+  }
+  private final int key;
+  @Override
+  public final Object getKey() {
+    return this.key;
+  }
+  @Override
+  public boolean isKeyEqual(Object k) {
+    if (k instanceof Integer) {
+      return ((Integer) k).intValue() == this.key;
+    }
+    return false;
+  }
+}
@@ -69,6 +69,15 @@ public class HeapMemoryMonitor implements NotificationListener, ResourceMonitor
   
    // Internal for polling the JVM for changes in heap memory usage.
   private static final int POLLER_INTERVAL = Integer.getInteger(POLLER_INTERVAL_PROP, 500).intValue();
+
+  // Property for starting eviction before the eviction threshold is crossed, based upon the tenured growth rate
+  public static final String PREDICTIVE_EVICTION_PROP = DistributionConfig.GEMFIRE_PREFIX + "ResourceManager.predictiveEviction";
+
+  // Property for setting how far ahead, in milliseconds, predictive eviction looks (below)
+  public static final String PREDICTION_LEAD_TIME_PROP = DistributionConfig.GEMFIRE_PREFIX + "ResourceManager.predictionLeadTime";
+
+  // Eviction starts once the tenured usage predicted this far ahead reaches the eviction threshold
+  private static final long PREDICTION_LEAD_TIME = Long.getLong(PREDICTION_LEAD_TIME_PROP, 2000).longValue();
   
   // This holds a new event as it transitions from updateStateAndSendEvent(...) to fillInProfile()
   private ThreadLocal<MemoryEvent> upcomingEvent = new ThreadLocal<MemoryEvent>();
@@ -153,6 +162,12 @@ public class HeapMemoryMonitor implements NotificationListener, ResourceMonitor
   private final GemFireCacheImpl cache;
   private final ResourceManagerStats stats;
 
+  // Tracks the tenured growth rate when predictive eviction is enabled, null otherwise
+  private final HeapUsagePredictor predictor;
+
+  // Set while the heap is below the eviction threshold but predicted to cross it
+  private volatile boolean evictingAhead = false;
+
   private static boolean testDisableMemoryUpdates = false;
   private static long testBytesUsedForThresholdSet = -1;
 
@@ -196,6 +211,7 @@ public class HeapMemoryMonitor implements NotificationListener, ResourceMonitor
     this.resourceAdvisor = (ResourceAdvisor) cache.getDistributionAdvisor();
     this.cache = cache;
     this.stats = stats;
+    this.predictor = Boolean.getBoolean(PREDICTIVE_EVICTION_PROP) ? new HeapUsagePredictor() : null;
   }
 
   /**
@@ -461,6 +477,7 @@ public void stopMonitoring() {
    */
   public void updateStateAndSendEvent(long bytesUsed) {
     this.stats.changeTenuredHeapUsed(bytesUsed);
+    long bytesToEvictAhead;
     synchronized (this) {
       MemoryState oldState = this.mostRecentEvent.getState();
       MemoryState newState = this.thresholds.computeNextState(oldState, bytesUsed);
@@ -487,7 +504,47 @@ public void stopMonitoring() {
         this.upcomingEvent.set(event);
         processLocalEvent(event);
       }
+
+      bytesToEvictAhead = predictEviction(bytesUsed);
+    }
+
+    if (bytesToEvictAhead > 0 && this.cache.getHeapEvictor().evictAhead(bytesToEvictAhead)) {
+      this.stats.incEvictionAheadEvents();
+    }
+  }
+
+  /**
+   * Adds a usage sample to the predictor and decides whether eviction should
+   * start before the eviction threshold is crossed. This is the case when the
+   * heap is below the threshold but the usage predicted at the end of the
+   * lead time is not.
+   * 
+   * @param bytesUsed Number of bytes of heap memory currently used.
+   * @return the number of bytes by which the predicted usage exceeds the
+   *         eviction threshold, or zero if there is no need to evict ahead
+   */
+  private long predictEviction(long bytesUsed) {
+    if (this.predictor == null) {
+      return 0;
     }
+    this.predictor.sample(System.currentTimeMillis(), bytesUsed);
+    long predicted = this.predictor.predict(PREDICTION_LEAD_TIME);
+    long target = this.thresholds.getEvictionThresholdBytes();
+    this.stats.changeTenuredHeapUsedPredicted(predicted);
+    this.stats.changeTenuredHeapGrowthRate(this.predictor.getGrowthRate());
+    this.stats.changeHeapEvictionTarget(target);
+
+    boolean ahead = this.thresholds.isEvictionThresholdEnabled() && this.currentState.isNormal() && predicted >= target;
+    this.evictingAhead = ahead;
+    return ahead ? predicted - target : 0;
+  }
+
+  /**
+   * Returns true if the heap is below the eviction threshold but predicted to
+   * cross it, in which case heap LRU regions evict as if it had been crossed.
+   */
+  public boolean isEvictingAhead() {
+    return this.evictingAhead;
   }
 
   /**
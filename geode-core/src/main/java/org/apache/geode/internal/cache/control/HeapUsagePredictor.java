@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.control;
+
+/**
+ * Predicts tenured heap usage from the usage samples taken by the
+ * {@link HeapMemoryMonitor}.
+ * <p>
+ * Tenured usage only grows by promotion between old generation collections,
+ * so the growth between two samples is the promotion rate of that interval.
+ * The predictor keeps an exponentially weighted moving average of that rate.
+ * A sample lower than the previous one means a collection freed memory, it
+ * restarts the interval without lowering the rate, which is what the heap
+ * will grow at again right after the collection.
+ *
+ * @since Geode 1.1
+ */
+final class HeapUsagePredictor {
+
+  /**
+   * Weight of the newest interval in the moving average of the growth rate.
+   */
+  static final double DEFAULT_SMOOTHING = 0.3;
+
+  private final double smoothing;
+
+  private long lastTime = -1;
+
+  private long lastBytesUsed;
+
+  /**
+   * The average growth rate in bytes per millisecond.
+   */
+  private double growthRate;
+
+  HeapUsagePredictor() {
+    this(DEFAULT_SMOOTHING);
+  }
+
+  HeapUsagePredictor(double smoothing) {
+    this.smoothing = smoothing;
+  }
+
+  /**
+   * Records the tenured usage at the given time in milliseconds.
+   */
+  synchronized void sample(long now, long bytesUsed) {
+    if (this.lastTime >= 0 && now > this.lastTime && bytesUsed >= this.lastBytesUsed) {
+      double rate = (double)(bytesUsed - this.lastBytesUsed) / (now - this.lastTime);
+      this.growthRate += this.smoothing * (rate - this.growthRate);
+    }
+    if (this.lastTime < 0 || now > this.lastTime || bytesUsed < this.lastBytesUsed) {
+      this.lastTime = now;
+      this.lastBytesUsed = bytesUsed;
+    }
+  }
+
+  /**
+   * Returns the tenured usage expected <code>leadTime</code> milliseconds
+   * after the last sample if the heap keeps growing at the average rate.
+   */
+  synchronized long predict(long leadTime) {
+    return this.lastBytesUsed + (long)(this.growthRate * leadTime);
+  }
+
+  /**
+   * Returns the average growth rate in bytes per second.
+   */
+  synchronized long getGrowthRate() {
+    return (long)(this.growthRate * 1000);
+  }
+
+  /**
+   * Returns the number of bytes the heap is expected to grow by in the given
+   * number of milliseconds.
+   */
+  synchronized long getGrowth(long millis) {
+    return (long)(this.growthRate * millis);
+  }
+}
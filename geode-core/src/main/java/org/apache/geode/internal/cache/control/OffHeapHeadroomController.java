@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.control;
+
+/**
+ * Decides how the {@link OffHeapMemoryMonitor} keeps off-heap headroom. The
+ * headroom has two parts: a target of free bytes, and a target size for the
+ * largest free fragment. Both are needed because the free memory is
+ * fragmented, so evicting N bytes does not guarantee that N bytes can be
+ * allocated.
+ * <p>
+ * For each sample the controller chooses one action:
+ * <ul>
+ * <li>If free memory is below its target, it evicts the shortfall before the
+ * eviction threshold is reached.</li>
+ * <li>If there is enough free memory but no fragment is large enough, it
+ * defragments, at most once per defragment interval.</li>
+ * <li>If the last defragmentation did not help, it evicts once more. The
+ * chunks freed by the eviction can then be coalesced by the next
+ * defragmentation.</li>
+ * </ul>
+ *
+ * @since Geode 1.1
+ */
+final class OffHeapHeadroomController {
+
+  static final int NONE = 0;
+  static final int EVICT = 1;
+  static final int DEFRAGMENT = 2;
+
+  private final long freeBytesTarget;
+
+  private final int fragmentTarget;
+
+  private final long defragmentInterval;
+
+  private long lastDefragmentTime;
+
+  private boolean evictedSinceDefragment;
+
+  private long bytesToEvict;
+
+  /**
+   * @param freeBytesTarget the number of bytes to keep free
+   * @param fragmentTarget the size the largest free fragment should have, at
+   *        most freeBytesTarget
+   * @param defragmentInterval the minimum number of milliseconds between two
+   *        defragmentations
+   */
+  OffHeapHeadroomController(long freeBytesTarget, int fragmentTarget, long defragmentInterval) {
+    this.freeBytesTarget = freeBytesTarget;
+    this.fragmentTarget = (int) Math.min(fragmentTarget, freeBytesTarget);
+    this.defragmentInterval = defragmentInterval;
+    this.lastDefragmentTime = -defragmentInterval;
+  }
+
+  /**
+   * Returns the action to take for the given off-heap state. For
+   * {@link #EVICT}, {@link #getBytesToEvict()} tells how much.
+   *
+   * @param now the current time in milliseconds
+   * @param freeBytes the number of free off-heap bytes
+   * @param largestFragment the size of the largest free fragment
+   */
+  int sample(long now, long freeBytes, int largestFragment) {
+    this.bytesToEvict = 0;
+    if (freeBytes < this.freeBytesTarget) {
+      this.bytesToEvict = this.freeBytesTarget - freeBytes;
+      return EVICT;
+    }
+    if (largestFragment >= this.fragmentTarget) {
+      return NONE;
+    }
+    if (now - this.lastDefragmentTime >= this.defragmentInterval) {
+      this.lastDefragmentTime = now;
+      this.evictedSinceDefragment = false;
+      return DEFRAGMENT;
+    }
+    if (!this.evictedSinceDefragment) {
+      this.evictedSinceDefragment = true;
+      this.bytesToEvict = this.fragmentTarget;
+      return EVICT;
+    }
+    return NONE;
+  }
+
+  long getBytesToEvict() {
+    return this.bytesToEvict;
+  }
+
+  long getFreeBytesTarget() {
+    return this.freeBytesTarget;
+  }
+
+  int getFragmentTarget() {
+    return this.fragmentTarget;
+  }
+}
@@ -21,6 +21,7 @@ import java.util.Set;
 import org.apache.logging.log4j.Logger;
 
 import org.apache.geode.CancelException;
+import org.apache.geode.distributed.internal.DistributionConfig;
 import org.apache.geode.internal.cache.GemFireCacheImpl;
 import org.apache.geode.internal.cache.control.InternalResourceManager.ResourceType;
 import org.apache.geode.internal.cache.control.MemoryThresholds.MemoryState;
@@ -41,6 +42,19 @@ import org.apache.geode.internal.offheap.MemoryUsageListener;
  */
 public class OffHeapMemoryMonitor implements ResourceMonitor, MemoryUsageListener {
   private static final Logger logger = LogService.getLogger();
+
+  // Property for setting the percentage of off-heap memory to keep free ahead of the eviction threshold, 0 disables it
+  public static final String HEADROOM_PERCENTAGE_PROP = DistributionConfig.GEMFIRE_PREFIX + "OffHeapMemoryMonitor.headroomPercentage";
+
+  // Property for setting the size of the largest free fragment kept as part of the headroom
+  public static final String HEADROOM_FRAGMENT_SIZE_PROP = DistributionConfig.GEMFIRE_PREFIX + "OffHeapMemoryMonitor.headroomFragmentSize";
+
+  // Property for setting the minimum number of milliseconds between two headroom defragmentations
+  public static final String HEADROOM_DEFRAGMENT_INTERVAL_PROP = DistributionConfig.GEMFIRE_PREFIX + "OffHeapMemoryMonitor.headroomDefragmentInterval";
+
+  // Interval, in milliseconds, at which the headroom is checked by the usage listener thread
+  private static final long HEADROOM_SAMPLE_INTERVAL = Long.getLong(DistributionConfig.GEMFIRE_PREFIX + "OffHeapMemoryMonitor.headroomSampleInterval", 100).longValue();
+
   private volatile MemoryThresholds thresholds = new MemoryThresholds(0);
   private volatile MemoryEvent mostRecentEvent = new MemoryEvent(ResourceType.OFFHEAP_MEMORY, MemoryState.DISABLED,
       MemoryState.DISABLED, null, 0L, true, this.thresholds);
@@ -66,6 +80,15 @@ public class OffHeapMemoryMonitor implements ResourceMonitor, MemoryUsageListene
    */
   private final MemoryAllocator memoryAllocator;
 
+  // Keeps the off-heap headroom when a headroom percentage is configured, null otherwise
+  private final OffHeapHeadroomController headroomController;
+
+  // Set while off-heap usage is below the eviction threshold but the headroom is not kept
+  private volatile boolean evictingAhead = false;
+
+  // Only accessed by the usage listener thread
+  private long lastHeadroomSampleTime = 0;
+
   OffHeapMemoryMonitor(final InternalResourceManager resourceManager, final GemFireCacheImpl cache, final MemoryAllocator memoryAllocator, final ResourceManagerStats stats) {
     this.resourceManager = resourceManager;
     this.resourceAdvisor = (ResourceAdvisor) cache.getDistributionAdvisor();
@@ -76,10 +99,25 @@ public class OffHeapMemoryMonitor implements ResourceMonitor, MemoryUsageListene
     if (memoryAllocator != null) {
       this.thresholds = new MemoryThresholds(this.memoryAllocator.getTotalMemory());
     }
+    this.headroomController = createHeadroomController(memoryAllocator);
     
     this.offHeapMemoryUsageListener = new OffHeapMemoryUsageListener();
   }
 
+  private static OffHeapHeadroomController createHeadroomController(MemoryAllocator memoryAllocator) {
+    float headroomPercentage = Float.parseFloat(System.getProperty(HEADROOM_PERCENTAGE_PROP, "0"));
+    if (memoryAllocator == null || headroomPercentage <= 0) {
+      return null;
+    }
+    if (headroomPercentage > 100.0f) {
+      throw new IllegalArgumentException(HEADROOM_PERCENTAGE_PROP + " must be between 0 and 100 but was " + headroomPercentage);
+    }
+    long freeBytesTarget = (long) (memoryAllocator.getTotalMemory() * 0.01 * headroomPercentage);
+    int fragmentTarget = Integer.getInteger(HEADROOM_FRAGMENT_SIZE_PROP, 1024 * 1024).intValue();
+    long defragmentInterval = Long.getLong(HEADROOM_DEFRAGMENT_INTERVAL_PROP, 1000).longValue();
+    return new OffHeapHeadroomController(freeBytesTarget, fragmentTarget, defragmentInterval);
+  }
+
   /**
    * Start monitoring off-heap memory usage by adding this as a listener to the
    * off-heap memory allocator.
@@ -404,6 +442,63 @@ public class OffHeapMemoryMonitor implements ResourceMonitor, MemoryUsageListene
     return this.currentState;
   }
 
+  /**
+   * Returns true if off-heap usage is below the eviction threshold but the
+   * headroom is not kept, in which case off-heap LRU regions evict as if it
+   * had been crossed.
+   */
+  public boolean isEvictingAhead() {
+    return this.evictingAhead;
+  }
+
+  /**
+   * Keeps free bytes and the largest free fragment at the headroom targets,
+   * by evicting before the eviction threshold is crossed and by defragmenting
+   * the free memory. Called by the usage listener thread, it samples the
+   * allocator at most once per headroom sample interval.
+   */
+  void maintainHeadroom() {
+    final OffHeapHeadroomController controller = this.headroomController;
+    if (controller == null) {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    if (now - this.lastHeadroomSampleTime < HEADROOM_SAMPLE_INTERVAL) {
+      return;
+    }
+    this.lastHeadroomSampleTime = now;
+
+    final int largestFragment = this.memoryAllocator.getLargestFreeFragment();
+    this.stats.changeOffHeapLargestFreeFragment(largestFragment);
+    if (!this.thresholds.isEvictionThresholdEnabled()) {
+      // without off-heap LRU regions there is nothing to evict
+      this.evictingAhead = false;
+      return;
+    }
+
+    try {
+      switch (controller.sample(now, this.memoryAllocator.getFreeMemory(), largestFragment)) {
+      case OffHeapHeadroomController.EVICT:
+        this.evictingAhead = this.currentState.isNormal();
+        if (this.evictingAhead && this.cache.getOffHeapEvictor().evictAhead(controller.getBytesToEvict())) {
+          this.stats.incOffHeapHeadroomEvictions();
+        }
+        break;
+      case OffHeapHeadroomController.DEFRAGMENT:
+        this.evictingAhead = false;
+        this.memoryAllocator.defragment(controller.getFragmentTarget());
+        this.stats.incOffHeapHeadroomDefragmentations();
+        break;
+      default:
+        this.evictingAhead = false;
+        break;
+      }
+    } catch (CancelException ignore) {
+      // the cache is closing and the listener will be stopped
+      this.evictingAhead = false;
+    }
+  }
+
   public MemoryThresholds getThresholds() {
     MemoryThresholds saveThresholds = this.thresholds;
 
@@ -517,6 +612,7 @@ public class OffHeapMemoryMonitor implements ResourceMonitor, MemoryUsageListene
         } else {
           callsWithNoEvent = 0;
         }
+        maintainHeadroom();
 
         synchronized (this) {
           if (this.stopRequested) {
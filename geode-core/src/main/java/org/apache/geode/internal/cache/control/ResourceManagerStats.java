@@ -70,6 +70,13 @@ public class ResourceManagerStats {
   private static final int evictionThresholdId;
   private static final int offHeapEvictionThresholdId;
   private static final int tenuredHeapUsageId;
+  private static final int tenuredHeapUsagePredictedId;
+  private static final int tenuredHeapGrowthRateId;
+  private static final int heapEvictionTargetId;
+  private static final int evictionAheadEventsId;
+  private static final int offHeapLargestFreeFragmentId;
+  private static final int offHeapHeadroomEvictionsId;
+  private static final int offHeapHeadroomDefragmentationsId;
   private static final int resourceEventsDeliveredId;
   private static final int resourceEventQueueSizeId;
   private static final int thresholdEventProcessorThreadJobsId;
@@ -236,6 +243,34 @@ public class ResourceManagerStats {
                 "tenuredHeapUsed",
                 "Total memory used in the tenured/old space",
                 "bytes"),
+            f.createLongGauge(
+                "tenuredHeapUsedPredicted",
+                "Memory expected to be used in the tenured/old space at the end of the predictive eviction lead time",
+                "bytes"),
+            f.createLongGauge(
+                "tenuredHeapGrowthRate",
+                "Average rate at which objects are promoted into the tenured/old space",
+                "bytes/second"),
+            f.createLongGauge(
+                "heapEvictionTarget",
+                "The tenured heap usage that predictive eviction keeps the heap below",
+                "bytes"),
+            f.createIntCounter(
+                "evictionAheadEvents",
+                "Total number of eviction passes started because heap usage was predicted to go over the eviction threshold.",
+                "events"),
+            f.createIntGauge(
+                "offHeapLargestFreeFragment",
+                "Size of the largest free off-heap fragment, that is the largest object that can be allocated without defragmenting",
+                "bytes"),
+            f.createIntCounter(
+                "offHeapHeadroomEvictions",
+                "Total number of eviction passes started to keep the off-heap headroom, before the off-heap eviction threshold was crossed.",
+                "events"),
+            f.createIntCounter(
+                "offHeapHeadroomDefragmentations",
+                "Total number of off-heap defragmentations started because the largest free fragment was smaller than the headroom fragment size.",
+                "operations"),
             f.createIntCounter(
                 "resourceEventsDelivered",
                 "Total number of resource events delivered to listeners",
@@ -287,6 +322,13 @@ public class ResourceManagerStats {
     evictionThresholdId = type.nameToId("evictionThreshold");
     offHeapEvictionThresholdId = type.nameToId("offHeapEvictionThreshold");
     tenuredHeapUsageId = type.nameToId("tenuredHeapUsed");
+    tenuredHeapUsagePredictedId = type.nameToId("tenuredHeapUsedPredicted");
+    tenuredHeapGrowthRateId = type.nameToId("tenuredHeapGrowthRate");
+    heapEvictionTargetId = type.nameToId("heapEvictionTarget");
+    evictionAheadEventsId = type.nameToId("evictionAheadEvents");
+    offHeapLargestFreeFragmentId = type.nameToId("offHeapLargestFreeFragment");
+    offHeapHeadroomEvictionsId = type.nameToId("offHeapHeadroomEvictions");
+    offHeapHeadroomDefragmentationsId = type.nameToId("offHeapHeadroomDefragmentations");
     resourceEventsDeliveredId = type.nameToId("resourceEventsDelivered");
     resourceEventQueueSizeId = type.nameToId("resourceEventQueueSize");
     thresholdEventProcessorThreadJobsId = type.nameToId("thresholdEventProcessorThreadJobs");
@@ -552,6 +594,62 @@ public class ResourceManagerStats {
     return this.stats.getLong(tenuredHeapUsageId);
   }
 
+  public void changeTenuredHeapUsedPredicted(long newValue) {
+    this.stats.setLong(tenuredHeapUsagePredictedId, newValue);
+  }
+
+  public long getTenuredHeapUsedPredicted() {
+    return this.stats.getLong(tenuredHeapUsagePredictedId);
+  }
+
+  public void changeTenuredHeapGrowthRate(long newValue) {
+    this.stats.setLong(tenuredHeapGrowthRateId, newValue);
+  }
+
+  public long getTenuredHeapGrowthRate() {
+    return this.stats.getLong(tenuredHeapGrowthRateId);
+  }
+
+  public void changeHeapEvictionTarget(long newValue) {
+    this.stats.setLong(heapEvictionTargetId, newValue);
+  }
+
+  public long getHeapEvictionTarget() {
+    return this.stats.getLong(heapEvictionTargetId);
+  }
+
+  public void incEvictionAheadEvents() {
+    this.stats.incInt(evictionAheadEventsId, 1);
+  }
+
+  public int getEvictionAheadEvents() {
+    return this.stats.getInt(evictionAheadEventsId);
+  }
+
+  public void changeOffHeapLargestFreeFragment(int newValue) {
+    this.stats.setInt(offHeapLargestFreeFragmentId, newValue);
+  }
+
+  public int getOffHeapLargestFreeFragment() {
+    return this.stats.getInt(offHeapLargestFreeFragmentId);
+  }
+
+  public void incOffHeapHeadroomEvictions() {
+    this.stats.incInt(offHeapHeadroomEvictionsId, 1);
+  }
+
+  public int getOffHeapHeadroomEvictions() {
+    return this.stats.getInt(offHeapHeadroomEvictionsId);
+  }
+
+  public void incOffHeapHeadroomDefragmentations() {
+    this.stats.incInt(offHeapHeadroomDefragmentationsId, 1);
+  }
+
+  public int getOffHeapHeadroomDefragmentations() {
+    return this.stats.getInt(offHeapHeadroomDefragmentationsId);
+  }
+
   public void incResourceEventQueueSize(int delta) {
     this.stats.incInt(resourceEventQueueSizeId, delta);
   }
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.geode.internal.cache.lru;
+
+/**
+ * A count-min sketch estimating how often keys were used, with four bit
+ * counters packed sixteen to a long. Every counter of a key is picked from a
+ * different quarter of a long by a different hash, and the estimate is the
+ * smallest of the four.
+ * <p>
+ * The counters are halved once the number of increments reaches ten times
+ * the capacity, so the estimates favour recent use and old popularity fades
+ * away.
+ * <p>
+ * Not thread safe, callers synchronize.
+ *
+ * @since Geode 1.1
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private static final int MAXIMUM_CAPACITY = 1 << 24;
+
+  private long[] table;
+
+  private int tableMask;
+
+  private int sampleSize;
+
+  private int additions;
+
+  FrequencySketch(int capacity) {
+    ensureCapacity(capacity);
+  }
+
+  /**
+   * Grows the sketch to hold the frequencies of <code>capacity</code> keys
+   * accurately. Growing forgets the frequencies seen so far.
+   */
+  void ensureCapacity(int capacity) {
+    int size = 16;
+    int max = Math.min(Math.max(capacity, 16), MAXIMUM_CAPACITY);
+    while (size < max) {
+      size <<= 1;
+    }
+    if (this.table != null && this.table.length >= size) {
+      return;
+    }
+    this.table = new long[size];
+    this.tableMask = size - 1;
+    this.sampleSize = 10 * size;
+    this.additions = 0;
+  }
+
+  int capacity() {
+    return this.table.length;
+  }
+
+  /**
+   * Returns the estimated number of times the key with the given hash was
+   * used, at most 15.
+   */
+  int frequency(int hash) {
+    int h = spread(hash);
+    int start = (h & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(h, i);
+      int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Counts one use of the key with the given hash.
+   */
+  void increment(int hash) {
+    int h = spread(hash);
+    int start = (h & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(h, i), start + i);
+    }
+    if (added && ++this.additions == this.sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((this.table[index] & mask) != mask) {
+      this.table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves every counter */
+  void reset() {
+    int odd = 0;
+    for (int i = 0; i < this.table.length; i++) {
+      odd += Long.bitCount(this.table[i] & ONE_MASK);
+      this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+    }
+    this.additions = Math.max(0, (this.additions >>> 1) - (odd >>> 2));
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & this.tableMask;
+  }
+
+  private static int spread(int hash) {
+    int h = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    h = ((h >>> 16) ^ h) * 0x45d9f3b;
+    return (h >>> 16) ^ h;
+  }
+}
@@ -35,6 +35,7 @@ import org.apache.logging.log4j.Logger;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Triggers centralized eviction(asynchronously) when the ResourceManager sends
@@ -83,6 +84,9 @@ public class HeapEvictor implements ResourceListener<MemoryEvent> {
 
   private AtomicBoolean mustEvict = new AtomicBoolean(false);
 
+  // Number of uncompleted tasks of the pass started by evictAhead, -1 while the pass is created
+  private final AtomicInteger evictionAheadTasks = new AtomicInteger();
+
   protected final Cache cache;  
 
   private final ArrayList testTaskSetSizes = new  ArrayList();
@@ -225,6 +229,16 @@ public class HeapEvictor implements ResourceListener<MemoryEvent> {
   }
   
   private void createAndSubmitWeightedRegionEvictionTasks() {
+    for (RegionEvictorTask task : createWeightedRegionEvictionTasks(getTotalBytesToEvict(), false)) {
+      if (mustEvict()) {
+        submitRegionEvictionTask(task);
+      } else {
+        break;
+      }
+    }
+  }
+
+  private List<RegionEvictorTask> createWeightedRegionEvictionTasks(long totalBytesToEvict, boolean ahead) {
     List<LocalRegion> allRegionList = getAllSortedRegionList();
     float numEntriesInVm = 0 ;
     for(LocalRegion lr : allRegionList){
@@ -234,6 +248,7 @@ public class HeapEvictor implements ResourceListener<MemoryEvent> {
         numEntriesInVm = numEntriesInVm + lr.getRegionMap().sizeInVM();
       }
     }
+    List<RegionEvictorTask> tasks = new ArrayList<RegionEvictorTask>(allRegionList.size());
     for(LocalRegion lr : allRegionList){
       List<LocalRegion> regionsForSingleTask = new ArrayList<LocalRegion>(1);
       float regionEntryCnt = 0;
@@ -243,13 +258,68 @@ public class HeapEvictor implements ResourceListener<MemoryEvent> {
         regionEntryCnt = lr.getRegionMap().sizeInVM();
       }
       float percentage = (regionEntryCnt/numEntriesInVm);
-      long bytesToEvictPerTask = (long)(getTotalBytesToEvict() * percentage);
+      long bytesToEvictPerTask = (long)(totalBytesToEvict * percentage);
       regionsForSingleTask.add(lr);      
-      if (mustEvict()) {
-        submitRegionEvictionTask(new RegionEvictorTask(regionsForSingleTask, this,bytesToEvictPerTask));
-      }else {
-        break;
-      }       
+      tasks.add(new RegionEvictorTask(regionsForSingleTask, this, bytesToEvictPerTask, ahead));
+    }
+    return tasks;
+  }
+
+  /**
+   * Starts a pass of evictions while heap usage is still below the eviction
+   * threshold but predicted to cross it. A pass evicts at most the eviction
+   * burst size and a new one is only started once all the tasks of the
+   * previous one have completed, so eviction ahead of the threshold proceeds
+   * at no more than one burst per heap usage sample.
+   * 
+   * @param bytesToEvict by how much the predicted usage exceeds the threshold
+   * @return true if a pass was started
+   */
+  public boolean evictAhead(long bytesToEvict) {
+    if (DISABLE_HEAP_EVICTIOR_THREAD_POOL || !this.isRunning.get() || this.mustEvict.get()) {
+      // eviction in response to an eviction event is already running
+      return false;
+    }
+    // reserve the pass while its tasks are created
+    if (!this.evictionAheadTasks.compareAndSet(0, -1)) {
+      return false;
+    }
+    boolean started = false;
+    int unsubmitted = 0;
+    try {
+      List<RegionEvictorTask> tasks = createWeightedRegionEvictionTasks(
+          Math.min(bytesToEvict, getTotalBytesToEvict()), true);
+      if (tasks.isEmpty()) {
+        return false;
+      }
+      this.evictionAheadTasks.set(tasks.size());
+      unsubmitted = tasks.size();
+      started = true;
+      for (final RegionEvictorTask task : tasks) {
+        submitRegionEvictionTask(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            try {
+              return task.call();
+            } finally {
+              HeapEvictor.this.evictionAheadTasks.decrementAndGet();
+            }
+          }
+        });
+        unsubmitted--;
+      }
+      return true;
+    } catch (RegionDestroyedException e) {
+      // a bucket moved while the tasks were created, try again with the next sample
+      return started;
+    } finally {
+      if (!started) {
+        this.evictionAheadTasks.set(0);
+      } else if (unsubmitted > 0) {
+        // the tasks that were not submitted, for example when the pool
+        // rejected them during shutdown, will never count themselves down
+        this.evictionAheadTasks.addAndGet(-unsubmitted);
+      }
     }
   }
 
@@ -146,7 +146,7 @@ public NewLRUClockHand(Object region, EnableLRU ccHelper,
    *
    * @param  aNode  Description of the Parameter
    */  
-  public final void appendEntry( final LRUClockNode aNode ) {
+  public void appendEntry( final LRUClockNode aNode ) {
     synchronized (this.lock) {
       if (aNode.nextLRUNode() != null || aNode.prevLRUNode() != null) {
         return;
@@ -164,10 +164,18 @@ public NewLRUClockHand(Object region, EnableLRU ccHelper,
     }
   }
 
+  /**
+   *  Puts a recently used entry found by {@link #getLRUEntry} back into
+   *  the list.
+   */
+  protected void reappendEntry(LRUClockNode aNode) {
+    appendEntry(aNode);
+  }
+
   /** return the head entry in the list preserving the cupipe requirement of at
    * least one entry left in the list 
    */
-  private LRUClockNode getHeadEntry() {
+  protected LRUClockNode getHeadEntry() {
     synchronized (lock) {
       LRUClockNode aNode = NewLRUClockHand.this.head.nextLRUNode();
       if(aNode == this.tail) {
@@ -243,7 +251,7 @@ public NewLRUClockHand(Object region, EnableLRU ccHelper,
           if (logger.isTraceEnabled(LogMarker.LRU_CLOCK)) {
             logger.trace(LogMarker.LRU_CLOCK, LocalizedMessage.create(LocalizedStrings.NewLRUClockHand_SKIPPING_RECENTLY_USED_ENTRY, aNode));
           }
-          appendEntry(aNode);
+          reappendEntry(aNode);
           continue; // keep looking
         }
         else {
@@ -368,7 +376,7 @@ public NewLRUClockHand(Object region, EnableLRU ccHelper,
     }
   }
 
-  private void initHeadAndTail() {
+  protected void initHeadAndTail() {
     //I'm not sure, but I think it's important that we 
     //drop the references to the old head and tail on a region clear
     //That will prevent any concurrent operations that are messing
@@ -406,7 +414,7 @@ public NewLRUClockHand(Object region, EnableLRU ccHelper,
   /** Marker class name to identify the lock more easily in thread dumps */
   protected static class HeadLock extends Object  { }
   
-  private static final class GuardNode implements LRUClockNode {
+  static final class GuardNode implements LRUClockNode {
 
     private LRUClockNode next;
     LRUClockNode prev;
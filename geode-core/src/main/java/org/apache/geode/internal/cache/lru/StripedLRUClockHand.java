@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.geode.internal.cache.lru;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.cache.InternalRegionArguments;
+import org.apache.geode.internal.i18n.LocalizedStrings;
+import org.apache.geode.internal.logging.LogService;
+import org.apache.geode.internal.logging.log4j.LocalizedMessage;
+import org.apache.geode.internal.logging.log4j.LogMarker;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * StripedLRUClockHand splits the LRU list into a number of stripes, each with
+ * its own lock and clock hand, so that appending, unlinking and evicting
+ * entries of a hot region don't all contend on the one lock of
+ * {@link NewLRUClockHand}. An entry always lives in the stripe picked by its
+ * identity hash code, and eviction sweeps the stripes round-robin, giving
+ * every stripe's least recently used entry its turn.
+ * <p>
+ * The order entries are evicted in is only approximately LRU across stripes,
+ * within a stripe it is the same clock algorithm.
+ *
+ * @since Geode 1.1
+ */
+public class StripedLRUClockHand extends NewLRUClockHand {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The number of stripes LRU lists are split into. Zero or one keeps the
+   * single list of {@link NewLRUClockHand}.
+   */
+  public static final int STRIPES = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "lru.clockStripes", 0).intValue();
+
+  private final Stripe[] stripes;
+
+  private final int mask;
+
+  /** The next stripe to evict from */
+  private final AtomicInteger hand = new AtomicInteger();
+
+  public StripedLRUClockHand(Object region, EnableLRU ccHelper,
+      InternalRegionArguments internalRegionArgs, int numStripes) {
+    super(region, ccHelper, internalRegionArgs);
+    this.stripes = createStripes(numStripes);
+    this.mask = this.stripes.length - 1;
+  }
+
+  public StripedLRUClockHand(Region region, EnableLRU ccHelper, NewLRUClockHand oldList,
+      int numStripes) {
+    super(region, ccHelper, oldList);
+    this.stripes = createStripes(numStripes);
+    this.mask = this.stripes.length - 1;
+  }
+
+  private static Stripe[] createStripes(int numStripes) {
+    int size = 1;
+    while (size < numStripes) {
+      size <<= 1;
+    }
+    Stripe[] stripes = new Stripe[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new Stripe();
+    }
+    return stripes;
+  }
+
+  private Stripe getStripe(LRUClockNode aNode) {
+    int h = System.identityHashCode(aNode);
+    return this.stripes[(h ^ (h >>> 16)) & this.mask];
+  }
+
+  @Override
+  public void appendEntry(final LRUClockNode aNode) {
+    Stripe stripe = getStripe(aNode);
+    synchronized (stripe) {
+      if (aNode.nextLRUNode() != null || aNode.prevLRUNode() != null) {
+        return;
+      }
+      if (logger.isTraceEnabled(LogMarker.LRU_CLOCK)) {
+        logger.trace(LogMarker.LRU_CLOCK, LocalizedMessage.create(LocalizedStrings.NewLRUClockHand_ADDING_ANODE_TO_LRU_LIST, aNode));
+      }
+      stripe.append(aNode);
+    }
+  }
+
+  /**
+   * Removes the head entry of the next non empty stripe, starting at the one
+   * after the stripe the previous call took its entry from.
+   */
+  @Override
+  protected LRUClockNode getHeadEntry() {
+    int start = this.hand.getAndIncrement();
+    for (int i = 0; i < this.stripes.length; i++) {
+      Stripe stripe = this.stripes[(start + i) & this.mask];
+      synchronized (stripe) {
+        LRUClockNode aNode = stripe.removeHead();
+        if (aNode != null) {
+          return aNode;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean unlinkEntry(LRUClockNode entry) {
+    if (logger.isTraceEnabled(LogMarker.LRU_CLOCK)) {
+      logger.trace(LogMarker.LRU_CLOCK, LocalizedMessage.create(LocalizedStrings.NewLRUClockHand_UNLINKENTRY_CALLED, entry));
+    }
+    entry.setEvicted();
+    stats().incDestroys();
+    Stripe stripe = getStripe(entry);
+    synchronized (stripe) {
+      return stripe.unlink(entry);
+    }
+  }
+
+  /**
+   * Called with the lock of the whole list held by clear and during
+   * construction, when there are no stripes yet.
+   */
+  @Override
+  protected void initHeadAndTail() {
+    super.initHeadAndTail();
+    if (this.stripes != null) {
+      for (Stripe stripe : this.stripes) {
+        synchronized (stripe) {
+          stripe.init();
+        }
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : this.stripes) {
+      size += stripe.size;
+    }
+    return size;
+  }
+
+  @Override
+  public long getExpensiveListCount() {
+    long count = 0;
+    for (Stripe stripe : this.stripes) {
+      synchronized (stripe) {
+        for (LRUClockNode aNode = stripe.head.nextLRUNode(); aNode != stripe.tail; aNode = aNode.nextLRUNode()) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void dumpList() {
+    if (!logger.isTraceEnabled(LogMarker.LRU_CLOCK)) {
+      return;
+    }
+    for (int i = 0; i < this.stripes.length; i++) {
+      Stripe stripe = this.stripes[i];
+      synchronized (stripe) {
+        int idx = 1;
+        for (LRUClockNode aNode = stripe.head; aNode != null; aNode = aNode.nextLRUNode()) {
+          logger.trace(LogMarker.LRU_CLOCK, "  [{}] ({}) {}", i, (idx++), aNode);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String getAuditReport() {
+    int totalNodes = 0;
+    int evictedNodes = 0;
+    int usedNodes = 0;
+    for (Stripe stripe : this.stripes) {
+      for (LRUClockNode h = stripe.head; h != null; h = h.nextLRUNode()) {
+        totalNodes++;
+        if (h.testEvicted()) evictedNodes++;
+        if (h.testRecentlyUsed()) usedNodes++;
+      }
+    }
+    StringBuffer result = new StringBuffer(128);
+    result.append("LRUList Audit: stripes = ")
+      .append(this.stripes.length)
+      .append(" listEntries = ")
+      .append(totalNodes)
+      .append(" evicted = ")
+      .append(evictedNodes)
+      .append(" used = ")
+      .append(usedNodes);
+    return result.toString();
+  }
+
+  /**
+   * One stripe of the list, guarded by synchronizing on the stripe itself.
+   * Extends HeadLock to identify the lock more easily in thread dumps.
+   */
+  private static final class Stripe extends HeadLock {
+    private LRUClockNode head;
+    private LRUClockNode tail;
+    private volatile int size;
+
+    Stripe() {
+      init();
+    }
+
+    void init() {
+      this.head = new GuardNode();
+      this.tail = new GuardNode();
+      this.head.setNextLRUNode(this.tail);
+      this.tail.setPrevLRUNode(this.head);
+      this.size = 0;
+    }
+
+    void append(LRUClockNode aNode) {
+      aNode.setNextLRUNode(this.tail);
+      this.tail.prevLRUNode().setNextLRUNode(aNode);
+      aNode.setPrevLRUNode(this.tail.prevLRUNode());
+      this.tail.setPrevLRUNode(aNode);
+      this.size++;
+    }
+
+    LRUClockNode removeHead() {
+      LRUClockNode aNode = this.head.nextLRUNode();
+      if (aNode == this.tail) {
+        return null;
+      }
+      LRUClockNode next = aNode.nextLRUNode();
+      this.head.setNextLRUNode(next);
+      next.setPrevLRUNode(this.head);
+      aNode.setNextLRUNode(null);
+      aNode.setPrevLRUNode(null);
+      this.size--;
+      return aNode;
+    }
+
+    boolean unlink(LRUClockNode entry) {
+      LRUClockNode next = entry.nextLRUNode();
+      LRUClockNode prev = entry.prevLRUNode();
+      if (next == null || prev == null) {
+        // not in the list anymore.
+        return false;
+      }
+      next.setPrevLRUNode(prev);
+      prev.setNextLRUNode(next);
+      entry.setNextLRUNode(null);
+      entry.setPrevLRUNode(null);
+      this.size--;
+      return true;
+    }
+  }
+}
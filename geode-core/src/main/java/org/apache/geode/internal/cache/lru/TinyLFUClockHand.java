@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.geode.internal.cache.lru;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.cache.InternalRegionArguments;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.i18n.LocalizedStrings;
+import org.apache.geode.internal.logging.LogService;
+import org.apache.geode.internal.logging.log4j.LocalizedMessage;
+import org.apache.geode.internal.logging.log4j.LogMarker;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * TinyLFUClockHand holds the frequency aware eviction list of the
+ * {@link org.apache.geode.cache.EvictionAlgorithm#LFU_ENTRY} and
+ * {@link org.apache.geode.cache.EvictionAlgorithm#LFU_MEMORY} algorithms.
+ * <p>
+ * New entries are appended to a small window list, the rest of the entries
+ * are kept in the main clock list. Once the window holds more than its share
+ * of the entries, each eviction makes the least recently used entry of the
+ * window compete with the least recently used entry of the main list, and
+ * the one that was used less often according to a {@link FrequencySketch}
+ * is evicted. Entries that are read once, like the ones of a scan, therefore
+ * don't push the frequently used entries out of memory.
+ * <p>
+ * The uses are counted by key when an entry is added to the list and when
+ * the clock finds it recently used, so the read path only sets the recently
+ * used bit as it does for LRU. Counting by key keeps the history of an
+ * entry that was evicted and is loaded again.
+ *
+ * @since Geode 1.1
+ */
+public class TinyLFUClockHand extends NewLRUClockHand {
+  private static final Logger logger = LogService.getLogger();
+
+  /** The percentage of the entries kept in the window list */
+  public static final int WINDOW_PERCENT = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "lru.lfuWindowPercent", 1).intValue();
+
+  private LRUClockNode windowHead;
+  private LRUClockNode windowTail;
+  private Set<LRUClockNode> window;
+  private int windowSize;
+
+  private final FrequencySketch sketch = new FrequencySketch(16);
+
+  /** Window entries that replaced a less frequently used entry of the main list */
+  private long admissions;
+  /** Window entries that were evicted because they were used less often */
+  private long rejections;
+
+  public TinyLFUClockHand(Object region, EnableLRU ccHelper,
+      InternalRegionArguments internalRegionArgs) {
+    super(region, ccHelper, internalRegionArgs);
+    initWindow();
+  }
+
+  public TinyLFUClockHand(Region region, EnableLRU ccHelper, NewLRUClockHand oldList) {
+    super(region, ccHelper, oldList);
+    initWindow();
+  }
+
+  private void initWindow() {
+    this.windowHead = new GuardNode();
+    this.windowTail = new GuardNode();
+    this.windowHead.setNextLRUNode(this.windowTail);
+    this.windowTail.setPrevLRUNode(this.windowHead);
+    this.window = Collections.newSetFromMap(new IdentityHashMap<LRUClockNode, Boolean>());
+    this.windowSize = 0;
+  }
+
+  /**
+   * Called with the lock held by clear and during construction, before the
+   * window exists.
+   */
+  @Override
+  protected void initHeadAndTail() {
+    super.initHeadAndTail();
+    if (this.window != null) {
+      initWindow();
+    }
+  }
+
+  /** Adds a new entry to the end of the window */
+  @Override
+  public void appendEntry(final LRUClockNode aNode) {
+    synchronized (this.lock) {
+      if (aNode.nextLRUNode() != null || aNode.prevLRUNode() != null) {
+        return;
+      }
+      if (logger.isTraceEnabled(LogMarker.LRU_CLOCK)) {
+        logger.trace(LogMarker.LRU_CLOCK, LocalizedMessage.create(LocalizedStrings.NewLRUClockHand_ADDING_ANODE_TO_LRU_LIST, aNode));
+      }
+      recordUse(aNode);
+      linkBefore(this.windowTail, aNode);
+      this.window.add(aNode);
+      this.windowSize++;
+    }
+  }
+
+  /** Gives a recently used entry another round in the main list */
+  @Override
+  protected void reappendEntry(LRUClockNode aNode) {
+    synchronized (this.lock) {
+      if (aNode.nextLRUNode() != null || aNode.prevLRUNode() != null) {
+        return;
+      }
+      recordUse(aNode);
+      linkBefore(this.tail, aNode);
+      this.size++;
+    }
+  }
+
+  /**
+   * Returns the next entry to consider for eviction. It is the head of the main
+   * list, unless the window holds more than its share in which case the head
+   * of the window competes with it.
+   */
+  @Override
+  protected LRUClockNode getHeadEntry() {
+    synchronized (this.lock) {
+      LRUClockNode candidate = this.windowHead.nextLRUNode();
+      if (candidate == this.windowTail) {
+        candidate = null;
+      }
+      LRUClockNode victim = this.head.nextLRUNode();
+      if (victim == this.tail) {
+        victim = null;
+      }
+      if (candidate == null && victim == null) {
+        return null;
+      }
+      if (candidate != null && (victim == null || this.windowSize > maxWindowSize())) {
+        unlinkFromWindow(candidate);
+        if (victim == null) {
+          return candidate;
+        }
+        victim = skipRecentlyUsed(victim);
+        if (this.sketch.frequency(hash(candidate)) > this.sketch.frequency(hash(victim))) {
+          // the candidate is used more often, it takes the place of the victim
+          this.admissions++;
+          linkBefore(this.tail, candidate);
+          this.size++;
+        } else {
+          this.rejections++;
+          return candidate;
+        }
+      }
+      unlink(victim);
+      this.size--;
+      return victim;
+    }
+  }
+
+  /**
+   * Gives the recently used entries at the head of the main list another
+   * round, counting their use, and returns the first one that wasn't used.
+   */
+  private LRUClockNode skipRecentlyUsed(LRUClockNode victim) {
+    for (int i = this.size; i > 0 && victim.testRecentlyUsed(); i--) {
+      victim.unsetRecentlyUsed();
+      recordUse(victim);
+      unlink(victim);
+      linkBefore(this.tail, victim);
+      victim = this.head.nextLRUNode();
+    }
+    return victim;
+  }
+
+  @Override
+  public boolean unlinkEntry(LRUClockNode entry) {
+    if (logger.isTraceEnabled(LogMarker.LRU_CLOCK)) {
+      logger.trace(LogMarker.LRU_CLOCK, LocalizedMessage.create(LocalizedStrings.NewLRUClockHand_UNLINKENTRY_CALLED, entry));
+    }
+    entry.setEvicted();
+    stats().incDestroys();
+    synchronized (this.lock) {
+      if (entry.nextLRUNode() == null || entry.prevLRUNode() == null) {
+        // not in the list anymore.
+        return false;
+      }
+      if (this.window.contains(entry)) {
+        unlinkFromWindow(entry);
+      } else {
+        unlink(entry);
+        this.size--;
+      }
+    }
+    return true;
+  }
+
+  private int maxWindowSize() {
+    return Math.max(1, (int) ((long) (this.size + this.windowSize) * WINDOW_PERCENT / 100));
+  }
+
+  private void recordUse(LRUClockNode aNode) {
+    int entries = this.size + this.windowSize + 1;
+    if (entries > this.sketch.capacity()) {
+      this.sketch.ensureCapacity(entries * 2);
+    }
+    this.sketch.increment(hash(aNode));
+  }
+
+  private static int hash(LRUClockNode aNode) {
+    if (aNode instanceof RegionEntry) {
+      Object key = ((RegionEntry) aNode).getKey();
+      if (key != null) {
+        return key.hashCode();
+      }
+    }
+    return System.identityHashCode(aNode);
+  }
+
+  private void unlinkFromWindow(LRUClockNode aNode) {
+    unlink(aNode);
+    this.window.remove(aNode);
+    this.windowSize--;
+  }
+
+  private static void linkBefore(LRUClockNode next, LRUClockNode aNode) {
+    LRUClockNode prev = next.prevLRUNode();
+    aNode.setNextLRUNode(next);
+    aNode.setPrevLRUNode(prev);
+    prev.setNextLRUNode(aNode);
+    next.setPrevLRUNode(aNode);
+  }
+
+  private static void unlink(LRUClockNode aNode) {
+    LRUClockNode next = aNode.nextLRUNode();
+    LRUClockNode prev = aNode.prevLRUNode();
+    next.setPrevLRUNode(prev);
+    prev.setNextLRUNode(next);
+    aNode.setNextLRUNode(null);
+    aNode.setPrevLRUNode(null);
+  }
+
+  @Override
+  public int size() {
+    synchronized (this.lock) {
+      return this.size + this.windowSize;
+    }
+  }
+
+  @Override
+  public long getExpensiveListCount() {
+    synchronized (this.lock) {
+      long count = super.getExpensiveListCount();
+      for (LRUClockNode aNode = this.windowHead.nextLRUNode(); aNode != this.windowTail; aNode = aNode.nextLRUNode()) {
+        count++;
+      }
+      return count;
+    }
+  }
+
+  @Override
+  public String getAuditReport() {
+    return super.getAuditReport() + " window = " + this.windowSize + " admissions = "
+        + getAdmissions() + " rejections = " + getRejections();
+  }
+
+  public long getAdmissions() {
+    synchronized (this.lock) {
+      return this.admissions;
+    }
+  }
+
+  public long getRejections() {
+    synchronized (this.lock) {
+      return this.rejections;
+    }
+  }
+}
@@ -168,7 +168,7 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
       throw new QueryExecutionLowMemoryException(reason);
     }
     
-    DefaultQuery query = new DefaultQuery(this.queryString, r.getCache(), false);
+    DefaultQuery query = r.getGemFireCache().getQueryPlanCache().newQuery(this.queryString);
     // Remote query, use the PDX types in serialized form.
     DefaultQuery.setPdxReadSerialized(r.getCache(), true);
     // In case of "select *" queries we can keep the results in serialized
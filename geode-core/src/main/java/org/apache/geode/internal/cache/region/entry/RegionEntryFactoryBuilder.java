@@ -31,6 +31,9 @@ public class RegionEntryFactoryBuilder {
      * The bits represent all options
      * |offHeap|versioning|disk|lru|stats|
      */
+    if (withVersioning && !isLRU && !isDisk && !offHeap && VersionedCompactRegionEntryHeap.COMPACT_ENTRIES) {
+      return VersionedCompactRegionEntryHeap.getEntryFactory(statsEnabled);
+    }
     switch (bitRepresentation) {
     case (0):
       return VMThinRegionEntryHeap.getEntryFactory(); // Bits: 00000
@@ -338,10 +338,25 @@ public class MessageType {
   public static final int PUT_ALL_WITH_CALLBACK = 108;
 
   public static final int REMOVE_ALL = 109;
+
+  /** Opens a server side cursor over the results of a query
+   *
+   * @since Geode 1.1 */
+  public static final int QUERY_CURSOR_OPEN = 110;
+
+  /** Fetches the next chunk of rows from a query cursor
+   *
+   * @since Geode 1.1 */
+  public static final int QUERY_CURSOR_NEXT = 111;
+
+  /** Closes a query cursor before all its rows were fetched
+   *
+   * @since Geode 1.1 */
+  public static final int QUERY_CURSOR_CLOSE = 112;
   /**
    * Must be equal to last valid message id.
    */
-  private static final int LAST_VALID_MESSAGE_ID = REMOVE_ALL;
+  private static final int LAST_VALID_MESSAGE_ID = QUERY_CURSOR_CLOSE;
   
 
   public static boolean validate(int messageType) {
@@ -561,6 +576,12 @@ public class MessageType {
       return "PUT_ALL_WITH_CALLBACK";
     case REMOVE_ALL:
       return "REMOVE_ALL";
+    case QUERY_CURSOR_OPEN:
+      return "QUERY_CURSOR_OPEN";
+    case QUERY_CURSOR_NEXT:
+      return "QUERY_CURSOR_NEXT";
+    case QUERY_CURSOR_CLOSE:
+      return "QUERY_CURSOR_CLOSE";
     default:
       return Integer.toString(type);
     }
@@ -308,6 +308,67 @@ public abstract class BaseCommandQuery extends BaseCommand {
     return true;
   }
 
+  /**
+   * Sends the next chunk of rows of a query cursor in a single response
+   * message with four parts: the cursor id, the collection type, the rows and
+   * whether the cursor has more rows. The rows are sent the same way
+   * {@link #processQueryUsingParams} sends a chunk of query results, and
+   * the same query stats are updated.
+   *
+   * @param start the time the request was read
+   * @return true if the cursor has more rows
+   */
+  protected boolean writeQueryCursorChunk(Message msg, long cursorId,
+      ServerQueryCursor cursor, int fetchSize, ServerConnection servConn,
+      long start) throws IOException, QueryException {
+    CacheServerStats stats = servConn.getCacheServerStats();
+    List rows = cursor.nextChunk(fetchSize);
+    CollectionType collectionType = cursor.getCollectionType();
+    boolean isStructs = collectionType.getElementType().isStructType();
+    Object chunk;
+    if (cursor.getQuery().isKeepSerialized()) {
+      ObjectPartList serializedObjs = new ObjectPartList(rows.size(), false);
+      for (Object row : rows) {
+        addToObjectPartList(serializedObjs, row, collectionType, false,
+            servConn, isStructs);
+      }
+      chunk = serializedObjs;
+    } else {
+      Object[] results = new Object[rows.size()];
+      for (int i = 0; i < results.length; i++) {
+        Object row = rows.get(i);
+        if (isStructs && (row instanceof Struct)) {
+          results[i] = ((Struct) row).getFieldValues();
+        } else {
+          results[i] = row;
+        }
+      }
+      chunk = results;
+    }
+    boolean hasMore = cursor.hasMore();
+    {
+      long oldStart = start;
+      start = DistributionStats.getStatTime();
+      stats.incProcessQueryTime(start - oldStart);
+    }
+
+    Message responseMsg = servConn.getResponseMessage();
+    responseMsg.setMessageType(MessageType.RESPONSE);
+    responseMsg.setTransactionId(msg.getTransactionId());
+    responseMsg.setNumberOfParts(4);
+    responseMsg.addObjPart(cursorId);
+    responseMsg.addObjPart(collectionType);
+    responseMsg.addObjPart(chunk);
+    responseMsg.addObjPart(hasMore);
+    responseMsg.send(servConn);
+    if (logger.isDebugEnabled()) {
+      logger.debug("{}: Sent {} rows of query cursor {} hasMore: {}",
+          servConn.getName(), rows.size(), cursorId, hasMore);
+    }
+    stats.incWriteQueryResponseTime(DistributionStats.getStatTime() - start);
+    return hasMore;
+  }
+
   private boolean sendCqResultsWithKey(ServerConnection servConn) {
     Version clientVersion = servConn.getClientVersion();
     if (clientVersion.compareTo(Version.GFE_65) >= 0) {
@@ -44,6 +44,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.shiro.subject.Subject;
@@ -779,6 +780,8 @@ public class CacheClientNotifier {
     if (logger.isDebugEnabled()) {
       logger.debug("CacheClientNotifier: Unregistering all clients with member id: {}", memberId);
     }
+    // the client has no connections left, with or without a subscription proxy
+    closeQueryCursors(memberId);
     CacheClientProxy proxy = getClientProxy(memberId);
     if (proxy != null) {
       final boolean isTraceEnabled = logger.isTraceEnabled();
@@ -1692,6 +1695,13 @@ public class CacheClientNotifier {
         }
       }
       this.clearCompiledQueries();
+      if (this.queryCursorReaperTask != null) {
+        this.queryCursorReaperTask.cancel();
+      }
+      for (ServerQueryCursor cursor : this.queryCursors.values()) {
+        cursor.close();
+      }
+      this.queryCursors.clear();
       blackListedClients.clear();
 
       // cancel the ping task
@@ -1890,6 +1900,7 @@ public class CacheClientNotifier {
     ClientProxyMembershipID client = proxy.getProxyID();
     this._clientProxies.remove(client);
     this._connectionListener.queueRemoved();
+    closeQueryCursors(client);
     ((GemFireCacheImpl)this.getCache()).cleanupForClient(this, client);
     if (!(proxy.clientConflation == HandShake.CONFLATION_ON)) {
       ClientHealthMonitor chm = ClientHealthMonitor.getInstance();
@@ -2427,6 +2438,89 @@ public class CacheClientNotifier {
     }
   }
 
+  /**
+   * Registers a query cursor opened by a client and returns its id. The
+   * cursors that have not been used for
+   * {@link ServerQueryCursor#IDLE_TIMEOUT} are dropped by a periodic task,
+   * which takes care of the clients that abandoned theirs.
+   */
+  public long addQueryCursor(ServerQueryCursor cursor) {
+    startQueryCursorReaper();
+    long cursorId = this.queryCursorIds.incrementAndGet();
+    this.queryCursors.put(cursorId, cursor);
+    return cursorId;
+  }
+
+  /**
+   * Closes the query cursors that have not been used for
+   * {@link ServerQueryCursor#IDLE_TIMEOUT}.
+   */
+  void closeIdleQueryCursors(long now) {
+    for (Iterator<ServerQueryCursor> itr = this.queryCursors.values().iterator(); itr.hasNext(); ) {
+      ServerQueryCursor c = itr.next();
+      if (c.isIdle(now)) {
+        itr.remove();
+        c.close();
+      }
+    }
+  }
+
+  /**
+   * Closes the query cursors opened by a client.
+   */
+  void closeQueryCursors(ClientProxyMembershipID owner) {
+    for (Iterator<ServerQueryCursor> itr = this.queryCursors.values().iterator(); itr.hasNext(); ) {
+      ServerQueryCursor c = itr.next();
+      if (c.getOwner().equals(owner)) {
+        itr.remove();
+        c.close();
+      }
+    }
+  }
+
+  /**
+   * Starts the task that periodically closes the idle query cursors, the
+   * first time a cursor is opened.
+   */
+  private void startQueryCursorReaper() {
+    if (this.queryCursorReaperTask != null) {
+      return;
+    }
+    synchronized (this.queryCursors) {
+      if (this.queryCursorReaperTask != null) {
+        return;
+      }
+      SystemTimer.SystemTimerTask task = new SystemTimer.SystemTimerTask() {
+        @Override
+        public void run2() {
+          closeIdleQueryCursors(System.currentTimeMillis());
+        }
+      };
+      long period = Math.max(ServerQueryCursor.IDLE_TIMEOUT / 2, 1);
+      _cache.getCCPTimer().scheduleAtFixedRate(task, period, period);
+      this.queryCursorReaperTask = task;
+    }
+  }
+
+  /**
+   * Returns the query cursor with the given id if it was opened by
+   * <code>owner</code>, null otherwise.
+   */
+  public ServerQueryCursor getQueryCursor(long cursorId, ClientProxyMembershipID owner) {
+    ServerQueryCursor cursor = this.queryCursors.get(cursorId);
+    if (cursor == null || !cursor.getOwner().equals(owner)) {
+      return null;
+    }
+    return cursor;
+  }
+
+  public void removeQueryCursor(long cursorId) {
+    ServerQueryCursor cursor = this.queryCursors.remove(cursorId);
+    if (cursor != null) {
+      cursor.close();
+    }
+  }
+
   /**
    * This starts the cleanup thread that periodically 
    * (DefaultQuery.TEST_COMPILED_QUERY_CLEAR_TIME) checks for the 
@@ -2663,6 +2757,12 @@ public class CacheClientNotifier {
   
   private volatile boolean isCompiledQueryCleanupThreadStarted = false;
 
+  private final ConcurrentHashMap<Long, ServerQueryCursor> queryCursors = new ConcurrentHashMap<Long, ServerQueryCursor>();
+
+  private final AtomicLong queryCursorIds = new AtomicLong();
+
+  private volatile SystemTimer.SystemTimerTask queryCursorReaperTask;
+
   private final Object lockIsCompiledQueryCleanupThreadStarted = new Object();
 
   private SystemTimer.SystemTimerTask clientPingTask;
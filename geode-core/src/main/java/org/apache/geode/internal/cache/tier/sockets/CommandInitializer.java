@@ -83,6 +83,9 @@ import org.apache.geode.internal.cache.tier.sockets.command.PutAll80;
 import org.apache.geode.internal.cache.tier.sockets.command.PutAllWithCallback;
 import org.apache.geode.internal.cache.tier.sockets.command.PutUserCredentials;
 import org.apache.geode.internal.cache.tier.sockets.command.Query651;
+import org.apache.geode.internal.cache.tier.sockets.command.QueryCursorClose;
+import org.apache.geode.internal.cache.tier.sockets.command.QueryCursorNext;
+import org.apache.geode.internal.cache.tier.sockets.command.QueryCursorOpen;
 import org.apache.geode.internal.cache.tier.sockets.command.RegisterDataSerializers;
 import org.apache.geode.internal.cache.tier.sockets.command.RegisterInstantiators;
 import org.apache.geode.internal.cache.tier.sockets.command.RegisterInterest;
@@ -319,6 +322,14 @@ public class CommandInitializer {
       gfe90Commands.putAll(ALL_COMMANDS.get(Version.GFE_82));
       ALL_COMMANDS.put(Version.GFE_90, gfe90Commands);
     }
+    {
+      Map<Integer, Command> geode110Commands = new HashMap<Integer, Command>();
+      geode110Commands.putAll(ALL_COMMANDS.get(Version.GFE_90));
+      geode110Commands.put(MessageType.QUERY_CURSOR_OPEN, QueryCursorOpen.getCommand());
+      geode110Commands.put(MessageType.QUERY_CURSOR_NEXT, QueryCursorNext.getCommand());
+      geode110Commands.put(MessageType.QUERY_CURSOR_CLOSE, QueryCursorClose.getCommand());
+      ALL_COMMANDS.put(Version.GEODE_110, geode110Commands);
+    }
   }
 
   public static Map<Integer,Command> getCommands(Version version) {
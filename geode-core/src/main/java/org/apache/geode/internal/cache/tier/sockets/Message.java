@@ -367,7 +367,8 @@ public class Message  {
       v = null;
     }
     // create the HDOS with a flag telling it that it can keep any byte[] or ByteBuffers/ByteSources passed to it.
-    hdos = new HeapDataOutputStream(chunkSize, v, true);
+    // The hdos buffers are pooled; they are given back when this part is cleared.
+    hdos = new HeapDataOutputStream(chunkSize, v, true, true);
     try {
       BlobHelper.serializeTo(o, hdos);
     } catch (IOException ex) {
@@ -390,7 +391,7 @@ public class Message  {
       if (version.equals(Version.CURRENT)){
         v = null;
       }
-      hdos = new HeapDataOutputStream(chunkSize, v);
+      hdos = new HeapDataOutputStream(chunkSize, v, false, true);
       try {
         BlobHelper.serializeTo(o, hdos);
       } catch (IOException ex) {
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.tier.sockets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.FunctionDomainException;
+import org.apache.geode.cache.query.NameResolutionException;
+import org.apache.geode.cache.query.QueryInvalidException;
+import org.apache.geode.cache.query.QueryInvocationTargetException;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.TypeMismatchException;
+import org.apache.geode.cache.query.internal.CompiledSelect;
+import org.apache.geode.cache.query.internal.CompiledValue;
+import org.apache.geode.cache.query.internal.DefaultQuery;
+import org.apache.geode.cache.query.internal.QueryExecutionCanceledException;
+import org.apache.geode.cache.query.internal.QueryMonitor;
+import org.apache.geode.cache.query.types.CollectionType;
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.i18n.LocalizedStrings;
+
+/**
+ * A cursor kept by a cache server over the results of a query a client
+ * executes with
+ * {@link org.apache.geode.cache.query.QueryService#executeStreaming}. The
+ * client pulls the rows one chunk at a time, which is the flow control: the
+ * server does not compute rows that the client has not asked for yet.
+ * <p>
+ * A plain select on a single partitioned region (no distinct, order by,
+ * group by, aggregates, count or limit) is executed on a batch of buckets at
+ * a time, and the next batch is only queried once all the rows of the
+ * previous one were fetched. The server then holds the results of one batch
+ * of buckets instead of the whole result set. The buckets are the ones that
+ * had storage when the cursor was opened. Any other query is executed once
+ * and its results are handed out a chunk at a time. Every batch is watched by
+ * the {@link QueryMonitor}, so the query timeout applies to each of them.
+ *
+ * @since Geode 1.1
+ */
+public class ServerQueryCursor {
+
+  /**
+   * The number of buckets queried together when the results of a partitioned
+   * region are streamed.
+   */
+  public static final int BUCKETS_PER_BATCH = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "QueryCursor.bucketsPerBatch", 10).intValue();
+
+  /**
+   * The time in milliseconds after which a cursor that has not been used is
+   * dropped by the server.
+   */
+  public static final long IDLE_TIMEOUT = Long.getLong(
+      DistributionConfig.GEMFIRE_PREFIX + "QueryCursor.idleTimeout", 300000).longValue();
+
+  private final Cache cache;
+
+  private final DefaultQuery query;
+
+  private final Object[] params;
+
+  private final Set regionNames;
+
+  private final ClientProxyMembershipID owner;
+
+  private PartitionedRegion region;
+
+  private Iterator<Integer> remainingBuckets;
+
+  private CollectionType collectionType;
+
+  private Iterator rows = Collections.emptyIterator();
+
+  private volatile long lastAccessTime;
+
+  public ServerQueryCursor(Cache cache, DefaultQuery query, Object[] params,
+      Set regionNames, ClientProxyMembershipID owner) {
+    this.cache = cache;
+    this.query = query;
+    this.params = params;
+    this.regionNames = regionNames;
+    this.owner = owner;
+    this.lastAccessTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Executes the query, or only its first batch of buckets when its results
+   * can be streamed.
+   */
+  public synchronized void execute() throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    this.region = getStreamedRegion();
+    if (this.region == null) {
+      Object result = this.params == null ? this.query.execute()
+          : this.query.execute(this.params);
+      setResults(result);
+      return;
+    }
+    List<Integer> buckets = new ArrayList<Integer>();
+    Iterator itr = this.region.getRegionAdvisor().getBucketSet().iterator();
+    try {
+      while (itr.hasNext()) {
+        buckets.add((Integer)itr.next());
+      }
+    } catch (NoSuchElementException stop) {
+    }
+    this.remainingBuckets = buckets.iterator();
+    queryNextBatch();
+  }
+
+  /**
+   * Uses results that were already computed, for instance because they had
+   * to go through post authorization.
+   */
+  public synchronized void setResults(Object result) {
+    if (!(result instanceof SelectResults)) {
+      throw new QueryInvalidException(LocalizedStrings.BaseCommand_UNKNOWN_RESULT_TYPE_0
+          .toLocalizedString(result == null ? null : result.getClass()));
+    }
+    SelectResults results = (SelectResults)result;
+    this.collectionType = results.getCollectionType();
+    this.rows = results.iterator();
+    this.remainingBuckets = null;
+  }
+
+  /**
+   * Returns up to <code>maxRows</code> rows, querying more buckets if the
+   * rows of the current batch run out. The chunk may be short, or even empty,
+   * while {@link #hasMore} is still true.
+   */
+  public synchronized List nextChunk(int maxRows) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    this.lastAccessTime = System.currentTimeMillis();
+    List chunk = new ArrayList(Math.min(maxRows, 1000));
+    while (chunk.size() < maxRows) {
+      if (this.rows.hasNext()) {
+        chunk.add(this.rows.next());
+      } else if (this.remainingBuckets != null && this.remainingBuckets.hasNext()) {
+        queryNextBatch();
+      } else {
+        break;
+      }
+    }
+    return chunk;
+  }
+
+  /**
+   * Returns true if there are rows, or buckets, left to fetch.
+   */
+  public synchronized boolean hasMore() {
+    return this.rows.hasNext()
+        || (this.remainingBuckets != null && this.remainingBuckets.hasNext());
+  }
+
+  public synchronized void close() {
+    this.rows = Collections.emptyIterator();
+    this.remainingBuckets = null;
+  }
+
+  public CollectionType getCollectionType() {
+    return this.collectionType;
+  }
+
+  public DefaultQuery getQuery() {
+    return this.query;
+  }
+
+  public Set getRegionNames() {
+    return this.regionNames;
+  }
+
+  public ClientProxyMembershipID getOwner() {
+    return this.owner;
+  }
+
+  public boolean isIdle(long now) {
+    return now - this.lastAccessTime > IDLE_TIMEOUT;
+  }
+
+  private void queryNextBatch() throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    Set<Integer> batch = new HashSet<Integer>();
+    while (batch.size() < BUCKETS_PER_BATCH && this.remainingBuckets.hasNext()) {
+      batch.add(this.remainingBuckets.next());
+    }
+    SelectResults results;
+    QueryMonitor queryMonitor = ((GemFireCacheImpl)this.cache).getQueryMonitor();
+    boolean oldReadSerialized = DefaultQuery.getPdxReadSerialized();
+    DefaultQuery.setPdxReadSerialized(this.cache, true);
+    try {
+      if (queryMonitor != null) {
+        // the previous batch marked the query as completed
+        this.query.setQueryCompletedForMonitoring(false);
+        queryMonitor.monitorQueryThread(Thread.currentThread(), this.query);
+      }
+      results = (SelectResults)this.region.executeQuery(this.query, this.params, batch);
+    } catch (QueryExecutionCanceledException e) {
+      if (this.query.getQueryCanceledException() != null) {
+        throw this.query.getQueryCanceledException();
+      }
+      throw e;
+    } finally {
+      if (queryMonitor != null) {
+        queryMonitor.stopMonitoringQueryThread(Thread.currentThread(), this.query);
+      }
+      DefaultQuery.setPdxReadSerialized(this.cache, oldReadSerialized);
+    }
+    // every batch is the same select so the first one gives the type
+    if (this.collectionType == null) {
+      this.collectionType = results.getCollectionType();
+    }
+    this.rows = results.iterator();
+  }
+
+  /**
+   * Returns the partitioned region whose buckets can be queried in batches,
+   * or null if the query has to be executed as a whole.
+   */
+  private PartitionedRegion getStreamedRegion() throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    CompiledSelect select = this.query.getSimpleSelect();
+    if (select == null || this.query.isCqQuery()
+        || select.getType() == CompiledValue.GROUP_BY_SELECT
+        || select.isDistinct() || select.isCount() || select.isOrderBy()
+        || select.getLimitValue(this.params) >= 0) {
+      return null;
+    }
+    Set regionPaths = this.query.getRegionsInQuery(this.params);
+    if (regionPaths.size() != 1) {
+      return null;
+    }
+    Region r = this.cache.getRegion((String)regionPaths.iterator().next());
+    if (!(r instanceof PartitionedRegion) || !((PartitionedRegion)r).isDataStore()) {
+      return null;
+    }
+    PartitionedRegion pr = (PartitionedRegion)r;
+    pr.checkPROffline();
+    return pr;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.tier.sockets.command;
+
+import java.io.IOException;
+
+import org.apache.geode.internal.cache.tier.Command;
+import org.apache.geode.internal.cache.tier.sockets.BaseCommand;
+import org.apache.geode.internal.cache.tier.sockets.Message;
+import org.apache.geode.internal.cache.tier.sockets.ServerConnection;
+import org.apache.geode.internal.cache.tier.sockets.ServerQueryCursor;
+
+/**
+ * Drops a {@link ServerQueryCursor} the client does not want more rows from.
+ *
+ * @since Geode 1.1
+ */
+public class QueryCursorClose extends BaseCommand {
+
+  private final static QueryCursorClose singleton = new QueryCursorClose();
+
+  public static Command getCommand() {
+    return singleton;
+  }
+
+  private QueryCursorClose() {
+  }
+
+  @Override
+  public void cmdExecute(Message msg, ServerConnection servConn, long start)
+      throws IOException {
+    servConn.setAsTrue(REQUIRES_RESPONSE);
+    long cursorId = msg.getPart(0).getLong();
+    if (servConn.getAcceptor().getCacheClientNotifier()
+        .getQueryCursor(cursorId, servConn.getProxyID()) != null) {
+      servConn.getAcceptor().getCacheClientNotifier().removeQueryCursor(cursorId);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("{}: Closed query cursor {}", servConn.getName(), cursorId);
+    }
+    writeReply(msg, servConn);
+    servConn.setAsTrue(RESPONDED);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.tier.sockets.command;
+
+import java.io.IOException;
+
+import org.apache.geode.cache.query.QueryInvalidException;
+import org.apache.geode.distributed.DistributedSystemDisconnectedException;
+import org.apache.geode.distributed.internal.DistributionStats;
+import org.apache.geode.internal.cache.tier.Command;
+import org.apache.geode.internal.cache.tier.MessageType;
+import org.apache.geode.internal.cache.tier.sockets.BaseCommandQuery;
+import org.apache.geode.internal.cache.tier.sockets.CacheClientNotifier;
+import org.apache.geode.internal.cache.tier.sockets.Message;
+import org.apache.geode.internal.cache.tier.sockets.ServerConnection;
+import org.apache.geode.internal.cache.tier.sockets.ServerQueryCursor;
+
+/**
+ * Replies with the next chunk of rows of a {@link ServerQueryCursor}. The
+ * cursor is dropped once its last row was sent.
+ *
+ * @since Geode 1.1
+ */
+public class QueryCursorNext extends BaseCommandQuery {
+
+  private final static QueryCursorNext singleton = new QueryCursorNext();
+
+  public static Command getCommand() {
+    return singleton;
+  }
+
+  private QueryCursorNext() {
+  }
+
+  @Override
+  public void cmdExecute(Message msg, ServerConnection servConn, long start)
+      throws IOException, InterruptedException {
+    servConn.setAsTrue(REQUIRES_RESPONSE);
+    {
+      long oldStart = start;
+      start = DistributionStats.getStatTime();
+      servConn.getCacheServerStats().incReadQueryRequestTime(start - oldStart);
+    }
+    long cursorId = msg.getPart(0).getLong();
+    int fetchSize = msg.getPart(1).getInt();
+    CacheClientNotifier ccn = servConn.getAcceptor().getCacheClientNotifier();
+    // only a cursor owned by this client is dropped when the fetch fails
+    ServerQueryCursor cursor = null;
+    try {
+      cursor = ccn.getQueryCursor(cursorId, servConn.getProxyID());
+      if (cursor == null) {
+        throw new QueryInvalidException("The query cursor " + cursorId
+            + " does not exist. It may have been idle for longer than "
+            + ServerQueryCursor.IDLE_TIMEOUT + " milliseconds.");
+      }
+      for (Object regionName : cursor.getRegionNames()) {
+        this.securityService.authorizeRegionRead(regionName.toString());
+      }
+      if (!writeQueryCursorChunk(msg, cursorId, cursor, fetchSize, servConn, start)) {
+        ccn.removeQueryCursor(cursorId);
+      }
+      msg.clearParts();
+    } catch (DistributedSystemDisconnectedException se) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("{}: ignoring message of type {} from client {} because shutdown occurred during message processing.",
+            servConn.getName(), MessageType.getString(msg.getMessageType()), servConn.getProxyID());
+      }
+      servConn.setFlagProcessMessagesAsFalse();
+    } catch (Exception e) {
+      checkForInterrupt(servConn, e);
+      if (cursor != null) {
+        ccn.removeQueryCursor(cursorId);
+      }
+      writeException(msg, e, false, servConn);
+    } finally {
+      servConn.setAsTrue(RESPONDED);
+    }
+  }
+}
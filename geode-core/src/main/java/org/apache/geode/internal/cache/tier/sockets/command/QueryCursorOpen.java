@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.tier.sockets.command;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.geode.cache.operations.QueryOperationContext;
+import org.apache.geode.cache.query.QueryInvalidException;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.internal.DefaultQuery;
+import org.apache.geode.distributed.DistributedSystemDisconnectedException;
+import org.apache.geode.distributed.internal.DistributionStats;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.internal.cache.tier.Command;
+import org.apache.geode.internal.cache.tier.MessageType;
+import org.apache.geode.internal.cache.tier.sockets.BaseCommandQuery;
+import org.apache.geode.internal.cache.tier.sockets.CacheClientNotifier;
+import org.apache.geode.internal.cache.tier.sockets.Message;
+import org.apache.geode.internal.cache.tier.sockets.ServerConnection;
+import org.apache.geode.internal.cache.tier.sockets.ServerQueryCursor;
+import org.apache.geode.internal.i18n.LocalizedStrings;
+import org.apache.geode.internal.security.AuthorizeRequest;
+import org.apache.geode.internal.security.AuthorizeRequestPP;
+
+/**
+ * Opens a {@link ServerQueryCursor} for a streaming query and replies with
+ * its first chunk of rows.
+ *
+ * @since Geode 1.1
+ */
+public class QueryCursorOpen extends BaseCommandQuery {
+
+  private final static QueryCursorOpen singleton = new QueryCursorOpen();
+
+  public static Command getCommand() {
+    return singleton;
+  }
+
+  private QueryCursorOpen() {
+  }
+
+  @Override
+  public void cmdExecute(Message msg, ServerConnection servConn, long start)
+      throws IOException, InterruptedException {
+    servConn.setAsTrue(REQUIRES_RESPONSE);
+    {
+      long oldStart = start;
+      start = DistributionStats.getStatTime();
+      servConn.getCacheServerStats().incReadQueryRequestTime(start - oldStart);
+    }
+    String queryString = msg.getPart(0).getString();
+    int fetchSize = msg.getPart(1).getInt();
+    Object[] queryParams = null;
+    DefaultQuery query = null;
+    try {
+      int params = msg.getPart(2).getInt();
+      if (params > 0) {
+        queryParams = new Object[params];
+        for (int i = 0; i < queryParams.length; i++) {
+          queryParams[i] = msg.getPart(i + 3).getObject();
+        }
+      }
+      if (logger.isDebugEnabled()) {
+        logger.debug("{}: Received query cursor request from {} queryString: {} fetchSize: {}",
+            servConn.getName(), servConn.getSocketString(), queryString, fetchSize);
+      }
+
+      QueryService queryService = ((GemFireCacheImpl)servConn.getCachedRegionHelper().getCache())
+          .getLocalQueryService();
+      query = (DefaultQuery)queryService.newQuery(queryString);
+      Set regionNames = query.getRegionsInQuery(queryParams);
+
+      // Authorization check
+      QueryOperationContext queryContext = null;
+      AuthorizeRequest authzRequest = servConn.getAuthzRequest();
+      if (authzRequest != null) {
+        queryContext = authzRequest.queryAuthorize(queryString, regionNames, queryParams);
+        String newQueryString = queryContext.getQuery();
+        if (queryString != null && !queryString.equals(newQueryString)) {
+          query = (DefaultQuery)queryService.newQuery(newQueryString);
+          queryString = newQueryString;
+          regionNames = queryContext.getRegionNames();
+          if (regionNames == null) {
+            regionNames = query.getRegionsInQuery(null);
+          }
+        }
+      }
+      for (Object regionName : regionNames) {
+        this.securityService.authorizeRegionRead(regionName.toString());
+      }
+      query.setRemoteQuery(true);
+
+      ServerQueryCursor cursor = new ServerQueryCursor(servConn.getCache(),
+          query, queryParams, regionNames, servConn.getProxyID());
+      AuthorizeRequestPP postAuthzRequest = servConn.getPostAuthzRequest();
+      if (postAuthzRequest != null) {
+        // post authorization needs to see all the results at once
+        Object result = queryParams == null ? query.execute() : query.execute(queryParams);
+        queryContext = postAuthzRequest.queryAuthorize(queryString,
+            regionNames, result, queryContext, queryParams);
+        cursor.setResults(queryContext.getQueryResult());
+      } else {
+        cursor.execute();
+      }
+
+      CacheClientNotifier ccn = servConn.getAcceptor().getCacheClientNotifier();
+      long cursorId = ccn.addQueryCursor(cursor);
+      try {
+        if (!writeQueryCursorChunk(msg, cursorId, cursor, fetchSize, servConn, start)) {
+          ccn.removeQueryCursor(cursorId);
+        }
+      } catch (Exception e) {
+        ccn.removeQueryCursor(cursorId);
+        throw e;
+      }
+      msg.clearParts();
+    } catch (QueryInvalidException e) {
+      // the exception can contain non-serializable objects so send a new one
+      QueryInvalidException qie = new QueryInvalidException(LocalizedStrings.BaseCommand_0_QUERYSTRING_IS_1
+          .toLocalizedString(new Object[] {e.getLocalizedMessage(), queryString}));
+      writeException(msg, qie, false, servConn);
+    } catch (DistributedSystemDisconnectedException se) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("{}: ignoring message of type {} from client {} because shutdown occurred during message processing.",
+            servConn.getName(), MessageType.getString(msg.getMessageType()), servConn.getProxyID());
+      }
+      servConn.setFlagProcessMessagesAsFalse();
+    } catch (Exception e) {
+      checkForInterrupt(servConn, e);
+      writeException(msg, e, false, servConn);
+    } finally {
+      servConn.setAsTrue(RESPONDED);
+    }
+  }
+}
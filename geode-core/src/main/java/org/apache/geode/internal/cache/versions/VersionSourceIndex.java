@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.versions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every {@link VersionSource} seen by this VM a small number so that
+ * compact region entries can store a member id in 16 bits instead of a
+ * reference. The same member ids are shared by all regions, so the table
+ * stays small, and indexes are not reused while the cache is open because
+ * entries may keep the version of a departed member for good. The table is
+ * cleared when the cache closes.
+ * <p>
+ * Index zero stands for no member id. Once all the indexes have been handed
+ * out, {@link #OVERFLOW_INDEX} is returned for new member ids: the entries
+ * that get it keep their member id in a weak side table instead, and new
+ * entries are created as regular versioned entries.
+ *
+ * @since Geode 1.1
+ */
+public class VersionSourceIndex {
+
+  /**
+   * The largest index that can be stored in an entry. It is never handed out
+   * for a single member id and stands for a member id kept in the side table.
+   */
+  public static final int OVERFLOW_INDEX = 0xFFFF;
+
+  /**
+   * The largest index that can be handed out for a member id.
+   */
+  public static final int MAX_INDEX = OVERFLOW_INDEX - 1;
+
+  private static final ConcurrentHashMap<VersionSource, Integer> indexes = new ConcurrentHashMap<VersionSource, Integer>();
+
+  /**
+   * Only grows. It is written back after every new member id so that a reader
+   * that got an index from an entry also sees the member id stored under it.
+   */
+  private static volatile VersionSource[] sources = new VersionSource[16];
+
+  private static int nextIndex = 1;
+
+  /** Set once all the indexes have been handed out */
+  private static volatile boolean full;
+
+  /** The member ids of the entries that got the overflow index, by entry */
+  private static final Map<Object, VersionSource> overflowSources =
+      Collections.synchronizedMap(new WeakHashMap<Object, VersionSource>());
+
+  /**
+   * Returns the index of <code>source</code>, assigning one the first time
+   * it is seen, or {@link #OVERFLOW_INDEX} if all the indexes have been
+   * handed out.
+   */
+  public static int getIndex(VersionSource source) {
+    if (source == null) {
+      return 0;
+    }
+    Integer index = indexes.get(source);
+    if (index != null) {
+      return index.intValue();
+    }
+    synchronized (indexes) {
+      index = indexes.get(source);
+      if (index != null) {
+        return index.intValue();
+      }
+      if (nextIndex > MAX_INDEX) {
+        full = true;
+        return OVERFLOW_INDEX;
+      }
+      int newIndex = nextIndex++;
+      VersionSource[] table = sources;
+      if (newIndex >= table.length) {
+        table = Arrays.copyOf(table, Math.min(table.length * 2, MAX_INDEX + 1));
+      }
+      table[newIndex] = source;
+      sources = table;
+      indexes.put(source, Integer.valueOf(newIndex));
+      return newIndex;
+    }
+  }
+
+  /**
+   * Returns the member id with the given index, or null for index zero.
+   */
+  public static VersionSource getVersionSource(int index) {
+    VersionSource[] table = sources;
+    return index < table.length ? table[index] : null;
+  }
+
+  /**
+   * Returns true once a member id got {@link #OVERFLOW_INDEX}. New entries
+   * should not depend on an index from then on.
+   */
+  public static boolean isFull() {
+    return full;
+  }
+
+  /**
+   * Keeps the member id of an entry that got {@link #OVERFLOW_INDEX}.
+   */
+  public static void setOverflowSource(Object entry, VersionSource source) {
+    overflowSources.put(entry, source);
+  }
+
+  /**
+   * Returns the member id kept for an entry that got {@link #OVERFLOW_INDEX}.
+   */
+  public static VersionSource getOverflowSource(Object entry) {
+    return overflowSources.get(entry);
+  }
+
+  /**
+   * Forgets the member id kept for an entry that got an index again.
+   */
+  public static void removeOverflowSource(Object entry) {
+    if (full) {
+      overflowSources.remove(entry);
+    }
+  }
+
+  /**
+   * Returns the number of member ids that have an index.
+   */
+  public static int size() {
+    return indexes.size();
+  }
+
+  /**
+   * Forgets all the member ids. Called when the cache closes, after which
+   * no entry holding an index is used anymore.
+   */
+  public static void clear() {
+    synchronized (indexes) {
+      indexes.clear();
+      sources = new VersionSource[16];
+      nextIndex = 1;
+      full = false;
+      overflowSources.clear();
+    }
+  }
+
+  private VersionSourceIndex() {
+  }
+}
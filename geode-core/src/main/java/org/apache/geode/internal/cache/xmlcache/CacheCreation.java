@@ -76,6 +76,7 @@ import org.apache.geode.cache.query.IndexType;
 import org.apache.geode.cache.query.MultiIndexCreationException;
 import org.apache.geode.cache.query.Query;
 import org.apache.geode.cache.query.QueryInvalidException;
+import org.apache.geode.cache.query.QueryResultIterator;
 import org.apache.geode.cache.query.QueryService;
 import org.apache.geode.cache.query.RegionNotFoundException;
 import org.apache.geode.cache.query.internal.cq.CqService;
@@ -1426,6 +1427,12 @@ public class CacheCreation implements InternalCache {
       throw new UnsupportedOperationException(LocalizedStrings.SHOULDNT_INVOKE.toLocalizedString());
     }
 
+    @Override
+    public QueryResultIterator executeStreaming(String queryString,
+        Object[] params, int fetchSize) {
+      throw new UnsupportedOperationException(LocalizedStrings.SHOULDNT_INVOKE.toLocalizedString());
+    }
+
     @Override
     public Index createHashIndex(String indexName, String indexedExpression,
         String regionPath) throws IndexInvalidException,
@@ -1442,6 +1449,22 @@ public class CacheCreation implements InternalCache {
       return createIndex(indexName, IndexType.HASH, indexedExpression, regionPath, imports);
     }
 
+    @Override
+    public Index createBitmapIndex(String indexName, String indexedExpression,
+        String regionPath) throws IndexInvalidException,
+        IndexNameConflictException, IndexExistsException,
+        RegionNotFoundException, UnsupportedOperationException {
+      return createBitmapIndex(indexName, indexedExpression, regionPath, "");
+    }
+
+    @Override
+    public Index createBitmapIndex(String indexName, String indexedExpression,
+        String regionPath, String imports) throws IndexInvalidException,
+        IndexNameConflictException, IndexExistsException,
+        RegionNotFoundException, UnsupportedOperationException {
+      return createIndex(indexName, IndexType.BITMAP, indexedExpression, regionPath, imports);
+    }
+
     @Override
     public Index createIndex(String indexName, IndexType indexType,
         String indexedExpression, String fromClause)
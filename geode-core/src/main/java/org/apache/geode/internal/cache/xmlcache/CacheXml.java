@@ -677,6 +677,10 @@ public abstract class CacheXml implements EntityResolver2, ErrorHandler {
   protected static final String LRU_MEMORY_SIZE = "lru-memory-size";
   /** Eviction Controller eviction based on used heap */
   protected static final String LRU_HEAP_PERCENTAGE = "lru-heap-percentage";
+  /** Frequency aware eviction on a per Entry basis */
+  protected static final String LFU_ENTRY_COUNT = "lfu-entry-count";
+  /** Frequency aware eviction on a per Entry size basis */
+  protected static final String LFU_MEMORY_SIZE = "lfu-memory-size";
   /** Eviction Controller maximum allowed value for the enclosing Eviction Controller */
   protected static final String MAXIMUM = "maximum";
 
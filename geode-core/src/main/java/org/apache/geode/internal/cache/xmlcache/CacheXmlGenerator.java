@@ -2343,6 +2343,22 @@ public class CacheXmlGenerator extends CacheXml implements XMLReader {
         }
       }
       handler.endElement("", LRU_HEAP_PERCENTAGE, LRU_HEAP_PERCENTAGE);
+    } else if (ea.getAlgorithm().isLFU()) {
+      if (this.version.compareTo(CacheXmlVersion.GEODE_1_0) < 0) {
+        throw new IllegalStateException("The " + ea.getAlgorithm()
+            + " eviction algorithm can't be described by cache xml version "
+            + this.version.getVersion());
+      }
+      atts.addAttribute("", "", MAXIMUM, "",
+          String.valueOf(ea.getMaximum()));
+      String element = ea.getAlgorithm() == EvictionAlgorithm.LFU_ENTRY ? LFU_ENTRY_COUNT
+          : LFU_MEMORY_SIZE;
+      handler.startElement("", element, element, atts);
+      ObjectSizer os = ea.getObjectSizer();
+      if (os != null && os != ObjectSizer.DEFAULT) {
+        generate((Declarable) os, false);
+      }
+      handler.endElement("", element, element);
     } else {
       // all other algos are ignored
     }
@@ -2126,6 +2126,19 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
    * @param atts
    */
   private void startLRUEntryCount(Attributes atts) {
+    startEntryCount(atts, LRU_ENTRY_COUNT);
+  }
+
+  /**
+   * Create an <code>lfu-entry-count</code> eviction controller, assigning
+   * it to the enclosed <code>region-attributes</code>
+   * @param atts
+   */
+  private void startLFUEntryCount(Attributes atts) {
+    startEntryCount(atts, LFU_ENTRY_COUNT);
+  }
+
+  private void startEntryCount(Attributes atts, String qName) {
     final String maximum = atts.getValue(MAXIMUM);
     int max = LRUCapacityController.DEFAULT_MAXIMUM_ENTRIES;
     if (maximum != null) {
@@ -2136,8 +2149,12 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
     if (lruAction != null) {
       action = EvictionAction.parseAction(lruAction);
     }
-    RegionAttributesCreation regAttrs = peekRegionAttributesContext(LRU_ENTRY_COUNT);
-    regAttrs.setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(max, action));
+    RegionAttributesCreation regAttrs = peekRegionAttributesContext(qName);
+    if (qName.equals(LFU_ENTRY_COUNT)) {
+      regAttrs.setEvictionAttributes(EvictionAttributes.createLFUEntryAttributes(max, action));
+    } else {
+      regAttrs.setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(max, action));
+    }
   }
 
   /**
@@ -2147,6 +2164,19 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
    * @param atts
    */
   private void startLRUMemorySize(Attributes atts) {
+    startMemorySize(atts, false);
+  }
+
+  /**
+   * Start the configuration of a <code>lfu-memory-size</code> eviction controller,
+   * like {@link #startLRUMemorySize(Attributes)}.
+   * @param atts
+   */
+  private void startLFUMemorySize(Attributes atts) {
+    startMemorySize(atts, true);
+  }
+
+  private void startMemorySize(Attributes atts, boolean lfu) {
     String lruAction = atts.getValue(ACTION);
     EvictionAction action = EvictionAction.DEFAULT_EVICTION_ACTION;
     if(lruAction != null){
@@ -2158,7 +2188,11 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
       max = parseInt(maximum);
     }
     // Store for later addition of ObjectSizer, if any (the cast is for clarity sake)
-    stack.push(EvictionAttributes.createLRUMemoryAttributes(max, null, action));
+    if (lfu) {
+      stack.push(EvictionAttributes.createLFUMemoryAttributes(max, action));
+    } else {
+      stack.push(EvictionAttributes.createLRUMemoryAttributes(max, null, action));
+    }
   }
 
   /**
@@ -2167,6 +2201,18 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
    * enclose <code>region-attributes</code>
    */
   private void endLRUMemorySize() {
+    endMemorySize(LRU_MEMORY_SIZE);
+  }
+
+  /**
+   * Complete the configuration of a <code>lfu-memory-size</code> eviction controller,
+   * like {@link #endLRUMemorySize()}.
+   */
+  private void endLFUMemorySize() {
+    endMemorySize(LFU_MEMORY_SIZE);
+  }
+
+  private void endMemorySize(String qName) {
     Object declCheck = stack.peek();
     Declarable d = null;
     if (declCheck instanceof String ||
@@ -2180,7 +2226,7 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
     if (d != null) {
         eai.setObjectSizer((ObjectSizer) d);
     }
-    RegionAttributesCreation regAttrs = peekRegionAttributesContext(LRU_MEMORY_SIZE);
+    RegionAttributesCreation regAttrs = peekRegionAttributesContext(qName);
     regAttrs.setEvictionAttributes(eai);
   }
 
@@ -2772,6 +2818,12 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
     else if (qName.equals(LRU_HEAP_PERCENTAGE)) {
       startLRUHeapPercentage(atts); // internal to eviction-attributes
     }
+    else if (qName.equals(LFU_ENTRY_COUNT)) {
+      startLFUEntryCount(atts);  // internal to eviction-attributes
+    }
+    else if (qName.equals(LFU_MEMORY_SIZE)) {
+      startLFUMemorySize(atts);  // internal to eviction-attributes
+    }
     else if (qName.equals(CACHE_LISTENER)) {
     } else if (qName.equals(ASYNC_EVENT_LISTENER)) {
     }
@@ -3137,6 +3189,12 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
       else if (qName.equals(LRU_HEAP_PERCENTAGE)) {
         endLRUHeapPercentage(); // internal to eviction-attributes
       }
+      else if (qName.equals(LFU_ENTRY_COUNT)) {
+        // internal to eviction-attributes
+      }
+      else if (qName.equals(LFU_MEMORY_SIZE)) {
+        endLFUMemorySize(); // internal to eviction-attributes
+      }
       else if (qName.equals(CACHE_LISTENER)) {
         endCacheListener();
       } else if (qName.equals(ASYNC_EVENT_LISTENER)) {
@@ -98,6 +98,31 @@ public class FreeListManager {
     }
     return result;
   }
+  /**
+   * Returns the size of the largest block of free memory that an allocation
+   * can use without a defragmentation, ignoring the tiny free lists.
+   */
+  int getLargestFreeFragment() {
+    int result = 0;
+    for (Fragment f: this.fragmentList) {
+      int freeSpace = f.freeSpace();
+      if (freeSpace > result) {
+        result = freeSpace;
+      }
+    }
+    if (!this.hugeChunkSet.isEmpty()) {
+      try {
+        // the set is sorted by size
+        int hugeSize = this.hugeChunkSet.last().getSize();
+        if (hugeSize > result) {
+          result = hugeSize;
+        }
+      } catch (NoSuchElementException ignore) {
+        // the last huge chunk was allocated concurrently
+      }
+    }
+    return result;
+  }
   long getFreeTinyMemory() {
     long tinyFree = 0;
     for (int i=0; i < this.tinyFreeLists.length(); i++) {
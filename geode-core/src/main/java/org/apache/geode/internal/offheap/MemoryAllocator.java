@@ -58,6 +58,20 @@ public interface MemoryAllocator {
 
   public long getTotalMemory();
 
+  /**
+   * Returns the size of the largest allocation that can currently be made
+   * without defragmenting the free memory. Allocations small enough for the
+   * tiny free lists are not considered.
+   */
+  public int getLargestFreeFragment();
+
+  /**
+   * Coalesces the free memory into as few fragments as possible.
+   * @param chunkSize the size of an allocation the caller wants to make
+   * @return true if a fragment of at least chunkSize bytes is free afterwards
+   */
+  public boolean defragment(int chunkSize);
+
   public OffHeapMemoryStats getStats();
 
   /**
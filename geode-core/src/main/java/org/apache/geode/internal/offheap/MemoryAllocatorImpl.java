@@ -333,6 +333,16 @@ public class MemoryAllocatorImpl implements MemoryAllocator {
   public long getTotalMemory() {
     return this.freeList.getTotalMemory();
   }
+
+  @Override
+  public int getLargestFreeFragment() {
+    return this.freeList.getLargestFreeFragment();
+  }
+
+  @Override
+  public boolean defragment(int chunkSize) {
+    return this.freeList.defragment(chunkSize);
+  }
   
   @Override
   public void close() {
@@ -21,8 +21,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import org.apache.geode.cache.Region;
+import org.apache.geode.internal.ByteBufferWriter;
 import org.apache.geode.internal.DSCODE;
-import org.apache.geode.internal.HeapDataOutputStream;
 import org.apache.geode.internal.InternalDataSerializer;
 import org.apache.geode.internal.cache.BytesAndBitsForCompactor;
 import org.apache.geode.internal.cache.EntryBits;
@@ -285,16 +285,18 @@ import org.apache.geode.internal.offheap.annotations.Unretained;
     }
     @Override
     public void sendTo(DataOutput out) throws IOException {
-      if (!this.isCompressed() && out instanceof HeapDataOutputStream) {
+      // HeapDataOutputStream and MsgStreamer are both ByteBufferWriters.
+      // MsgStreamer can send large direct buffers without copying them.
+      if (!this.isCompressed() && out instanceof ByteBufferWriter) {
         ByteBuffer bb = createDirectByteBuffer();
         if (bb != null) {
-          HeapDataOutputStream hdos = (HeapDataOutputStream) out;
+          ByteBufferWriter bbw = (ByteBufferWriter) out;
           if (this.isSerialized()) {
-            hdos.write(bb);
+            bbw.write(bb);
           } else {
-            hdos.writeByte(DSCODE.BYTE_ARRAY);
-            InternalDataSerializer.writeArrayLength(bb.remaining(), hdos);
-            hdos.write(bb);
+            out.writeByte(DSCODE.BYTE_ARRAY);
+            InternalDataSerializer.writeArrayLength(bb.remaining(), out);
+            bbw.write(bb);
           }
           return;
         }
@@ -304,12 +306,11 @@ import org.apache.geode.internal.offheap.annotations.Unretained;
     
     @Override
     public void sendAsByteArray(DataOutput out) throws IOException {
-      if (!isCompressed() && out instanceof HeapDataOutputStream) {
+      if (!isCompressed() && out instanceof ByteBufferWriter) {
         ByteBuffer bb = createDirectByteBuffer();
         if (bb != null) {
-          HeapDataOutputStream hdos = (HeapDataOutputStream) out;
-          InternalDataSerializer.writeArrayLength(bb.remaining(), hdos);
-          hdos.write(bb);
+          InternalDataSerializer.writeArrayLength(bb.remaining(), out);
+          ((ByteBufferWriter) out).write(bb);
           return;
         }
       }
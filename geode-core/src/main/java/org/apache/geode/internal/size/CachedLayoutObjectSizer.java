@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.size;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.geode.InternalGemFireError;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.Declarable;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.util.ObjectSizer;
+import org.apache.geode.distributed.internal.InternalDistributedSystem;
+import org.apache.geode.internal.cache.PlaceHolderDiskRegion;
+import org.apache.geode.internal.tcp.ByteBufferInputStream.ByteBufferByteSource;
+import org.apache.geode.internal.util.concurrent.CopyOnWriteWeakHashMap;
+import org.apache.geode.pdx.internal.PdxInputStream;
+import org.apache.geode.pdx.internal.PdxInstanceImpl;
+import org.apache.geode.pdx.internal.unsafe.UnsafeWrapper;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An implementation of {@link ObjectSizer} that sizes every object it is given
+ * like {@link ReflectionObjectSizer} but does the reflection only once per
+ * class. The first time a class is seen its shallow size and the offsets of
+ * its reference fields, or the base size and element size of an array, are
+ * cached. Sizing an object graph after that only reads those references and
+ * adds up the cached sizes. The traversal uses a stack and an identity set
+ * that are kept per thread, so sizing does not allocate once the thread has
+ * sized a graph of similar size before.
+ * 
+ * Byte arrays, strings and other primitive arrays are sized from their lengths.
+ * A {@link PdxInstanceImpl} is sized from the length of its serialized form
+ * instead of walking its fields and its type.
+ * 
+ * The same objects {@link ReflectionObjectSizer} refuses to size, such as
+ * regions, caches and class loaders, are not included in the size.
+ * 
+ * @since Geode 1.1
+ */
+public class CachedLayoutObjectSizer implements ObjectSizer, Serializable, Declarable {
+
+  private static final CachedLayoutObjectSizer INSTANCE = new CachedLayoutObjectSizer();
+
+  /**
+   * The traversal state a thread keeps between calls is dropped after sizing
+   * a graph that needed more slots than this, so one large graph does not
+   * pin memory in the thread for good.
+   */
+  private static final int MAX_RETAINED_SLOTS = 4096;
+
+  private static final int INITIAL_SLOTS = 64;
+
+  /**
+   * Objects of these classes, and their subclasses, are not sized. They are
+   * the same classes {@link ReflectionObjectSizer} filters out.
+   */
+  private static final Class<?>[] EXCLUDED_CLASSES = new Class<?>[] {
+      Region.class, Cache.class, PlaceHolderDiskRegion.class,
+      InternalDistributedSystem.class, ClassLoader.class, Logger.class };
+
+  private static final long[] NO_OFFSETS = new long[0];
+
+  private static final Field[] NO_FIELDS = new Field[0];
+
+  private static final UnsafeWrapper unsafe;
+
+  /**
+   * The heap used by a pdx instance in addition to its serialized bytes.
+   */
+  private static final long PDX_INSTANCE_OVERHEAD;
+
+  static {
+    UnsafeWrapper tmp = null;
+    try {
+      tmp = new UnsafeWrapper();
+    } catch (RuntimeException ignore) {
+    } catch (Error ignore) {
+    }
+    unsafe = tmp;
+
+    try {
+      ReflectionSingleObjectSizer objSizer = new ReflectionSingleObjectSizer();
+      PDX_INSTANCE_OVERHEAD = ReflectionSingleObjectSizer.sizeof(PdxInstanceImpl.class)
+          + ReflectionSingleObjectSizer.sizeof(PdxInputStream.class)
+          + ReflectionSingleObjectSizer.sizeof(ByteBufferByteSource.class)
+          + ReflectionSingleObjectSizer.sizeof(ByteBuffer.wrap(new byte[0]).getClass())
+          + objSizer.sizeof(new byte[0], false);
+    } catch (Exception e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private transient final Map<Class<?>, Layout> layouts = new CopyOnWriteWeakHashMap<Class<?>, Layout>();
+
+  private transient final ThreadLocal<Traversal> traversals = new ThreadLocal<Traversal>() {
+    @Override
+    protected Traversal initialValue() {
+      return new Traversal();
+    }
+  };
+
+  public int sizeof(Object o) {
+    if (o == null) {
+      return 0;
+    }
+    int wellKnownObjectSize = WellKnownClassSizer.sizeof(o);
+    if (wellKnownObjectSize != 0) {
+      return wellKnownObjectSize;
+    }
+    return (int) sizeGraph(o, this.traversals.get());
+  }
+
+  private long sizeGraph(Object root, Traversal traversal) {
+    long total = 0;
+    traversal.push(root);
+    try {
+      while (!traversal.isEmpty()) {
+        Object o = traversal.pop();
+        Layout layout = getLayout(o.getClass());
+        switch (layout.kind) {
+        case Layout.INSTANCE:
+          total += layout.size;
+          if (unsafe != null) {
+            for (long offset : layout.referenceOffsets) {
+              traversal.push(unsafe.getObject(o, offset));
+            }
+          } else {
+            for (Field field : layout.referenceFields) {
+              traversal.push(field.get(o));
+            }
+          }
+          break;
+        case Layout.PRIMITIVE_ARRAY:
+          total += layout.arraySize(Array.getLength(o));
+          break;
+        case Layout.OBJECT_ARRAY:
+          Object[] array = (Object[]) o;
+          total += layout.arraySize(array.length);
+          for (Object element : array) {
+            traversal.push(element);
+          }
+          break;
+        case Layout.PDX_INSTANCE:
+          total += ReflectionSingleObjectSizer.roundUpSize(PDX_INSTANCE_OVERHEAD
+              + ((PdxInstanceImpl) o).getSerializedSize());
+          break;
+        default:
+          // a leaf is counted but its references are not followed
+          total += layout.size;
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new InternalGemFireError(e);
+    } finally {
+      traversal.reset();
+    }
+    return total;
+  }
+
+  private Layout getLayout(Class<?> clazz) {
+    Layout layout = this.layouts.get(clazz);
+    if (layout == null) {
+      layout = buildLayout(clazz);
+      this.layouts.put(clazz, layout);
+    }
+    return layout;
+  }
+
+  private static Layout buildLayout(Class<?> clazz) {
+    for (Class<?> excluded : EXCLUDED_CLASSES) {
+      if (excluded.isAssignableFrom(clazz)) {
+        return new Layout(Layout.LEAF, 0, 0, NO_OFFSETS, NO_FIELDS);
+      }
+    }
+    if (clazz.isArray()) {
+      Class<?> componentType = clazz.getComponentType();
+      ReflectionSingleObjectSizer objSizer = new ReflectionSingleObjectSizer();
+      long base = objSizer.sizeof(Array.newInstance(componentType, 0), false);
+      int scale = (int) (objSizer.sizeof(Array.newInstance(componentType, 1), false) - base);
+      byte kind = componentType.isPrimitive() ? Layout.PRIMITIVE_ARRAY : Layout.OBJECT_ARRAY;
+      return new Layout(kind, base, scale, NO_OFFSETS, NO_FIELDS);
+    }
+    long size = ReflectionSingleObjectSizer.sizeof(clazz);
+    if (PdxInstanceImpl.class.isAssignableFrom(clazz)) {
+      return new Layout(Layout.PDX_INSTANCE, size, 0, NO_OFFSETS, NO_FIELDS);
+    }
+    if (Reference.class.isAssignableFrom(clazz)) {
+      // like ObjectGraphSizer, what is only reachable through a weak or soft
+      // reference is not part of the size
+      return new Layout(Layout.LEAF, size, 0, NO_OFFSETS, NO_FIELDS);
+    }
+
+    ArrayList<Field> referenceFields = new ArrayList<Field>();
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!field.getType().isPrimitive() && !Modifier.isStatic(field.getModifiers())) {
+          referenceFields.add(field);
+        }
+      }
+    }
+    if (unsafe != null) {
+      long[] offsets = new long[referenceFields.size()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = unsafe.objectFieldOffset(referenceFields.get(i));
+      }
+      // reading the fields in memory order is friendlier to the cache
+      Arrays.sort(offsets);
+      return new Layout(Layout.INSTANCE, size, 0, offsets, NO_FIELDS);
+    }
+    for (Field field : referenceFields) {
+      field.setAccessible(true);
+    }
+    return new Layout(Layout.INSTANCE, size, 0, NO_OFFSETS,
+        referenceFields.toArray(new Field[referenceFields.size()]));
+  }
+
+  public static CachedLayoutObjectSizer getInstance() {
+    return INSTANCE;
+  }
+
+  //This object is serializable because EvictionAttributes is serializable
+  //We want to resolve to the same singleton when deserializing
+  private void writeObject(java.io.ObjectOutputStream out)
+  throws IOException {
+  }
+
+  private void readObject(java.io.ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+  }
+
+  private Object readResolve() throws ObjectStreamException {
+    return INSTANCE;
+  }
+
+  private CachedLayoutObjectSizer() {
+  }
+
+  public void init(Properties props) {
+  }
+
+  /**
+   * What sizing an object of one class takes: its shallow size and the
+   * references to follow, or for an array its base size and element size.
+   */
+  private static final class Layout {
+    static final byte INSTANCE = 0;
+    static final byte PRIMITIVE_ARRAY = 1;
+    static final byte OBJECT_ARRAY = 2;
+    static final byte PDX_INSTANCE = 3;
+    static final byte LEAF = 4;
+
+    final byte kind;
+    /** the rounded shallow size, or the unrounded base size of an array */
+    final long size;
+    final int indexScale;
+    final long[] referenceOffsets;
+    /** only used when unsafe is not available */
+    final Field[] referenceFields;
+
+    Layout(byte kind, long size, int indexScale, long[] referenceOffsets, Field[] referenceFields) {
+      this.kind = kind;
+      this.size = size;
+      this.indexScale = indexScale;
+      this.referenceOffsets = referenceOffsets;
+      this.referenceFields = referenceFields;
+    }
+
+    long arraySize(int length) {
+      return ReflectionSingleObjectSizer.roundUpSize(this.size + (long) length * this.indexScale);
+    }
+  }
+
+  /**
+   * The stack of objects still to size and the identity set of the objects
+   * already seen. Both are open arrays that are cleared, not reallocated,
+   * between graphs.
+   */
+  private static final class Traversal {
+    private Object[] stack = new Object[INITIAL_SLOTS];
+    private int top;
+    private Object[] seen = new Object[INITIAL_SLOTS * 2];
+    private int seenCount;
+
+    void push(Object o) {
+      if (o == null || !markSeen(o)) {
+        return;
+      }
+      if (this.top == this.stack.length) {
+        this.stack = Arrays.copyOf(this.stack, this.top * 2);
+      }
+      this.stack[this.top++] = o;
+    }
+
+    Object pop() {
+      Object o = this.stack[--this.top];
+      this.stack[this.top] = null;
+      return o;
+    }
+
+    boolean isEmpty() {
+      return this.top == 0;
+    }
+
+    /**
+     * Returns true if <code>o</code> was not seen before in this graph.
+     */
+    private boolean markSeen(Object o) {
+      if ((this.seenCount + 1) * 2 > this.seen.length) {
+        rehash(this.seen.length * 2);
+      }
+      Object[] table = this.seen;
+      int mask = table.length - 1;
+      int i = mix(System.identityHashCode(o)) & mask;
+      Object existing;
+      while ((existing = table[i]) != null) {
+        if (existing == o) {
+          return false;
+        }
+        i = (i + 1) & mask;
+      }
+      table[i] = o;
+      this.seenCount++;
+      return true;
+    }
+
+    private void rehash(int newLength) {
+      Object[] oldTable = this.seen;
+      Object[] table = new Object[newLength];
+      int mask = newLength - 1;
+      for (Object o : oldTable) {
+        if (o != null) {
+          int i = mix(System.identityHashCode(o)) & mask;
+          while (table[i] != null) {
+            i = (i + 1) & mask;
+          }
+          table[i] = o;
+        }
+      }
+      this.seen = table;
+    }
+
+    private static int mix(int h) {
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    /**
+     * Forgets the graph, including after a failure, so that no sized object
+     * stays reachable from the thread.
+     */
+    void reset() {
+      if (this.stack.length > MAX_RETAINED_SLOTS) {
+        this.stack = new Object[INITIAL_SLOTS];
+      } else {
+        Arrays.fill(this.stack, 0, this.top, null);
+      }
+      this.top = 0;
+      if (this.seen.length > MAX_RETAINED_SLOTS * 2) {
+        this.seen = new Object[INITIAL_SLOTS * 2];
+      } else if (this.seenCount > 0) {
+        Arrays.fill(this.seen, null);
+      }
+      this.seenCount = 0;
+    }
+  }
+}
@@ -2561,6 +2561,74 @@ public class Connection implements Runnable {
       }
     }
   }
+
+  /**
+   * Returns true if {@link #sendPreserialized(ByteBuffer[], boolean, DistributionMessage)}
+   * can write the buffers with a gathering write instead of copying them into
+   * one buffer. This is the case for nio connections that do not batch sends.
+   */
+  public boolean supportsGatheringWrites() {
+    return useNIO() && this.batchFlusher == null;
+  }
+
+  /**
+   * Sends a single message chunk made of several buffers. The bytes from
+   * position to limit of each buffer are written in array order.
+   * When the connection is writing synchronously this is done with a
+   * gathering write so the buffers are never copied; otherwise they are
+   * copied into one buffer and sent with
+   * {@link #sendPreserialized(ByteBuffer, boolean, DistributionMessage)}.
+   */
+  public void sendPreserialized(ByteBuffer[] buffers,
+      boolean cacheContentChanges, DistributionMessage msg)
+    throws IOException, ConnectionException
+  {
+    if (!connected) {
+      throw new ConnectionException(LocalizedStrings.Connection_NOT_CONNECTED_TO_0.toLocalizedString(this.remoteAddr));
+    }
+    if (!supportsGatheringWrites() || !useSyncWrites(false)) {
+      sendPreserialized(combineBuffers(buffers), cacheContentChanges, msg);
+      return;
+    }
+    final boolean origSocketInUse = this.socketInUse;
+    byte originalState = -1;
+    synchronized (stateLock) {
+      originalState = this.connectionState;
+      this.connectionState = STATE_SENDING;
+    }
+    this.socketInUse = true;
+    try {
+      SocketChannel channel = getSocket().getChannel();
+      nioWriteFully(channel, buffers, msg);
+      if (cacheContentChanges) {
+        messagesSent++;
+      }
+    } finally {
+      accessed();
+      this.socketInUse = origSocketInUse;
+      synchronized (stateLock) {
+        this.connectionState = originalState;
+      }
+    }
+  }
+
+  /**
+   * Copies the remaining bytes of <code>buffers</code> into a new heap buffer.
+   * The positions of the source buffers are not changed.
+   */
+  static private ByteBuffer combineBuffers(ByteBuffer[] buffers) {
+    int size = 0;
+    for (int i = 0; i < buffers.length; i++) {
+      size += buffers[i].remaining();
+    }
+    ByteBuffer result = ByteBuffer.allocate(size);
+    for (int i = 0; i < buffers.length; i++) {
+      result.put(buffers[i].duplicate());
+    }
+    result.flip();
+    return result;
+  }
+
   /**
    * If <code>use</code> is true then "claim" the connection for our use.
    * If <code>use</code> is false then "release" the connection.
@@ -3322,6 +3390,50 @@ public class Connection implements Runnable {
     }
   }
 
+  /**
+   * Same as {@link #nioWriteFully(SocketChannel, ByteBuffer, boolean, DistributionMessage)}
+   * for a message chunk split over several buffers. The buffers are written
+   * with a gathering write while holding the outLock so the chunk is never
+   * interleaved with other writers.
+   */
+  private final void nioWriteFully(SocketChannel channel,
+                                   ByteBuffer[] buffers,
+                                   DistributionMessage msg)
+    throws IOException, ConnectionException
+  {
+    final DMStats stats = this.owner.getConduit().stats;
+    if (!this.sharedResource) {
+      stats.incTOSentMsg();
+    }
+    if (this.asyncQueuingInProgress) {
+      if (addToQueue(combineBuffers(buffers), msg, false)) {
+        return;
+      }
+      // fall through
+    }
+    final ByteBuffer last = buffers[buffers.length-1];
+    long startLock = stats.startSocketLock();
+    synchronized (this.outLock) {
+      stats.endSocketLock(startLock);
+      if (this.asyncQueuingInProgress) {
+        if (addToQueue(combineBuffers(buffers), msg, false)) {
+          return;
+        }
+        // fall through
+      }
+      do {
+        long amtWritten = 0;
+        long start = stats.startSocketWrite(true);
+        try {
+          amtWritten = channel.write(buffers);
+        }
+        finally {
+          stats.endSocketWrite(true, start, (int)amtWritten, 0);
+        }
+      } while (last.remaining() > 0);
+    } // synchronized
+  }
+
   /** gets the buffer for receiving message length bytes */
   protected ByteBuffer getNIOBuffer() {
     final DMStats stats = this.owner.getConduit().stats;
@@ -89,6 +89,27 @@ public class ConnectionTable  {
    * and receiving acks, will be put in this map.
    */
   protected final Map orderedConnectionMap = new ConcurrentHashMap();
+
+  /**
+   * The number of shared ordered connections kept to each member.
+   * Threads that do not own their resources (conserve-sockets=true) are
+   * striped across them by thread id so a thread always uses the same
+   * connection and its messages stay ordered. The default of 1 keeps a single
+   * shared ordered connection per member. Set the "p2p.sharedOrderedConnections"
+   * system property to use more sockets in exchange for less contention
+   * on each socket's send lock.
+   */
+  static final int SHARED_ORDERED_CONNECTIONS =
+      Math.max(1, Integer.getInteger("p2p.sharedOrderedConnections", 1).intValue());
+
+  /** The number of shared ordered connections this table keeps to each member */
+  private final int sharedOrderedConnections;
+
+  /**
+   * The keys of the stripes of the shared ordered connections to each member,
+   * so that looking up a connection does not allocate a key.
+   */
+  private final ConcurrentMap<DistributedMember, Object[]> stripeKeys = new ConcurrentHashMap<DistributedMember, Object[]>();
   
   /**
    * ordered connections local to this thread.  Note that accesses to
@@ -219,7 +240,13 @@ public class ConnectionTable  {
 //       System.getProperty("p2p.bidirectional", "true").equals("true");
 
   private ConnectionTable(TCPConduit c) throws IOException {
+    this(c, SHARED_ORDERED_CONNECTIONS);
+  }
+
+  /** Creates a table keeping the given number of shared ordered connections to each member */
+  ConnectionTable(TCPConduit c, int sharedOrderedConnections) throws IOException {
     this.owner = c;
+    this.sharedOrderedConnections = sharedOrderedConnections;
     this.idleConnTimer = (this.owner.idleConnectionTimeout != 0) 
         ? new SystemTimer(c.getDM().getSystem(), true)
         : null;
@@ -374,10 +401,10 @@ public class ConnectionTable  {
       if (con == null) {
         this.owner.stats.incFailedConnect();
         synchronized (m) {
-          Object rmObj = m.remove(id);
+          Object rmObj = m.remove(pc.key);
           if (rmObj != pc && rmObj != null) {
             // put it back since it was not our pc
-            m.put(id, rmObj);
+            m.put(pc.key, rmObj);
           }
         }
         pc.notifyWaiters(null);
@@ -391,9 +418,9 @@ public class ConnectionTable  {
     // Note that we added the entry _before_ we attempted the connect,
     // so it's possible something else got through in the mean time...
     synchronized (m) {
-      Object e = m.get(id);
+      Object e = m.get(pc.key);
       if (e == pc) {
-        m.put(id, con);
+        m.put(pc.key, con);
       }
       else if (e == null) {
         // someone closed our pending connection
@@ -459,13 +486,14 @@ public class ConnectionTable  {
     
     final Map m = preserveOrder ? this.orderedConnectionMap 
         : this.unorderedConnectionMap;
+    final Object key = preserveOrder ? getSharedOrderedKey(id) : id;
 
     PendingConnection pc = null; // new connection, if needed
     Object mEntry = null; // existing connection (if we don't create a new one)
     
     // Look for pending connection
     synchronized (m) {
-      mEntry = m.get(id);
+      mEntry = m.get(key);
       if (mEntry != null && (mEntry instanceof Connection)) {
         Connection existingCon = (Connection)mEntry;
         if (!existingCon.connected) {
@@ -473,8 +501,8 @@ public class ConnectionTable  {
         }
       }
       if (mEntry == null) {
-        pc = new PendingConnection(preserveOrder, id);
-        m.put(id, pc);
+        pc = new PendingConnection(preserveOrder, id, key);
+        m.put(key, pc);
       }
     } // synchronized
     
@@ -511,6 +539,72 @@ public class ConnectionTable  {
     return result;
     }
 
+  /**
+   * Returns the key in orderedConnectionMap of the shared ordered connection
+   * to <code>id</code> that the current thread sends on.
+   */
+  Object getSharedOrderedKey(DistributedMember id) {
+    if (this.sharedOrderedConnections == 1) {
+      return id;
+    }
+    Object[] keys = this.stripeKeys.get(id);
+    if (keys == null) {
+      keys = new Object[this.sharedOrderedConnections];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = getSharedOrderedKey(id, i);
+      }
+      Object[] existing = this.stripeKeys.putIfAbsent(id, keys);
+      if (existing != null) {
+        keys = existing;
+      }
+    }
+    return keys[(int)(Thread.currentThread().getId() % this.sharedOrderedConnections)];
+  }
+
+  /**
+   * Returns the key in orderedConnectionMap of the given stripe of the shared
+   * ordered connections to <code>id</code>. The first stripe is keyed by the
+   * member itself.
+   */
+  static Object getSharedOrderedKey(DistributedMember id, int stripe) {
+    if (stripe == 0) {
+      return id;
+    }
+    return new StripeKey(id, stripe);
+  }
+
+  /**
+   * The key of an additional shared ordered connection to a member.
+   */
+  private static final class StripeKey {
+    private final DistributedMember id;
+    private final int stripe;
+
+    StripeKey(DistributedMember id, int stripe) {
+      this.id = id;
+      this.stripe = stripe;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.id.hashCode() * 31 + this.stripe;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof StripeKey)) {
+        return false;
+      }
+      StripeKey other = (StripeKey)o;
+      return this.stripe == other.stripe && this.id.equals(other.id);
+    }
+
+    @Override
+    public String toString() {
+      return this.id + "#" + this.stripe;
+    }
+  }
+
   /**
    * Must be looking for an ordered connection that this thread owns
    * 
@@ -740,6 +834,7 @@ public class ConnectionTable  {
         closeCon(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_BEING_DESTROYED.toLocalizedString(), it.next());
       }
       this.orderedConnectionMap.clear();
+      this.stripeKeys.clear();
     }
     synchronized (this.unorderedConnectionMap) {
       for (Iterator it=this.unorderedConnectionMap.values().iterator(); it.hasNext(); ) {
@@ -852,8 +947,10 @@ public class ConnectionTable  {
     }
     boolean needsRemoval = false;
     synchronized (this.orderedConnectionMap) {
-      if (this.orderedConnectionMap.get(memberID) != null)
-        needsRemoval = true;
+      for (int i = 0; i < this.sharedOrderedConnections; i++) {
+        if (this.orderedConnectionMap.get(getSharedOrderedKey(memberID, i)) != null)
+          needsRemoval = true;
+      }
     }
     if (!needsRemoval) {
       synchronized (this.unorderedConnectionMap) {
@@ -872,11 +969,14 @@ public class ConnectionTable  {
     if (needsRemoval) {
       InternalDistributedMember remoteAddress = null;
       synchronized (this.orderedConnectionMap) {
-        Object c = this.orderedConnectionMap.remove(memberID);
-        if (c instanceof Connection) {
-          remoteAddress = ((Connection) c).getRemoteAddress();
+        for (int i = 0; i < this.sharedOrderedConnections; i++) {
+          Object c = this.orderedConnectionMap.remove(getSharedOrderedKey(memberID, i));
+          if (remoteAddress == null && (c instanceof Connection)) {
+            remoteAddress = ((Connection) c).getRemoteAddress();
+          }
+          closeCon(reason, c);
         }
-        closeCon(reason, c);
+        this.stripeKeys.remove(memberID);
       }
       synchronized (this.unorderedConnectionMap) {
         Object c = this.unorderedConnectionMap.remove(memberID);
@@ -1009,8 +1109,12 @@ public class ConnectionTable  {
     }
     if (ordered) {
       synchronized (this.orderedConnectionMap) {
-        if (this.orderedConnectionMap.get(stub) == c) {
-          closeCon(reason, this.orderedConnectionMap.remove(stub));
+        for (int i = 0; i < this.sharedOrderedConnections; i++) {
+          Object key = getSharedOrderedKey(stub, i);
+          if (this.orderedConnectionMap.get(key) == c) {
+            closeCon(reason, this.orderedConnectionMap.remove(key));
+            break;
+          }
         }
       }
     } else {
@@ -1098,6 +1202,17 @@ public class ConnectionTable  {
         }
       }
     }
+    if (this.sharedOrderedConnections > 1) {
+      // A state flush marker only travels on one of the shared ordered
+      // connections so the others have to be waited for like thread-owned ones.
+      for (int i = 0; i < this.sharedOrderedConnections; i++) {
+        Object c = this.orderedConnectionMap.get(getSharedOrderedKey(member, i));
+        if (c instanceof Connection) {
+          Connection conn = (Connection)c;
+          result.put(Long.valueOf(conn.getUniqueId()), Long.valueOf(conn.getMessagesSent()));
+        }
+      }
+    }
   }
   
   /**
@@ -1230,12 +1345,18 @@ public class ConnectionTable  {
      * the stub we are connecting to
      */
     private final DistributedMember id;
+
+    /**
+     * the key of this pending connection in the connection map
+     */
+    final Object key;
     
     private final Thread connectingThread;
     
-    public PendingConnection(boolean preserveOrder, DistributedMember id) {
+    public PendingConnection(boolean preserveOrder, DistributedMember id, Object key) {
       this.preserveOrder = preserveOrder;
       this.id = id;
+      this.key = key;
       this.connectingThread = Thread.currentThread();
     }
     
@@ -1325,7 +1446,7 @@ public class ConnectionTable  {
         
         Object e;
         //synchronized (m) {
-          e = m.get(this.id);
+          e = m.get(this.key);
         //}
         if (e == this) {
           if (logger.isDebugEnabled()) {
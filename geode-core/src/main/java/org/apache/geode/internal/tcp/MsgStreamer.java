@@ -87,6 +87,30 @@ public class MsgStreamer extends OutputStream implements
   private long serStartTime;
   private final boolean directReply;
 
+  /**
+   * Buffers written to this streamer that are at least this many bytes are
+   * not copied into {@link #buffer}. Instead the chunk is sent with a gathering
+   * write that references them. Set the "gemfire.MsgStreamer.GATHER_THRESHOLD"
+   * system property to 0 to always copy.
+   */
+  private static final int GATHER_THRESHOLD = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "MsgStreamer.GATHER_THRESHOLD", 16 * 1024);
+
+  /**
+   * True if all of our connections can send a chunk with a gathering write.
+   */
+  private final boolean gatherWrites;
+  /**
+   * The buffers referenced by the current chunk, in the order they were written.
+   */
+  private ByteBuffer[] gatherSegments;
+  /**
+   * For each of the gatherSegments the position in {@link #buffer} the
+   * segment was written at.
+   */
+  private int[] gatherPositions;
+  private int gatherCount = 0;
+  private int gatherBytes = 0;
+
   /**
    * Called to free up resources used by this streamer after the streamer has
    * produced its message.
@@ -95,6 +119,7 @@ public class MsgStreamer extends OutputStream implements
     MsgIdGenerator.release(this.msgId);
     this.buffer.clear();
     this.overflowBuf = null;
+    clearGatherSegments();
     Buffers.releaseSenderBuffer(this.buffer, this.stats);
   }
 
@@ -130,9 +155,19 @@ public class MsgStreamer extends OutputStream implements
     this.buffer.position(Connection.MSG_HEADER_BYTES);
     this.msgId = MsgIdGenerator.NO_MSG_ID;
     this.directReply = directReply;
+    this.gatherWrites = GATHER_THRESHOLD > 0 && supportGatheringWrites(cons);
     startSerialization();
   }
 
+  private static boolean supportGatheringWrites(List<?> cons) {
+    for (int i = 0; i < cons.size(); i++) {
+      if (!((Connection)cons.get(i)).supportsGatheringWrites()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Create message streamers splitting into versioned streamers, if required,
    * for given list of connections to remote nodes. This method can either
@@ -307,8 +342,9 @@ public class MsgStreamer extends OutputStream implements
     }
     this.buffer.flip();
     setMessageHeader();
-    final int serializedBytes = this.buffer.limit(); 
+    final int serializedBytes = this.buffer.limit() + this.gatherBytes;
     this.flushedBytes += serializedBytes;
+    final ByteBuffer[] gatherBuffers = this.gatherCount > 0 ? getGatherBuffers() : null;
     DistributionMessage conflationMsg = null;
     if (this.normalMsg) {
       // we can't conflate chunked messages; this fixes bug 36633
@@ -318,8 +354,13 @@ public class MsgStreamer extends OutputStream implements
     for (Iterator it=this.cons.iterator(); it.hasNext();) {
       Connection con = (Connection)it.next();
       try {
-        con.sendPreserialized(this.buffer, lastFlushForMessage && this.msg.containsRegionContentChange(),
-            conflationMsg);
+        if (gatherBuffers != null) {
+          con.sendPreserialized(gatherBuffers, lastFlushForMessage && this.msg.containsRegionContentChange(),
+              conflationMsg);
+        } else {
+          con.sendPreserialized(this.buffer, lastFlushForMessage && this.msg.containsRegionContentChange(),
+              conflationMsg);
+        }
       } catch (IOException ex) {
         it.remove();
         if (this.ce == null) this.ce = new ConnectExceptions();
@@ -332,10 +373,97 @@ public class MsgStreamer extends OutputStream implements
         con.closeForReconnect(LocalizedStrings.MsgStreamer_CLOSING_DUE_TO_0.toLocalizedString("ConnectionException"));
       }
       this.buffer.rewind();
+      if (gatherBuffers != null) {
+        for (int i = 0; i < gatherBuffers.length; i++) {
+          gatherBuffers[i].rewind();
+        }
+      }
     }
     startSerialization();
     this.buffer.clear();
     this.buffer.position(Connection.MSG_HEADER_BYTES);
+    clearGatherSegments();
+  }
+
+  /**
+   * Returns the buffers of the current chunk for a gathering write: the
+   * gather segments interleaved with the slices of {@link #buffer} that were
+   * written between them. Every returned buffer starts at position 0 and has
+   * bytes remaining.
+   */
+  private ByteBuffer[] getGatherBuffers() {
+    ArrayList<ByteBuffer> result = new ArrayList<ByteBuffer>(this.gatherCount * 2 + 1);
+    int start = 0;
+    for (int i = 0; i < this.gatherCount; i++) {
+      int end = this.gatherPositions[i];
+      if (end > start) {
+        result.add(sliceBuffer(start, end));
+      }
+      result.add(this.gatherSegments[i]);
+      start = end;
+    }
+    if (this.buffer.limit() > start) {
+      result.add(sliceBuffer(start, this.buffer.limit()));
+    }
+    return result.toArray(new ByteBuffer[result.size()]);
+  }
+
+  private ByteBuffer sliceBuffer(int start, int end) {
+    ByteBuffer bb = this.buffer.duplicate();
+    bb.limit(end);
+    bb.position(start);
+    return bb.slice();
+  }
+
+  private void clearGatherSegments() {
+    for (int i = 0; i < this.gatherCount; i++) {
+      this.gatherSegments[i] = null;
+    }
+    this.gatherCount = 0;
+    this.gatherBytes = 0;
+  }
+
+  private boolean canGather(int len) {
+    return this.gatherWrites && len >= GATHER_THRESHOLD && !isOverflowMode();
+  }
+
+  /**
+   * Adds the remaining bytes of <code>bb</code> to the current chunk without
+   * copying them. Since a chunk can not exceed {@link Connection#MAX_MSG_SIZE}
+   * large buffers are spread over several chunks. The chunk is sent as soon
+   * as it references as many bytes as the send buffer holds.
+   */
+  private void gather(ByteBuffer bb) {
+    final int maxGatherBytes = Connection.MAX_MSG_SIZE - this.buffer.capacity();
+    while (bb.hasRemaining()) {
+      if (this.gatherBytes >= maxGatherBytes) {
+        realFlush(false);
+      }
+      int len = Math.min(bb.remaining(), maxGatherBytes - this.gatherBytes);
+      ByteBuffer segment = bb.slice();
+      segment.limit(len);
+      bb.position(bb.position() + len);
+      if (this.gatherSegments == null) {
+        this.gatherSegments = new ByteBuffer[4];
+        this.gatherPositions = new int[4];
+      } else if (this.gatherCount == this.gatherSegments.length) {
+        ByteBuffer[] newSegments = new ByteBuffer[this.gatherCount * 2];
+        System.arraycopy(this.gatherSegments, 0, newSegments, 0, this.gatherCount);
+        this.gatherSegments = newSegments;
+        int[] newPositions = new int[this.gatherCount * 2];
+        System.arraycopy(this.gatherPositions, 0, newPositions, 0, this.gatherCount);
+        this.gatherPositions = newPositions;
+      }
+      this.gatherSegments[this.gatherCount] = segment;
+      this.gatherPositions[this.gatherCount] = this.buffer.position();
+      this.gatherCount++;
+      this.gatherBytes += len;
+      if (this.gatherBytes >= this.buffer.capacity()) {
+        // write the referenced buffers now so they, and any off-heap memory
+        // behind them, are not held until the send buffer fills up
+        realFlush(false);
+      }
+    }
   }
 
   @Override
@@ -396,6 +524,10 @@ public class MsgStreamer extends OutputStream implements
       return;
     }
     int len = bb.remaining();
+    if (canGather(len)) {
+      gather(bb);
+      return;
+    }
     while (len > 0) {
       int remainingSpace = this.buffer.capacity() - this.buffer.position();
       if (remainingSpace == 0) {
@@ -443,7 +575,7 @@ public class MsgStreamer extends OutputStream implements
       }
     }
 
-    this.buffer.putInt(Connection.MSG_HEADER_SIZE_OFFSET, Connection.calcHdrSize(this.buffer.limit()-Connection.MSG_HEADER_BYTES));
+    this.buffer.putInt(Connection.MSG_HEADER_SIZE_OFFSET, Connection.calcHdrSize(this.buffer.limit()+this.gatherBytes-Connection.MSG_HEADER_BYTES));
     this.buffer.put(Connection.MSG_HEADER_TYPE_OFFSET, (byte)(msgType&0xff));
     this.buffer.putShort(Connection.MSG_HEADER_ID_OFFSET, this.msgId);
     this.buffer.position(0);
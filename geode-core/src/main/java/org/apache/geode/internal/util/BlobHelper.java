@@ -38,6 +38,8 @@ import org.apache.geode.pdx.internal.PdxInputStream;
  */
 public class BlobHelper {
 
+  private static final int SERIALIZE_TO_BLOB_CHUNK_SIZE = 1024;
+
   /**
    * A blob is a serialized Object. This method serializes the object into a
    * blob and returns the byte array that contains the blob.
@@ -52,9 +54,16 @@ public class BlobHelper {
    */
   public static byte[] serializeToBlob(Object obj, Version version) throws IOException {
     final long start = startSerialization();
-    HeapDataOutputStream hdos = new HeapDataOutputStream(version);
-    DataSerializer.writeObject(obj, hdos);
-    byte[] result = hdos.toByteArray();
+    // The hdos is only scratch space since toByteArray never returns a pooled
+    // array so its buffers can be reused by the next serialization on this thread.
+    HeapDataOutputStream hdos = new HeapDataOutputStream(SERIALIZE_TO_BLOB_CHUNK_SIZE, version, false, true);
+    byte[] result;
+    try {
+      DataSerializer.writeObject(obj, hdos);
+      result = hdos.toByteArray();
+    } finally {
+      hdos.close();
+    }
     endSerialization(start, result.length);
     return result;
   }
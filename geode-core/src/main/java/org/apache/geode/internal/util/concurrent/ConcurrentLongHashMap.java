@@ -0,0 +1,736 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.util.concurrent;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A concurrent hash map for <code>Long</code> keys that keeps the keys as
+ * primitives in open addressing tables.
+ * <p>
+ * Like {@link CustomEntryConcurrentHashMap} the map is split into segments
+ * that are locked independently for updates. Each segment is a pair of
+ * parallel arrays, a <code>long[]</code> of keys and an <code>Object[]</code>
+ * of values, probed linearly from the slot the mixed key hashes to. There
+ * are no per entry nodes, a lookup compares primitive keys in one array and
+ * never calls <code>hashCode</code> or <code>equals</code> on a key object.
+ * Removals shift the following entries of the probe sequence back, so the
+ * tables never contain deleted markers.
+ * <p>
+ * Reads do not lock. They use the optimistic read mode of the segment's
+ * {@link StampedLock} and fall back to the read lock only if the segment
+ * was modified during the lookup.
+ * <p>
+ * Keys must be <code>Long</code>s, a lookup with any other key finds nothing
+ * and an update with any other key throws <code>ClassCastException</code>.
+ * Values may not be null. Iterators are weakly consistent, each one copies
+ * a segment at a time.
+ *
+ * @since Geode 1.1
+ */
+public class ConcurrentLongHashMap<V> extends AbstractMap<Object, V> implements
+    ConcurrentMap<Object, V> {
+
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  static final int MAX_SEGMENTS = 1 << 16;
+
+  private final Segment[] segments;
+
+  private final int segmentShift;
+
+  private final int segmentMask;
+
+  private Set<Object> keySet;
+
+  private Collection<V> values;
+
+  private Set<Map.Entry<Object, V>> entrySet;
+
+  public ConcurrentLongHashMap() {
+    this(CustomEntryConcurrentHashMap.DEFAULT_INITIAL_CAPACITY,
+        CustomEntryConcurrentHashMap.DEFAULT_LOAD_FACTOR,
+        CustomEntryConcurrentHashMap.DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Creates a new, empty map with the specified initial capacity, load factor
+   * and concurrency level.
+   *
+   * @param initialCapacity
+   *          the initial capacity. The implementation performs internal sizing
+   *          to accommodate this many elements.
+   * @param loadFactor
+   *          the fraction of each segment's slots that may be used before the
+   *          segment is resized. Values above 0.9 are lowered to 0.9 to keep
+   *          the probe sequences short.
+   * @param concurrencyLevel
+   *          the estimated number of concurrently updating threads.
+   * @throws IllegalArgumentException
+   *           if the initial capacity is negative or the load factor or
+   *           concurrencyLevel are nonpositive.
+   */
+  public ConcurrentLongHashMap(int initialCapacity, float loadFactor,
+      int concurrencyLevel) {
+    if (!(loadFactor > 0) || initialCapacity < 0 || concurrencyLevel <= 0) {
+      throw new IllegalArgumentException();
+    }
+    if (loadFactor > 0.9f) {
+      loadFactor = 0.9f;
+    }
+    if (concurrencyLevel > MAX_SEGMENTS) {
+      concurrencyLevel = MAX_SEGMENTS;
+    }
+    int sshift = 0;
+    int ssize = 1;
+    while (ssize < concurrencyLevel) {
+      ++sshift;
+      ssize <<= 1;
+    }
+    this.segmentShift = 32 - sshift;
+    this.segmentMask = ssize - 1;
+    this.segments = new Segment[ssize];
+    if (initialCapacity > MAXIMUM_CAPACITY) {
+      initialCapacity = MAXIMUM_CAPACITY;
+    }
+    int perSegment = initialCapacity / ssize;
+    if (perSegment * ssize < initialCapacity) {
+      ++perSegment;
+    }
+    int cap = 2;
+    while (cap * loadFactor < perSegment && cap < MAXIMUM_CAPACITY) {
+      cap <<= 1;
+    }
+    for (int i = 0; i < ssize; i++) {
+      this.segments[i] = new Segment(cap, loadFactor);
+    }
+  }
+
+  /**
+   * Spreads the bits of a key over the whole int, the segment is chosen by
+   * the high bits of the result and the slot by the low bits.
+   */
+  static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)(h ^ (h >>> 32));
+  }
+
+  private Segment segmentFor(int hash) {
+    return this.segments[(hash >>> this.segmentShift) & this.segmentMask];
+  }
+
+  private static long keyOf(Object key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+    return ((Long)key).longValue();
+  }
+
+  public V get(long key) {
+    int hash = hash(key);
+    return segmentFor(hash).get(key, hash);
+  }
+
+  public V remove(long key) {
+    int hash = hash(key);
+    return segmentFor(hash).remove(key, hash, null);
+  }
+
+  @Override
+  public V get(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    return get(((Long)key).longValue());
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    for (Iterator<V> it = values().iterator(); it.hasNext();) {
+      if (value.equals(it.next())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public V put(Object key, V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    long k = keyOf(key);
+    int hash = hash(k);
+    return segmentFor(hash).put(k, hash, value, false);
+  }
+
+  @Override
+  public V putIfAbsent(Object key, V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    long k = keyOf(key);
+    int hash = hash(k);
+    return segmentFor(hash).put(k, hash, value, true);
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    return remove(((Long)key).longValue());
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    if (!(key instanceof Long) || value == null) {
+      return false;
+    }
+    long k = ((Long)key).longValue();
+    int hash = hash(k);
+    return segmentFor(hash).remove(k, hash, value) != null;
+  }
+
+  @Override
+  public boolean replace(Object key, V oldValue, V newValue) {
+    if (oldValue == null || newValue == null) {
+      throw new NullPointerException();
+    }
+    long k = keyOf(key);
+    int hash = hash(k);
+    return segmentFor(hash).replace(k, hash, oldValue, newValue) != null;
+  }
+
+  @Override
+  public V replace(Object key, V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    long k = keyOf(key);
+    int hash = hash(k);
+    return segmentFor(hash).replace(k, hash, null, value);
+  }
+
+  @Override
+  public int size() {
+    long sum = 0;
+    for (Segment segment : this.segments) {
+      sum += segment.count;
+    }
+    return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)sum;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Segment segment : this.segments) {
+      if (segment.count != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    for (Segment segment : this.segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Returns the number of slots allocated by all the segments.
+   */
+  public long capacity() {
+    long sum = 0;
+    for (Segment segment : this.segments) {
+      sum += segment.capacity();
+    }
+    return sum;
+  }
+
+  @Override
+  public Set<Object> keySet() {
+    Set<Object> ks = this.keySet;
+    return ks != null ? ks : (this.keySet = new KeySet());
+  }
+
+  @Override
+  public Collection<V> values() {
+    Collection<V> vs = this.values;
+    return vs != null ? vs : (this.values = new Values());
+  }
+
+  @Override
+  public Set<Map.Entry<Object, V>> entrySet() {
+    Set<Map.Entry<Object, V>> es = this.entrySet;
+    return es != null ? es : (this.entrySet = new EntrySet());
+  }
+
+  /**
+   * One independently locked open addressing table. The two arrays always
+   * have the same length, a power of two, and a slot is empty when its value
+   * is null. Every field is guarded by the lock, lock free readers validate
+   * what they read against the lock's stamp.
+   */
+  @SuppressWarnings("serial")
+  private static final class Segment extends StampedLock {
+
+    private final float loadFactor;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int threshold;
+
+    /**
+     * The number of entries, also read without the lock for size estimates.
+     */
+    volatile int count;
+
+    Segment(int capacity, float loadFactor) {
+      this.loadFactor = loadFactor;
+      allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+      this.keys = new long[capacity];
+      this.values = new Object[capacity];
+      this.threshold = capacity >= MAXIMUM_CAPACITY ? Integer.MAX_VALUE : (int)(capacity * this.loadFactor);
+    }
+
+    int capacity() {
+      long stamp = readLock();
+      try {
+        return this.keys.length;
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> V get(long key, int hash) {
+      long stamp = tryOptimisticRead();
+      if (stamp != 0) {
+        Object value = find(key, hash);
+        if (validate(stamp)) {
+          return (V)value;
+        }
+      }
+      stamp = readLock();
+      try {
+        return (V)find(key, hash);
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+
+    /**
+     * Probes for a key. Without the lock the arrays may be from different
+     * resizes or in the middle of a shift, so nothing read here may be
+     * trusted until the stamp is validated and the probe is bounded.
+     */
+    private Object find(long key, int hash) {
+      final long[] keys = this.keys;
+      final Object[] values = this.values;
+      if (keys.length != values.length) {
+        return null;
+      }
+      final int mask = keys.length - 1;
+      int i = hash & mask;
+      for (int n = 0; n <= mask; n++) {
+        Object value = values[i];
+        if (value == null) {
+          return null;
+        }
+        if (keys[i] == key) {
+          return value;
+        }
+        i = (i + 1) & mask;
+      }
+      return null;
+    }
+
+    /**
+     * Returns the slot holding the key or the empty slot that ends its probe
+     * sequence. Called with the write lock held, the table is never full.
+     */
+    private int slotFor(long key, int hash) {
+      final long[] keys = this.keys;
+      final Object[] values = this.values;
+      final int mask = keys.length - 1;
+      int i = hash & mask;
+      while (values[i] != null && keys[i] != key) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> V put(long key, int hash, Object value, boolean onlyIfAbsent) {
+      long stamp = writeLock();
+      try {
+        int i = slotFor(key, hash);
+        Object old = this.values[i];
+        if (old != null) {
+          if (!onlyIfAbsent) {
+            this.values[i] = value;
+          }
+          return (V)old;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        int c = this.count + 1;
+        if (c > this.threshold) {
+          rehash();
+        }
+        this.count = c;
+        return null;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Replaces the value of a key if it is mapped to <code>expected</code>,
+     * or to any value if <code>expected</code> is null. Returns the replaced
+     * value or null if nothing was replaced.
+     */
+    @SuppressWarnings("unchecked")
+    <V> V replace(long key, int hash, Object expected, Object value) {
+      long stamp = writeLock();
+      try {
+        int i = slotFor(key, hash);
+        Object old = this.values[i];
+        if (old == null || (expected != null && !expected.equals(old))) {
+          return null;
+        }
+        this.values[i] = value;
+        return (V)old;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Removes a key if it is mapped to <code>expected</code>, or to any value
+     * if <code>expected</code> is null. Returns the removed value or null if
+     * nothing was removed.
+     */
+    @SuppressWarnings("unchecked")
+    <V> V remove(long key, int hash, Object expected) {
+      long stamp = writeLock();
+      try {
+        int i = slotFor(key, hash);
+        Object old = this.values[i];
+        if (old == null || (expected != null && expected != old && !expected.equals(old))) {
+          return null;
+        }
+        shiftBack(i);
+        this.count = this.count - 1;
+        return (V)old;
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Empties a slot and moves back the entries of the following run that
+     * would no longer be reachable from their home slot.
+     */
+    private void shiftBack(int gap) {
+      final long[] keys = this.keys;
+      final Object[] values = this.values;
+      final int mask = keys.length - 1;
+      values[gap] = null;
+      int i = (gap + 1) & mask;
+      while (values[i] != null) {
+        int home = hash(keys[i]) & mask;
+        // the entry may fill the gap unless its home lies between the gap and it
+        if (((i - home) & mask) >= ((i - gap) & mask)) {
+          keys[gap] = keys[i];
+          values[gap] = values[i];
+          values[i] = null;
+          gap = i;
+        }
+        i = (i + 1) & mask;
+      }
+    }
+
+    private void rehash() {
+      final long[] oldKeys = this.keys;
+      final Object[] oldValues = this.values;
+      if (oldKeys.length >= MAXIMUM_CAPACITY) {
+        this.threshold = Integer.MAX_VALUE;
+        return;
+      }
+      allocate(oldKeys.length << 1);
+      final long[] keys = this.keys;
+      final Object[] values = this.values;
+      final int mask = keys.length - 1;
+      for (int j = 0; j < oldKeys.length; j++) {
+        Object value = oldValues[j];
+        if (value != null) {
+          long key = oldKeys[j];
+          int i = hash(key) & mask;
+          while (values[i] != null) {
+            i = (i + 1) & mask;
+          }
+          keys[i] = key;
+          values[i] = value;
+        }
+      }
+    }
+
+    void clear() {
+      long stamp = writeLock();
+      try {
+        if (this.count != 0) {
+          Arrays.fill(this.values, null);
+          this.count = 0;
+        }
+      } finally {
+        unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Walks the segments in order, copying the entries of one segment at a
+   * time so that no lock is held between calls.
+   */
+  private abstract class HashIterator {
+
+    private int segmentIndex;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private int index;
+
+    private boolean hasLast;
+
+    long lastKey;
+
+    Object lastValue;
+
+    HashIterator() {
+      advance();
+    }
+
+    private void advance() {
+      while (this.index >= this.size && this.segmentIndex < segments.length) {
+        Segment segment = segments[this.segmentIndex++];
+        if (segment.count != 0) {
+          copy(segment);
+        }
+      }
+    }
+
+    private void copy(Segment segment) {
+      long stamp = segment.readLock();
+      try {
+        int c = segment.count;
+        this.keys = new long[c];
+        this.values = new Object[c];
+        int n = 0;
+        for (int i = 0; i < segment.values.length && n < c; i++) {
+          Object value = segment.values[i];
+          if (value != null) {
+            this.keys[n] = segment.keys[i];
+            this.values[n++] = value;
+          }
+        }
+        this.size = n;
+        this.index = 0;
+      } finally {
+        segment.unlockRead(stamp);
+      }
+    }
+
+    public final boolean hasNext() {
+      return this.index < this.size;
+    }
+
+    final void nextEntry() {
+      if (this.index >= this.size) {
+        throw new NoSuchElementException();
+      }
+      this.lastKey = this.keys[this.index];
+      this.lastValue = this.values[this.index];
+      this.hasLast = true;
+      this.index++;
+      advance();
+    }
+
+    public final void remove() {
+      if (!this.hasLast) {
+        throw new IllegalStateException();
+      }
+      ConcurrentLongHashMap.this.remove(this.lastKey);
+      this.hasLast = false;
+    }
+  }
+
+  private final class KeyIterator extends HashIterator implements Iterator<Object> {
+    public Object next() {
+      nextEntry();
+      return Long.valueOf(this.lastKey);
+    }
+  }
+
+  private final class ValueIterator extends HashIterator implements Iterator<V> {
+    @SuppressWarnings("unchecked")
+    public V next() {
+      nextEntry();
+      return (V)this.lastValue;
+    }
+  }
+
+  private final class EntryIterator extends HashIterator implements Iterator<Map.Entry<Object, V>> {
+    @SuppressWarnings("unchecked")
+    public Map.Entry<Object, V> next() {
+      nextEntry();
+      return new WriteThroughEntry(Long.valueOf(this.lastKey), (V)this.lastValue);
+    }
+  }
+
+  private final class WriteThroughEntry extends AbstractMap.SimpleEntry<Object, V> {
+    private static final long serialVersionUID = 1L;
+
+    WriteThroughEntry(Object key, V value) {
+      super(key, value);
+    }
+
+    @Override
+    public V setValue(V value) {
+      if (value == null) {
+        throw new NullPointerException();
+      }
+      V old = super.setValue(value);
+      ConcurrentLongHashMap.this.put(getKey(), value);
+      return old;
+    }
+  }
+
+  private final class KeySet extends AbstractSet<Object> {
+    @Override
+    public Iterator<Object> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public int size() {
+      return ConcurrentLongHashMap.this.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return ConcurrentLongHashMap.this.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return ConcurrentLongHashMap.this.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentLongHashMap.this.clear();
+    }
+  }
+
+  private final class Values extends AbstractCollection<V> {
+    @Override
+    public Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+
+    @Override
+    public int size() {
+      return ConcurrentLongHashMap.this.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return ConcurrentLongHashMap.this.containsValue(o);
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentLongHashMap.this.clear();
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<Object, V>> {
+    @Override
+    public Iterator<Map.Entry<Object, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      V v = ConcurrentLongHashMap.this.get(e.getKey());
+      return v != null && v.equals(e.getValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      return ConcurrentLongHashMap.this.remove(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public int size() {
+      return ConcurrentLongHashMap.this.size();
+    }
+
+    @Override
+    public void clear() {
+      ConcurrentLongHashMap.this.clear();
+    }
+  }
+}
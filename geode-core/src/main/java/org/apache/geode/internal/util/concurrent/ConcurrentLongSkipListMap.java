@@ -0,0 +1,687 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.util.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A concurrent sorted map with primitive <code>long</code> keys.
+ * <p>
+ * This is the lock free skip list algorithm of
+ * {@link java.util.concurrent.ConcurrentSkipListMap} with the keys stored
+ * as primitives and compared with the <code>long</code> operators, so
+ * neither the keys nor the comparisons go through boxed objects.
+ * Only the operations needed for ordered lookups and range scans are
+ * provided. Values may not be null.
+ * <p>
+ * Like the JDK class, iterators are weakly consistent and {@link #size()}
+ * is not a constant time operation.
+ *
+ * @since Geode 1.1
+ */
+public class ConcurrentLongSkipListMap {
+
+  /**
+   * Special value used to identify base-level header
+   */
+  private static final Object BASE_HEADER = new Object();
+
+  private static final AtomicReferenceFieldUpdater<ConcurrentLongSkipListMap, HeadIndex> headUpdater =
+      AtomicReferenceFieldUpdater.newUpdater(ConcurrentLongSkipListMap.class, HeadIndex.class, "head");
+
+  /**
+   * The topmost head index of the skiplist.
+   */
+  private volatile HeadIndex head;
+
+  public ConcurrentLongSkipListMap() {
+    initialize();
+  }
+
+  private void initialize() {
+    this.head = new HeadIndex(new Node(0L, BASE_HEADER, null), null, null, 1);
+  }
+
+  private boolean casHead(HeadIndex cmp, HeadIndex val) {
+    return headUpdater.compareAndSet(this, cmp, val);
+  }
+
+  /**
+   * Nodes hold keys and values, and are singly linked in sorted order.
+   * A node whose value is null is deleted, a node whose value
+   * points to itself is a marker placed after a deleted node.
+   */
+  static final class Node {
+    private static final AtomicReferenceFieldUpdater<Node, Object> valueUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+    private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    final long key;
+    volatile Object value;
+    volatile Node next;
+
+    Node(long key, Object value, Node next) {
+      this.key = key;
+      this.value = value;
+      this.next = next;
+    }
+
+    /**
+     * Creates a new marker node.
+     */
+    Node(Node next) {
+      this.key = 0L;
+      this.value = this;
+      this.next = next;
+    }
+
+    boolean casValue(Object cmp, Object val) {
+      return valueUpdater.compareAndSet(this, cmp, val);
+    }
+
+    boolean casNext(Node cmp, Node val) {
+      return nextUpdater.compareAndSet(this, cmp, val);
+    }
+
+    boolean isMarker() {
+      return this.value == this;
+    }
+
+    boolean isBaseHeader() {
+      return this.value == BASE_HEADER;
+    }
+
+    boolean appendMarker(Node f) {
+      return casNext(f, new Node(f));
+    }
+
+    /**
+     * Helps out a deletion by appending marker or unlinking from
+     * predecessor <code>b</code>.
+     */
+    void helpDelete(Node b, Node f) {
+      if (f == this.next && this == b.next) {
+        if (f == null || f.value != f) {
+          casNext(f, new Node(f));
+        } else {
+          b.casNext(this, f.next);
+        }
+      }
+    }
+
+    /**
+     * Returns the value if this node contains a valid key-value pair,
+     * else null.
+     */
+    Object getValidValue() {
+      Object v = this.value;
+      if (v == this || v == BASE_HEADER) {
+        return null;
+      }
+      return v;
+    }
+  }
+
+  /**
+   * Index nodes represent the levels of the skip list.
+   */
+  static class Index {
+    private static final AtomicReferenceFieldUpdater<Index, Index> rightUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+    final Node node;
+    final Index down;
+    volatile Index right;
+
+    Index(Node node, Index down, Index right) {
+      this.node = node;
+      this.down = down;
+      this.right = right;
+    }
+
+    final boolean casRight(Index cmp, Index val) {
+      return rightUpdater.compareAndSet(this, cmp, val);
+    }
+
+    final boolean indexesDeletedNode() {
+      return this.node.value == null;
+    }
+
+    final boolean link(Index succ, Index newSucc) {
+      Node n = this.node;
+      newSucc.right = succ;
+      return n.value != null && casRight(succ, newSucc);
+    }
+
+    final boolean unlink(Index succ) {
+      return this.node.value != null && casRight(succ, succ.right);
+    }
+  }
+
+  static final class HeadIndex extends Index {
+    final int level;
+
+    HeadIndex(Node node, Index down, Index right, int level) {
+      super(node, down, right);
+      this.level = level;
+    }
+  }
+
+  /**
+   * Returns a base-level node with key strictly less than given key,
+   * or the base-level header if there is no such node. Also
+   * unlinks indexes to deleted nodes found along the way.
+   */
+  private Node findPredecessor(long key) {
+    for (;;) {
+      for (Index q = this.head, r = q.right, d;;) {
+        if (r != null) {
+          Node n = r.node;
+          if (n.value == null) {
+            if (!q.unlink(r)) {
+              break; // restart
+            }
+            r = q.right; // reread r
+            continue;
+          }
+          if (key > n.key) {
+            q = r;
+            r = r.right;
+            continue;
+          }
+        }
+        if ((d = q.down) == null) {
+          return q.node;
+        }
+        q = d;
+        r = d.right;
+      }
+    }
+  }
+
+  /**
+   * Returns node holding key or null if no such, clearing out any
+   * deleted nodes seen along the way.
+   */
+  private Node findNode(long key) {
+    outer: for (;;) {
+      for (Node b = findPredecessor(key), n = b.next;;) {
+        Object v;
+        if (n == null) {
+          break outer;
+        }
+        Node f = n.next;
+        if (n != b.next) { // inconsistent read
+          break;
+        }
+        if ((v = n.value) == null) { // n is deleted
+          n.helpDelete(b, f);
+          break;
+        }
+        if (b.value == null || v == n) { // b is deleted
+          break;
+        }
+        if (key == n.key) {
+          return n;
+        }
+        if (key < n.key) {
+          break outer;
+        }
+        b = n;
+        n = f;
+      }
+    }
+    return null;
+  }
+
+  private Object doPut(long key, Object value, boolean onlyIfAbsent) {
+    Node z; // added node
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    outer: for (;;) {
+      for (Node b = findPredecessor(key), n = b.next;;) {
+        if (n != null) {
+          Object v;
+          Node f = n.next;
+          if (n != b.next) { // inconsistent read
+            break;
+          }
+          if ((v = n.value) == null) { // n is deleted
+            n.helpDelete(b, f);
+            break;
+          }
+          if (b.value == null || v == n) { // b is deleted
+            break;
+          }
+          if (key > n.key) {
+            b = n;
+            n = f;
+            continue;
+          }
+          if (key == n.key) {
+            if (onlyIfAbsent || n.casValue(v, value)) {
+              return v;
+            }
+            break; // restart if lost race to replace value
+          }
+          // else key < n.key, insert before n
+        }
+        z = new Node(key, value, n);
+        if (!b.casNext(n, z)) {
+          break; // restart if lost race to append to b
+        }
+        break outer;
+      }
+    }
+
+    int rnd = ThreadLocalRandom.current().nextInt();
+    if ((rnd & 0x80000001) == 0) { // test highest and lowest bits
+      int level = 1, max;
+      while (((rnd >>>= 1) & 1) != 0) {
+        ++level;
+      }
+      Index idx = null;
+      HeadIndex h = this.head;
+      if (level <= (max = h.level)) {
+        for (int i = 1; i <= level; ++i) {
+          idx = new Index(z, idx, null);
+        }
+      } else { // try to grow by one level
+        level = max + 1; // hold in array and later pick the one to use
+        Index[] idxs = new Index[level + 1];
+        for (int i = 1; i <= level; ++i) {
+          idxs[i] = idx = new Index(z, idx, null);
+        }
+        for (;;) {
+          h = this.head;
+          int oldLevel = h.level;
+          if (level <= oldLevel) { // lost race to add level
+            break;
+          }
+          HeadIndex newh = h;
+          Node oldbase = h.node;
+          for (int j = oldLevel + 1; j <= level; ++j) {
+            newh = new HeadIndex(oldbase, newh, idxs[j], j);
+          }
+          if (casHead(h, newh)) {
+            h = newh;
+            idx = idxs[level = oldLevel];
+            break;
+          }
+        }
+      }
+      // find insertion points and splice in
+      splice: for (int insertionLevel = level;;) {
+        int j = h.level;
+        for (Index q = h, r = q.right, t = idx;;) {
+          if (q == null || t == null) {
+            break splice;
+          }
+          if (r != null) {
+            Node n = r.node;
+            if (n.value == null) {
+              if (!q.unlink(r)) {
+                break;
+              }
+              r = q.right;
+              continue;
+            }
+            if (key > n.key) {
+              q = r;
+              r = r.right;
+              continue;
+            }
+          }
+
+          if (j == insertionLevel) {
+            if (!q.link(r, t)) {
+              break; // restart
+            }
+            if (t.node.value == null) {
+              findNode(key);
+              break splice;
+            }
+            if (--insertionLevel == 0) {
+              break splice;
+            }
+          }
+
+          if (--j >= insertionLevel && j < level) {
+            t = t.down;
+          }
+          q = q.down;
+          r = q.right;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes the node for key, if <code>value</code> is not null only
+   * if the mapped value equals it.
+   */
+  private Object doRemove(long key, Object value) {
+    outer: for (;;) {
+      for (Node b = findPredecessor(key), n = b.next;;) {
+        Object v;
+        if (n == null) {
+          break outer;
+        }
+        Node f = n.next;
+        if (n != b.next) { // inconsistent read
+          break;
+        }
+        if ((v = n.value) == null) { // n is deleted
+          n.helpDelete(b, f);
+          break;
+        }
+        if (b.value == null || v == n) { // b is deleted
+          break;
+        }
+        if (key < n.key) {
+          break outer;
+        }
+        if (key > n.key) {
+          b = n;
+          n = f;
+          continue;
+        }
+        if (value != null && !value.equals(v)) {
+          break outer;
+        }
+        if (!n.casValue(v, null)) {
+          break;
+        }
+        if (!n.appendMarker(f) || !b.casNext(n, f)) {
+          findNode(key); // retry via findNode
+        } else {
+          findPredecessor(key); // clean index
+          if (this.head.right == null) {
+            tryReduceLevel();
+          }
+        }
+        return v;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Possibly reduce head level if it has no nodes, see the JDK class
+   * for the reasoning behind the three empty levels.
+   */
+  private void tryReduceLevel() {
+    HeadIndex h = this.head;
+    HeadIndex d;
+    HeadIndex e;
+    if (h.level > 3 && (d = (HeadIndex)h.down) != null && (e = (HeadIndex)d.down) != null
+        && e.right == null && d.right == null && h.right == null && casHead(h, d) && // try to set
+        h.right != null) { // recheck
+      casHead(d, h); // try to backout
+    }
+  }
+
+  private static final int EQ = 1;
+  private static final int LT = 2;
+  private static final int GT = 0; // Actually checked as !LT
+
+  /**
+   * Utility for ceiling, floor, lower, higher methods.
+   *
+   * @param key the key
+   * @param rel the relation -- OR'ed combination of EQ, LT, GT
+   * @return nearest node fitting relation, or null if no such
+   */
+  private Node findNear(long key, int rel) {
+    for (;;) {
+      for (Node b = findPredecessor(key), n = b.next;;) {
+        Object v;
+        if (n == null) {
+          return ((rel & LT) == 0 || b.isBaseHeader()) ? null : b;
+        }
+        Node f = n.next;
+        if (n != b.next) { // inconsistent read
+          break;
+        }
+        if ((v = n.value) == null) { // n is deleted
+          n.helpDelete(b, f);
+          break;
+        }
+        if (b.value == null || v == n) { // b is deleted
+          break;
+        }
+        if ((key == n.key && (rel & EQ) != 0) || (key < n.key && (rel & LT) == 0)) {
+          return n;
+        }
+        if (key <= n.key && (rel & LT) != 0) {
+          return b.isBaseHeader() ? null : b;
+        }
+        b = n;
+        n = f;
+      }
+    }
+  }
+
+  public Object get(long key) {
+    Node n = findNode(key);
+    return n == null ? null : n.getValidValue();
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  public Object put(long key, Object value) {
+    return doPut(key, value, false);
+  }
+
+  public Object putIfAbsent(long key, Object value) {
+    return doPut(key, value, true);
+  }
+
+  public boolean replace(long key, Object oldValue, Object newValue) {
+    if (oldValue == null || newValue == null) {
+      throw new NullPointerException();
+    }
+    for (;;) {
+      Node n = findNode(key);
+      if (n == null) {
+        return false;
+      }
+      Object v = n.value;
+      if (v != null) {
+        if (!oldValue.equals(v)) {
+          return false;
+        }
+        if (n.casValue(v, newValue)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  public Object remove(long key) {
+    return doRemove(key, null);
+  }
+
+  public boolean remove(long key, Object value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    return doRemove(key, value) != null;
+  }
+
+  public boolean isEmpty() {
+    return findNear(Long.MIN_VALUE, GT | EQ) == null;
+  }
+
+  /**
+   * Returns the number of mappings. This traverses the whole map.
+   */
+  public int size() {
+    long count = 0;
+    for (Node n = findNear(Long.MIN_VALUE, GT | EQ); n != null; n = n.next) {
+      if (n.getValidValue() != null) {
+        ++count;
+      }
+    }
+    return (count >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)count;
+  }
+
+  public void clear() {
+    initialize();
+  }
+
+  /**
+   * Returns an iterator over the mappings with keys from <code>lo</code>
+   * to <code>hi</code>, both inclusive, in ascending or descending key order.
+   */
+  public EntryIterator iterator(long lo, long hi, boolean descending) {
+    return new EntryIterator(lo, hi, descending);
+  }
+
+  /**
+   * Returns an iterator over all the mappings in ascending key order.
+   */
+  public EntryIterator iterator() {
+    return new EntryIterator(Long.MIN_VALUE, Long.MAX_VALUE, false);
+  }
+
+  /**
+   * A weakly consistent cursor over a key range. {@link #next()} moves to the
+   * next mapping whose key and value are then read with {@link #key()} and
+   * {@link #value()}; no objects are created per step when ascending.
+   */
+  public final class EntryIterator {
+    private final long lo;
+    private final long hi;
+    private final boolean descending;
+    /** the node to return next */
+    private Node nextNode;
+    /** cache of the value field of nextNode */
+    private Object nextValue;
+    private Node lastReturned;
+    private Object lastValue;
+
+    EntryIterator(long lo, long hi, boolean descending) {
+      this.lo = lo;
+      this.hi = hi;
+      this.descending = descending;
+      if (lo <= hi) {
+        for (;;) {
+          this.nextNode = descending ? findNear(hi, LT | EQ) : findNear(lo, GT | EQ);
+          if (this.nextNode == null || !inRange(this.nextNode.key)) {
+            this.nextNode = null;
+            break;
+          }
+          Object x = this.nextNode.value;
+          if (x != null && x != this.nextNode) {
+            this.nextValue = x;
+            break;
+          }
+        }
+      }
+    }
+
+    private boolean inRange(long key) {
+      return key >= this.lo && key <= this.hi;
+    }
+
+    public boolean hasNext() {
+      return this.nextNode != null;
+    }
+
+    /**
+     * Moves to the next mapping.
+     *
+     * @throws NoSuchElementException if there is none
+     */
+    public void next() {
+      Node n = this.nextNode;
+      if (n == null) {
+        throw new NoSuchElementException();
+      }
+      this.lastReturned = n;
+      this.lastValue = this.nextValue;
+      if (this.descending) {
+        descend();
+      } else {
+        ascend();
+      }
+    }
+
+    private void ascend() {
+      for (;;) {
+        if ((this.nextNode = this.nextNode.next) == null) {
+          break;
+        }
+        Object x = this.nextNode.value;
+        if (x != null && x != this.nextNode) {
+          if (!inRange(this.nextNode.key)) {
+            this.nextNode = null;
+          }
+          this.nextValue = x;
+          break;
+        }
+      }
+    }
+
+    private void descend() {
+      long key = this.lastReturned.key;
+      for (;;) {
+        if (key == Long.MIN_VALUE || (this.nextNode = findNear(key, LT)) == null) {
+          this.nextNode = null;
+          break;
+        }
+        if (!inRange(this.nextNode.key)) {
+          this.nextNode = null;
+          break;
+        }
+        Object x = this.nextNode.value;
+        if (x != null && x != this.nextNode) {
+          this.nextValue = x;
+          break;
+        }
+      }
+    }
+
+    /** Returns the key of the mapping the last {@link #next()} moved to. */
+    public long key() {
+      return this.lastReturned.key;
+    }
+
+    /** Returns the value of the mapping the last {@link #next()} moved to. */
+    public Object value() {
+      return this.lastValue;
+    }
+
+    /** Removes the mapping the last {@link #next()} moved to. */
+    public void remove() {
+      Node l = this.lastReturned;
+      if (l == null) {
+        throw new IllegalStateException();
+      }
+      ConcurrentLongSkipListMap.this.remove(l.key);
+      this.lastReturned = null;
+    }
+  }
+}
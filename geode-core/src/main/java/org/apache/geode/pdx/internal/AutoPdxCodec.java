@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.pdx.internal;
+
+import org.apache.geode.CancelException;
+import org.apache.geode.pdx.NonPortableClassException;
+import org.apache.geode.pdx.PdxSerializationException;
+import org.apache.geode.pdx.internal.unsafe.UnsafeWrapper;
+
+/**
+ * The superclass of the writer/reader classes generated by
+ * {@link AutoPdxCodecGenerator} for auto serialized classes.
+ * A generated subclass reads and writes every field of one domain
+ * class, in the order of {@link AutoSerializableManager.AutoClassInfo#getFields()},
+ * with straight-line code. Field offsets are constants in the generated code so
+ * the JIT can inline the whole write or read.
+ * <p>
+ * A codec is only used when the fields are written in the order of an existing
+ * pdx type and are read in the order of a matching pdx type. All other
+ * cases still go through {@link AutoSerializableManager.PdxFieldWrapper}.
+ *
+ * @since Geode 1.1
+ */
+public abstract class AutoPdxCodec {
+  /**
+   * Used by the generated code to access the domain object fields.
+   * It has to be protected (not package private) since generated classes are
+   * defined by their own class loader.
+   */
+  protected static final UnsafeWrapper unsafe = AutoSerializableManager.getUnsafe();
+
+  private AutoSerializableManager owner;
+  private Class<?> domainClass;
+
+  void initialize(AutoSerializableManager owner, Class<?> domainClass) {
+    this.owner = owner;
+    this.domainClass = domainClass;
+  }
+
+  /**
+   * Called by the generated code when writing object fields.
+   */
+  public final boolean getCheckPortability() {
+    return this.owner.getCheckPortability();
+  }
+
+  /**
+   * Writes all the fields of <code>obj</code> without field names.
+   */
+  protected abstract void writeFields(PdxWriterImpl writer, Object obj);
+
+  /**
+   * Reads all the fields of <code>obj</code> in field order.
+   */
+  protected abstract void readFields(InternalPdxReader reader, Object obj);
+
+  public final void write(PdxWriterImpl writer, Object obj) {
+    try {
+      writeFields(writer, obj);
+    } catch (RuntimeException ex) {
+      throw handleException(ex, true);
+    }
+  }
+
+  public final void read(InternalPdxReader reader, Object obj) {
+    try {
+      readFields(reader, obj);
+    } catch (RuntimeException ex) {
+      throw handleException(ex, false);
+    }
+  }
+
+  private RuntimeException handleException(RuntimeException ex, boolean serialization) {
+    if (ex instanceof CancelException || ex instanceof NonPortableClassException
+        || ex instanceof PdxSerializationException) {
+      return ex;
+    }
+    return new PdxSerializationException((serialization ? "Serialization" : "Deserialization")
+        + " error for class " + this.domainClass.getName(), ex);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + this.domainClass.getName() + "]";
+  }
+}
@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.pdx.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import org.apache.geode.distributed.internal.DistributionConfig;
+import org.apache.geode.internal.logging.LogService;
+import org.apache.geode.pdx.internal.AutoSerializableManager.*;
+
+/**
+ * Generates, at class registration time, an {@link AutoPdxCodec} subclass
+ * dedicated to one auto serialized class. The generated class file has no
+ * branches, so it uses class file version 49 which does not need stack map
+ * frames, and it only references public classes since it is defined by its
+ * own class loader.
+ * <p>
+ * Code generation is enabled with the "gemfire.AutoSerializer.GENERATE_CODECS"
+ * system property. It requires Unsafe field access and is skipped for classes
+ * with fields whose values are transformed by the ReflectionBasedAutoSerializer.
+ *
+ * @since Geode 1.1
+ */
+public class AutoPdxCodecGenerator {
+  private static final Logger logger = LogService.getLogger();
+
+  public static final boolean ENABLED = Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "AutoSerializer.GENERATE_CODECS");
+
+  private static final String PACKAGE_PREFIX = "org/apache/geode/pdx/internal/generated/AutoPdxCodec$";
+  private static final String CODEC = "org/apache/geode/pdx/internal/AutoPdxCodec";
+  private static final String UNSAFE = "org/apache/geode/pdx/internal/unsafe/UnsafeWrapper";
+  private static final String UNSAFE_DESC = "L" + UNSAFE + ";";
+  private static final String WRITER = "org/apache/geode/pdx/internal/PdxWriterImpl";
+  private static final String READER = "org/apache/geode/pdx/internal/InternalPdxReader";
+  private static final String WRITE_DESC = "(L" + WRITER + ";Ljava/lang/Object;)V";
+  private static final String READ_DESC = "(L" + READER + ";Ljava/lang/Object;)V";
+
+  private static final AtomicInteger classCount = new AtomicInteger();
+
+  /**
+   * Describes how to move one kind of field between the domain object and the pdx stream.
+   */
+  private static final class FieldAccess {
+    /** The descriptor of the value as it is on the operand stack */
+    final String valueDesc;
+    /** The UnsafeWrapper get/put method suffix */
+    final String unsafeKind;
+    /** The class to cast an object value to before writing; null if none */
+    final String castTo;
+    /** The PdxWriterImpl method that writes the value without a field name */
+    final String writeMethod;
+    /** The InternalPdxReader method that reads the next value */
+    final String readMethod;
+    /** True if the write method also takes the check portability flag */
+    final boolean checkPortability;
+
+    FieldAccess(String valueDesc, String unsafeKind, String castTo, String writeMethod,
+        String readMethod, boolean checkPortability) {
+      this.valueDesc = valueDesc;
+      this.unsafeKind = unsafeKind;
+      this.castTo = castTo;
+      this.writeMethod = writeMethod;
+      this.readMethod = readMethod;
+      this.checkPortability = checkPortability;
+    }
+  }
+
+  private static final Map<Class<?>, FieldAccess> accessors = new HashMap<Class<?>, FieldAccess>();
+  static {
+    primitive(IntField.class, "I", "Int");
+    primitive(ByteField.class, "B", "Byte");
+    primitive(LongField.class, "J", "Long");
+    primitive(BooleanField.class, "Z", "Boolean");
+    primitive(CharField.class, "C", "Char");
+    primitive(ShortField.class, "S", "Short");
+    primitive(FloatField.class, "F", "Float");
+    primitive(DoubleField.class, "D", "Double");
+    object(StringField.class, "java/lang/String", "Ljava/lang/String;", "String", false);
+    object(DateField.class, "java/util/Date", "Ljava/util/Date;", "Date", false);
+    object(ObjectField.class, null, "Ljava/lang/Object;", "Object", true);
+    object(ByteArrayField.class, "[B", "[B", "ByteArray", false);
+    object(BooleanArrayField.class, "[Z", "[Z", "BooleanArray", false);
+    object(ShortArrayField.class, "[S", "[S", "ShortArray", false);
+    object(CharArrayField.class, "[C", "[C", "CharArray", false);
+    object(IntArrayField.class, "[I", "[I", "IntArray", false);
+    object(LongArrayField.class, "[J", "[J", "LongArray", false);
+    object(FloatArrayField.class, "[F", "[F", "FloatArray", false);
+    object(DoubleArrayField.class, "[D", "[D", "DoubleArray", false);
+    object(StringArrayField.class, "[Ljava/lang/String;", "[Ljava/lang/String;", "StringArray", false);
+    object(ByteArrayArrayField.class, "[[B", "[[B", "ArrayOfByteArrays", false);
+    object(ObjectArrayField.class, "[Ljava/lang/Object;", "[Ljava/lang/Object;", "ObjectArray", true);
+  }
+
+  private static void primitive(Class<?> c, String desc, String name) {
+    accessors.put(c, new FieldAccess(desc, name, null, "write" + name, "read" + name, false));
+  }
+
+  private static void object(Class<?> c, String castTo, String desc, String name, boolean checkPortability) {
+    accessors.put(c, new FieldAccess(desc, "Object", castTo, "write" + name, "read" + name, checkPortability));
+  }
+
+  private AutoPdxCodecGenerator() {
+    // no instances
+  }
+
+  /**
+   * Returns a new codec for <code>clazz</code> or null if one can not be
+   * generated for it.
+   */
+  public static AutoPdxCodec generate(AutoSerializableManager owner, Class<?> clazz, List<PdxFieldWrapper> fields) {
+    if (AutoPdxCodec.unsafe == null) {
+      return null;
+    }
+    for (PdxFieldWrapper f : fields) {
+      if (f.transform() || !accessors.containsKey(f.getClass())) {
+        return null;
+      }
+    }
+    String className = PACKAGE_PREFIX + classCount.incrementAndGet();
+    try {
+      byte[] bytes = generateClassBytes(className, fields);
+      Class<?> codecClass = new CodecClassLoader().define(className.replace('/', '.'), bytes);
+      AutoPdxCodec result = (AutoPdxCodec)codecClass.newInstance();
+      result.initialize(owner, clazz);
+      return result;
+    } catch (Exception | LinkageError ex) {
+      logger.warn("Could not generate an auto serializer codec for {}; using field wrappers instead", clazz.getName(), ex);
+      return null;
+    }
+  }
+
+  static byte[] generateClassBytes(String className, List<PdxFieldWrapper> fields) throws IOException {
+    ConstantPool cp = new ConstantPool();
+    int thisClass = cp.classRef(className);
+    int superClass = cp.classRef(CODEC);
+    int codeName = cp.utf8("Code");
+
+    List<byte[]> methods = new ArrayList<byte[]>();
+    methods.add(method(cp, codeName, "<init>", "()V", constructorCode(cp), 1, 1));
+    methods.add(method(cp, codeName, "writeFields", WRITE_DESC, writeCode(cp, fields), 8, 3));
+    methods.add(method(cp, codeName, "readFields", READ_DESC, readCode(cp, fields), 8, 3));
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0); // minor version
+    out.writeShort(49); // major version; no stack map frames needed
+    cp.writeTo(out);
+    out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(0); // interfaces
+    out.writeShort(0); // fields
+    out.writeShort(methods.size());
+    for (byte[] m : methods) {
+      out.write(m);
+    }
+    out.writeShort(0); // attributes
+    out.flush();
+    return baos.toByteArray();
+  }
+
+  private static byte[] constructorCode(ConstantPool cp) {
+    Code c = new Code();
+    c.op(ALOAD_0);
+    c.op(INVOKESPECIAL).u2(cp.methodRef(CODEC, "<init>", "()V"));
+    c.op(RETURN);
+    return c.toByteArray();
+  }
+
+  /**
+   * For each field: writer.writeX(unsafe.getX(obj, offset))
+   */
+  private static byte[] writeCode(ConstantPool cp, List<PdxFieldWrapper> fields) {
+    Code c = new Code();
+    int unsafeField = cp.fieldRef(CODEC, "unsafe", UNSAFE_DESC);
+    for (PdxFieldWrapper f : fields) {
+      FieldAccess fa = accessors.get(f.getClass());
+      c.op(ALOAD_1);
+      c.op(GETSTATIC).u2(unsafeField);
+      c.op(ALOAD_2);
+      c.op(LDC2_W).u2(cp.longConstant(AutoPdxCodec.unsafe.objectFieldOffset(f.getField())));
+      String getDesc = fa.unsafeKind.equals("Object") ? "Ljava/lang/Object;" : fa.valueDesc;
+      c.op(INVOKEVIRTUAL).u2(cp.methodRef(UNSAFE, "get" + fa.unsafeKind, "(Ljava/lang/Object;J)" + getDesc));
+      if (fa.castTo != null) {
+        c.op(CHECKCAST).u2(cp.classRef(fa.castTo));
+      }
+      if (fa.checkPortability) {
+        c.op(ALOAD_0);
+        c.op(INVOKEVIRTUAL).u2(cp.methodRef(CODEC, "getCheckPortability", "()Z"));
+        c.op(INVOKEVIRTUAL).u2(cp.methodRef(WRITER, fa.writeMethod, "(" + fa.valueDesc + "Z)V"));
+      } else {
+        c.op(INVOKEVIRTUAL).u2(cp.methodRef(WRITER, fa.writeMethod, "(" + fa.valueDesc + ")V"));
+      }
+    }
+    c.op(RETURN);
+    return c.toByteArray();
+  }
+
+  /**
+   * For each field: unsafe.putX(obj, offset, reader.readX())
+   */
+  private static byte[] readCode(ConstantPool cp, List<PdxFieldWrapper> fields) {
+    Code c = new Code();
+    int unsafeField = cp.fieldRef(CODEC, "unsafe", UNSAFE_DESC);
+    for (PdxFieldWrapper f : fields) {
+      FieldAccess fa = accessors.get(f.getClass());
+      c.op(GETSTATIC).u2(unsafeField);
+      c.op(ALOAD_2);
+      c.op(LDC2_W).u2(cp.longConstant(AutoPdxCodec.unsafe.objectFieldOffset(f.getField())));
+      c.op(ALOAD_1);
+      c.op(INVOKEINTERFACE).u2(cp.interfaceMethodRef(READER, fa.readMethod, "()" + fa.valueDesc)).u1(1).u1(0);
+      String putDesc = fa.unsafeKind.equals("Object") ? "Ljava/lang/Object;" : fa.valueDesc;
+      c.op(INVOKEVIRTUAL).u2(cp.methodRef(UNSAFE, "put" + fa.unsafeKind, "(Ljava/lang/Object;J" + putDesc + ")V"));
+    }
+    c.op(RETURN);
+    return c.toByteArray();
+  }
+
+  private static byte[] method(ConstantPool cp, int codeName, String name, String desc, byte[] code,
+      int maxStack, int maxLocals) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeShort(ACC_PUBLIC);
+    out.writeShort(cp.utf8(name));
+    out.writeShort(cp.utf8(desc));
+    out.writeShort(1); // attributes
+    out.writeShort(codeName);
+    out.writeInt(12 + code.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(code.length);
+    out.write(code);
+    out.writeShort(0); // exception table
+    out.writeShort(0); // code attributes
+    out.flush();
+    return baos.toByteArray();
+  }
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int ALOAD_2 = 0x2c;
+  private static final int LDC2_W = 0x14;
+  private static final int RETURN = 0xb1;
+  private static final int GETSTATIC = 0xb2;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKEINTERFACE = 0xb9;
+  private static final int CHECKCAST = 0xc0;
+
+  private static final class Code {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    Code op(int opcode) {
+      return u1(opcode);
+    }
+
+    Code u1(int v) {
+      this.bytes.write(v);
+      return this;
+    }
+
+    Code u2(int v) {
+      this.bytes.write(v >>> 8);
+      this.bytes.write(v);
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return this.bytes.toByteArray();
+    }
+  }
+
+  /**
+   * A minimal class file constant pool that shares identical entries.
+   */
+  private static final class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int LONG = 5;
+    private static final int CLASS = 7;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(this.bytes);
+    private final Map<String, Integer> entries = new HashMap<String, Integer>();
+    private int nextIndex = 1;
+
+    int utf8(String s) {
+      String key = "U" + s;
+      Integer idx = this.entries.get(key);
+      if (idx == null) {
+        idx = add(key, 1);
+        write(UTF8);
+        writeUTF(s);
+      }
+      return idx;
+    }
+
+    int longConstant(long v) {
+      String key = "J" + v;
+      Integer idx = this.entries.get(key);
+      if (idx == null) {
+        // longs take up two constant pool slots
+        idx = add(key, 2);
+        write(LONG);
+        writeLong(v);
+      }
+      return idx;
+    }
+
+    int classRef(String internalName) {
+      String key = "C" + internalName;
+      Integer idx = this.entries.get(key);
+      if (idx == null) {
+        int name = utf8(internalName);
+        idx = add(key, 1);
+        write(CLASS);
+        writeShort(name);
+      }
+      return idx;
+    }
+
+    int fieldRef(String owner, String name, String desc) {
+      return memberRef(FIELDREF, owner, name, desc);
+    }
+
+    int methodRef(String owner, String name, String desc) {
+      return memberRef(METHODREF, owner, name, desc);
+    }
+
+    int interfaceMethodRef(String owner, String name, String desc) {
+      return memberRef(INTERFACE_METHODREF, owner, name, desc);
+    }
+
+    private int memberRef(int tag, String owner, String name, String desc) {
+      String key = "M" + tag + owner + "." + name + desc;
+      Integer idx = this.entries.get(key);
+      if (idx == null) {
+        int ownerIdx = classRef(owner);
+        int nameAndType = nameAndType(name, desc);
+        idx = add(key, 1);
+        write(tag);
+        writeShort(ownerIdx);
+        writeShort(nameAndType);
+      }
+      return idx;
+    }
+
+    private int nameAndType(String name, String desc) {
+      String key = "N" + name + desc;
+      Integer idx = this.entries.get(key);
+      if (idx == null) {
+        int nameIdx = utf8(name);
+        int descIdx = utf8(desc);
+        idx = add(key, 1);
+        write(NAME_AND_TYPE);
+        writeShort(nameIdx);
+        writeShort(descIdx);
+      }
+      return idx;
+    }
+
+    private int add(String key, int slots) {
+      int idx = this.nextIndex;
+      this.nextIndex += slots;
+      this.entries.put(key, idx);
+      return idx;
+    }
+
+    private void write(int tag) {
+      try {
+        this.out.writeByte(tag);
+      } catch (IOException never) {
+        throw new IllegalStateException(never);
+      }
+    }
+
+    private void writeShort(int v) {
+      try {
+        this.out.writeShort(v);
+      } catch (IOException never) {
+        throw new IllegalStateException(never);
+      }
+    }
+
+    private void writeLong(long v) {
+      try {
+        this.out.writeLong(v);
+      } catch (IOException never) {
+        throw new IllegalStateException(never);
+      }
+    }
+
+    private void writeUTF(String s) {
+      try {
+        this.out.writeUTF(s);
+      } catch (IOException never) {
+        throw new IllegalStateException(never);
+      }
+    }
+
+    void writeTo(DataOutputStream dos) throws IOException {
+      this.out.flush();
+      dos.writeShort(this.nextIndex);
+      this.bytes.writeTo(dos);
+    }
+  }
+
+  /**
+   * Each generated class gets its own loader so it can be unloaded
+   * along with the AutoClassInfo that refers to it.
+   */
+  private static final class CodecClassLoader extends ClassLoader {
+    CodecClassLoader() {
+      super(AutoPdxCodec.class.getClassLoader());
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
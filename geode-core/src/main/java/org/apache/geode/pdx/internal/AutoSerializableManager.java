@@ -406,6 +406,9 @@ public class AutoSerializableManager {
 
         fieldList.addAll(variableLenFields);
         classInfo = new AutoClassInfo(clazz, fieldList);
+        if (AutoPdxCodecGenerator.ENABLED) {
+          classInfo.setCodec(AutoPdxCodecGenerator.generate(this, clazz, fieldList));
+        }
         logger.info("Auto serializer generating type for {} for fields: {}", clazz, classInfo.toFormattedString());
         classMap.put(clazz, classInfo);
       } // end sync
@@ -598,6 +601,14 @@ public class AutoSerializableManager {
     unsafe = tmp;
   }
 
+  /**
+   * Returns the wrapper used to access fields, or null if fields are accessed
+   * with reflection.
+   */
+  static UnsafeWrapper getUnsafe() {
+    return unsafe;
+  }
+
   public static abstract class PdxFieldWrapper {
     private final FieldWrapper field;
     private final String fieldName;
@@ -1867,6 +1878,11 @@ public class AutoSerializableManager {
         optimizeFieldWrites = true;
       }
     }
+    if (optimizeFieldWrites && autoClassInfo.getCodec() != null) {
+      // the type is already defined so no identity fields need to be marked
+      autoClassInfo.getCodec().write(w, obj);
+      return;
+    }
     for (PdxFieldWrapper f : autoClassInfo.getFields()) {
       //System.out.println("DEBUG writing field=" + f.getField().getName() + " offset=" + ((PdxWriterImpl)writer).position());
       if (f.transform()) {
@@ -2014,6 +2030,12 @@ public class AutoSerializableManager {
      * The PdxType created by the first serialization by the auto serializer.
      */
     private PdxType serializedType = null;
+
+    /**
+     * The generated codec for the class; null if fields are written
+     * and read through their PdxFieldWrapper.
+     */
+    private volatile AutoPdxCodec codec = null;
     
     public AutoClassInfo(Class<?> clazz, List<PdxFieldWrapper> fields) {
       this.clazzRef = new WeakReference<Class<?>>(clazz);
@@ -2049,6 +2071,13 @@ public class AutoSerializableManager {
       return result;
     }
 
+    public void setCodec(AutoPdxCodec v) {
+      this.codec = v;
+    }
+    public AutoPdxCodec getCodec() {
+      return this.codec;
+    }
+
     public void setSerializedType(PdxType v) {
       this.serializedType = v;
     }
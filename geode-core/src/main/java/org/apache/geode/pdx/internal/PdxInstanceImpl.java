@@ -188,6 +188,14 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
     }
   }
 
+  /**
+   * Returns the number of bytes {@link #toBytes()} would produce without
+   * producing them. The size is exact unless this instance has a deleted field.
+   */
+  public int getSerializedSize() {
+    return PdxWriterImpl.HEADER_SIZE + getUnmodifiableReader().basicSize();
+  }
+
   // this is for internal use of the query engine.
   public Object getCachedObject() {
     Object result = this.cachedObjectForm; 
@@ -599,6 +607,11 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
     return super.readField(fieldName);
   }
 
+  @Override
+  public synchronized Object readField(PdxField ft) {
+    return super.readField(ft);
+  }
+
   @Override
   protected synchronized Object basicGetObject() {
     DMStats stats = InternalDataSerializer.getDMStats(null);
@@ -637,6 +650,20 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
   public Object getRawField(String fieldName){
     return getUnmodifiableReader(fieldName).readRawField(fieldName);
   }
+
+  /**
+   * Same as {@link #getRawField(String)} for a field that was looked up on
+   * this instance's {@link #getPdxType() type}. Lets the query engine read a
+   * field with a single lookup.
+   */
+  public Object getRawField(PdxField ft) {
+    PdxReaderImpl ur = getUnmodifiableReader(ft.getFieldName());
+    if (ur.getPdxType() != getPdxType()) {
+      // flushing dirty fields changed the type
+      return ur.readRawField(ft.getFieldName());
+    }
+    return ur.readRawField(ft);
+  }
   
   
  public Object getDefaultValueIfFieldExistsInAnyPdxVersions(String fieldName,
@@ -626,6 +626,14 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
     if (ft == null) {
       return null;
     }
+    return readField(ft);
+  }
+
+  /**
+   * Reads the value of a field of this reader's type that the caller has
+   * already looked up.
+   */
+  public Object readField(PdxField ft) {
     switch (ft.getFieldType()) {
     case CHAR:
       return readChar(ft);
@@ -834,6 +842,11 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
    */
   public void orderedDeserialize(Object obj, AutoClassInfo ci) {
     PdxReaderImpl reader = prepForOrderedReading();
+    AutoPdxCodec codec = ci.getCodec();
+    if (codec != null) {
+      codec.read(reader, obj);
+      return;
+    }
     for (PdxFieldWrapper f: ci.getFields()) {
       //System.out.println("DEBUG reading field=" + f.getField().getName() + " offset=" + reader.dis.position());
       f.orderedDeserialize(reader, obj);
@@ -866,11 +879,19 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
     if (ft == null) {
       return null;
     }
+    return readRawField(ft);
+  }
+
+  /**
+   * Same as {@link #readRawField(String)} for a field of this reader's type
+   * that the caller has already looked up.
+   */
+  public Object readRawField(PdxField ft) {
     if (ft.getFieldType() == FieldType.STRING) {
       return readPdxString(ft);
     }
     else{
-      return readField(field);
+      return readField(ft);
     }
   }
   
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.CacheUtils;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.Struct;
+import org.apache.geode.cache.query.data.Numbers;
+import org.apache.geode.cache.query.data.Portfolio;
+import org.apache.geode.pdx.internal.PdxString;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class HashJoinJUnitTest {
+
+  private Region portfolios;
+  private Region numbers;
+  private QueryService qs;
+  private EvaluationCounter counter;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.portfolios = CacheUtils.createRegion("portfolios", Portfolio.class);
+    this.numbers = CacheUtils.createRegion("numbers", Numbers.class);
+    for (int i = 0; i < 200; i++) {
+      this.portfolios.put(i, new Portfolio(i));
+    }
+    for (int i = 0; i < 100; i++) {
+      this.numbers.put(i, new Numbers(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+    this.counter = new EvaluationCounter();
+    QueryObserverHolder.setInstance(this.counter);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    QueryObserverHolder.setInstance(new QueryObserverAdapter());
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testEquiJoinEvaluatesOnlyMatchingPairs() throws Exception {
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select p.ID, n.id from /portfolios p, /numbers n where p.ID = n.id").execute();
+    assertEquals(100, results.size());
+    for (Object row : results) {
+      Object[] values = ((Struct) row).getFieldValues();
+      assertEquals(values[0], values[1]);
+    }
+    // the numbers are hashed and each portfolio has at most one candidate
+    assertEquals(100, this.counter.evaluations);
+  }
+
+  @Test
+  public void testJoinOnMixedNumericTypes() throws Exception {
+    // n.range is a double holding twice the id
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select p.ID, n.id from /portfolios p, /numbers n where n.range = p.ID").execute();
+    assertEquals(100, results.size());
+    for (Object row : results) {
+      Object[] values = ((Struct) row).getFieldValues();
+      assertEquals(2 * ((Integer) values[1]).intValue(), ((Integer) values[0]).intValue());
+    }
+    assertEquals(100, this.counter.evaluations);
+  }
+
+  @Test
+  public void testJoinWithOtherConditions() throws Exception {
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select * from /portfolios p, /numbers n where p.ID = n.id and p.status = 'active'")
+        .execute();
+    assertEquals(50, results.size());
+    assertEquals(100, this.counter.evaluations);
+  }
+
+  @Test
+  public void testJoinWithLimit() throws Exception {
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select * from /portfolios p, /numbers n where p.ID = n.id limit 10").execute();
+    assertEquals(10, results.size());
+    assertEquals(10, this.counter.evaluations);
+  }
+
+  @Test
+  public void testSmallJoinUsesNestedIteration() throws Exception {
+    Region small = CacheUtils.createRegion("small", Numbers.class);
+    for (int i = 0; i < 5; i++) {
+      small.put(i, new Numbers(i));
+    }
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select * from /small s, /small t where s.id = t.id").execute();
+    assertEquals(5, results.size());
+    assertEquals(25, this.counter.evaluations);
+  }
+
+  @Test
+  public void testNonEquiJoinUsesNestedIteration() throws Exception {
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select * from /portfolios p, /numbers n where p.ID < n.id").execute();
+    assertEquals(4950, results.size());
+    assertEquals(20000, this.counter.evaluations);
+  }
+
+  @Test
+  public void testHashKey() {
+    assertEquals(HashJoin.hashKey(3, false), HashJoin.hashKey(3L, false));
+    assertEquals(HashJoin.hashKey((byte) 3, false), HashJoin.hashKey((short) 3, false));
+    assertNotEquals(HashJoin.hashKey(1L << 40, false), HashJoin.hashKey((1L << 40) + 1, false));
+    assertEquals(HashJoin.hashKey(3, true), HashJoin.hashKey(3L, true));
+    assertEquals(HashJoin.hashKey(3, true), HashJoin.hashKey(3.0d, true));
+    assertEquals(HashJoin.hashKey(3.0f, false), HashJoin.hashKey((short) 3, true));
+    assertEquals(HashJoin.hashKey(0.0d, false), HashJoin.hashKey(-0.0d, false));
+    assertEquals(HashJoin.hashKey("abc", false), HashJoin.hashKey(new PdxString("abc"), false));
+    assertSame(HashJoin.hashKey(null, false), HashJoin.hashKey(new Date(), false));
+    assertSame(HashJoin.hashKey(null, false), HashJoin.hashKey(QueryService.UNDEFINED, false));
+  }
+
+  @Test
+  public void testJoinOnLargeLongsHashesExactly() throws Exception {
+    // epoch milliseconds that a float can't tell apart
+    long start = 1476000000000L;
+    Region first = CacheUtils.createRegion("first", Long.class);
+    Region second = CacheUtils.createRegion("second", Long.class);
+    for (int i = 0; i < 100; i++) {
+      first.put(i, start + i);
+      second.put(i, start + i);
+    }
+    SelectResults results = (SelectResults) this.qs.newQuery(
+        "select * from /first f, /second s where f = s").execute();
+    assertEquals(100, results.size());
+    assertEquals(100, this.counter.evaluations);
+  }
+
+  private static class EvaluationCounter extends QueryObserverAdapter {
+    private int evaluations;
+
+    @Override
+    public void afterIterationEvaluation(Object result) {
+      this.evaluations++;
+    }
+  }
+}
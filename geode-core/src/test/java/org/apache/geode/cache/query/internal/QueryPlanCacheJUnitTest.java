@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.CacheUtils;
+import org.apache.geode.cache.query.Index;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.data.Portfolio;
+import org.apache.geode.internal.cache.CachePerfStats;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class QueryPlanCacheJUnitTest {
+
+  private static final String QUERY = "select distinct * from /portfolios p where p.ID > 5 order by p.ID";
+
+  private GemFireCacheImpl cache;
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.cache = (GemFireCacheImpl)CacheUtils.getCache();
+    Region region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < 20; i++) {
+      region.put(i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals("select * from /r", QueryPlanCache.normalize("select * from /r"));
+    assertEquals("select * from /r", QueryPlanCache.normalize("  select\t*\n from   /r "));
+    assertEquals("select * from /r r where r.s = ' a  b '",
+        QueryPlanCache.normalize("select *  from /r r  where r.s = ' a  b '"));
+    assertEquals("select * from /r r where r.s = 'it''s  x'",
+        QueryPlanCache.normalize("select *   from /r r where r.s = 'it''s  x'"));
+  }
+
+  @Test
+  public void testCachedPlanIsReused() throws Exception {
+    CachePerfStats stats = this.cache.getCachePerfStats();
+    long hits = stats.getQueryPlanCacheHits();
+    long misses = stats.getQueryPlanCacheMisses();
+
+    DefaultQuery q1 = (DefaultQuery)this.qs.newQuery(QUERY);
+    DefaultQuery q2 = (DefaultQuery)this.qs.newQuery("  " + QUERY.replace(" where ", "\n  where "));
+    assertEquals(misses + 1, stats.getQueryPlanCacheMisses());
+    assertEquals(hits + 1, stats.getQueryPlanCacheHits());
+    assertSame(q1.getSimpleSelect(), q2.getSimpleSelect());
+
+    SelectResults r1 = (SelectResults)q1.execute();
+    SelectResults r2 = (SelectResults)q2.execute();
+    assertEquals(14, r1.size());
+    assertEquals(r1.asList(), r2.asList());
+  }
+
+  @Test
+  public void testIndexChangesInvalidatePlans() throws Exception {
+    CachePerfStats stats = this.cache.getCachePerfStats();
+    DefaultQuery q1 = (DefaultQuery)this.qs.newQuery(QUERY);
+    assertEquals(1, this.cache.getQueryPlanCache().size());
+
+    Index index = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    assertEquals(0, this.cache.getQueryPlanCache().size());
+    long misses = stats.getQueryPlanCacheMisses();
+    DefaultQuery q2 = (DefaultQuery)this.qs.newQuery(QUERY);
+    assertEquals(misses + 1, stats.getQueryPlanCacheMisses());
+    assertNotSame(q1.getSimpleSelect(), q2.getSimpleSelect());
+    assertEquals(14, ((SelectResults)q2.execute()).size());
+
+    this.qs.removeIndex(index);
+    assertEquals(0, this.cache.getQueryPlanCache().size());
+  }
+
+  @Test
+  public void testRegionChangesInvalidatePlans() throws Exception {
+    this.qs.newQuery(QUERY);
+    assertEquals(1, this.cache.getQueryPlanCache().size());
+    CacheUtils.createRegion("other", Portfolio.class);
+    assertEquals(0, this.cache.getQueryPlanCache().size());
+  }
+}
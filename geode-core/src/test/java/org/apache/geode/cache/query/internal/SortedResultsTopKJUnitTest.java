@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.query.Struct;
+import org.apache.geode.cache.query.internal.types.ObjectTypeImpl;
+import org.apache.geode.cache.query.internal.types.StructTypeImpl;
+import org.apache.geode.cache.query.types.ObjectType;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+/**
+ * Tests the sorted results bounded to the rows which sort first, as used for
+ * order by queries with a limit.
+ */
+@Category(UnitTest.class)
+public class SortedResultsTopKJUnitTest {
+
+  private static final Comparator<Integer> NATURAL = Comparator.naturalOrder();
+
+  @Test
+  public void testBagKeepsFirstRows() {
+    SortedResultsBag<Integer> bag = new SortedResultsBag<Integer>(NATURAL, true);
+    bag.setMaxSize(4);
+    for (int i : new int[] { 9, 3, 7, 3, 1, 8, 3, 2 }) {
+      bag.add(i);
+      assertTrue(bag.size() <= 4);
+    }
+    assertEquals(Arrays.asList(1, 2, 3, 3), bag.asList());
+    assertEquals(2, bag.occurrences(3));
+  }
+
+  @Test
+  public void testBagAddAndGetOccurence() {
+    SortedResultsBag<Integer> bag = new SortedResultsBag<Integer>(NATURAL, true);
+    bag.setMaxSize(2);
+    assertEquals(1, bag.addAndGetOccurence(5));
+    assertEquals(2, bag.addAndGetOccurence(5));
+    assertEquals(1, bag.addAndGetOccurence(4));
+    assertEquals(Arrays.asList(4, 5), bag.asList());
+  }
+
+  @Test
+  public void testBagNullsAtStart() {
+    SortedResultsBag<Integer> bag = new SortedResultsBag<Integer>(NATURAL, true);
+    bag.setMaxSize(2);
+    bag.add(5);
+    bag.add(null);
+    bag.add(4);
+    bag.add(null);
+    bag.add(null);
+    assertEquals(Arrays.asList(null, null), bag.asList());
+  }
+
+  @Test
+  public void testBagNullsAtEnd() {
+    SortedResultsBag<Integer> bag = new SortedResultsBag<Integer>(NATURAL, false);
+    bag.setMaxSize(2);
+    bag.add(null);
+    bag.add(5);
+    bag.add(null);
+    assertEquals(Arrays.asList(5, null), bag.asList());
+    bag.add(4);
+    assertEquals(Arrays.asList(4, 5), bag.asList());
+  }
+
+  @Test
+  public void testBagWithLimit() {
+    SortedResultsBag<Integer> bag = new SortedResultsBag<Integer>(NATURAL, true);
+    bag.setMaxSize(3);
+    for (int i = 100; i > 0; i--) {
+      bag.add(i);
+    }
+    bag.applyLimit(3);
+    assertEquals(Arrays.asList(1, 2, 3), bag.asList());
+  }
+
+  @Test
+  public void testResultSetKeepsFirstRows() {
+    SortedResultSet set = new SortedResultSet(NATURAL);
+    set.setMaxSize(3);
+    for (int i : new int[] { 9, 3, 7, 3, 1, 8, 1, 2 }) {
+      set.add(i);
+    }
+    assertEquals(Arrays.asList(1, 2, 3), set.asList());
+  }
+
+  @Test
+  public void testStructSetKeepsFirstRows() {
+    StructTypeImpl type = new StructTypeImpl(new String[] { "id", "name" },
+        new ObjectType[] { new ObjectTypeImpl(Integer.class), new ObjectTypeImpl(String.class) });
+    Comparator<Object[]> comparator = (a, b) -> ((Integer) a[0]).compareTo((Integer) b[0]);
+    SortedStructSet set = new SortedStructSet(comparator, type);
+    set.setMaxSize(2);
+    for (int i = 10; i > 0; i--) {
+      set.addFieldValues(new Object[] { i, "name" + i });
+    }
+    List<Struct> list = set.asList();
+    assertEquals(2, list.size());
+    assertEquals(1, list.get(0).get("id"));
+    assertEquals("name2", list.get(1).get("name"));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.query.CacheUtils;
+import org.apache.geode.cache.query.Index;
+import org.apache.geode.cache.query.IndexType;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.data.Portfolio;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class BitmapIndexJUnitTest {
+
+  private static final String[] QUERIES = new String[] {
+      "select * from /portfolios p where p.status = 'active' and p.type = 'type1'",
+      "select * from /portfolios p where p.status = 'inactive' or p.type = 'type0'",
+      "select * from /portfolios p where p.type = 'type2' and p.status = 'active' and p.ID > 50",
+      "select * from /portfolios p where p.status = 'active' and p.type = 'none'",
+      "select * from /portfolios p where p.status = 'active'",
+      "select count(*) from /portfolios p where p.status = 'active' and p.type = 'type1'",
+      "select count(*) from /portfolios p where p.status = 'inactive' or p.type = 'type0'",
+      "select count(*) from /portfolios p where p.type = 'type2'",
+  };
+
+  private Region region;
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testBitmapIndexIsCreated() throws Exception {
+    createRegion(false);
+    Index index = this.qs.createBitmapIndex("status", "p.status", "/portfolios p");
+    assertTrue(index instanceof BitmapIndex);
+    assertEquals(IndexType.BITMAP, index.getType());
+    assertEquals(100, index.getStatistics().getNumberOfValues());
+    assertEquals(2, index.getStatistics().getNumberOfKeys());
+  }
+
+  @Test
+  public void testJunctionsOnLocalRegion() throws Exception {
+    createRegion(false);
+    assertSameResults();
+  }
+
+  @Test
+  public void testJunctionsOnPartitionedRegion() throws Exception {
+    createRegion(true);
+    assertSameResults();
+  }
+
+  @Test
+  public void testBitmapsAreCombined() throws Exception {
+    createRegion(false);
+    Index status = this.qs.createBitmapIndex("status", "p.status", "/portfolios p");
+    Index type = this.qs.createBitmapIndex("type", "p.type", "/portfolios p");
+    SelectResults results = (SelectResults)this.qs.newQuery(QUERIES[0]).execute();
+    assertEquals(16, results.size());
+    assertEquals(1, status.getStatistics().getTotalUses());
+    assertEquals(1, type.getStatistics().getTotalUses());
+
+    results = (SelectResults)this.qs.newQuery(QUERIES[5]).execute();
+    assertEquals(16, results.asList().get(0));
+    assertEquals(2, status.getStatistics().getTotalUses());
+    assertEquals(2, type.getStatistics().getTotalUses());
+  }
+
+  @Test
+  public void testUpdatesAndDestroys() throws Exception {
+    createRegion(false);
+    Index status = this.qs.createBitmapIndex("status", "p.status", "/portfolios p");
+    Index type = this.qs.createBitmapIndex("type", "p.type", "/portfolios p");
+    Portfolio p = new Portfolio(200);
+    p.status = null;
+    this.region.put(200, p);
+    this.region.put(2, new Portfolio(3));
+    for (int i = 10; i < 40; i++) {
+      this.region.destroy(i);
+    }
+    for (int i = 300; i < 310; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    String[] queries = new String[QUERIES.length + 1];
+    System.arraycopy(QUERIES, 0, queries, 0, QUERIES.length);
+    queries[QUERIES.length] = "select * from /portfolios p where p.status = null and p.type = 'type2'";
+
+    SelectResults[] withIndex = execute(queries);
+    this.qs.removeIndex(status);
+    this.qs.removeIndex(type);
+    SelectResults[] withoutIndex = execute(queries);
+    for (int i = 0; i < queries.length; i++) {
+      assertEquals(queries[i], asSet(withoutIndex[i]), asSet(withIndex[i]));
+    }
+    assertEquals(1, withIndex[QUERIES.length].size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testBitmapIndexOnSeveralIteratorsIsNotSupported() throws Exception {
+    createRegion(false);
+    this.qs.createBitmapIndex("status", "pos.secId", "/portfolios p, p.positions.values pos");
+  }
+
+  private void createRegion(boolean partitioned) throws Exception {
+    if (partitioned) {
+      this.region = CacheUtils.getCache().createRegionFactory(RegionShortcut.PARTITION)
+          .create("portfolios");
+    } else {
+      this.region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    }
+    for (int i = 0; i < 100; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+  }
+
+  private void assertSameResults() throws Exception {
+    SelectResults[] withoutIndex = execute(QUERIES);
+    Index status = this.qs.createBitmapIndex("status", "p.status", "/portfolios p");
+    Index type = this.qs.createBitmapIndex("type", "p.type", "/portfolios p");
+    SelectResults[] withIndex = execute(QUERIES);
+    for (int i = 0; i < QUERIES.length; i++) {
+      assertEquals(QUERIES[i], asSet(withoutIndex[i]), asSet(withIndex[i]));
+    }
+    assertTrue(status.getStatistics().getTotalUses() > 0);
+    assertTrue(type.getStatistics().getTotalUses() > 0);
+  }
+
+  private SelectResults[] execute(String[] queries) throws Exception {
+    SelectResults[] results = new SelectResults[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      results[i] = (SelectResults)this.qs.newQuery(queries[i]).execute();
+    }
+    return results;
+  }
+
+  private Set asSet(SelectResults results) {
+    return new HashSet(results.asList());
+  }
+}
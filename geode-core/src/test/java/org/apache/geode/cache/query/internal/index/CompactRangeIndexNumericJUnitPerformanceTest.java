@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.query.CacheUtils;
+import org.apache.geode.cache.query.Index;
+import org.apache.geode.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import org.apache.geode.cache.query.internal.index.IndexStore.IndexStoreEntry;
+import org.apache.geode.cache.query.data.Portfolio;
+import org.apache.geode.internal.cache.LocalRegion;
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.internal.cache.persistence.query.CloseableIterator;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Compares the object keyed store of a compact range index with the
+ * primitive keyed {@link NumericIndexStore} for an integer indexed expression.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class CompactRangeIndexNumericJUnitPerformanceTest {
+
+  private static final int ENTRY_COUNT = 500000;
+  private static final int RANGE = 1000;
+  private static final int SCANS = 2000;
+
+  private LocalRegion region;
+  private InternalIndexStatistics stats;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.region = (LocalRegion)CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    CacheUtils.createRegion("small", Portfolio.class);
+    Index index = CacheUtils.getQueryService().createIndex("statsIndex", "p.ID", "/small p");
+    this.stats = (InternalIndexStatistics)index.getStatistics();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testObjectKeyedStore() throws Exception {
+    for (int j = 0; j < 5; j++) {
+      run("MemoryIndexStore", new MemoryIndexStore(this.region, this.stats));
+    }
+  }
+
+  @Test
+  public void testNumericStore() throws Exception {
+    for (int j = 0; j < 5; j++) {
+      run("NumericIndexStore", new NumericIndexStore(this.region, this.stats, NumericIndexStore.INTEGER));
+    }
+  }
+
+  private void run(String name, MemoryIndexStore store) throws Exception {
+    store.setIndexOnValues(true);
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      RegionEntry entry = this.region.getRegionEntry(i);
+      store.addMapping(Integer.valueOf(i), entry);
+    }
+    long addNanos = System.nanoTime() - start;
+
+    System.gc();
+    long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+
+    start = System.nanoTime();
+    long found = 0;
+    for (int i = 0; i < SCANS; i++) {
+      int lo = (i * 7919) % (ENTRY_COUNT - RANGE);
+      CloseableIterator<IndexStoreEntry> it = store.iterator(lo, true, lo + RANGE, false, null);
+      while (it.hasNext()) {
+        it.next();
+        found++;
+      }
+    }
+    long scanNanos = System.nanoTime() - start;
+
+    System.out.println(name + ": add " + (addNanos / ENTRY_COUNT) + " ns / key; scan "
+        + (scanNanos / found) + " ns / key; about " + ((usedAfter - usedBefore) / ENTRY_COUNT)
+        + " bytes / key");
+    store.clear();
+  }
+}
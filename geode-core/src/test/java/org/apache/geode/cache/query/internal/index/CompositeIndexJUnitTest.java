@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.query.CacheUtils;
+import org.apache.geode.cache.query.Index;
+import org.apache.geode.cache.query.IndexType;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.data.Portfolio;
+import org.apache.geode.cache.query.internal.QueryExecutionContext;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class CompositeIndexJUnitTest {
+
+  private Region region;
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < 100; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testCompositeIndexIsCreated() throws Exception {
+    Index index = this.qs.createIndex("composite", "p.status, p.ID", "/portfolios p");
+    assertTrue(index instanceof CompositeIndex);
+    assertEquals("p.status, p.ID", index.getIndexedExpression());
+    assertEquals(100, index.getStatistics().getNumberOfValues());
+  }
+
+  @Test
+  public void testEqualityAndRange() throws Exception {
+    String[] queries = new String[] {
+        "select * from /portfolios p where p.status = 'active' and p.ID > 50",
+        "select * from /portfolios p where p.status = 'active' and p.ID >= 50 and p.ID < 70",
+        "select * from /portfolios p where 'inactive' = p.status and 20 > p.ID",
+        "select * from /portfolios p where p.status = 'active' and p.ID = 10",
+        "select * from /portfolios p where p.status = 'inactive'",
+        "select * from /portfolios p where p.status = 'active' and p.ID <= 30 and p.pkid != '4'",
+    };
+    Index index = assertSameResults(queries, "p.status, p.ID");
+    assertEquals(queries.length, index.getStatistics().getTotalUses());
+  }
+
+  @Test
+  public void testLeadingRangeOnly() throws Exception {
+    String[] queries = new String[] {
+        "select * from /portfolios p where p.ID > 50 and p.ID < 60",
+    };
+    Index index = assertSameResults(queries, "p.ID, p.status");
+    assertEquals(1, index.getStatistics().getTotalUses());
+  }
+
+  @Test
+  public void testNonLeadingConditionDoesNotUseIndex() throws Exception {
+    String[] queries = new String[] {
+        "select * from /portfolios p where p.ID > 50",
+    };
+    Index index = assertSameResults(queries, "p.status, p.ID");
+    assertEquals(0, index.getStatistics().getTotalUses());
+  }
+
+  @Test
+  public void testNullsAndUpdates() throws Exception {
+    Index index = this.qs.createIndex("composite", "p.status, p.ID", "/portfolios p");
+    Portfolio p = new Portfolio(200);
+    p.status = null;
+    this.region.put(200, p);
+    this.region.put(2, new Portfolio(3));
+    this.region.destroy(4);
+
+    String[] queries = new String[] {
+        "select * from /portfolios p where p.status = 'active' and p.ID < 10",
+        "select * from /portfolios p where p.status = 'inactive' and p.ID < 10",
+        "select * from /portfolios p where p.status = null",
+    };
+    SelectResults[] withIndex = execute(queries);
+    this.qs.removeIndex(index);
+    SelectResults[] withoutIndex = execute(queries);
+    for (int i = 0; i < queries.length; i++) {
+      assertEquals(queries[i], asSet(withoutIndex[i]), asSet(withIndex[i]));
+    }
+    assertEquals(3, withIndex[0].size());
+    assertEquals(6, withIndex[1].size());
+    assertEquals(1, withIndex[2].size());
+  }
+
+  @Test
+  public void testCompositeIndexWithSingleIndexes() throws Exception {
+    this.qs.createIndex("status", "p.status", "/portfolios p");
+    this.qs.createIndex("id", "p.ID", "/portfolios p");
+    String[] queries = new String[] {
+        "select * from /portfolios p where p.status = 'active' and p.ID > 50",
+    };
+    Index index = assertSameResults(queries, "p.status, p.ID");
+    assertEquals(1, index.getStatistics().getTotalUses());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testCompositeHashIndexIsNotSupported() throws Exception {
+    this.qs.createIndex("composite", IndexType.HASH, "p.status, p.ID", "/portfolios p");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testCompositeIndexOnSeveralIteratorsIsNotSupported() throws Exception {
+    this.qs.createIndex("composite", "p.status, pos.secId",
+        "/portfolios p, p.positions.values pos");
+  }
+
+  @Test
+  public void testSizeEstimateCountsAllQueriedBuckets() throws Exception {
+    PartitionedRegion pr = (PartitionedRegion)CacheUtils.getCache()
+        .createRegionFactory(RegionShortcut.PARTITION).create("prPortfolios");
+    for (int i = 0; i < 100; i++) {
+      pr.put(i, new Portfolio(i));
+    }
+    Index index = this.qs.createIndex("prComposite", "p.status, p.ID", "/prPortfolios p");
+    CompositeIndex bucketIndex = (CompositeIndex)((PartitionedIndex)index).getBucketIndex();
+    QueryExecutionContext context = new QueryExecutionContext(null, CacheUtils.getCache());
+    context.setBucketList(new ArrayList<Integer>(pr.getDataStore().getAllLocalBucketIds()));
+    assertEquals(50, bucketIndex.getSizeEstimate(CompositeIndexKey.lowerBound("active"),
+        CompositeIndexKey.upperBound("active"), context));
+  }
+
+  private Index assertSameResults(String[] queries, String indexedExpression)
+      throws Exception {
+    SelectResults[] withoutIndex = execute(queries);
+    Index index = this.qs.createIndex("composite", indexedExpression, "/portfolios p");
+    SelectResults[] withIndex = execute(queries);
+    for (int i = 0; i < queries.length; i++) {
+      assertEquals(queries[i], asSet(withoutIndex[i]), asSet(withIndex[i]));
+    }
+    return index;
+  }
+
+  private SelectResults[] execute(String[] queries) throws Exception {
+    SelectResults[] results = new SelectResults[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      results[i] = (SelectResults)this.qs.newQuery(queries[i]).execute();
+    }
+    return results;
+  }
+
+  private Set asSet(SelectResults results) {
+    return new HashSet(results.asList());
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class CompressedBitmapJUnitTest {
+
+  @Test
+  public void testAddRemoveContains() {
+    CompressedBitmap bitmap = new CompressedBitmap();
+    assertTrue(bitmap.isEmpty());
+    assertTrue(bitmap.add(5));
+    assertFalse(bitmap.add(5));
+    assertTrue(bitmap.add(70000));
+    assertTrue(bitmap.add(0));
+    assertEquals(3, bitmap.getCardinality());
+    assertTrue(bitmap.contains(70000));
+    assertFalse(bitmap.contains(70001));
+    assertTrue(bitmap.remove(70000));
+    assertFalse(bitmap.remove(70000));
+    assertFalse(bitmap.contains(70000));
+    assertEquals("{0,5}", bitmap.toString());
+  }
+
+  @Test
+  public void testDenseContainerConversions() {
+    CompressedBitmap bitmap = new CompressedBitmap();
+    TreeSet<Integer> expected = new TreeSet<Integer>();
+    // fill past the array container limit and empty it again
+    for (int i = 0; i < 3 * CompressedBitmap.ARRAY_MAX; i += 2) {
+      bitmap.add(i);
+      expected.add(i);
+    }
+    assertContents(expected, bitmap);
+    for (int i = 0; i < 3 * CompressedBitmap.ARRAY_MAX; i += 4) {
+      bitmap.remove(i);
+      expected.remove(i);
+    }
+    assertContents(expected, bitmap);
+  }
+
+  @Test
+  public void testRandomOperations() {
+    Random random = new Random(17);
+    CompressedBitmap a = new CompressedBitmap();
+    CompressedBitmap b = new CompressedBitmap();
+    TreeSet<Integer> expectedA = new TreeSet<Integer>();
+    TreeSet<Integer> expectedB = new TreeSet<Integer>();
+    for (int i = 0; i < 50000; i++) {
+      // dense in the first partition, sparse in the others
+      int value = random.nextBoolean() ? random.nextInt(20000) : random.nextInt(1 << 20);
+      if (random.nextInt(4) == 0) {
+        assertEquals(expectedA.remove(value), a.remove(value));
+      } else {
+        assertEquals(expectedA.add(value), a.add(value));
+      }
+      value = random.nextBoolean() ? random.nextInt(20000) : random.nextInt(1 << 20);
+      assertEquals(expectedB.add(value), b.add(value));
+    }
+    assertContents(expectedA, a);
+    assertContents(expectedB, b);
+
+    TreeSet<Integer> and = new TreeSet<Integer>(expectedA);
+    and.retainAll(expectedB);
+    assertContents(and, CompressedBitmap.and(a, b));
+    TreeSet<Integer> or = new TreeSet<Integer>(expectedA);
+    or.addAll(expectedB);
+    assertContents(or, CompressedBitmap.or(a, b));
+
+    // the operands are left alone
+    assertContents(expectedA, a);
+    assertContents(expectedB, b);
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    CompressedBitmap bitmap = new CompressedBitmap();
+    bitmap.add(1);
+    bitmap.add(100000);
+    CompressedBitmap copy = bitmap.copy();
+    copy.add(2);
+    copy.remove(100000);
+    assertEquals("{1,100000}", bitmap.toString());
+    assertEquals("{1,2}", copy.toString());
+  }
+
+  private void assertContents(TreeSet<Integer> expected, CompressedBitmap bitmap) {
+    assertEquals(expected.size(), bitmap.getCardinality());
+    List<Integer> values = new ArrayList<Integer>(expected.size());
+    PrimitiveIterator.OfInt iterator = bitmap.iterator();
+    while (iterator.hasNext()) {
+      values.add(iterator.nextInt());
+    }
+    assertEquals(new ArrayList<Integer>(expected), values);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.internal.cache.RegionEntry;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class EntryOrdinalsJUnitTest {
+
+  @Test
+  public void testAcquireRelease() {
+    EntryOrdinals ordinals = new EntryOrdinals();
+    RegionEntry entry = mock(RegionEntry.class);
+    assertEquals(-1, ordinals.getOrdinal(entry));
+    assertEquals(-1, ordinals.release(entry));
+
+    int ordinal = ordinals.acquire(entry);
+    assertEquals(ordinal, ordinals.acquire(entry));
+    assertEquals(ordinal, ordinals.getOrdinal(entry));
+    assertSame(entry, ordinals.getEntry(ordinal));
+    assertEquals(1, ordinals.size());
+
+    // the ordinal is kept until the last reference is released
+    assertEquals(ordinal, ordinals.release(entry));
+    assertSame(entry, ordinals.getEntry(ordinal));
+    assertEquals(ordinal, ordinals.release(entry));
+    assertNull(ordinals.getEntry(ordinal));
+    assertEquals(-1, ordinals.getOrdinal(entry));
+    assertEquals(0, ordinals.size());
+  }
+
+  @Test
+  public void testFreedOrdinalsAreReused() {
+    EntryOrdinals ordinals = new EntryOrdinals();
+    RegionEntry first = mock(RegionEntry.class);
+    RegionEntry second = mock(RegionEntry.class);
+    int ordinal = ordinals.acquire(first);
+    ordinals.acquire(second);
+    ordinals.release(first);
+    RegionEntry third = mock(RegionEntry.class);
+    assertEquals(ordinal, ordinals.acquire(third));
+    assertSame(third, ordinals.getEntry(ordinal));
+  }
+
+  @Test
+  public void testManyEntries() {
+    EntryOrdinals ordinals = new EntryOrdinals();
+    int count = 5000;
+    RegionEntry[] entries = new RegionEntry[count];
+    Set<Integer> assigned = new HashSet<Integer>();
+    for (int i = 0; i < count; i++) {
+      entries[i] = mock(RegionEntry.class);
+      int ordinal = ordinals.acquire(entries[i]);
+      assertTrue(assigned.add(ordinal));
+      assertTrue(ordinal < count);
+    }
+    assertEquals(count, ordinals.size());
+
+    // release every other entry, the rest must keep their ordinals
+    for (int i = 0; i < count; i += 2) {
+      assertTrue(ordinals.release(entries[i]) >= 0);
+    }
+    assertEquals(count / 2, ordinals.size());
+    for (int i = 0; i < count; i++) {
+      int ordinal = ordinals.getOrdinal(entries[i]);
+      if (i % 2 == 0) {
+        assertEquals(-1, ordinal);
+      } else {
+        assertSame(entries[i], ordinals.getEntry(ordinal));
+      }
+    }
+
+    // the new entries take the freed ordinals
+    for (int i = 0; i < count; i += 2) {
+      entries[i] = mock(RegionEntry.class);
+      assertTrue(ordinals.acquire(entries[i]) < count);
+    }
+    assertEquals(count, ordinals.size());
+  }
+
+  @Test
+  public void testConcurrentAcquireRelease() throws Exception {
+    final EntryOrdinals ordinals = new EntryOrdinals();
+    Thread[] threads = new Thread[4];
+    final Throwable[] failure = new Throwable[1];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        try {
+          RegionEntry[] entries = new RegionEntry[500];
+          for (int i = 0; i < entries.length; i++) {
+            entries[i] = mock(RegionEntry.class);
+          }
+          for (int round = 0; round < 20; round++) {
+            for (RegionEntry entry : entries) {
+              int ordinal = ordinals.acquire(entry);
+              assertSame(entry, ordinals.getEntry(ordinal));
+            }
+            for (RegionEntry entry : entries) {
+              assertTrue(ordinals.release(entry) >= 0);
+            }
+          }
+        } catch (Throwable e) {
+          failure[0] = e;
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure[0] != null) {
+      throw new AssertionError(failure[0]);
+    }
+    assertEquals(0, ordinals.size());
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.internal.index;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.CacheUtils;
+import org.apache.geode.cache.query.Index;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.data.Portfolio;
+import org.apache.geode.cache.query.internal.index.IndexStore.IndexStoreEntry;
+import org.apache.geode.internal.cache.persistence.query.CloseableIterator;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class NumericIndexStoreJUnitTest {
+
+  private static final String[] UNORDERED_QUERIES = new String[] {
+      "select distinct p.ID from /portfolios p where p.ID > 5",
+      "select distinct p.ID from /portfolios p where p.ID >= 5.5",
+      "select distinct p.ID from /portfolios p where p.ID < 3.2",
+      "select distinct p.ID from /portfolios p where p.ID = 7",
+      "select distinct p.ID from /portfolios p where p.ID = 7.5",
+      "select distinct p.ID from /portfolios p where p.ID <> 3",
+      "select distinct p.ID from /portfolios p where p.ID > 2L and p.ID <= 12L",
+      "select distinct p.ID from /portfolios p where p.ID in set(1, 2, 3)",
+      "select distinct p.ID from /portfolios p where p.createTime > 10L",
+      "select distinct p.ID from /portfolios p where p.shortID = null",
+      "select distinct p.ID from /portfolios p where p.shortID > 2",
+  };
+
+  private static final String[] ORDERED_QUERIES = new String[] {
+      "select distinct p.ID from /portfolios p where p.ID > 5 order by p.ID desc",
+      "select distinct p.ID from /portfolios p where p.ID < 15 order by p.ID limit 4",
+  };
+
+  private Region region;
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < 20; i++) {
+      Portfolio p = new Portfolio(i);
+      p.createTime = i * 2;
+      if (i % 3 == 0) {
+        p.shortID = null;
+      } else {
+        p.shortID = (short)(i % 5);
+      }
+      this.region.put(i, p);
+    }
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testNumericExpressionsUseNumericStore() throws Exception {
+    Index id = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    Index time = this.qs.createIndex("timeIndex", "p.createTime", "/portfolios p");
+    Index shortId = this.qs.createIndex("shortIdIndex", "p.shortID", "/portfolios p");
+    Index status = this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    assertTrue(((CompactRangeIndex)id).getIndexStorage() instanceof NumericIndexStore);
+    assertTrue(((CompactRangeIndex)time).getIndexStorage() instanceof NumericIndexStore);
+    assertTrue(((CompactRangeIndex)shortId).getIndexStorage() instanceof NumericIndexStore);
+    assertFalse(((CompactRangeIndex)status).getIndexStorage() instanceof NumericIndexStore);
+  }
+
+  @Test
+  public void testResultsMatchUnindexedQueries() throws Exception {
+    List<Object> expected = new ArrayList<>();
+    for (String query : UNORDERED_QUERIES) {
+      expected.add(new HashSet(execute(query).asList()));
+    }
+    for (String query : ORDERED_QUERIES) {
+      expected.add(execute(query).asList());
+    }
+
+    this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    this.qs.createIndex("timeIndex", "p.createTime", "/portfolios p");
+    this.qs.createIndex("shortIdIndex", "p.shortID", "/portfolios p");
+
+    int i = 0;
+    for (String query : UNORDERED_QUERIES) {
+      assertEquals(query, expected.get(i++), new HashSet(execute(query).asList()));
+    }
+    for (String query : ORDERED_QUERIES) {
+      assertEquals(query, expected.get(i++), execute(query).asList());
+    }
+  }
+
+  @Test
+  public void testUpdatesAndDestroysAreIndexed() throws Exception {
+    this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    String query = "select distinct p.ID from /portfolios p where p.ID >= 18";
+    assertEquals(2, execute(query).size());
+
+    Portfolio p = new Portfolio(3);
+    p.ID = 100;
+    this.region.put(3, p);
+    this.region.destroy(19);
+    SelectResults results = execute(query);
+    assertEquals(2, results.size());
+    assertTrue(results.contains(18));
+    assertTrue(results.contains(100));
+  }
+
+  @Test
+  public void testBigNumberBounds() throws Exception {
+    this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    BigInteger huge = BigInteger.ONE.shiftLeft(64);
+    // fractional bounds are not truncated
+    assertEquals(14, execute("select distinct p.ID from /portfolios p where p.ID >= $1",
+        new BigDecimal("5.5")).size());
+    assertEquals(6, execute("select distinct p.ID from /portfolios p where p.ID <= $1",
+        new BigDecimal("5.5")).size());
+    assertEquals(0, execute("select distinct p.ID from /portfolios p where p.ID = $1",
+        new BigDecimal("5.5")).size());
+    // bounds outside of the long range don't wrap
+    assertEquals(20, execute("select distinct p.ID from /portfolios p where p.ID < $1",
+        huge).size());
+    assertEquals(0, execute("select distinct p.ID from /portfolios p where p.ID > $1",
+        huge).size());
+    assertEquals(20, execute("select distinct p.ID from /portfolios p where p.ID > $1",
+        huge.negate()).size());
+  }
+
+  @Test
+  public void testRemoveThroughMergedIterator() throws Exception {
+    Index shortId = this.qs.createIndex("shortIdIndex", "p.shortID", "/portfolios p");
+    IndexStore store = ((CompactRangeIndex)shortId).getIndexStorage();
+    // the null shortIDs are kept in the inherited map, so the scan is merged
+    CloseableIterator<IndexStoreEntry> itr = store.iterator(null);
+    boolean removed = false;
+    while (itr.hasNext()) {
+      IndexStoreEntry entry = itr.next();
+      if (!removed && Integer.valueOf(2).equals(entry.getDeserializedKey())) {
+        itr.remove();
+        removed = true;
+      }
+    }
+    assertTrue(removed);
+    assertEquals(0, store.size(Integer.valueOf(2)));
+    assertTrue(store.size(Integer.valueOf(1)) > 0);
+    assertEquals(7, store.size(IndexManager.NULL));
+  }
+
+  private SelectResults execute(String query, Object... params) throws Exception {
+    return (SelectResults)this.qs.newQuery(query).execute(params);
+  }
+}
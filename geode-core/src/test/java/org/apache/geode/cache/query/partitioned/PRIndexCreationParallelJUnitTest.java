@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.partitioned;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.query.Index;
+import org.apache.geode.cache.query.QueryService;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.data.PortfolioData;
+import org.apache.geode.cache.query.internal.index.AbstractIndex;
+import org.apache.geode.cache.query.internal.index.PartitionedIndex;
+import org.apache.geode.internal.cache.PartitionedRegion;
+import org.apache.geode.internal.cache.PartitionedRegionTestHelper;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+/**
+ * Verifies the indexes of a PartitionedRegion whose local buckets are
+ * indexed by several threads.
+ */
+@Category(IntegrationTest.class)
+public class PRIndexCreationParallelJUnitTest {
+
+  private static final int ENTRIES = 1000;
+
+  private PartitionedRegion region;
+
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    this.region = (PartitionedRegion)PartitionedRegionTestHelper.createPartitionedRegion("portfolios", "200", 0);
+    for (int j = 0; j < ENTRIES; j++) {
+      this.region.put(Integer.valueOf(j), new PortfolioData(j));
+    }
+    this.qs = this.region.getCache().getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.region.close();
+  }
+
+  @Test
+  public void testCreateIndexOnAllBuckets() throws Exception {
+    Index index = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    assertAllBucketsIndexed(index);
+    SelectResults sr = (SelectResults)this.qs.newQuery("select * from /portfolios p where p.ID < 100").execute();
+    assertEquals(100, sr.size());
+  }
+
+  @Test
+  public void testCreateDefinedIndexesOnAllBuckets() throws Exception {
+    this.qs.defineIndex("idIndex", "p.ID", "/portfolios p");
+    this.qs.defineIndex("typeIndex", "p.type", "/portfolios p");
+    this.qs.defineHashIndex("statusIndex", "p.status", "/portfolios p");
+    List<Index> indexes = this.qs.createDefinedIndexes();
+    assertEquals(3, indexes.size());
+    for (Index index : indexes) {
+      assertAllBucketsIndexed(index);
+    }
+    SelectResults sr = (SelectResults)this.qs.newQuery(
+        "select * from /portfolios p where p.type = 'type1' and p.ID < 300").execute();
+    assertEquals(100, sr.size());
+  }
+
+  private void assertAllBucketsIndexed(Index index) {
+    PartitionedIndex prIndex = (PartitionedIndex)index;
+    assertEquals(this.region.getDataStore().getAllLocalBuckets().size(),
+        prIndex.getNumberOfIndexedBuckets());
+    long values = 0;
+    for (Object bucketIndex : prIndex.getBucketIndexes()) {
+      assertTrue(((AbstractIndex)bucketIndex).isPopulated());
+      values += ((Index)bucketIndex).getStatistics().getNumberOfValues();
+    }
+    assertEquals(ENTRIES, values);
+  }
+}
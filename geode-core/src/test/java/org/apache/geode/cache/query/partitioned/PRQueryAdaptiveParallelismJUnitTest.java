@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.cache.query.partitioned;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.Query;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.cache.query.Struct;
+import org.apache.geode.cache.query.data.PortfolioData;
+import org.apache.geode.cache.query.data.PortfolioPdx;
+import org.apache.geode.cache.query.internal.DefaultQuery;
+import org.apache.geode.cache.query.internal.aggregate.AbstractAggregator;
+import org.apache.geode.internal.cache.PRQueryProcessor;
+import org.apache.geode.internal.cache.PartitionedRegionTestHelper;
+import org.apache.geode.pdx.PdxInstance;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+/**
+ * Verifies the results of queries on a PartitionedRegion whose local buckets
+ * hold enough entries for {@link PRQueryProcessor} to query them in parallel.
+ */
+@Category(IntegrationTest.class)
+public class PRQueryAdaptiveParallelismJUnitTest {
+
+  private static final int ENTRIES = PRQueryProcessor.MIN_ENTRIES_PER_TASK * 4;
+
+  private Region region;
+
+  @Before
+  public void setUp() throws Exception {
+    this.region = PartitionedRegionTestHelper.createPartitionedRegion("portfolios", "200", 0);
+    for (int j = 0; j < ENTRIES; j++) {
+      this.region.put(Integer.valueOf(j), new PortfolioData(j));
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.region.close();
+  }
+
+  @Test
+  public void testSelect() throws Exception {
+    SelectResults resSet = this.region.query("ID >= 100");
+    assertEquals(ENTRIES - 100, resSet.size());
+  }
+
+  @Test
+  public void testCount() throws Exception {
+    SelectResults sr = execute("select count(*) from /portfolios p where p.ID >= 100");
+    assertEquals(Integer.valueOf(ENTRIES - 100), sr.asList().get(0));
+  }
+
+  @Test
+  public void testOrderByWithLimit() throws Exception {
+    SelectResults sr = execute("select distinct p.ID from /portfolios p order by p.ID desc limit 10");
+    List list = sr.asList();
+    assertEquals(10, list.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(ENTRIES - 1 - i), list.get(i));
+    }
+  }
+
+  @Test
+  public void testGroupByAggregates() throws Exception {
+    SelectResults sr = execute("select p.type, count(*), sum(p.ID), min(p.ID), max(p.ID), avg(p.ID) "
+        + "from /portfolios p group by p.type");
+    List<Struct> list = sr.asList();
+    assertEquals(3, list.size());
+    for (int type = 0; type < 3; type++) {
+      int count = 0;
+      long sum = 0;
+      int max = 0;
+      for (int j = type; j < ENTRIES; j += 3) {
+        count++;
+        sum += j;
+        max = j;
+      }
+      Object[] fields = list.get(type).getFieldValues();
+      assertEquals("type" + type, fields[0]);
+      assertEquals(Integer.valueOf(count), fields[1]);
+      assertEquals(AbstractAggregator.downCast(sum), fields[2]);
+      assertEquals(Integer.valueOf(type), fields[3]);
+      assertEquals(Integer.valueOf(max), fields[4]);
+      assertEquals(AbstractAggregator.downCast((double)sum / count), fields[5]);
+    }
+  }
+
+  @Test
+  public void testGroupByWithLimit() throws Exception {
+    SelectResults sr = execute("select p.status, count(p.ID) from /portfolios p group by p.status limit 1");
+    List<Struct> list = sr.asList();
+    assertEquals(1, list.size());
+    assertEquals("active", list.get(0).getFieldValues()[0]);
+    assertEquals(Integer.valueOf(ENTRIES / 2), list.get(0).getFieldValues()[1]);
+  }
+
+  @Test
+  public void testAggregatesWithoutGroupBy() throws Exception {
+    SelectResults sr = execute("select sum(p.ID), max(p.ID) from /portfolios p where p.ID >= 100");
+    Object[] fields = ((Struct)sr.asList().get(0)).getFieldValues();
+    long sum = (long)ENTRIES * (ENTRIES - 1) / 2 - 100 * 99 / 2;
+    assertEquals(AbstractAggregator.downCast(sum), fields[0]);
+    assertEquals(Integer.valueOf(ENTRIES - 1), fields[1]);
+  }
+
+  @Test
+  public void testConcurrentQueries() throws Exception {
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            for (int j = 0; j < 5; j++) {
+              assertEquals(ENTRIES / 2, execute("select * from /portfolios p where p.ID < " + (ENTRIES / 2)).size());
+            }
+          } catch (Throwable t) {
+            synchronized (failure) {
+              failure[0] = t;
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    if (failure[0] != null) {
+      throw new AssertionError(failure[0]);
+    }
+  }
+
+  @Test
+  public void testReadSerializedOnAllBucketGroups() throws Exception {
+    Region pdxRegion = PartitionedRegionTestHelper.createPartitionedRegion("pdxPortfolios", "200", 0);
+    try {
+      for (int j = 0; j < ENTRIES; j++) {
+        pdxRegion.put(Integer.valueOf(j), new PortfolioPdx(j));
+      }
+      // a remote query reads pdx values as PdxInstances and returns them as they are
+      DefaultQuery query = (DefaultQuery)pdxRegion.getCache().getQueryService()
+          .newQuery("select * from /pdxPortfolios p where p.ID >= 0");
+      query.setRemoteQuery(true);
+      SelectResults sr = (SelectResults)query.execute();
+      assertEquals(ENTRIES, sr.size());
+      for (Object value : sr) {
+        assertTrue(value.getClass().getName(), value instanceof PdxInstance);
+      }
+    } finally {
+      pdxRegion.close();
+    }
+  }
+
+  private SelectResults execute(String queryString) throws Exception {
+    Query query = this.region.getCache().getQueryService().newQuery(queryString);
+    return (SelectResults)query.execute();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.DataSerializer;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Compares the bytes allocated per serialization when a HeapDataOutputStream
+ * gets its buffers from {@link HeapBufferPool} with when it allocates them.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class HeapBufferPoolJUnitPerformanceTest {
+
+  private static final int COUNT = 1000000;
+
+  @Test
+  public void testSerializationAllocation() throws IOException {
+    String[] value = new String[20];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = "value-" + i + "-Lorem ipsum dolor sit amet, consectetur adipisicing elit";
+    }
+    for (int j = 0; j < 5; j++) {
+      run("unpooled", value, false);
+      run("pooled", value, true);
+    }
+  }
+
+  private void run(String name, Object value, boolean pooled) throws IOException {
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    long tid = Thread.currentThread().getId();
+    long startBytes = bean.getThreadAllocatedBytes(tid);
+    long start = System.nanoTime();
+    for (int i = 0; i < COUNT; i++) {
+      HeapDataOutputStream hdos = new HeapDataOutputStream(1024, Version.CURRENT, false, pooled);
+      DataSerializer.writeObject(value, hdos);
+      hdos.toByteArray();
+      hdos.close();
+    }
+    long elapsed = System.nanoTime() - start;
+    long allocated = bean.getThreadAllocatedBytes(tid) - startBytes;
+    System.out.println(name + ": " + (allocated / COUNT) + " bytes allocated / op, "
+        + (elapsed / COUNT) + " ns / op");
+  }
+}
@@ -154,4 +154,55 @@ public class HeapDataOutputStreamJUnitTest {
     }
   }
 
+  @Test
+  public void testPooledToByteArrayIsNotPooledArray() {
+    HeapBufferPool.clearThreadBuffers();
+    HeapDataOutputStream out = new HeapDataOutputStream(32, Version.CURRENT, false, true);
+    assertTrue(out.isPooled());
+    byte[] bytes = new byte[32];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte)i;
+    }
+    out.write(bytes, 0, bytes.length);
+    byte[] actual = out.toByteArray();
+    out.close();
+    assertEquals(1, HeapBufferPool.getThreadRetainedCount());
+
+    // reusing the released buffer must not change the array we already returned
+    HeapDataOutputStream out2 = new HeapDataOutputStream(32, Version.CURRENT, false, true);
+    out2.write(new byte[32], 0, 32);
+    assertEquals(0, HeapBufferPool.getThreadRetainedCount());
+    assertTrue(Arrays.equals(bytes, actual));
+    out2.close();
+  }
+
+  @Test
+  public void testPooledToByteArrayReturnsUnpooledArrayWithoutCopying() {
+    HeapBufferPool.clearThreadBuffers();
+    HeapDataOutputStream out = new HeapDataOutputStream(32, Version.CURRENT, false, true);
+    out.write(new byte[100], 0, 100);
+    // the chunks are consolidated into an unpooled array which is returned as is
+    byte[] actual = out.toByteArray();
+    assertSame(actual, out.toByteArray());
+    out.close();
+    HeapBufferPool.clearThreadBuffers();
+  }
+
+  @Test
+  public void testPooledReleasesAllChunksOnClose() {
+    HeapBufferPool.clearThreadBuffers();
+    HeapDataOutputStream out = new HeapDataOutputStream(32, Version.CURRENT, false, true);
+    byte[] bytes = new byte[100];
+    out.write(bytes, 0, bytes.length);
+    assertEquals(bytes.length, out.toByteArray().length);
+    out.close();
+    assertEquals(2, HeapBufferPool.getThreadRetainedCount());
+
+    // a closed pooled stream can be written again
+    out.write(bytes, 0, 10);
+    assertEquals(10, out.toByteArray().length);
+    out.close();
+    HeapBufferPool.clearThreadBuffers();
+  }
+
 }
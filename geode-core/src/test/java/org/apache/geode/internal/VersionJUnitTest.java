@@ -35,6 +35,7 @@ public class VersionJUnitTest {
     compare(Version.GFE_81, Version.GFE_70);
     compare(Version.GFE_81, Version.GFE_71);
     compare(Version.GFE_81, Version.GFE_80);
+    compare(Version.GEODE_110, Version.GFE_90);
   }
   
   private void compare(Version later, Version earlier) {
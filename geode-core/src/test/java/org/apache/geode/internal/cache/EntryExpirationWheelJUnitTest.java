@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.ExpirationAction;
+import org.apache.geode.cache.ExpirationAttributes;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests entry expiration through an {@link EntryExpirationWheel}.
+ */
+@Category(IntegrationTest.class)
+public class EntryExpirationWheelJUnitTest {
+
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    System.setProperty(ExpirationScheduler.TIMING_WHEEL_PROPERTY, "true");
+    System.setProperty(ExpirationScheduler.WHEEL_TICK_PROPERTY, "10");
+    System.setProperty(LocalRegion.EXPIRY_MS_PROPERTY, "true");
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    this.cache = new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty(ExpirationScheduler.TIMING_WHEEL_PROPERTY);
+    System.clearProperty(ExpirationScheduler.WHEEL_TICK_PROPERTY);
+    System.clearProperty(LocalRegion.EXPIRY_MS_PROPERTY);
+    if (this.cache != null) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testEntriesExpireWithoutTasks() {
+    LocalRegion region = (LocalRegion) this.cache.<Integer, String>createRegionFactory(RegionShortcut.LOCAL)
+        .setStatisticsEnabled(true)
+        .setEntryTimeToLive(new ExpirationAttributes(200, ExpirationAction.DESTROY))
+        .create("ttl");
+    for (int i = 0; i < 1000; i++) {
+      region.put(i, "value" + i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      if (region.containsKey(i)) {
+        assertNull(region.getEntryExpiryTask(i));
+      }
+    }
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> assertEquals(0, region.size()));
+  }
+
+  @Test
+  public void testIdleTimeoutKeepsReadEntries() throws Exception {
+    final Region<String, String> region = this.cache.<String, String>createRegionFactory(RegionShortcut.LOCAL)
+        .setStatisticsEnabled(true)
+        .setEntryIdleTimeout(new ExpirationAttributes(500, ExpirationAction.LOCAL_DESTROY))
+        .create("idle");
+    region.put("hot", "value");
+    region.put("cold", "value");
+    long end = System.currentTimeMillis() + 1500;
+    while (System.currentTimeMillis() < end) {
+      assertEquals("value", region.get("hot"));
+      Thread.sleep(50);
+    }
+    assertFalse(region.containsKey("cold"));
+    assertTrue(region.containsKey("hot"));
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> assertFalse(region.containsKey("hot")));
+  }
+
+  @Test
+  public void testUpdatedEntriesAreRescheduled() throws Exception {
+    final Region<String, String> region = this.cache.<String, String>createRegionFactory(RegionShortcut.LOCAL)
+        .setStatisticsEnabled(true)
+        .setEntryTimeToLive(new ExpirationAttributes(500, ExpirationAction.INVALIDATE))
+        .create("update");
+    region.put("key", "value1");
+    Thread.sleep(300);
+    region.put("key", "value2");
+    Thread.sleep(300);
+    assertEquals("value2", region.get("key"));
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> assertNull(region.get("key")));
+    assertTrue(region.containsKey("key"));
+  }
+
+  @Test
+  public void testBucketsExpireTheirEntries() {
+    final Region<Integer, String> region = this.cache.<Integer, String>createRegionFactory(RegionShortcut.PARTITION)
+        .setStatisticsEnabled(true)
+        .setEntryTimeToLive(new ExpirationAttributes(200, ExpirationAction.DESTROY))
+        .create("partitioned");
+    for (int i = 0; i < 1000; i++) {
+      region.put(i, "value" + i);
+    }
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() -> assertEquals(0, region.size()));
+  }
+
+  @Test
+  public void testExpirySlotIsKeptApartFromLastModified() {
+    LocalRegion region = (LocalRegion) this.cache.<String, String>createRegionFactory(RegionShortcut.LOCAL)
+        .create("slots");
+    region.put("key", "value");
+    AbstractRegionEntry re = (AbstractRegionEntry) region.getRegionEntry("key");
+    long lastModified = re.getLastModified();
+    assertEquals(0, re.getExpirySlot());
+    assertTrue(re.compareAndSetExpirySlot(0, AbstractRegionEntry.MAX_EXPIRY_SLOT));
+    assertFalse(re.compareAndSetExpirySlot(0, 1));
+    assertEquals(AbstractRegionEntry.MAX_EXPIRY_SLOT, re.getExpirySlot());
+    assertEquals(lastModified, re.getLastModified());
+    assertTrue(re.compareAndSetExpirySlot(AbstractRegionEntry.MAX_EXPIRY_SLOT, 0));
+    assertEquals(lastModified, re.getLastModified());
+  }
+}
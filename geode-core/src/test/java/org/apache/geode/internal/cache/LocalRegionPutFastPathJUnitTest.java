@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.EntryEvent;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.util.CacheListenerAdapter;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class LocalRegionPutFastPathJUnitTest {
+
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    this.cache = new CacheFactory().set(MCAST_PORT, "0").set(LOCATORS, "").create();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.close();
+  }
+
+  @Test
+  public void testPutReturnsOldValue() {
+    Region<String, String> region = this.cache.<String, String>createRegionFactory(RegionShortcut.LOCAL).create("local");
+    assertNull(region.put("key", "value1"));
+    assertEquals("value1", region.put("key", "value2"));
+    assertEquals("value2", region.get("key"));
+    assertEquals(1, region.size());
+  }
+
+  @Test
+  public void testEventIsClearedAndReused() {
+    LocalRegion region = (LocalRegion) this.cache.createRegionFactory(RegionShortcut.LOCAL).create("local");
+    region.put("key", "value");
+
+    EntryEventImpl event = EntryEventImpl.acquireLocalPutEvent(region, "key2", "value2", null, null);
+    assertNotNull(event);
+    assertNull(EntryEventImpl.acquireLocalPutEvent(region, "key3", "value3", null, null));
+    assertEquals("key2", event.getKey());
+    assertEquals("value2", event.getNewValue());
+    assertNull(event.getOldValue());
+    assertNull(event.getEventId());
+    assertNull(event.getRegionEntry());
+    event.releaseLocalPutEvent();
+    assertNull(event.getRegion());
+    assertNull(event.getKey());
+
+    assertSame(event, EntryEventImpl.acquireLocalPutEvent(region, "key2", "value2", null, null));
+    event.releaseLocalPutEvent();
+  }
+
+  @Test
+  public void testListenerGetsNewEvents() {
+    final List<EntryEvent> events = new ArrayList<EntryEvent>();
+    Region<String, String> region = this.cache.<String, String>createRegionFactory(RegionShortcut.LOCAL).create("local");
+    region.put("key", "value1");
+    region.getAttributesMutator().addCacheListener(new CacheListenerAdapter<String, String>() {
+      @Override
+      public void afterUpdate(EntryEvent<String, String> event) {
+        events.add(event);
+      }
+    });
+    region.put("key", "value2");
+    region.put("key", "value3");
+
+    assertEquals(2, events.size());
+    assertNotSame(events.get(0), events.get(1));
+    assertEquals("value1", events.get(0).getOldValue());
+    assertEquals("value2", events.get(0).getNewValue());
+    assertEquals("value3", events.get(1).getNewValue());
+    assertNotNull(((EntryEventImpl) events.get(1)).getEventId());
+  }
+}
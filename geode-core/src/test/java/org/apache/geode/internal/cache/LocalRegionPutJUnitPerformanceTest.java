@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Compares the bytes allocated per update of a local region when puts use
+ * the put fast path of {@link LocalRegion} with when they create a new
+ * event and event id.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class LocalRegionPutJUnitPerformanceTest {
+
+  private static final int KEYS = 1000;
+
+  private static final int COUNT = 1000000;
+
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    this.cache = new CacheFactory().set(MCAST_PORT, "0").set(LOCATORS, "").create();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.close();
+    System.clearProperty(LocalRegion.DISABLE_PUT_FAST_PATH_PROPERTY);
+  }
+
+  @Test
+  public void testPutAllocation() {
+    Region<Integer, String> fast = this.cache.<Integer, String>createRegionFactory(RegionShortcut.LOCAL).create("fast");
+    System.setProperty(LocalRegion.DISABLE_PUT_FAST_PATH_PROPERTY, "true");
+    Region<Integer, String> slow = this.cache.<Integer, String>createRegionFactory(RegionShortcut.LOCAL).create("slow");
+
+    Integer[] keys = new Integer[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = i;
+    }
+    for (int j = 0; j < 5; j++) {
+      run("event per put", slow, keys);
+      run("put fast path", fast, keys);
+    }
+  }
+
+  private void run(String name, Region<Integer, String> region, Integer[] keys) {
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    long tid = Thread.currentThread().getId();
+    String value = "value";
+    long startBytes = bean.getThreadAllocatedBytes(tid);
+    long start = System.nanoTime();
+    for (int i = 0; i < COUNT; i++) {
+      region.put(keys[i % keys.length], value);
+    }
+    long elapsed = System.nanoTime() - start;
+    long allocated = bean.getThreadAllocatedBytes(tid) - startBytes;
+    System.out.println(name + ": " + (allocated / COUNT) + " bytes allocated / op, "
+        + (elapsed / COUNT) + " ns / op");
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.AttributesFactory;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.DataPolicy;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.Scope;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Compares the heap used by and the throughput of a <code>Long</code> keyed
+ * region kept in the default {@link VMRegionMap} with one kept in a
+ * {@link VMLongKeyRegionMap}.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class LongKeyRegionMapJUnitPerformanceTest {
+
+  private static final int ENTRIES = 1000000;
+  private static final int OPS_PER_THREAD = 5000000;
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    this.cache = new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty(RegionMapFactory.LONG_KEY_REGION_MAP_PROPERTY);
+    this.cache.close();
+  }
+
+  @Test
+  public void testLongKeyRegionMap() throws Exception {
+    for (int j = 0; j < 3; j++) {
+      run("default map", false);
+      run("long key map", true);
+    }
+  }
+
+  private void run(String name, boolean longKeyMap) throws Exception {
+    System.setProperty(RegionMapFactory.LONG_KEY_REGION_MAP_PROPERTY, String.valueOf(longKeyMap));
+    AttributesFactory<Long, Object> af = new AttributesFactory<Long, Object>();
+    af.setScope(Scope.LOCAL);
+    af.setDataPolicy(DataPolicy.NORMAL);
+    af.setKeyConstraint(Long.class);
+    af.setConcurrencyChecksEnabled(false);
+    final Region<Long, Object> region = this.cache.createRegion("longKeys", af.create());
+    final Object value = new Object();
+
+    long before = usedMemory();
+    for (long i = 0; i < ENTRIES; i++) {
+      region.put(i, value);
+    }
+    long used = usedMemory() - before;
+
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int seed = t;
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        int index = seed;
+        for (int i = 0; i < OPS_PER_THREAD; i++) {
+          index = (index * 1103515245 + 12345) & Integer.MAX_VALUE;
+          Long key = Long.valueOf(index % ENTRIES);
+          // nine reads for every update
+          if (i % 10 == 0) {
+            region.put(key, value);
+          } else {
+            region.get(key);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsed = System.nanoTime() - begin;
+    long ops = (long) THREADS * OPS_PER_THREAD;
+    System.out.println(name + ": " + (used / ENTRIES) + " bytes per entry, " + THREADS + " threads, "
+        + (ops * 1000000000L / elapsed) + " ops / s");
+    region.localDestroyRegion();
+  }
+
+  private static long usedMemory() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
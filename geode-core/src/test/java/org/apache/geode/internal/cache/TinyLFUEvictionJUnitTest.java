@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.AttributesFactory;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.CacheLoader;
+import org.apache.geode.cache.EvictionAction;
+import org.apache.geode.cache.EvictionAlgorithm;
+import org.apache.geode.cache.EvictionAttributes;
+import org.apache.geode.cache.LoaderHelper;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.Scope;
+import org.apache.geode.internal.HeapDataOutputStream;
+import org.apache.geode.internal.Version;
+import org.apache.geode.internal.VersionedDataInputStream;
+import org.apache.geode.internal.cache.lru.TinyLFUClockHand;
+import org.apache.geode.internal.cache.xmlcache.CacheXmlGenerator;
+import org.apache.geode.internal.cache.xmlcache.CacheXmlParser;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares the frequency aware eviction of the LFU algorithms with LRU
+ * eviction when a scan runs beside a small set of frequently read entries.
+ */
+@Category(IntegrationTest.class)
+public class TinyLFUEvictionJUnitTest {
+
+  private static final int MAXIMUM = 100;
+  private static final int HOT_KEYS = 80;
+  private static final int SCAN_KEYS = 4000;
+  /** The hot keys are read again after more scan entries than the region holds */
+  private static final int READ_INTERVAL = 200;
+
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    this.cache = new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (this.cache != null) {
+      this.cache.close();
+    }
+  }
+
+  private LocalRegion createRegion(String name, EvictionAttributes evictionAttributes) {
+    AttributesFactory<Object, Object> factory = new AttributesFactory<>();
+    factory.setScope(Scope.LOCAL);
+    factory.setEvictionAttributes(evictionAttributes);
+    factory.setCacheLoader(new CacheLoader<Object, Object>() {
+      @Override
+      public Object load(LoaderHelper<Object, Object> helper) {
+        return "loaded-" + helper.getKey();
+      }
+
+      @Override
+      public void close() {}
+    });
+    return (LocalRegion) this.cache.createRegion(name, factory.create());
+  }
+
+  private void runWorkload(Region<Object, Object> region) {
+    for (int key = 0; key < HOT_KEYS; key++) {
+      region.put(key, "hot-" + key);
+    }
+    for (int i = 0; i < SCAN_KEYS; i++) {
+      region.put("scan-" + i, "cold");
+      if (i % READ_INTERVAL == 0) {
+        for (int key = 0; key < HOT_KEYS; key++) {
+          region.get(key);
+        }
+      }
+    }
+  }
+
+  private int residentHotKeys(Region<Object, Object> region) {
+    int resident = 0;
+    for (int key = 0; key < HOT_KEYS; key++) {
+      if (region.containsKey(key)) {
+        resident++;
+      }
+    }
+    return resident;
+  }
+
+  @Test
+  public void testScanDoesNotEvictFrequentlyUsedEntries() throws Exception {
+    LocalRegion lfu = createRegion("lfu",
+        EvictionAttributes.createLFUEntryAttributes(MAXIMUM, EvictionAction.LOCAL_DESTROY));
+    LocalRegion lru = createRegion("lru",
+        EvictionAttributes.createLRUEntryAttributes(MAXIMUM, EvictionAction.LOCAL_DESTROY));
+    assertEquals(EvictionAlgorithm.LFU_ENTRY, lfu.getAttributes().getEvictionAttributes().getAlgorithm());
+    assertTrue(((VMLRURegionMap) lfu.getRegionMap())._getLruList() instanceof TinyLFUClockHand);
+
+    runWorkload(lfu);
+    runWorkload(lru);
+
+    assertEquals(MAXIMUM, lfu.size());
+    assertEquals(MAXIMUM, lru.size());
+    assertEquals(HOT_KEYS, residentHotKeys(lfu));
+    assertTrue(residentHotKeys(lru) < HOT_KEYS / 2);
+
+    double lfuHitRatio = lfu.getCachePerfStats().getHitRatio();
+    double lruHitRatio = lru.getCachePerfStats().getHitRatio();
+    assertTrue("LFU hit ratio " + lfuHitRatio, lfuHitRatio > 0.9);
+    assertTrue("LRU hit ratio " + lruHitRatio, lruHitRatio < 0.5);
+
+    TinyLFUClockHand list = (TinyLFUClockHand) ((VMLRURegionMap) lfu.getRegionMap())._getLruList();
+    assertTrue(list.getRejections() > 0);
+    assertEquals(MAXIMUM, list.size());
+  }
+
+  @Test
+  public void testMemoryAlgorithm() throws Exception {
+    LocalRegion lfu = createRegion("lfuMemory",
+        EvictionAttributes.createLFUMemoryAttributes(1, EvictionAction.LOCAL_DESTROY));
+    assertTrue(((VMLRURegionMap) lfu.getRegionMap())._getLruList() instanceof TinyLFUClockHand);
+    byte[] value = new byte[10000];
+    for (int i = 0; i < 1000; i++) {
+      lfu.put(i, value);
+    }
+    // a megabyte holds about a hundred of the values
+    assertTrue(lfu.size() < 200);
+    assertTrue(lfu.size() > 0);
+  }
+
+  @Test
+  public void testParseAlgorithm() {
+    assertEquals(EvictionAlgorithm.LFU_ENTRY, EvictionAlgorithm.parseAction("lfu-entry-count"));
+    assertEquals(EvictionAlgorithm.LFU_MEMORY, EvictionAlgorithm.parseAction("lfu-memory-size"));
+    assertEquals(EvictionAlgorithm.LFU_MEMORY, EvictionAlgorithm.parseValue(7));
+    assertTrue(EvictionAlgorithm.LFU_ENTRY.isLFU());
+    assertFalse(EvictionAlgorithm.LFU_ENTRY.isLRU());
+  }
+
+  @Test
+  public void testCacheXml() throws Exception {
+    createRegion("lfuEntryXml",
+        EvictionAttributes.createLFUEntryAttributes(MAXIMUM, EvictionAction.LOCAL_DESTROY));
+    createRegion("lfuMemoryXml",
+        EvictionAttributes.createLFUMemoryAttributes(5, EvictionAction.LOCAL_DESTROY));
+    StringWriter xml = new StringWriter();
+    CacheXmlGenerator.generate(this.cache, new PrintWriter(xml));
+    assertTrue(xml.toString().contains("lfu-entry-count"));
+
+    Cache parsed = CacheXmlParser.parse(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")))
+        .getCacheCreation();
+    EvictionAttributes entry = parsed.getRegion("lfuEntryXml").getAttributes()
+        .getEvictionAttributes();
+    assertEquals(EvictionAlgorithm.LFU_ENTRY, entry.getAlgorithm());
+    assertEquals(MAXIMUM, entry.getMaximum());
+    EvictionAttributes memory = parsed.getRegion("lfuMemoryXml").getAttributes()
+        .getEvictionAttributes();
+    assertEquals(EvictionAlgorithm.LFU_MEMORY, memory.getAlgorithm());
+    assertEquals(5, memory.getMaximum());
+  }
+
+  @Test
+  public void testOlderMembersReceiveLRU() throws Exception {
+    EvictionAttributesImpl attributes = (EvictionAttributesImpl) EvictionAttributes
+        .createLFUEntryAttributes(MAXIMUM, EvictionAction.LOCAL_DESTROY);
+    assertEquals(EvictionAlgorithm.LRU_ENTRY, serialize(attributes, Version.GFE_90).getAlgorithm());
+    assertEquals(EvictionAlgorithm.LFU_ENTRY, serialize(attributes, Version.CURRENT).getAlgorithm());
+    attributes = (EvictionAttributesImpl) EvictionAttributes
+        .createLFUMemoryAttributes(5, EvictionAction.LOCAL_DESTROY);
+    assertEquals(EvictionAlgorithm.LRU_MEMORY, serialize(attributes, Version.GFE_90).getAlgorithm());
+    assertEquals(5, serialize(attributes, Version.GFE_90).getMaximum());
+  }
+
+  private EvictionAttributesImpl serialize(EvictionAttributesImpl attributes, Version version)
+      throws Exception {
+    HeapDataOutputStream out = new HeapDataOutputStream(version);
+    attributes.toData(out);
+    return EvictionAttributesImpl.createFromData(new VersionedDataInputStream(
+        new DataInputStream(new ByteArrayInputStream(out.toByteArray())), version));
+  }
+}
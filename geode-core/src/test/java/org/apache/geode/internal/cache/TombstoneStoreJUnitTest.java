@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.internal.cache.versions.VersionHolder;
+import org.apache.geode.internal.cache.versions.VersionSource;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class TombstoneStoreJUnitTest {
+
+  private TombstoneStore store;
+  private VersionSource member;
+
+  @Before
+  public void setUp() {
+    LocalRegion region = mock(LocalRegion.class);
+    when(region.getName()).thenReturn("region");
+    this.store = new TombstoneStore(region);
+    this.member = mock(VersionSource.class);
+  }
+
+  private RegionEntry entry(Object key) {
+    RegionEntry entry = mock(RegionEntry.class);
+    when(entry.getKey()).thenReturn(key);
+    return entry;
+  }
+
+  private VersionHolder version(int entryVersion, long regionVersion, long timestamp, int dsId) {
+    VersionHolder version = mock(VersionHolder.class);
+    when(version.getEntryVersion()).thenReturn(entryVersion);
+    when(version.getRegionVersion()).thenReturn(regionVersion);
+    when(version.getVersionTimeStamp()).thenReturn(timestamp);
+    when(version.getDistributedSystemId()).thenReturn(dsId);
+    when(version.getMemberID()).thenReturn(this.member);
+    return version;
+  }
+
+  private long add(int i) {
+    return this.store.add(entry(i), version(i, i, i, -1));
+  }
+
+  private List<Long> timestamps(TombstoneStore s) {
+    List<Long> result = new ArrayList<>();
+    s.forEach((entry, version) -> result.add(version.getVersionTimeStamp()));
+    return result;
+  }
+
+  @Test
+  public void testVersionsAreKept() {
+    RegionEntry entry = entry("key");
+    long size = this.store.add(entry, version(0xABCDEF, (7L << 32) + 3, 1234L, 5));
+    assertTrue(size >= TombstoneStore.PER_TOMBSTONE_OVERHEAD);
+    assertEquals(size, this.store.getMemoryEstimate());
+    this.store.add(entry("other"), version(1, 1, 1235L, -1));
+    List<Integer> dsIds = new ArrayList<>();
+    this.store.forEach((e, version) -> {
+      dsIds.add(version.getDistributedSystemId());
+      if (e == entry) {
+        assertEquals(0xABCDEF, version.getEntryVersion());
+        assertEquals((7L << 32) + 3, version.getRegionVersion());
+        assertEquals(7, version.getRegionVersionHighBytes());
+        assertEquals(3, version.getRegionVersionLowBytes());
+        assertEquals(1234L, version.getVersionTimeStamp());
+        assertSame(this.member, version.getMemberID());
+      }
+    });
+    assertEquals(5, dsIds.get(0).intValue());
+    assertEquals(-1, dsIds.get(1).intValue());
+  }
+
+  @Test
+  public void testExpireOldest() {
+    for (int i = 0; i < 100; i++) {
+      add(i);
+    }
+    assertEquals(0L, this.store.getOldestUnexpiredTimestamp());
+    assertEquals(10, this.store.markExpired(timestamp -> timestamp < 50, 10));
+    assertEquals(40, this.store.markExpired(timestamp -> timestamp < 50, Integer.MAX_VALUE));
+    assertEquals(50, this.store.getExpiredCount());
+    assertEquals(50L, this.store.getOldestUnexpiredTimestamp());
+    assertEquals(0L, this.store.getOldestTimestamp());
+
+    long memory = this.store.getMemoryEstimate();
+    TombstoneStore expired = this.store.takeExpired();
+    assertEquals(50, expired.size());
+    assertEquals(0L, (long) timestamps(expired).get(0));
+    assertEquals(memory, expired.getMemoryEstimate() + this.store.getMemoryEstimate());
+    assertEquals(50, this.store.size());
+    assertEquals(0, this.store.getExpiredCount());
+    assertEquals(50L, this.store.getOldestTimestamp());
+
+    assertEquals(50, this.store.markExpired(timestamp -> true, Integer.MAX_VALUE));
+    assertFalse(this.store.hasUnexpired());
+    assertEquals(-1L, this.store.getOldestUnexpiredTimestamp());
+    this.store.takeExpired();
+    assertEquals(0, this.store.size());
+    assertEquals(0L, this.store.getMemoryEstimate());
+  }
+
+  @Test
+  public void testRemoveIfKeepsOrder() {
+    for (int i = 0; i < 100; i++) {
+      add(i);
+    }
+    this.store.markExpired(timestamp -> timestamp < 20, Integer.MAX_VALUE);
+
+    TombstoneStore odd = this.store.removeIf((entry, version) -> version.getEntryVersion() % 2 == 1, false);
+    assertEquals(40, odd.size());
+    assertEquals(60, this.store.size());
+    assertEquals(20, this.store.getExpiredCount());
+
+    TombstoneStore small = this.store.removeIf((entry, version) -> version.getEntryVersion() < 30, true);
+    assertEquals(25, small.size());
+    assertEquals(0, this.store.getExpiredCount());
+
+    List<Long> remaining = timestamps(this.store);
+    assertEquals(35, remaining.size());
+    for (int i = 0; i < remaining.size(); i++) {
+      assertEquals(30L + 2 * i, (long) remaining.get(i));
+    }
+  }
+
+  @Test
+  public void testGrowAndCompact() {
+    for (int i = 0; i < 1000; i++) {
+      add(i);
+    }
+    this.store.markExpired(timestamp -> timestamp < 900, Integer.MAX_VALUE);
+    this.store.takeExpired();
+    for (int i = 1000; i < 3000; i++) {
+      add(i);
+    }
+    List<Long> remaining = timestamps(this.store);
+    assertEquals(2100, remaining.size());
+    for (int i = 0; i < remaining.size(); i++) {
+      assertEquals(900L + i, (long) remaining.get(i));
+    }
+  }
+
+  @Test
+  public void testRetiredStoreRejectsTombstones() {
+    add(1);
+    assertFalse(this.store.retireIfEmpty());
+    assertTrue(add(2) > 0);
+    this.store.markExpired(timestamp -> true, Integer.MAX_VALUE);
+    this.store.takeExpired();
+    assertTrue(this.store.retireIfEmpty());
+    assertEquals(-1L, add(3));
+    assertEquals(0, this.store.size());
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.AttributesFactory;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.DataPolicy;
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.Scope;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class VMLongKeyRegionMapJUnitTest {
+
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    System.setProperty(RegionMapFactory.LONG_KEY_REGION_MAP_PROPERTY, "true");
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    this.cache = new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty(RegionMapFactory.LONG_KEY_REGION_MAP_PROPERTY);
+    this.cache.close();
+  }
+
+  private Region<Long, String> createRegion(String name, Class keyConstraint, boolean replicate) {
+    AttributesFactory<Long, String> af = new AttributesFactory<Long, String>();
+    if (replicate) {
+      af.setScope(Scope.DISTRIBUTED_ACK);
+      af.setDataPolicy(DataPolicy.REPLICATE);
+    } else {
+      af.setScope(Scope.LOCAL);
+      af.setDataPolicy(DataPolicy.NORMAL);
+    }
+    af.setKeyConstraint(keyConstraint);
+    af.setConcurrencyChecksEnabled(replicate);
+    return this.cache.createRegion(name, af.create());
+  }
+
+  @Test
+  public void testLongKeyConstraintSelectsMap() {
+    Region<Long, String> longKeys = createRegion("longKeys", Long.class, false);
+    Region<Long, String> anyKeys = createRegion("anyKeys", null, false);
+    assertTrue(((LocalRegion)longKeys).getRegionMap() instanceof VMLongKeyRegionMap);
+    assertTrue(((LocalRegion)anyKeys).getRegionMap() instanceof VMRegionMap);
+  }
+
+  @Test
+  public void testRegionOperations() {
+    Region<Long, String> region = createRegion("longKeys", Long.class, false);
+    for (long i = -500; i < 500; i++) {
+      region.put(i, "v" + i);
+    }
+    assertEquals(1000, region.size());
+    assertEquals("v-7", region.get(-7L));
+    assertEquals("v7", region.put(7L, "x"));
+    assertEquals("x", region.get(7L));
+    assertTrue(region.containsKey(Long.valueOf(499)));
+    assertFalse(region.containsKey(Long.valueOf(500)));
+
+    for (long i = -500; i < 500; i += 2) {
+      region.destroy(i);
+    }
+    assertEquals(500, region.size());
+    Set<Long> keys = new HashSet<Long>(region.keySet());
+    assertEquals(500, keys.size());
+    for (Long key : keys) {
+      assertTrue(key % 2 != 0);
+    }
+    assertNull(region.get(-500L));
+
+    region.clear();
+    assertEquals(0, region.size());
+    assertNull(region.get(7L));
+  }
+
+  @Test
+  public void testTombstonesAreKept() {
+    Region<Long, String> region = createRegion("versioned", Long.class, true);
+    region.put(1L, "a");
+    region.destroy(1L);
+    assertEquals(0, region.size());
+    RegionEntry tombstone = ((LocalRegion)region).getRegionMap().getEntry(1L);
+    assertNotNull(tombstone);
+    assertTrue(tombstone.isTombstone());
+    region.put(1L, "b");
+    assertEquals("b", region.get(1L));
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.internal.cache.persistence.DiskStoreID;
+import org.apache.geode.internal.cache.versions.VersionSourceIndex;
+import org.apache.geode.internal.cache.versions.VersionTag;
+import org.apache.geode.internal.size.ReflectionSingleObjectSizer;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class VersionedCompactRegionEntryHeapJUnitTest {
+
+  @Test
+  public void compactEntriesAreSmallerThanGeneratedEntries() {
+    assertSmaller(VersionedCompactRegionEntryHeapObjectKey.class, VersionedThinRegionEntryHeapObjectKey.class);
+    assertSmaller(VersionedCompactRegionEntryHeapIntKey.class, VersionedThinRegionEntryHeapIntKey.class);
+    assertSmaller(VersionedCompactStatsRegionEntryHeapObjectKey.class, VersionedStatsRegionEntryHeapObjectKey.class);
+    assertSmaller(VersionedCompactStatsRegionEntryHeapIntKey.class, VersionedStatsRegionEntryHeapIntKey.class);
+  }
+
+  private static void assertSmaller(Class<?> compact, Class<?> generated) {
+    long compactSize = ReflectionSingleObjectSizer.sizeof(compact);
+    long generatedSize = ReflectionSingleObjectSizer.sizeof(generated);
+    assertTrue(compact.getSimpleName() + " is " + compactSize + " bytes but "
+        + generated.getSimpleName() + " is " + generatedSize, compactSize < generatedSize);
+  }
+
+  @Test
+  public void packedVersionsRoundTrip() {
+    DiskStoreID member = new DiskStoreID(1, 2);
+    VersionTag tag = VersionTag.create(member);
+    tag.setEntryVersion(0xABCDEF);
+    tag.setRegionVersion(0x123456789ABCL);
+    tag.setVersionTimeStamp(1000);
+    tag.setDistributedSystemId(-1);
+
+    VersionedCompactRegionEntryHeap entry = createEntry("key");
+    assertFalse(entry.hasValidVersion());
+    assertNull(entry.getMemberID());
+    entry.setVersions(tag);
+
+    assertSame(member, entry.getMemberID());
+    assertEquals(0xABCDEF, entry.getEntryVersion());
+    assertEquals(0x123456789ABCL, entry.getRegionVersion());
+    assertEquals(tag.getRegionVersionHighBytes(), entry.getRegionVersionHighBytes());
+    assertEquals(tag.getRegionVersionLowBytes(), entry.getRegionVersionLowBytes());
+    assertEquals(1000, entry.getVersionTimeStamp());
+    assertEquals(-1, entry.getDistributedSystemId());
+
+    VersionTag copy = entry.asVersionTag();
+    assertEquals(member, copy.getMemberID());
+    assertEquals(tag.getEntryVersion(), copy.getEntryVersion());
+    assertEquals(tag.getRegionVersion(), copy.getRegionVersion());
+    assertEquals(tag.getDistributedSystemId(), copy.getDistributedSystemId());
+
+    DiskStoreID otherMember = new DiskStoreID(3, 4);
+    entry.setMemberID(otherMember);
+    assertSame(otherMember, entry.getMemberID());
+    assertEquals(0x123456789ABCL, entry.getRegionVersion());
+  }
+
+  @Test
+  public void versionSourcesShareAnIndex() {
+    DiskStoreID member = new DiskStoreID(5, 6);
+    int index = VersionSourceIndex.getIndex(member);
+    assertEquals(index, VersionSourceIndex.getIndex(new DiskStoreID(5, 6)));
+    assertEquals(member, VersionSourceIndex.getVersionSource(index));
+    assertEquals(0, VersionSourceIndex.getIndex(null));
+  }
+
+  @Test
+  public void entriesKeepMemberIdsWhenTheIndexesRunOut() {
+    try {
+      VersionedCompactRegionEntryHeap entry = createEntry("key");
+      int free = VersionSourceIndex.MAX_INDEX - VersionSourceIndex.size();
+      for (int i = 0; i < free; i++) {
+        assertTrue(VersionSourceIndex.getIndex(new DiskStoreID(100, i)) < VersionSourceIndex.OVERFLOW_INDEX);
+      }
+      assertFalse(VersionSourceIndex.isFull());
+
+      DiskStoreID member = new DiskStoreID(200, 1);
+      assertEquals(VersionSourceIndex.OVERFLOW_INDEX, VersionSourceIndex.getIndex(member));
+      assertTrue(VersionSourceIndex.isFull());
+      entry.setMemberID(member);
+      assertSame(member, entry.getMemberID());
+      DiskStoreID indexed = new DiskStoreID(100, 0);
+      entry.setMemberID(indexed);
+      assertEquals(indexed, entry.getMemberID());
+      assertNull(VersionSourceIndex.getOverflowSource(entry));
+
+      // new entries no longer depend on an index
+      RegionEntryFactory factory = VersionedCompactRegionEntryHeap.getEntryFactory(false);
+      assertEquals(VersionedThinRegionEntryHeapObjectKey.class,
+          factory.createEntry(mock(RegionEntryContext.class), new Object(), Token.REMOVED_PHASE1).getClass());
+    } finally {
+      VersionSourceIndex.clear();
+    }
+    assertFalse(VersionSourceIndex.isFull());
+    assertEquals(0, VersionSourceIndex.size());
+    assertEquals(1, VersionSourceIndex.getIndex(new DiskStoreID(300, 1)));
+    VersionSourceIndex.clear();
+  }
+
+  @Test
+  public void accessTimesAreRoundedUpToTheGranularity() throws Exception {
+    long now = System.currentTimeMillis();
+    for (long time = now; time < now + 1000; time += 7) {
+      long approximation = VersionedCompactStatsRegionEntryHeap.toAccessTime(
+          VersionedCompactStatsRegionEntryHeap.toAccessTick(time));
+      assertTrue(approximation >= time);
+      assertTrue(approximation < time + VersionedCompactStatsRegionEntryHeap.ACCESS_TIME_GRANULARITY);
+    }
+    assertEquals(0, VersionedCompactStatsRegionEntryHeap.toAccessTime(
+        VersionedCompactStatsRegionEntryHeap.toAccessTick(0)));
+
+    VersionedCompactStatsRegionEntryHeap entry = new VersionedCompactStatsRegionEntryHeapIntKey(
+        mock(RegionEntryContext.class), 1, Token.REMOVED_PHASE1);
+    entry.updateStatsForGet(true, now);
+    entry.updateStatsForGet(false, now);
+    assertTrue(entry.getLastAccessed() >= now);
+    assertEquals(1, entry.getHitCount());
+    assertEquals(1, entry.getMissCount());
+  }
+
+  @Test
+  public void factoryKeepsInlinedKeysInGeneratedEntries() {
+    RegionEntryFactory factory = VersionedCompactRegionEntryHeap.getEntryFactory(false);
+    RegionEntryContext context = mock(RegionEntryContext.class);
+    assertEquals(VersionedCompactRegionEntryHeapIntKey.class,
+        factory.createEntry(context, 1, Token.REMOVED_PHASE1).getClass());
+    assertEquals(VersionedThinRegionEntryHeapLongKey.class,
+        factory.createEntry(context, 1L, Token.REMOVED_PHASE1).getClass());
+    assertEquals(VersionedCompactRegionEntryHeapObjectKey.class,
+        factory.createEntry(context, new Object(), Token.REMOVED_PHASE1).getClass());
+  }
+
+  private static VersionedCompactRegionEntryHeap createEntry(Object key) {
+    return new VersionedCompactRegionEntryHeapObjectKey(mock(RegionEntryContext.class), key, Token.REMOVED_PHASE1);
+  }
+}
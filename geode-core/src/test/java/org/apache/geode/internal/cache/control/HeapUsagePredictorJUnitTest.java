@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.control;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class HeapUsagePredictorJUnitTest {
+
+  @Test
+  public void testSteadyGrowthIsExtrapolated() {
+    HeapUsagePredictor predictor = new HeapUsagePredictor();
+    assertEquals(0, predictor.predict(1000));
+    // one megabyte promoted every second
+    for (int i = 0; i <= 20; i++) {
+      predictor.sample(i * 1000L, i * 1000000L);
+    }
+    assertEquals(1000000, predictor.getGrowthRate(), 1000);
+    assertEquals(22000000, predictor.predict(2000), 2000);
+    assertEquals(500000, predictor.getGrowth(500), 500);
+  }
+
+  @Test
+  public void testCollectionDoesNotLowerTheRate() {
+    HeapUsagePredictor predictor = new HeapUsagePredictor(1.0);
+    predictor.sample(0, 1000);
+    predictor.sample(10, 2000);
+    assertEquals(100000, predictor.getGrowthRate());
+    // a collection freed memory, the rate is kept and the usage restarts from the sample
+    predictor.sample(20, 500);
+    assertEquals(100000, predictor.getGrowthRate());
+    assertEquals(1500, predictor.predict(10));
+    predictor.sample(30, 1500);
+    assertEquals(100000, predictor.getGrowthRate());
+  }
+
+  @Test
+  public void testBurstRaisesThePrediction() {
+    HeapUsagePredictor predictor = new HeapUsagePredictor();
+    for (int i = 0; i <= 10; i++) {
+      predictor.sample(i * 1000L, 1000000L);
+    }
+    assertEquals(0, predictor.getGrowthRate());
+    predictor.sample(11000, 11000000);
+    assertTrue(predictor.predict(2000) > 11000000 + 5000000);
+  }
+}
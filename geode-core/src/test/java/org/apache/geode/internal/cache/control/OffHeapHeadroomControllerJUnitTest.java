@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.control;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class OffHeapHeadroomControllerJUnitTest {
+
+  @Test
+  public void testShortfallIsEvicted() {
+    OffHeapHeadroomController controller = new OffHeapHeadroomController(1000, 100, 50);
+    assertEquals(OffHeapHeadroomController.EVICT, controller.sample(0, 600, 600));
+    assertEquals(400, controller.getBytesToEvict());
+    assertEquals(OffHeapHeadroomController.NONE, controller.sample(10, 1000, 600));
+    assertEquals(0, controller.getBytesToEvict());
+  }
+
+  @Test
+  public void testFragmentationIsDefragmentedThenEvicted() {
+    OffHeapHeadroomController controller = new OffHeapHeadroomController(1000, 100, 50);
+    assertEquals(OffHeapHeadroomController.DEFRAGMENT, controller.sample(0, 2000, 10));
+    // the defragmentation did not help, evict once and wait for the next one
+    assertEquals(OffHeapHeadroomController.EVICT, controller.sample(10, 2000, 10));
+    assertEquals(100, controller.getBytesToEvict());
+    assertEquals(OffHeapHeadroomController.NONE, controller.sample(20, 2100, 10));
+    assertEquals(OffHeapHeadroomController.DEFRAGMENT, controller.sample(50, 2100, 10));
+    assertEquals(OffHeapHeadroomController.NONE, controller.sample(60, 2100, 200));
+  }
+
+  @Test
+  public void testFragmentTargetIsAtMostTheFreeBytesTarget() {
+    OffHeapHeadroomController controller = new OffHeapHeadroomController(1000, 4096, 50);
+    assertEquals(1000, controller.getFragmentTarget());
+    assertEquals(1000, controller.getFreeBytesTarget());
+    assertEquals(OffHeapHeadroomController.NONE, controller.sample(0, 1000, 1000));
+  }
+}
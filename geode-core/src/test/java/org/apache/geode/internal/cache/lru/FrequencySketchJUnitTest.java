@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.lru;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class FrequencySketchJUnitTest {
+
+  @Test
+  public void testIncrement() {
+    FrequencySketch sketch = new FrequencySketch(512);
+    assertEquals(0, sketch.frequency(42));
+    for (int i = 1; i <= 10; i++) {
+      sketch.increment(42);
+      assertEquals(i, sketch.frequency(42));
+    }
+  }
+
+  @Test
+  public void testCountersSaturate() {
+    FrequencySketch sketch = new FrequencySketch(512);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(7);
+    }
+    assertEquals(15, sketch.frequency(7));
+  }
+
+  @Test
+  public void testResetHalvesFrequencies() {
+    FrequencySketch sketch = new FrequencySketch(512);
+    for (int i = 0; i < 10; i++) {
+      sketch.increment(3);
+    }
+    sketch.reset();
+    assertEquals(5, sketch.frequency(3));
+  }
+
+  @Test
+  public void testFrequenciesAgeAfterSample() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    for (int i = 0; i < 8; i++) {
+      sketch.increment(-1);
+    }
+    // ten times the capacity of single uses triggers at least one halving
+    for (int i = 0; i < 10 * sketch.capacity(); i++) {
+      sketch.increment(i);
+    }
+    assertTrue(sketch.frequency(-1) < 8);
+  }
+
+  @Test
+  public void testHotKeysAreMoreFrequent() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int round = 0; round < 5; round++) {
+      for (int key = 0; key < 100; key++) {
+        sketch.increment(key);
+      }
+    }
+    for (int key = 1000; key < 1500; key++) {
+      sketch.increment(key);
+    }
+    for (int key = 0; key < 100; key++) {
+      assertTrue(sketch.frequency(key) >= 5);
+    }
+  }
+
+  @Test
+  public void testEnsureCapacity() {
+    FrequencySketch sketch = new FrequencySketch(10);
+    assertEquals(16, sketch.capacity());
+    sketch.ensureCapacity(1000);
+    assertEquals(1024, sketch.capacity());
+    sketch.ensureCapacity(100);
+    assertEquals(1024, sketch.capacity());
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.lru;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.AttributesFactory;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.internal.cache.InternalRegionArguments;
+import org.apache.geode.internal.cache.lru.StripedLRUClockHandJUnitTest.TestNode;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Compares the throughput of the single lock {@link NewLRUClockHand} with
+ * the {@link StripedLRUClockHand} when many threads append, touch, unlink and
+ * evict entries of the same LRU list, as they do on a hot LRU region.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class StripedLRUClockHandJUnitPerformanceTest {
+
+  private static final int ENTRIES = 100000;
+  private static final int OPS_PER_THREAD = 2000000;
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+  private Cache cache;
+  private Region region;
+  private EnableLRU ccHelper;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    this.cache = new CacheFactory(props).create();
+    this.region = this.cache.createRegion("contended", new AttributesFactory().create());
+    this.ccHelper = new LRUCapacityController(ENTRIES, this.region).getLRUHelper();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.close();
+  }
+
+  @Test
+  public void testContendedLRUList() throws Exception {
+    for (int j = 0; j < 3; j++) {
+      run("single lock", new NewLRUClockHand(this.region, this.ccHelper, new InternalRegionArguments()));
+      run("striped", new StripedLRUClockHand(this.region, this.ccHelper, new InternalRegionArguments(),
+          THREADS * 4));
+    }
+  }
+
+  private void run(String name, final NewLRUClockHand clock) throws Exception {
+    final TestNode[] nodes = new TestNode[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      nodes[i] = new TestNode(i);
+      clock.appendEntry(nodes[i]);
+    }
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int seed = t;
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        int index = seed;
+        for (int i = 0; i < OPS_PER_THREAD; i++) {
+          index = (index * 1103515245 + 12345) & Integer.MAX_VALUE;
+          TestNode node = nodes[index % ENTRIES];
+          switch (i & 3) {
+            case 0:
+              // an update unlinks and re-appends the entry
+              if (clock.unlinkEntry(node)) {
+                node.unsetEvicted();
+                clock.appendEntry(node);
+              }
+              break;
+            case 1:
+              // eviction followed by the entry being faulted back in
+              LRUClockNode lru = clock.getLRUEntry();
+              if (lru != null) {
+                lru.unsetEvicted();
+                clock.appendEntry(lru);
+              }
+              break;
+            default:
+              node.setRecentlyUsed();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long elapsed = System.nanoTime() - begin;
+    long ops = (long) THREADS * OPS_PER_THREAD;
+    System.out.println(name + ": " + THREADS + " threads, " + (ops * 1000000000L / elapsed)
+        + " ops / s");
+  }
+}
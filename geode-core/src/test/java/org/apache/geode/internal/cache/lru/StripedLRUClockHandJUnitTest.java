@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.lru;
+
+import static org.apache.geode.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.AttributesFactory;
+import org.apache.geode.cache.Cache;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.Region;
+import org.apache.geode.internal.cache.InternalRegionArguments;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class StripedLRUClockHandJUnitTest {
+
+  private Cache cache;
+  private Region region;
+  private EnableLRU ccHelper;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    this.cache = new CacheFactory(props).create();
+    this.region = this.cache.createRegion("striped", new AttributesFactory().create());
+    this.ccHelper = new LRUCapacityController(1000, this.region).getLRUHelper();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (this.cache != null) {
+      this.cache.close();
+    }
+  }
+
+  private StripedLRUClockHand createClock(int stripes) {
+    return new StripedLRUClockHand(this.region, this.ccHelper, new InternalRegionArguments(), stripes);
+  }
+
+  @Test
+  public void testSingleStripeKeepsLRUOrder() throws Exception {
+    StripedLRUClockHand clock = createClock(1);
+    TestNode[] nodes = new TestNode[10];
+    for (int i = 0; i < 10; i++) {
+      nodes[i] = new TestNode(i);
+      clock.appendEntry(nodes[i]);
+      if (i % 2 == 0) {
+        nodes[i].setRecentlyUsed();
+      }
+    }
+    for (int i = 1; i < 10; i += 2) {
+      assertSame(nodes[i], clock.getLRUEntry());
+    }
+    for (int i = 0; i < 10; i += 2) {
+      assertSame(nodes[i], clock.getLRUEntry());
+    }
+    assertNull(clock.getLRUEntry());
+  }
+
+  @Test
+  public void testEveryEntryIsEvictedOnce() throws Exception {
+    StripedLRUClockHand clock = createClock(16);
+    Set<TestNode> expected = new HashSet<>();
+    List<TestNode> unlinked = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      TestNode node = new TestNode(i);
+      clock.appendEntry(node);
+      if (i % 5 == 0) {
+        node.setRecentlyUsed();
+      }
+      if (i % 3 == 0) {
+        unlinked.add(node);
+      } else {
+        expected.add(node);
+      }
+    }
+    assertEquals(1000, clock.size());
+    for (TestNode node : unlinked) {
+      assertTrue(clock.unlinkEntry(node));
+      assertFalse(clock.unlinkEntry(node));
+    }
+    assertEquals(expected.size(), clock.size());
+    assertEquals(expected.size(), clock.getExpensiveListCount());
+
+    Set<LRUClockNode> evicted = new HashSet<>();
+    LRUClockNode node;
+    while ((node = clock.getLRUEntry()) != null) {
+      assertTrue(evicted.add(node));
+      assertFalse(node.testRecentlyUsed());
+    }
+    assertEquals(expected, evicted);
+    assertEquals(0, clock.size());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    StripedLRUClockHand clock = createClock(8);
+    for (int i = 0; i < 100; i++) {
+      clock.appendEntry(new TestNode(i));
+    }
+    clock.clear(null);
+    assertEquals(0, clock.size());
+    assertEquals(0, clock.getExpensiveListCount());
+    assertNull(clock.getLRUEntry());
+  }
+
+  @Test
+  public void testConcurrentAppendUnlinkAndEvict() throws Exception {
+    final StripedLRUClockHand clock = createClock(8);
+    final int threads = 8;
+    final int perThread = 10000;
+    final Set<LRUClockNode> evicted = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int base = t * perThread;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < perThread; i++) {
+            TestNode node = new TestNode(base + i);
+            clock.appendEntry(node);
+            if (i % 3 == 0) {
+              clock.unlinkEntry(node);
+            } else if (i % 3 == 1) {
+              LRUClockNode lru = clock.getLRUEntry();
+              if (lru != null) {
+                assertTrue(evicted.add(lru));
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      LRUClockNode node;
+      while ((node = clock.getLRUEntry()) != null) {
+        assertTrue(evicted.add(node));
+      }
+      assertEquals(0, clock.size());
+      assertEquals(0, clock.getExpensiveListCount());
+      // every entry that wasn't unlinked must have been evicted exactly once
+      int kept = 0;
+      for (LRUClockNode e : evicted) {
+        if (((TestNode) e).id % perThread % 3 != 0) {
+          kept++;
+        }
+      }
+      assertEquals(threads * (perThread - (perThread + 2) / 3), kept);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** test implementation of an LRUClockNode */
+  static class TestNode implements LRUClockNode {
+    final int id;
+    private LRUClockNode next;
+    private LRUClockNode prev;
+    private volatile boolean recentlyUsed;
+    private volatile boolean evicted;
+
+    TestNode(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public void setNextLRUNode(LRUClockNode next) {
+      this.next = next;
+    }
+
+    @Override
+    public void setPrevLRUNode(LRUClockNode prev) {
+      this.prev = prev;
+    }
+
+    @Override
+    public LRUClockNode nextLRUNode() {
+      return this.next;
+    }
+
+    @Override
+    public LRUClockNode prevLRUNode() {
+      return this.prev;
+    }
+
+    @Override
+    public int updateEntrySize(EnableLRU ccHelper) {
+      return 0;
+    }
+
+    @Override
+    public int updateEntrySize(EnableLRU ccHelper, Object value) {
+      return 0;
+    }
+
+    @Override
+    public int getEntrySize() {
+      return 1;
+    }
+
+    @Override
+    public boolean testRecentlyUsed() {
+      return this.recentlyUsed;
+    }
+
+    @Override
+    public void setRecentlyUsed() {
+      this.recentlyUsed = true;
+    }
+
+    @Override
+    public void unsetRecentlyUsed() {
+      this.recentlyUsed = false;
+    }
+
+    @Override
+    public void setEvicted() {
+      this.evicted = true;
+    }
+
+    @Override
+    public void unsetEvicted() {
+      this.evicted = false;
+    }
+
+    @Override
+    public boolean testEvicted() {
+      return this.evicted;
+    }
+  }
+}
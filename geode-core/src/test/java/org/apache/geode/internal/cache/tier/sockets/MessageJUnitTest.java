@@ -120,6 +120,13 @@ public class MessageJUnitTest {
     verify(mockPart1, times(2)).clear();
   }
 
+  @Test
+  public void serializedFormOfBytesPartIsNotCopied() {
+    byte[] bytes = new byte[] {1, 2, 3};
+    message.addBytesPart(bytes);
+    assertSame(bytes, message.getPart(0).getSerializedForm());
+  }
+
   // TODO many more tests are needed
 
 }
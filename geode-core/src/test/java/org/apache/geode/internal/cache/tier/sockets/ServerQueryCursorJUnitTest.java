@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.cache.tier.sockets;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.query.QueryResultIterator;
+import org.apache.geode.cache.query.data.PortfolioData;
+import org.apache.geode.cache.query.internal.DefaultQuery;
+import org.apache.geode.internal.cache.PartitionedRegionTestHelper;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class ServerQueryCursorJUnitTest {
+
+  private static final int ENTRIES = 500;
+
+  private Region region;
+
+  @Before
+  public void setUp() throws Exception {
+    this.region = PartitionedRegionTestHelper.createPartitionedRegion("portfolios", "200", 0);
+    for (int j = 0; j < ENTRIES; j++) {
+      this.region.put(Integer.valueOf(j), new PortfolioData(j));
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.region.close();
+  }
+
+  @Test
+  public void testStreamsAllBucketsOfPartitionedRegion() throws Exception {
+    ServerQueryCursor cursor = open("select p.ID from /portfolios p where p.ID >= 100");
+    assertTrue(cursor.hasMore());
+    Set ids = new HashSet();
+    int chunks = 0;
+    while (cursor.hasMore()) {
+      List chunk = cursor.nextChunk(7);
+      assertTrue(chunk.size() <= 7);
+      ids.addAll(chunk);
+      chunks++;
+    }
+    assertEquals(ENTRIES - 100, ids.size());
+    assertTrue(chunks >= (ENTRIES - 100) / 7);
+    assertTrue(cursor.nextChunk(7).isEmpty());
+  }
+
+  @Test
+  public void testOrderByWithLimitIsExecutedAsAWhole() throws Exception {
+    ServerQueryCursor cursor = open("select distinct p.ID from /portfolios p order by p.ID limit 20");
+    List ids = new ArrayList();
+    while (cursor.hasMore()) {
+      List chunk = cursor.nextChunk(6);
+      assertFalse(chunk.isEmpty());
+      ids.addAll(chunk);
+    }
+    assertEquals(20, ids.size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals(Integer.valueOf(i), ids.get(i));
+    }
+  }
+
+  @Test
+  public void testCloseDropsRemainingRows() throws Exception {
+    ServerQueryCursor cursor = open("select * from /portfolios p");
+    assertEquals(10, cursor.nextChunk(10).size());
+    cursor.close();
+    assertFalse(cursor.hasMore());
+    assertTrue(cursor.nextChunk(10).isEmpty());
+  }
+
+  @Test
+  public void testIdle() throws Exception {
+    ServerQueryCursor cursor = open("select * from /portfolios p");
+    assertFalse(cursor.isIdle(System.currentTimeMillis()));
+    assertTrue(cursor.isIdle(System.currentTimeMillis() + ServerQueryCursor.IDLE_TIMEOUT + 1));
+  }
+
+  @Test
+  public void testExecuteStreamingLocally() throws Exception {
+    QueryResultIterator itr = this.region.getCache().getQueryService().executeStreaming(
+        "select p.ID from /portfolios p where p.ID < $1", new Object[] {Integer.valueOf(10)}, 3);
+    Set ids = new HashSet();
+    while (itr.hasNext()) {
+      ids.add(itr.next());
+    }
+    itr.close();
+    itr.close();
+    assertEquals(10, ids.size());
+  }
+
+  private ServerQueryCursor open(String queryString) throws Exception {
+    DefaultQuery query = (DefaultQuery)this.region.getCache().getQueryService().newQuery(queryString);
+    ServerQueryCursor cursor = new ServerQueryCursor(this.region.getCache(), query, null,
+        query.getRegionsInQuery(null), null);
+    cursor.execute();
+    return cursor;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.size;
+
+import static org.apache.geode.internal.size.SizeTestUtil.*;
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.util.ObjectSizer;
+import org.apache.geode.pdx.internal.PdxInstanceImpl;
+import org.apache.geode.pdx.internal.PdxType;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class CachedLayoutObjectSizerJUnitTest {
+
+  private final ObjectSizer sizer = ObjectSizer.CACHED_LAYOUT_SIZE;
+
+  @Test
+  public void sizesByteArraysAndStringsFromTheirLength() {
+    assertEquals(roundup(OBJECT_SIZE + 4 + 5), sizer.sizeof(new byte[5]));
+    assertEquals(roundup(OBJECT_SIZE + 4 + 15), sizer.sizeof(new byte[15]));
+    assertEquals(ObjectSizer.SIZE_CLASS_ONCE.sizeof("1234567890"), sizer.sizeof("1234567890"));
+  }
+
+  @Test
+  public void sizesEachInstanceOfAClass() {
+    TestObject t1 = new TestObject(5);
+    TestObject t2 = new TestObject(15);
+    assertEquals(roundup(OBJECT_SIZE + REFERENCE_SIZE) + roundup(OBJECT_SIZE + 4 + 5), sizer.sizeof(t1));
+    assertEquals(roundup(OBJECT_SIZE + REFERENCE_SIZE) + roundup(OBJECT_SIZE + 4 + 15), sizer.sizeof(t2));
+  }
+
+  @Test
+  public void matchesReflectionObjectSizer() {
+    HashMap<Object, Object> map = new HashMap<Object, Object>();
+    ArrayList<Object> list = new ArrayList<Object>();
+    for (int i = 0; i < 100; i++) {
+      map.put("key" + i, new TestObject(i));
+      list.add(new long[i]);
+    }
+    list.add(map);
+    // a cycle and an object reachable twice are only counted once
+    list.add(list);
+    list.add(map.get("key7"));
+    Object[] array = new Object[] { list, map, null, "shared" };
+
+    ObjectSizer reflection = ObjectSizer.REFLECTION_SIZE;
+    assertEquals(reflection.sizeof(map), sizer.sizeof(map));
+    assertEquals(reflection.sizeof(list), sizer.sizeof(list));
+    assertEquals(reflection.sizeof(array), sizer.sizeof(array));
+    // the traversal state left behind by the first call does not change the result
+    assertEquals(reflection.sizeof(array), sizer.sizeof(array));
+  }
+
+  @Test
+  public void skipsExcludedObjectsAndWeakReferents() {
+    int sizeWithoutReference = sizer.sizeof(new TestHolder(null));
+    assertEquals(sizeWithoutReference, sizer.sizeof(new TestHolder(Thread.currentThread().getContextClassLoader())));
+    assertNotEquals(sizeWithoutReference, sizer.sizeof(new TestHolder("hello")));
+
+    WeakReference<Object> reference = new WeakReference<Object>(new byte[1000]);
+    assertEquals(ObjectSizer.REFLECTION_SIZE.sizeof(reference), sizer.sizeof(reference));
+    assertTrue(sizer.sizeof(reference) < 1000);
+  }
+
+  @Test
+  public void sizesPdxInstancesFromTheirSerializedLength() throws Exception {
+    PdxInstanceImpl small = createPdxInstance(0);
+    PdxInstanceImpl large = createPdxInstance(800);
+    assertEquals(800, large.getSerializedSize() - small.getSerializedSize());
+    assertEquals(800, sizer.sizeof(large) - sizer.sizeof(small));
+  }
+
+  private static PdxInstanceImpl createPdxInstance(int length) {
+    PdxType type = new PdxType("test", false);
+    return new PdxInstanceImpl(type, new DataInputStream(new ByteArrayInputStream(new byte[length])), length);
+  }
+
+  private static class TestObject {
+    private final byte[] field;
+
+    TestObject(int size) {
+      this.field = new byte[size];
+    }
+  }
+
+  private static class TestHolder {
+    private final Object reference;
+
+    TestHolder(Object reference) {
+      this.reference = reference;
+    }
+  }
+}
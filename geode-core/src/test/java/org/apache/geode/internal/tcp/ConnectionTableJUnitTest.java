@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.tcp;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.distributed.internal.DM;
+import org.apache.geode.distributed.internal.InternalDistributedSystem;
+import org.apache.geode.distributed.internal.membership.InternalDistributedMember;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+/**
+ * Tests the striping of shared ordered connections in {@link ConnectionTable}.
+ */
+@Category(UnitTest.class)
+public class ConnectionTableJUnitTest {
+
+  private static final int STRIPES = 4;
+
+  private ConnectionTable createTable(int stripes) throws Exception {
+    TCPConduit conduit = mock(TCPConduit.class);
+    DM dm = mock(DM.class);
+    InternalDistributedSystem system = mock(InternalDistributedSystem.class);
+    when(conduit.getDM()).thenReturn(dm);
+    when(dm.getSystem()).thenReturn(system);
+    when(system.isShareSockets()).thenReturn(true);
+    return new ConnectionTable(conduit, stripes);
+  }
+
+  private Connection addStripe(ConnectionTable table, InternalDistributedMember member,
+      int stripe, long uniqueId, long messagesSent) {
+    Connection conn = mock(Connection.class);
+    when(conn.getUniqueId()).thenReturn(uniqueId);
+    when(conn.getMessagesSent()).thenReturn(messagesSent);
+    table.orderedConnectionMap.put(ConnectionTable.getSharedOrderedKey(member, stripe), conn);
+    return conn;
+  }
+
+  @Test
+  public void testStripeSelectedByThreadId() throws Exception {
+    final ConnectionTable table = createTable(STRIPES);
+    final InternalDistributedMember member = mock(InternalDistributedMember.class);
+    final Object[] keys = new Object[8];
+    final Object[] againKeys = new Object[keys.length];
+    final long[] threadIds = new long[keys.length];
+    Thread[] threads = new Thread[keys.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread(() -> {
+        threadIds[index] = Thread.currentThread().getId();
+        keys[index] = table.getSharedOrderedKey(member);
+        againKeys[index] = table.getSharedOrderedKey(member);
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < keys.length; i++) {
+      int stripe = (int) (threadIds[i] % STRIPES);
+      assertEquals(ConnectionTable.getSharedOrderedKey(member, stripe), keys[i]);
+      // a thread always gets the same stripe, without allocating a new key
+      assertSame(keys[i], againKeys[i]);
+    }
+  }
+
+  @Test
+  public void testStripeKeys() throws Exception {
+    InternalDistributedMember member = mock(InternalDistributedMember.class);
+    InternalDistributedMember other = mock(InternalDistributedMember.class);
+    // the first stripe is keyed by the member so a single stripe works as before
+    assertSame(member, ConnectionTable.getSharedOrderedKey(member, 0));
+    assertSame(member, createTable(1).getSharedOrderedKey(member));
+    assertEquals(ConnectionTable.getSharedOrderedKey(member, 2),
+        ConnectionTable.getSharedOrderedKey(member, 2));
+    assertNotEquals(ConnectionTable.getSharedOrderedKey(member, 1),
+        ConnectionTable.getSharedOrderedKey(member, 2));
+    assertNotEquals(ConnectionTable.getSharedOrderedKey(member, 1),
+        ConnectionTable.getSharedOrderedKey(other, 1));
+  }
+
+  @Test
+  public void testRemoveEndpointRemovesAllStripes() throws Exception {
+    ConnectionTable table = createTable(STRIPES);
+    InternalDistributedMember member = mock(InternalDistributedMember.class);
+    InternalDistributedMember other = mock(InternalDistributedMember.class);
+    Connection[] conns = new Connection[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      conns[i] = addStripe(table, member, i, i, 0);
+    }
+    Connection otherConn = addStripe(table, other, 1, 10, 0);
+
+    table.removeEndpoint(member, "test", false);
+
+    for (int i = 0; i < STRIPES; i++) {
+      verify(conns[i]).closePartialConnect("test", false);
+    }
+    verify(otherConn, never()).closePartialConnect(anyString(), anyBoolean());
+    assertEquals(1, table.orderedConnectionMap.size());
+    assertSame(otherConn,
+        table.orderedConnectionMap.get(ConnectionTable.getSharedOrderedKey(other, 1)));
+  }
+
+  @Test
+  public void testRemoveSharedConnectionFindsItsStripe() throws Exception {
+    ConnectionTable table = createTable(STRIPES);
+    InternalDistributedMember member = mock(InternalDistributedMember.class);
+    Connection[] conns = new Connection[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      conns[i] = addStripe(table, member, i, i, 0);
+    }
+
+    // a connection that is not in the table is not removed from any stripe
+    table.removeSharedConnection("test", member, true, mock(Connection.class));
+    assertEquals(STRIPES, table.orderedConnectionMap.size());
+
+    table.removeSharedConnection("test", member, true, conns[2]);
+    verify(conns[2]).closePartialConnect("test", false);
+    assertEquals(STRIPES - 1, table.orderedConnectionMap.size());
+    assertNull(table.orderedConnectionMap.get(ConnectionTable.getSharedOrderedKey(member, 2)));
+    for (int i = 0; i < STRIPES; i++) {
+      if (i != 2) {
+        verify(conns[i], never()).closePartialConnect(anyString(), anyBoolean());
+      }
+    }
+  }
+
+  @Test
+  public void testStateRecordsEveryStripe() throws Exception {
+    ConnectionTable table = createTable(STRIPES);
+    InternalDistributedMember member = mock(InternalDistributedMember.class);
+    InternalDistributedMember other = mock(InternalDistributedMember.class);
+    for (int i = 0; i < STRIPES; i++) {
+      addStripe(table, member, i, 100 + i, 10 * i);
+    }
+    addStripe(table, other, 0, 200, 5);
+
+    Map result = new HashMap();
+    table.getThreadOwnedOrderedConnectionState(member, result);
+
+    assertEquals(STRIPES, result.size());
+    for (int i = 0; i < STRIPES; i++) {
+      assertEquals(Long.valueOf(10 * i), result.get(Long.valueOf(100 + i)));
+    }
+  }
+
+  @Test
+  public void testStateIgnoresSingleSharedConnection() throws Exception {
+    ConnectionTable table = createTable(1);
+    InternalDistributedMember member = mock(InternalDistributedMember.class);
+    addStripe(table, member, 0, 100, 10);
+
+    // the state flush marker itself travels on the only shared ordered connection
+    Map result = new HashMap();
+    table.getThreadOwnedOrderedConnectionState(member, result);
+    assertTrue(result.isEmpty());
+  }
+}
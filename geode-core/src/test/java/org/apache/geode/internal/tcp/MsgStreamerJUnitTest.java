@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.tcp;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.geode.distributed.internal.DMStats;
+import org.apache.geode.distributed.internal.DistributionMessage;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class MsgStreamerJUnitTest {
+
+  private static final int SEND_BUFFER_SIZE = 32 * 1024;
+
+  private Connection con;
+  private ByteArrayOutputStream sent;
+  private int gatheredWrites;
+
+  @Before
+  public void setUp() throws Exception {
+    this.con = mock(Connection.class);
+    this.sent = new ByteArrayOutputStream();
+    Answer<Void> recordBuffers = new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        Object arg = invocation.getArguments()[0];
+        ByteBuffer[] buffers;
+        if (arg instanceof ByteBuffer[]) {
+          buffers = (ByteBuffer[])arg;
+          gatheredWrites++;
+        } else {
+          buffers = new ByteBuffer[] {(ByteBuffer)arg};
+        }
+        for (ByteBuffer bb: buffers) {
+          // consume the buffer like a socket write would
+          byte[] bytes = new byte[bb.remaining()];
+          bb.get(bytes);
+          sent.write(bytes, 0, bytes.length);
+        }
+        return null;
+      }
+    };
+    doAnswer(recordBuffers).when(this.con).sendPreserialized(any(ByteBuffer.class), anyBoolean(), any(DistributionMessage.class));
+    doAnswer(recordBuffers).when(this.con).sendPreserialized(any(ByteBuffer[].class), anyBoolean(), any(DistributionMessage.class));
+  }
+
+  private MsgStreamer createStreamer(boolean gather) {
+    when(this.con.supportsGatheringWrites()).thenReturn(gather);
+    List<Connection> cons = new ArrayList<Connection>();
+    cons.add(this.con);
+    return new MsgStreamer(cons, mock(DistributionMessage.class), false, mock(DMStats.class), SEND_BUFFER_SIZE);
+  }
+
+  @Test
+  public void testLargeBufferIsGathered() throws Exception {
+    byte[] value = createValue(100 * 1024);
+    MsgStreamer streamer = createStreamer(true);
+    streamer.writeInt(1);
+    streamer.write(ByteBuffer.wrap(value));
+    streamer.writeInt(2);
+    streamer.realFlush(true);
+    streamer.release();
+
+    assertEquals(1, this.gatheredWrites);
+    // the chunk referencing the value is sent as soon as the value is written
+    ByteBuffer chunk = ByteBuffer.wrap(this.sent.toByteArray());
+    int firstChunkSize = Connection.MSG_HEADER_BYTES + 4 + value.length;
+    assertEquals(firstChunkSize + Connection.MSG_HEADER_BYTES + 4, chunk.limit());
+    assertEquals(firstChunkSize - Connection.MSG_HEADER_BYTES,
+        Connection.calcMsgByteSize(chunk.getInt(Connection.MSG_HEADER_SIZE_OFFSET)));
+    chunk.position(Connection.MSG_HEADER_BYTES);
+    assertEquals(1, chunk.getInt());
+    byte[] actual = new byte[value.length];
+    chunk.get(actual);
+    assertArrayEquals(value, actual);
+    chunk.position(chunk.position() + Connection.MSG_HEADER_BYTES);
+    assertEquals(2, chunk.getInt());
+  }
+
+  @Test
+  public void testGatheredBuffersAreNotHeldUntilTheBufferFills() throws Exception {
+    byte[] value = createValue(SEND_BUFFER_SIZE);
+    MsgStreamer streamer = createStreamer(true);
+    streamer.write(ByteBuffer.wrap(value));
+    assertEquals(1, this.gatheredWrites);
+    streamer.write(ByteBuffer.wrap(value));
+    assertEquals(2, this.gatheredWrites);
+    streamer.realFlush(true);
+    streamer.release();
+
+    assertEquals(3 * Connection.MSG_HEADER_BYTES + 2 * value.length, this.sent.size());
+  }
+
+  @Test
+  public void testLargeBufferIsCopiedWithoutGatheringSupport() throws Exception {
+    byte[] value = createValue(100 * 1024);
+    MsgStreamer streamer = createStreamer(false);
+    streamer.write(ByteBuffer.wrap(value));
+    streamer.realFlush(true);
+    streamer.release();
+
+    assertEquals(0, this.gatheredWrites);
+    // the value was split over several chunks, each with its own header
+    byte[] bytes = this.sent.toByteArray();
+    assertTrue(bytes.length > value.length + Connection.MSG_HEADER_BYTES);
+  }
+
+  @Test
+  public void testSmallBufferIsCopied() throws Exception {
+    byte[] value = createValue(100);
+    MsgStreamer streamer = createStreamer(true);
+    streamer.write(ByteBuffer.wrap(value));
+    streamer.realFlush(true);
+    streamer.release();
+
+    assertEquals(0, this.gatheredWrites);
+    assertEquals(Connection.MSG_HEADER_BYTES + value.length, this.sent.size());
+  }
+
+  private static byte[] createValue(int size) {
+    byte[] value = new byte[size];
+    for (int i = 0; i < size; i++) {
+      value[i] = (byte)i;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.util.concurrent;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ConcurrentLongHashMapJUnitTest {
+
+  @Test
+  public void testBasicOperations() {
+    ConcurrentLongHashMap<Object> map = new ConcurrentLongHashMap<>();
+    assertTrue(map.isEmpty());
+    assertNull(map.put(5L, "a"));
+    assertEquals("a", map.put(5L, "b"));
+    assertEquals("b", map.putIfAbsent(5L, "c"));
+    assertNull(map.putIfAbsent(Long.MIN_VALUE, "min"));
+    assertNull(map.putIfAbsent(Long.MAX_VALUE, "max"));
+    assertNull(map.putIfAbsent(0L, "zero"));
+    assertEquals(4, map.size());
+    assertTrue(map.containsKey(Long.MIN_VALUE));
+    assertFalse(map.containsKey(5));
+    assertNull(map.get("5"));
+    assertFalse(map.replace(5L, "a", "x"));
+    assertTrue(map.replace(5L, "b", "x"));
+    assertEquals("x", map.get(5L));
+    assertFalse(map.remove(5L, "b"));
+    assertTrue(map.remove(5L, "x"));
+    assertNull(map.get(5L));
+    assertEquals("max", map.remove(Long.MAX_VALUE));
+    assertEquals("zero", map.get(0L));
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(0L));
+  }
+
+  @Test(expected = ClassCastException.class)
+  public void testOtherKeysAreRejected() {
+    new ConcurrentLongHashMap<Object>().put(1, "a");
+  }
+
+  @Test
+  public void testRandomOperationsMatchHashMap() {
+    Random random = new Random(17);
+    // a single small segment so that probe runs wrap around and get shifted back
+    ConcurrentLongHashMap<Object> map = new ConcurrentLongHashMap<>(4, 0.9f, 1);
+    Map<Long, Object> expected = new HashMap<>();
+    for (int i = 0; i < 200000; i++) {
+      // keys that only differ in the high bits
+      long key = ((long)(random.nextInt(3000) - 1500)) << 40;
+      switch (random.nextInt(4)) {
+        case 0:
+          assertEquals(expected.put(key, i), map.put(key, i));
+          break;
+        case 1:
+          assertEquals(expected.putIfAbsent(key, i), map.putIfAbsent(key, i));
+          break;
+        case 2:
+          assertEquals(expected.remove(key), map.remove(key));
+          break;
+        default:
+          assertEquals(expected.get(key), map.get(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    assertEquals(expected, new HashMap<>(map));
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    ConcurrentLongHashMap<Object> map = new ConcurrentLongHashMap<>(0, 0.75f, 4);
+    for (long i = 0; i < 1000; i++) {
+      map.put(i, i);
+    }
+    Set<Object> seen = new HashSet<>();
+    for (Iterator<Object> it = map.keySet().iterator(); it.hasNext();) {
+      Object key = it.next();
+      assertTrue(seen.add(key));
+      if (((Long)key).longValue() % 2 == 0) {
+        it.remove();
+      }
+    }
+    assertEquals(1000, seen.size());
+    assertEquals(500, map.size());
+    for (Object value : map.values()) {
+      assertEquals(1, ((Long)value).longValue() % 2);
+    }
+    for (Map.Entry<Object, Object> e : map.entrySet()) {
+      e.setValue("x");
+    }
+    assertEquals("x", map.get(999L));
+  }
+
+  @Test
+  public void testConcurrentReadsSeeStableKeys() throws Exception {
+    final ConcurrentLongHashMap<Object> map = new ConcurrentLongHashMap<>(16, 0.75f, 2);
+    final int stable = 1000;
+    for (long i = 0; i < stable; i++) {
+      map.put(i, i);
+    }
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread writer = new Thread(() -> {
+      // grow the tables and shift entries back under the readers
+      for (int round = 0; round < 50; round++) {
+        for (long k = stable; k < stable + 20000; k++) {
+          map.put(k, k);
+        }
+        for (long k = stable; k < stable + 20000; k++) {
+          map.remove(k);
+        }
+      }
+      done.countDown();
+    });
+    Thread[] readers = new Thread[2];
+    for (int t = 0; t < readers.length; t++) {
+      readers[t] = new Thread(() -> {
+        try {
+          while (done.getCount() > 0) {
+            for (long i = 0; i < stable; i++) {
+              assertEquals(i, map.get(i));
+            }
+          }
+        } catch (Throwable e) {
+          failure.set(e);
+        }
+      });
+      readers[t].start();
+    }
+    writer.start();
+    writer.join();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals(stable, map.size());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.internal.util.concurrent;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class ConcurrentLongSkipListMapJUnitTest {
+
+  @Test
+  public void testBasicOperations() {
+    ConcurrentLongSkipListMap map = new ConcurrentLongSkipListMap();
+    assertTrue(map.isEmpty());
+    assertNull(map.put(5, "a"));
+    assertEquals("a", map.put(5, "b"));
+    assertEquals("b", map.putIfAbsent(5, "c"));
+    assertNull(map.putIfAbsent(Long.MIN_VALUE, "min"));
+    assertNull(map.putIfAbsent(Long.MAX_VALUE, "max"));
+    assertEquals(3, map.size());
+    assertTrue(map.containsKey(Long.MIN_VALUE));
+    assertFalse(map.replace(5, "a", "x"));
+    assertTrue(map.replace(5, "b", "x"));
+    assertEquals("x", map.get(5));
+    assertFalse(map.remove(5, "b"));
+    assertTrue(map.remove(5, "x"));
+    assertNull(map.get(5));
+    assertEquals("max", map.remove(Long.MAX_VALUE));
+    map.clear();
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testRandomOperationsMatchTreeMap() {
+    Random random = new Random(17);
+    ConcurrentLongSkipListMap map = new ConcurrentLongSkipListMap();
+    TreeMap<Long, Object> expected = new TreeMap<>();
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(2000) - 1000;
+      switch (random.nextInt(4)) {
+        case 0:
+          assertEquals(expected.put(key, i), map.put(key, i));
+          break;
+        case 1:
+          assertEquals(expected.putIfAbsent(key, i), map.putIfAbsent(key, i));
+          break;
+        case 2:
+          assertEquals(expected.remove(key), map.remove(key));
+          break;
+        default:
+          assertEquals(expected.get(key), map.get(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+
+    for (int i = 0; i < 200; i++) {
+      long lo = random.nextInt(2200) - 1100;
+      long hi = lo + random.nextInt(500);
+      assertRange(expected.subMap(lo, true, hi, true), map.iterator(lo, hi, false));
+      assertRange(expected.subMap(lo, true, hi, true).descendingMap(), map.iterator(lo, hi, true));
+    }
+    assertRange(expected, map.iterator());
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    ConcurrentLongSkipListMap map = new ConcurrentLongSkipListMap();
+    for (long i = 0; i < 10; i++) {
+      map.put(i, i);
+    }
+    ConcurrentLongSkipListMap.EntryIterator it = map.iterator(2, 7, false);
+    while (it.hasNext()) {
+      it.next();
+      if (it.key() % 2 == 0) {
+        it.remove();
+      }
+    }
+    NavigableMap<Long, Object> expected = new TreeMap<>();
+    for (long i = 0; i < 10; i++) {
+      if (i < 2 || i > 7 || i % 2 != 0) {
+        expected.put(i, i);
+      }
+    }
+    assertRange(expected, map.iterator());
+  }
+
+  @Test
+  public void testConcurrentInserts() throws Exception {
+    final ConcurrentLongSkipListMap map = new ConcurrentLongSkipListMap();
+    final int threads = 4;
+    final int perThread = 5000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final int offset = t;
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perThread; i++) {
+          long key = (long)i * threads + offset;
+          map.put(key, key);
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertEquals(threads * perThread, map.size());
+    ConcurrentLongSkipListMap.EntryIterator it = map.iterator();
+    long next = 0;
+    while (it.hasNext()) {
+      it.next();
+      assertEquals(next, it.key());
+      assertEquals(next, it.value());
+      next++;
+    }
+    assertEquals(threads * perThread, next);
+  }
+
+  private void assertRange(Map<Long, Object> expected, ConcurrentLongSkipListMap.EntryIterator actual) {
+    for (Map.Entry<Long, Object> entry : expected.entrySet()) {
+      assertTrue(actual.hasNext());
+      actual.next();
+      assertEquals(entry.getKey().longValue(), actual.key());
+      assertEquals(entry.getValue(), actual.value());
+    }
+    assertFalse(actual.hasNext());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.pdx;
+
+import static org.apache.geode.distributed.ConfigurationProperties.MCAST_PORT;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.DataSerializer;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.internal.HeapDataOutputStream;
+import org.apache.geode.internal.Version;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.pdx.AutoPdxCodecJUnitTest.AllTypes;
+import org.apache.geode.pdx.internal.AutoPdxCodecGenerator;
+import org.apache.geode.pdx.internal.AutoSerializableManager;
+import org.apache.geode.pdx.internal.AutoSerializableManager.AutoClassInfo;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Compares auto serialization through field wrappers with a generated codec.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class AutoPdxCodecJUnitPerformanceTest {
+
+  private static final int COUNT = 1000000;
+
+  private GemFireCacheImpl cache;
+  private AutoSerializableManager manager;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionBasedAutoSerializer serializer = new ReflectionBasedAutoSerializer(
+        "org.apache.geode.pdx.AutoPdxCodecJUnitTest.AllTypes");
+    this.manager = (AutoSerializableManager)serializer.getManager();
+    this.cache = (GemFireCacheImpl)new CacheFactory().set(MCAST_PORT, "0")
+        .setPdxReadSerialized(false).setPdxSerializer(serializer).create();
+  }
+
+  @After
+  public void tearDown() {
+    this.cache.close();
+  }
+
+  @Test
+  public void testCodecPerformance() throws Exception {
+    AllTypes value = new AllTypes(7);
+    run("field wrappers", value);
+    AutoClassInfo ci = this.manager.getClassInfo(AllTypes.class);
+    ci.setCodec(AutoPdxCodecGenerator.generate(this.manager, AllTypes.class, ci.getFields()));
+    run("generated codec", value);
+  }
+
+  private void run(String name, Object value) throws Exception {
+    for (int j = 0; j < 5; j++) {
+      long start = System.nanoTime();
+      byte[] bytes = null;
+      for (int i = 0; i < COUNT; i++) {
+        HeapDataOutputStream out = new HeapDataOutputStream(Version.CURRENT);
+        DataSerializer.writeObject(value, out);
+        bytes = out.toByteArray();
+      }
+      long writeElapsed = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i = 0; i < COUNT; i++) {
+        DataSerializer.readObject(new DataInputStream(new ByteArrayInputStream(bytes)));
+      }
+      long readElapsed = System.nanoTime() - start;
+      System.out.println(name + ": " + (writeElapsed / COUNT) + " ns / write, "
+          + (readElapsed / COUNT) + " ns / read");
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.pdx;
+
+import static org.apache.geode.distributed.ConfigurationProperties.MCAST_PORT;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.DataSerializer;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.internal.HeapDataOutputStream;
+import org.apache.geode.internal.PdxSerializerObject;
+import org.apache.geode.internal.Version;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.pdx.internal.AutoPdxCodec;
+import org.apache.geode.pdx.internal.AutoPdxCodecGenerator;
+import org.apache.geode.pdx.internal.AutoSerializableManager;
+import org.apache.geode.pdx.internal.AutoSerializableManager.AutoClassInfo;
+import org.apache.geode.test.junit.categories.IntegrationTest;
+
+/**
+ * Verifies that a generated {@link AutoPdxCodec} writes and reads the same
+ * bytes as the field wrappers used by {@link ReflectionBasedAutoSerializer}.
+ */
+@Category(IntegrationTest.class)
+public class AutoPdxCodecJUnitTest {
+
+  private GemFireCacheImpl cache;
+  private AutoSerializableManager manager;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionBasedAutoSerializer serializer = new ReflectionBasedAutoSerializer(
+        "org.apache.geode.pdx.AutoPdxCodecJUnitTest.AllTypes");
+    this.manager = (AutoSerializableManager)serializer.getManager();
+    this.cache = (GemFireCacheImpl)new CacheFactory().set(MCAST_PORT, "0")
+        .setPdxReadSerialized(false).setPdxSerializer(serializer).create();
+  }
+
+  @After
+  public void tearDown() {
+    this.cache.close();
+  }
+
+  @Test
+  public void testGeneratedCodecMatchesFieldWrappers() throws Exception {
+    AllTypes value = new AllTypes(7);
+    // the first serialization defines the pdx type with the field wrappers
+    byte[] expected = serialize(value);
+
+    AutoClassInfo ci = this.manager.getClassInfo(AllTypes.class);
+    AutoPdxCodec codec = AutoPdxCodecGenerator.generate(this.manager, AllTypes.class, ci.getFields());
+    assertNotNull(codec);
+    ci.setCodec(codec);
+
+    byte[] actual = serialize(value);
+    assertTrue(Arrays.equals(expected, actual));
+
+    AllTypes result = (AllTypes)DataSerializer.readObject(new DataInputStream(new ByteArrayInputStream(actual)));
+    assertEquals(value, result);
+  }
+
+  private static byte[] serialize(Object o) throws Exception {
+    HeapDataOutputStream out = new HeapDataOutputStream(Version.CURRENT);
+    DataSerializer.writeObject(o, out);
+    return out.toByteArray();
+  }
+
+  public static class AllTypes implements PdxSerializerObject {
+    private int i;
+    private long l;
+    private boolean z;
+    private char c;
+    private short s;
+    private byte b;
+    private float f;
+    private double d;
+    private String str;
+    private Date date;
+    private Object obj;
+    private int[] ia;
+    private byte[][] bytes;
+    private String[] strings;
+    private Object[] objects;
+
+    public AllTypes() {
+    }
+
+    public AllTypes(int seed) {
+      this.i = seed;
+      this.l = seed * 1000L;
+      this.z = true;
+      this.c = 'x';
+      this.s = (short)seed;
+      this.b = (byte)seed;
+      this.f = seed / 2.0f;
+      this.d = seed / 3.0;
+      this.str = "string" + seed;
+      this.date = new Date(seed);
+      this.obj = Integer.valueOf(seed);
+      this.ia = new int[] {seed, seed + 1};
+      this.bytes = new byte[][] {{1, 2}, {3}};
+      this.strings = new String[] {"a", null, "c"};
+      this.objects = new Object[] {"o", Long.valueOf(seed)};
+    }
+
+    @Override
+    public int hashCode() {
+      return this.i;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof AllTypes)) {
+        return false;
+      }
+      AllTypes other = (AllTypes)o;
+      return this.i == other.i && this.l == other.l && this.z == other.z && this.c == other.c
+          && this.s == other.s && this.b == other.b && this.f == other.f && this.d == other.d
+          && this.str.equals(other.str) && this.date.equals(other.date) && this.obj.equals(other.obj)
+          && Arrays.equals(this.ia, other.ia) && Arrays.deepEquals(this.bytes, other.bytes)
+          && Arrays.equals(this.strings, other.strings) && Arrays.equals(this.objects, other.objects);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.pdx;
+
+import static org.apache.geode.distributed.ConfigurationProperties.MCAST_PORT;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.cache.Region;
+import org.apache.geode.cache.RegionShortcut;
+import org.apache.geode.cache.CacheFactory;
+import org.apache.geode.cache.query.Query;
+import org.apache.geode.cache.query.SelectResults;
+import org.apache.geode.internal.cache.GemFireCacheImpl;
+import org.apache.geode.test.junit.categories.PerformanceTest;
+
+/**
+ * Measures queries whose predicates read a few fields of wide PdxInstances.
+ */
+@Category(PerformanceTest.class)
+@Ignore("Test has no assertions and will always pass")
+public class PdxInstanceFieldAccessJUnitPerformanceTest {
+
+  private static final int FIELD_COUNT = 200;
+  private static final int ENTRY_COUNT = 100000;
+
+  private GemFireCacheImpl cache;
+
+  @Before
+  public void setUp() {
+    this.cache = (GemFireCacheImpl)new CacheFactory().set(MCAST_PORT, "0")
+        .setPdxReadSerialized(true).create();
+  }
+
+  @After
+  public void tearDown() {
+    this.cache.close();
+  }
+
+  @Test
+  public void testQueryOnWidePdx() throws Exception {
+    Region<Integer, PdxInstance> region = this.cache.<Integer, PdxInstance>createRegionFactory(RegionShortcut.REPLICATE).create("wide");
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      PdxInstanceFactory factory = this.cache.createPdxInstanceFactory("test.Wide");
+      for (int f = 0; f < FIELD_COUNT; f++) {
+        if (f % 2 == 0) {
+          factory.writeInt("intField" + f, i + f);
+        } else {
+          factory.writeString("stringField" + f, "value" + (i % 100));
+        }
+      }
+      region.put(i, factory.create());
+    }
+    Query query = this.cache.getQueryService().newQuery(
+        "select * from /wide w where w.intField" + (FIELD_COUNT - 2) + " > 1000 and w.stringField" + (FIELD_COUNT - 1) + " = 'value7'");
+    for (int j = 0; j < 10; j++) {
+      long start = System.nanoTime();
+      SelectResults<?> results = (SelectResults<?>)query.execute();
+      long elapsed = System.nanoTime() - start;
+      System.out.println(results.size() + " results in " + (elapsed / 1000000) + " ms; "
+          + (elapsed / ENTRY_COUNT) + " ns / entry");
+    }
+  }
+}
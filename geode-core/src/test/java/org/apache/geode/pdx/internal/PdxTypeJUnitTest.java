@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geode.pdx.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.geode.pdx.FieldType;
+import org.apache.geode.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class PdxTypeJUnitTest {
+
+  @Test
+  public void testGetPdxFieldFindsEveryField() {
+    PdxType type = new PdxType("test.Wide", true);
+    for (int i = 0; i < 100; i++) {
+      type.addField(new PdxField("field" + i, i, 0, FieldType.INT, false));
+    }
+    for (int i = 0; i < 100; i++) {
+      PdxField f = type.getPdxField(new String("field" + i));
+      assertNotNull(f);
+      assertEquals(i, f.getFieldIndex());
+    }
+    assertNull(type.getPdxField("field100"));
+    assertNull(type.getPdxField(""));
+    assertNull(type.getPdxField(null));
+  }
+
+  @Test
+  public void testGetPdxFieldAfterAddField() {
+    PdxType type = new PdxType("test.Grow", true);
+    assertNull(type.getPdxField("a"));
+    type.addField(new PdxField("a", 0, 0, FieldType.STRING, false));
+    assertNotNull(type.getPdxField("a"));
+    type.addField(new PdxField("b", 1, 0, FieldType.STRING, false));
+    assertNotNull(type.getPdxField("a"));
+    assertNotNull(type.getPdxField("b"));
+  }
+
+  @Test
+  public void testGetPdxFieldIgnoresDeletedField() {
+    PdxType type = new PdxType("test.Deleted", true);
+    PdxField f = new PdxField("a", 0, 0, FieldType.LONG, false);
+    type.addField(f);
+    assertSame(f, type.getPdxField("a"));
+    f.setDeleted(true);
+    assertNull(type.getPdxField("a"));
+  }
+}